@@ -0,0 +1,364 @@
+/*
+ * Copyright 2025 University of Leeds.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.ac.leeds.ccg.mol.bench;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import uk.ac.leeds.ccg.mol.core.Mol_Environment;
+import uk.ac.leeds.ccg.mol.data.cif.CIF;
+import uk.ac.leeds.ccg.mol.geom.QCProt;
+import uk.ac.leeds.ccg.mol.io.Mol_CifCodec;
+import uk.ac.leeds.ccg.mol.io.Mol_SyntheticCifGenerator;
+import uk.ac.leeds.ccg.mol.io.Mol_TextCifOutput;
+import uk.ac.leeds.ccg.mol.io.Mol_TextCifReader;
+import uk.ac.leeds.ccg.mol.io.Mol_TextCifWriter;
+
+/**
+ * Benchmarks of reading, coordinate extraction, centralising, rotating,
+ * aligning, writing and serializing synthetic structures of 10 thousand, 100 thousand and
+ * 1 million atoms. Each benchmark counts the atoms it processes, so as well
+ * as operations per second JMH reports atoms per second as the "atoms"
+ * secondary result. Run with the jmh profile which also reports allocation
+ * rates and saves the results as JSON:
+ * <pre>
+ * mvn -P jmh verify
+ * mvn -P jmh verify -Djmh.args="CifBenchmark.parse -p atoms=100000"
+ * </pre>
+ *
+ * @author Andy Turner
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx8g"})
+public class CifBenchmark {
+
+    /**
+     * The structure benchmarked.
+     */
+    @State(Scope.Benchmark)
+    public static class Data {
+
+        /**
+         * The number of atoms.
+         */
+        @Param({"10000", "100000", "1000000"})
+        public int atoms;
+
+        /**
+         * The synthetic CIF file.
+         */
+        Path file;
+
+        /**
+         * The reader.
+         */
+        Mol_TextCifReader reader;
+
+        /**
+         * The writer.
+         */
+        Mol_TextCifWriter writer;
+
+        /**
+         * The CIF read from {@link #file}. It is not changed.
+         */
+        CIF cif;
+
+        /**
+         * The encoding of {@link #cif} for {@link Copy}.
+         */
+        byte[] snapshot;
+
+        /**
+         * The Java serialization of {@link #cif}.
+         */
+        byte[] serialized;
+
+        /**
+         * The atom types for the selective benchmarks.
+         */
+        TreeSet<String> atomTypes;
+
+        /**
+         * A rotation matrix (30 degrees about the z axis).
+         */
+        double[] rotmat;
+
+        /**
+         * The coordinates of {@link #cif}.
+         */
+        double[][] coords1;
+
+        /**
+         * {@link #coords1} rotated by {@link #rotmat}.
+         */
+        double[][] coords2;
+
+        /**
+         * For {@link CifBenchmark#getRotatedCoordinates(Data, Atoms)}.
+         */
+        QCProt qcprot;
+
+        /**
+         * @throws Exception If the CIF cannot be written or read.
+         */
+        @Setup(Level.Trial)
+        public void setup() throws Exception {
+            file = Files.createTempFile("rc-mol-bench", ".cif");
+            Mol_SyntheticCifGenerator.ofAtoms("SYN1", atoms, 1L).write(file);
+            reader = new Mol_TextCifReader((Mol_Environment) null);
+            writer = new Mol_TextCifWriter();
+            cif = reader.getCif(file);
+            snapshot = Mol_CifCodec.encode(cif);
+            serialized = serialize(cif).toByteArray();
+            atomTypes = new TreeSet<>();
+            atomTypes.add("P");
+            double c = Math.cos(Math.PI / 6d);
+            double s = Math.sin(Math.PI / 6d);
+            rotmat = new double[]{c, -s, 0d, s, c, 0d, 0d, 0d, 1d};
+            coords1 = QCProt.centre(cif.getCoords(null), atoms);
+            coords2 = new double[3][atoms];
+            for (int i = 0; i < atoms; i++) {
+                for (int j = 0; j < 3; j++) {
+                    coords2[j][i] = rotmat[j * 3] * coords1[0][i]
+                            + rotmat[j * 3 + 1] * coords1[1][i]
+                            + rotmat[j * 3 + 2] * coords1[2][i];
+                }
+            }
+            qcprot = new QCProt(coords1, coords2);
+        }
+
+        /**
+         * @throws IOException If the file cannot be deleted.
+         */
+        @TearDown(Level.Trial)
+        public void tearDown() throws IOException {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    /**
+     * A copy of {@link Data#cif} for the benchmarks that move atoms. It is
+     * decoded from {@link Data#snapshot} before each invocation (which is not
+     * timed) so that every invocation starts from the coordinates as read
+     * rather than from those the last invocation left.
+     */
+    @State(Scope.Thread)
+    public static class Copy {
+
+        /**
+         * The copy.
+         */
+        CIF cif;
+
+        /**
+         * @param d The data.
+         */
+        @Setup(Level.Invocation)
+        public void restore(Data d) {
+            cif = Mol_CifCodec.decode(ByteBuffer.wrap(d.snapshot), d.reader);
+        }
+    }
+
+    /**
+     * The number of atoms processed which JMH reports as a rate.
+     */
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    @State(Scope.Thread)
+    public static class Atoms {
+
+        /**
+         * The number of atoms processed.
+         */
+        public long atoms;
+
+        /**
+         * Resets the count.
+         */
+        @Setup(Level.Iteration)
+        public void reset() {
+            atoms = 0L;
+        }
+    }
+
+    /**
+     * @param d The data.
+     * @param a The counter.
+     * @return The CIF.
+     * @throws Exception If thrown by the reader.
+     */
+    @Benchmark
+    public CIF parse(Data d, Atoms a) throws Exception {
+        a.atoms += d.atoms;
+        return d.reader.getCif(d.file);
+    }
+
+    /**
+     * @param d The data.
+     * @param a The counter.
+     * @return The coordinates.
+     */
+    @Benchmark
+    public double[][] getCoords(Data d, Atoms a) {
+        a.atoms += d.atoms;
+        return d.cif.getCoords(null);
+    }
+
+    /**
+     * @param d The data.
+     * @param a The counter.
+     * @return The coordinates of the phosphorus atoms.
+     */
+    @Benchmark
+    public double[][] getCoordsAtomTypes(Data d, Atoms a) {
+        a.atoms += d.atoms;
+        return d.cif.getCoords(d.atomTypes);
+    }
+
+    /**
+     * @param d The data.
+     * @param c The copy to change.
+     * @param a The counter.
+     * @return The CIF.
+     */
+    @Benchmark
+    public CIF centralise(Data d, Copy c, Atoms a) {
+        a.atoms += d.atoms;
+        c.cif.centralise(null);
+        return c.cif;
+    }
+
+    /**
+     * @param d The data.
+     * @param c The copy to change.
+     * @param a The counter.
+     * @return The CIF.
+     */
+    @Benchmark
+    public CIF rotate(Data d, Copy c, Atoms a) {
+        a.atoms += d.atoms;
+        c.cif.rotate(d.rotmat);
+        return c.cif;
+    }
+
+    /**
+     * @param d The data.
+     * @param a The counter.
+     * @return The superposition.
+     */
+    @Benchmark
+    public QCProt qcprot(Data d, Atoms a) {
+        a.atoms += d.atoms;
+        return new QCProt(d.coords1, d.coords2);
+    }
+
+    /**
+     * @param d The data.
+     * @param a The counter.
+     * @return The rotated coordinates.
+     */
+    @Benchmark
+    public double[][] getRotatedCoordinates(Data d, Atoms a) {
+        a.atoms += d.atoms;
+        return d.qcprot.getRotatedCoordinates();
+    }
+
+    /**
+     * Writes to memory so that disk speed is not measured.
+     *
+     * @param d The data.
+     * @param a The counter.
+     * @return The number of bytes written.
+     * @throws IOException If thrown by the writer.
+     */
+    @Benchmark
+    public int write(Data d, Atoms a) throws IOException {
+        a.atoms += d.atoms;
+        Mol_TextCifOutput out = new Mol_TextCifOutput(1 << 20);
+        d.writer.write(d.cif, out);
+        return out.size();
+    }
+
+    /**
+     * @param cif The CIF.
+     * @return The Java serialization of cif.
+     * @throws IOException If encountered.
+     */
+    static ByteArrayOutputStream serialize(CIF cif) throws IOException {
+        ByteArrayOutputStream baos = new ByteArrayOutputStream(1 << 20);
+        try (ObjectOutputStream oos = new ObjectOutputStream(baos)) {
+            oos.writeObject(cif);
+        }
+        return baos;
+    }
+
+    /**
+     * Java serialization to memory which is by Mol_CifCodec. Compare with
+     * {@link #write(Data, Atoms)}.
+     *
+     * @param d The data.
+     * @param a The counter.
+     * @return The number of bytes written.
+     * @throws IOException If encountered.
+     */
+    @Benchmark
+    public int serialize(Data d, Atoms a) throws IOException {
+        a.atoms += d.atoms;
+        return serialize(d.cif).size();
+    }
+
+    /**
+     * Java deserialization from memory. Compare with
+     * {@link #parse(Data, Atoms)}.
+     *
+     * @param d The data.
+     * @param a The counter.
+     * @return The CIF.
+     * @throws Exception If encountered.
+     */
+    @Benchmark
+    public CIF deserialize(Data d, Atoms a) throws Exception {
+        a.atoms += d.atoms;
+        try (ObjectInputStream ois = new ObjectInputStream(
+                new ByteArrayInputStream(d.serialized))) {
+            return (CIF) ois.readObject();
+        }
+    }
+}
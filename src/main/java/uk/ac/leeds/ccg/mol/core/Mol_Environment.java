@@ -36,7 +36,7 @@ public class Mol_Environment extends Data_Environment {
     /**
      * For commonly used strings.
      */
-    public static Mol_Strings strings;
+    public static final Mol_Strings strings = new Mol_Strings();
     
     /**
      * Create a new instance
@@ -46,7 +46,6 @@ public class Mol_Environment extends Data_Environment {
      */
     public Mol_Environment(Generic_Environment e) throws IOException {
         super(e);
-        strings = new Mol_Strings();
     } 
     
 }
@@ -16,6 +16,8 @@
 package uk.ac.leeds.ccg.mol.data.cif;
 
 import ch.obermuhlner.math.big.BigRational;
+import java.io.ObjectStreamException;
+import java.math.BigDecimal;
 import java.math.RoundingMode;
 import java.util.ArrayList;
 import java.util.HashSet;
@@ -27,6 +29,9 @@ import java.util.stream.Collectors;
 import uk.ac.leeds.ccg.math.arithmetic.Math_BigRational;
 import uk.ac.leeds.ccg.mol.core.Mol_Environment;
 import uk.ac.leeds.ccg.mol.core.Mol_Object;
+import uk.ac.leeds.ccg.mol.data.cif.columns.Atom_Site;
+import uk.ac.leeds.ccg.mol.io.Mol_CifProxy;
+import uk.ac.leeds.ccg.mol.io.Mol_CifSummary;
 
 /**
  * CIF class.
@@ -53,6 +58,14 @@ public class CIF extends Mol_Object {
      */
     public ArrayList<Comment> comments;
 
+    /**
+     * The summary of this as read or null. It is set by
+     * {@link uk.ac.leeds.ccg.mol.io.Mol_TextCifReader} and cleared by the methods that move atoms.
+     * It is not updated by {@link Columns#setValue}, so code that changes the
+     * atom_site values in other ways should set it to null.
+     */
+    public transient Mol_CifSummary summary;
+
     /**
      * @param env What {@link #env} is set to.
      */
@@ -62,6 +75,17 @@ public class CIF extends Mol_Object {
         comments = new ArrayList<>();
     }
 
+    /**
+     * Serializes this as a {@link Mol_CifProxy} which is smaller and faster
+     * than default serialization of every map entry, Row_ID and Value.
+     *
+     * @return A new Mol_CifProxy of this.
+     * @throws ObjectStreamException If this cannot be encoded.
+     */
+    private Object writeReplace() throws ObjectStreamException {
+        return new Mol_CifProxy(this);
+    }
+
     @Override
     public String toString() {
         StringBuilder sb = new StringBuilder();
@@ -74,6 +98,23 @@ public class CIF extends Mol_Object {
         return sb.toString();
     }
 
+    /**
+     * @return {@link #summary} calculating it if it is null.
+     */
+    public Mol_CifSummary getSummary() {
+        if (summary == null) {
+            summary = Mol_CifSummary.of(this);
+        }
+        return summary;
+    }
+
+    /**
+     * @return The atom_site Columns of the first DataBlock.
+     */
+    public Columns getAtomSite() {
+        return dataBlocks.get(0).getColumns(Atom_Site.NAME);
+    }
+
     /**
      * @return A double[][] of the coordinates.
      */
@@ -92,26 +133,26 @@ public class CIF extends Mol_Object {
         double[][] coords = null;
         // Get the coordinates from cif
         if (atomTypes == null) {
-            int len = x_column.values.size();
+            int len = x_column.getValues().size();
             coords = new double[3][len];
             for (int i = 0; i < len; i ++) {
                 Row_ID rid = new Row_ID(i);
-                coords[0][i] = Double.parseDouble(x_column.values.get(rid).v);
-                coords[1][i] = Double.parseDouble(y_column.values.get(rid).v);
-                coords[2][i] = Double.parseDouble(z_column.values.get(rid).v);
+                coords[0][i] = x_column.getValue(rid).getDouble();
+                coords[1][i] = y_column.getValue(rid).getDouble();
+                coords[2][i] = z_column.getValue(rid).getDouble();
             }
         } else {
             TreeMap<Row_ID, Double> xs = new TreeMap<>();
             TreeMap<Row_ID, Double> ys = new TreeMap<>();
             TreeMap<Row_ID, Double> zs = new TreeMap<>();
-            int len = x_column.values.size();
+            int len = x_column.getValues().size();
             for (int i = 0; i < len; i ++) {
                 Row_ID rid = new Row_ID(i);
-                String atomType = type_symbol_column.values.get(rid).v;
+                String atomType = type_symbol_column.getValue(rid).v;
                 if (atomTypes.contains(atomType)) {
-                    xs.put(rid, Double.valueOf(x_column.values.get(rid).v));
-                    ys.put(rid, Double.valueOf(y_column.values.get(rid).v));
-                    zs.put(rid, Double.valueOf(z_column.values.get(rid).v));
+                    xs.put(rid, x_column.getValue(rid).getDouble());
+                    ys.put(rid, y_column.getValue(rid).getDouble());
+                    zs.put(rid, z_column.getValue(rid).getDouble());
                 }
             }
             coords = new double[3][xs.size()];
@@ -140,10 +181,10 @@ public class CIF extends Mol_Object {
         Column z_column = columns.getColumn(z_cid);
         
         int oom = -3;
-        for (var rid : x_column.values.keySet()) {
-            double x = Double.parseDouble(x_column.values.get(rid).v);
-            double y = Double.parseDouble(y_column.values.get(rid).v);
-            double z = Double.parseDouble(z_column.values.get(rid).v);
+        for (var rid : x_column.getValues().keySet()) {
+            double x = Double.parseDouble(x_column.getValue(rid).v);
+            double y = Double.parseDouble(y_column.getValue(rid).v);
+            double z = Double.parseDouble(z_column.getValue(rid).v);
             //columns.setValue(rid, x_cid, new Value(Double.toString(rotmat[0] * x + rotmat[1] * y + rotmat[2] * z)));
             //columns.setValue(rid, y_cid, new Value(Double.toString(rotmat[3] * x + rotmat[4] * y + rotmat[5] * z)));
             //columns.setValue(rid, z_cid, new Value(Double.toString(rotmat[6] * x + rotmat[7] * y + rotmat[8] * z)));
@@ -154,20 +195,70 @@ public class CIF extends Mol_Object {
             columns.setValue(rid, z_cid, new Value(Math_BigRational.round(
                     BigRational.valueOf(rotmat[6] * x + rotmat[7] * y + rotmat[8] * z), oom, RoundingMode.UP).toPlainString()));
         }
-        
+        summary = null;
     }
     
+    /**
+     * Moves all atoms: each coordinate c becomes rotmat(c - from) + to. The
+     * results are rounded up to 3 decimal places as in
+     * {@link #rotate(double[])}.
+     *
+     * @param rotmat The rotation matrix.
+     * @param from The point moved to the origin before rotating.
+     * @param to The point the origin is moved to after rotating.
+     */
+    public void transform(double[] rotmat, double[] from, double[] to) {
+        Columns columns = getAtomSite();
+        Column_ID x_cid = columns.name2id.get("Cartn_x");
+        Column_ID y_cid = columns.name2id.get("Cartn_y");
+        Column_ID z_cid = columns.name2id.get("Cartn_z");
+        Column x_column = columns.getColumn(x_cid);
+        Column y_column = columns.getColumn(y_cid);
+        Column z_column = columns.getColumn(z_cid);
+        for (var rid : columns.data.keySet()) {
+            double x = x_column.getValue(rid).getDouble() - from[0];
+            double y = y_column.getValue(rid).getDouble() - from[1];
+            double z = z_column.getValue(rid).getDouble() - from[2];
+            columns.setValue(rid, x_cid, new Value(round(
+                    rotmat[0] * x + rotmat[1] * y + rotmat[2] * z + to[0])));
+            columns.setValue(rid, y_cid, new Value(round(
+                    rotmat[3] * x + rotmat[4] * y + rotmat[5] * z + to[1])));
+            columns.setValue(rid, z_cid, new Value(round(
+                    rotmat[6] * x + rotmat[7] * y + rotmat[8] * z + to[2])));
+        }
+        summary = null;
+    }
+
+    /**
+     * The rounding used for coordinates changed by {@link #rotate(double[])},
+     * {@link #transform(double[], double[], double[])} and
+     * {@link #centralise(java.util.TreeSet)}.
+     *
+     * @param v The value.
+     * @return v rounded up to 3 decimal places as plain text.
+     */
+    public static String round(double v) {
+        return BigDecimal.valueOf(v).setScale(3, RoundingMode.UP).toPlainString();
+    }
+
     /**
      * Translate all coordinates so that the average is the centre.
      * @param atomType e.g. P for phosphorous, C for Carbon.
      */
     public void centralise(TreeSet<String> atomTypes) {
+        centralise(atomTypes, null);
+    }
+
+    /**
+     * Translate all coordinates so that the average is the centre.
+     * @param atomType e.g. P for phosphorous, C for Carbon.
+     * @param hint A summary of the current coordinates (such as the
+     * {@link #summary} of a CIF just read) to take the average from, or null
+     * to sum the coordinates. It is not checked, so it must not be stale.
+     */
+    public void centralise(TreeSet<String> atomTypes, Mol_CifSummary hint) {
         // Calculate the average atom location.
         Columns columns = dataBlocks.get(0).getColumns("atom_site");
-        
-        Column_ID type_symbol_cid = columns.name2id.get("type_symbol");
-        Column type_symbol_column = columns.getColumn(type_symbol_cid);
-        
 
         Column_ID x_cid = columns.name2id.get("Cartn_x");
         Column x_column = columns.getColumn(x_cid);
@@ -181,26 +272,32 @@ public class CIF extends Mol_Object {
         BigRational z_sum = BigRational.ZERO;
         
         int n = 0;
-        if (atomTypes == null) {
-            for (var rid : x_column.values.keySet()) {
-                x_sum = x_sum.add(BigRational.valueOf(x_column.values.get(rid).v));
-                y_sum = y_sum.add(BigRational.valueOf(y_column.values.get(rid).v));
-                z_sum = z_sum.add(BigRational.valueOf(z_column.values.get(rid).v));
+        if (hint != null) {
+            // The sums are exact so this is the same as summing the values.
+            BigDecimal[] sums = hint.getSums(atomTypes);
+            x_sum = BigRational.valueOf(sums[0]);
+            y_sum = BigRational.valueOf(sums[1]);
+            z_sum = BigRational.valueOf(sums[2]);
+            n = Math.toIntExact(hint.getLocated(atomTypes));
+        } else if (atomTypes == null) {
+            for (var rid : x_column.getValues().keySet()) {
+                x_sum = x_sum.add(BigRational.valueOf(x_column.getValue(rid).v));
+                y_sum = y_sum.add(BigRational.valueOf(y_column.getValue(rid).v));
+                z_sum = z_sum.add(BigRational.valueOf(z_column.getValue(rid).v));
                 n ++;
             }
         } else {
-            for (var rid : x_column.values.keySet()) {
-                if (atomTypes.contains(type_symbol_column.values.get(rid).v)) {
-                    x_sum = x_sum.add(BigRational.valueOf(x_column.values.get(rid).v));
-                    y_sum = y_sum.add(BigRational.valueOf(y_column.values.get(rid).v));
-                    z_sum = z_sum.add(BigRational.valueOf(z_column.values.get(rid).v));
+            Column type_symbol_column = columns.getColumn(
+                    columns.name2id.get("type_symbol"));
+            for (var rid : x_column.getValues().keySet()) {
+                if (atomTypes.contains(type_symbol_column.getValue(rid).v)) {
+                    x_sum = x_sum.add(BigRational.valueOf(x_column.getValue(rid).v));
+                    y_sum = y_sum.add(BigRational.valueOf(y_column.getValue(rid).v));
+                    z_sum = z_sum.add(BigRational.valueOf(z_column.getValue(rid).v));
                     n ++;
                 }
             }
         }
-        //System.out.println("x_sum " + x_sum.toString());
-        //System.out.println("y_sum " + y_sum.toString());
-        //System.out.println("z_sum " + z_sum.toString());
         BigRational x_average = x_sum.divide(n);
         BigRational y_average = y_sum.divide(n);
         BigRational z_average = z_sum.divide(n);
@@ -211,13 +308,14 @@ public class CIF extends Mol_Object {
         int oom = -3;
 
         // Translate all coordinates so that the average is the centre.
-        for (var rid : x_column.values.keySet()) {
-            BigRational x = Math_BigRational.round(BigRational.valueOf(x_column.values.get(rid).v).subtract(x_average), oom, RoundingMode.UP);
-            BigRational y = Math_BigRational.round(BigRational.valueOf(y_column.values.get(rid).v).subtract(y_average), oom, RoundingMode.UP);
-            BigRational z = Math_BigRational.round(BigRational.valueOf(z_column.values.get(rid).v).subtract(z_average), oom, RoundingMode.UP);
+        for (var rid : x_column.getValues().keySet()) {
+            BigRational x = Math_BigRational.round(BigRational.valueOf(x_column.getValue(rid).v).subtract(x_average), oom, RoundingMode.UP);
+            BigRational y = Math_BigRational.round(BigRational.valueOf(y_column.getValue(rid).v).subtract(y_average), oom, RoundingMode.UP);
+            BigRational z = Math_BigRational.round(BigRational.valueOf(z_column.getValue(rid).v).subtract(z_average), oom, RoundingMode.UP);
             columns.setValue(rid, x_cid, new Value(x.toPlainString()));
             columns.setValue(rid, y_cid, new Value(y.toPlainString()));
             columns.setValue(rid, z_cid, new Value(z.toPlainString()));
         }
+        summary = null;
     }
 }
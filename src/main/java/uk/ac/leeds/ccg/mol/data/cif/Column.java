@@ -15,7 +15,10 @@
  */
 package uk.ac.leeds.ccg.mol.data.cif;
 
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.Map;
 
 /**
  * Column class.
@@ -26,12 +29,21 @@ public class Column extends Variable {
     /**
      * For storing the maximum width of a value.
      */
-    private Integer w;
+    private int w;
+
+    /**
+     * For storing the number of values of each length, so that
+     * {@link #w} can be maintained as values are replaced.
+     */
+    private int[] lengths;
     
     /**
-     * The values. 
+     * The values. These are only changed by
+     * {@link #setValue(uk.ac.leeds.ccg.mol.data.cif.Row_ID, uk.ac.leeds.ccg.mol.data.cif.Value)}
+     * and {@link #removeValue(uk.ac.leeds.ccg.mol.data.cif.Row_ID)} so that
+     * the width is maintained.
      */
-    public HashMap<Row_ID, Value> values;
+    private final HashMap<Row_ID, Value> values;
     
     /**
      * Create a new instance.
@@ -41,18 +53,82 @@ public class Column extends Variable {
     public Column(Columns columns, String name) {
         super(columns, name);
         this.values = new HashMap<>();
+        this.lengths = new int[16];
     }
-    
+
+    /**
+     * For storing a value and updating the width.
+     *
+     * @param rid The Row_ID.
+     * @param v The value.
+     */
+    public void setValue(Row_ID rid, Value v) {
+        Value old = values.put(rid, v);
+        if (old != null) {
+            removeLength(old.v.length());
+        }
+        addLength(v.v.length());
+    }
+
+    /**
+     * For removing a value and updating the width.
+     *
+     * @param rid The Row_ID.
+     * @return The value removed or null if there was no value for rid.
+     */
+    public Value removeValue(Row_ID rid) {
+        Value old = values.remove(rid);
+        if (old != null) {
+            removeLength(old.v.length());
+        }
+        return old;
+    }
+
+    /**
+     * @param rid The Row_ID.
+     * @return The value for rid or null if there is none.
+     */
+    public Value getValue(Row_ID rid) {
+        return values.get(rid);
+    }
+
+    /**
+     * @return An unmodifiable view of the values.
+     */
+    public Map<Row_ID, Value> getValues() {
+        return Collections.unmodifiableMap(values);
+    }
+
+    /**
+     * @param length The length of a value added.
+     */
+    protected void addLength(int length) {
+        if (length >= lengths.length) {
+            lengths = Arrays.copyOf(lengths, Math.max(length + 1,
+                    lengths.length * 2));
+        }
+        lengths[length]++;
+        if (length > w) {
+            w = length;
+        }
+    }
+
+    /**
+     * @param length The length of a value removed.
+     */
+    protected void removeLength(int length) {
+        lengths[length]--;
+        if (length == w) {
+            while (w > 0 && lengths[w] == 0) {
+                w--;
+            }
+        }
+    }
+
     /**
      * @return The maximum text width of {@link #values}.
      */
     public int getWidth() {
-        if (w == null) {
-            w = 0;
-            values.values().forEach(x -> {
-                w = Math.max(w, x.v.length());
-            });
-        }
         return w;
     }
 }
@@ -0,0 +1,260 @@
+/*
+ * Copyright 2025 University of Leeds.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.ac.leeds.ccg.mol.data.cif;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.BitSet;
+
+/**
+ * Column_Double class. The values of a numeric column in row order as a
+ * double[] with bitmaps recording which values are present and, of those
+ * that are missing, which are "?" (unknown) rather than "." (inapplicable).
+ * Missing values are stored as NaN, but kernels can skip them quickly using
+ * {@link #valid}.
+ *
+ * @author Andy Turner
+ */
+public class Column_Double {
+
+    /**
+     * The name of the column.
+     */
+    public final String name;
+
+    /**
+     * The values in row order. Missing values are NaN.
+     */
+    public final double[] values;
+
+    /**
+     * The rows with a value.
+     */
+    public final BitSet valid;
+
+    /**
+     * The rows with "?". Rows that are neither {@link #valid} nor unknown
+     * have ".".
+     */
+    public final BitSet unknown;
+
+    /**
+     * The number of decimal places that values are written with, or -1 if
+     * values are written with as many as are needed.
+     */
+    public int scale;
+
+    /**
+     * Create a new instance.
+     *
+     * @param name What {@link #name} is set to.
+     * @param values What {@link #values} is set to.
+     * @param valid What {@link #valid} is set to.
+     * @param unknown What {@link #unknown} is set to.
+     */
+    public Column_Double(String name, double[] values, BitSet valid,
+            BitSet unknown) {
+        this.name = name;
+        this.values = values;
+        this.valid = valid;
+        this.unknown = unknown;
+        this.scale = -1;
+    }
+
+    /**
+     * Create a new instance from the values of a column. The {@link #scale}
+     * is the maximum number of decimal places of the values.
+     *
+     * @param columns The columns.
+     * @param column The column.
+     * @throws NumberFormatException If a value is not missing and not a
+     * number.
+     */
+    public Column_Double(Columns columns, Column column) {
+        this.name = column.name;
+        int n = columns.getNRows();
+        values = new double[n];
+        valid = new BitSet(n);
+        unknown = new BitSet(n);
+        int dp = 0;
+        int i = 0;
+        for (Row_ID rid : columns.data.keySet()) {
+            Value v = column.getValue(rid);
+            switch (v.getKind()) {
+                case Value.INAPPLICABLE ->
+                    values[i] = Double.NaN;
+                case Value.UNKNOWN -> {
+                    values[i] = Double.NaN;
+                    unknown.set(i);
+                }
+                default -> {
+                    values[i] = Double.parseDouble(v.v);
+                    valid.set(i);
+                    if (dp >= 0) {
+                        dp = getScale(v.v, dp);
+                    }
+                }
+            }
+            i++;
+        }
+        scale = dp;
+    }
+
+    /**
+     * @param s The text of a number.
+     * @param dp The maximum number of decimal places so far.
+     * @return The maximum of dp and the number of decimal places of s, or -1
+     * if s has an exponent.
+     */
+    private static int getScale(String s, int dp) {
+        int n = s.length();
+        for (int j = 0; j < n; j++) {
+            char c = s.charAt(j);
+            if (c == 'e' || c == 'E') {
+                return -1;
+            }
+        }
+        int point = s.indexOf('.');
+        return point < 0 ? dp : Math.max(dp, n - point - 1);
+    }
+
+    /**
+     * @return The number of rows.
+     */
+    public int size() {
+        return values.length;
+    }
+
+    /**
+     * @return The number of rows with a value.
+     */
+    public int getNValid() {
+        return valid.cardinality();
+    }
+
+    /**
+     * @param i The row index.
+     * @return true if row i has a value.
+     */
+    public boolean isValid(int i) {
+        return valid.get(i);
+    }
+
+    /**
+     * @param i The row index.
+     * @return The kind of row i: {@link Value#UNKNOWN},
+     * {@link Value#INAPPLICABLE} or, if there is a value, {@link Value#BARE}.
+     */
+    public byte getKind(int i) {
+        if (valid.get(i)) {
+            return Value.BARE;
+        }
+        return unknown.get(i) ? Value.UNKNOWN : Value.INAPPLICABLE;
+    }
+
+    /**
+     * For setting a value.
+     *
+     * @param i The row index.
+     * @param v The value.
+     */
+    public void setValue(int i, double v) {
+        values[i] = v;
+        valid.set(i);
+        unknown.clear(i);
+    }
+
+    /**
+     * For setting a value missing.
+     *
+     * @param i The row index.
+     * @param kind {@link Value#UNKNOWN} or {@link Value#INAPPLICABLE}.
+     */
+    public void setMissing(int i, byte kind) {
+        values[i] = Double.NaN;
+        valid.clear(i);
+        unknown.set(i, kind == Value.UNKNOWN);
+    }
+
+    /**
+     * @param i The row index.
+     * @return A Value for row i with the original marker if it is missing.
+     * Values are written without an exponent and, if {@link #scale} is not
+     * negative, rounded half up to that many decimal places.
+     */
+    public Value getValue(int i) {
+        if (valid.get(i)) {
+            double v = values[i];
+            if (!Double.isFinite(v)) {
+                return new Value(Double.toString(v));
+            }
+            BigDecimal d = BigDecimal.valueOf(v);
+            if (scale >= 0) {
+                d = d.setScale(scale, RoundingMode.HALF_UP);
+            }
+            return new Value(d.toPlainString(), Value.BARE);
+        }
+        return unknown.get(i) ? new Value("?") : new Value(".");
+    }
+
+    /**
+     * @return The sum of the values that are present.
+     */
+    public double sum() {
+        double r = 0d;
+        for (int i = valid.nextSetBit(0); i >= 0; i = valid.nextSetBit(i + 1)) {
+            r += values[i];
+        }
+        return r;
+    }
+
+    /**
+     * @return The minimum of the values that are present or NaN if there are
+     * none.
+     */
+    public double min() {
+        double r = Double.NaN;
+        for (int i = valid.nextSetBit(0); i >= 0; i = valid.nextSetBit(i + 1)) {
+            if (!(values[i] >= r)) {
+                r = values[i];
+            }
+        }
+        return r;
+    }
+
+    /**
+     * @return The maximum of the values that are present or NaN if there are
+     * none.
+     */
+    public double max() {
+        double r = Double.NaN;
+        for (int i = valid.nextSetBit(0); i >= 0; i = valid.nextSetBit(i + 1)) {
+            if (!(values[i] <= r)) {
+                r = values[i];
+            }
+        }
+        return r;
+    }
+
+    /**
+     * @return The mean of the values that are present or NaN if there are
+     * none.
+     */
+    public double mean() {
+        int n = getNValid();
+        return n == 0 ? Double.NaN : sum() / n;
+    }
+}
@@ -88,7 +88,7 @@ public class Columns extends Category {
      */
     public void setValue(Row_ID rid, Column_ID cid, Value v) {
         data.get(rid).put(cid, v);
-        columns.get(cid).values.put(rid, v);
+        columns.get(cid).setValue(rid, v);
     }
 
     /**
@@ -101,6 +101,95 @@ public class Columns extends Category {
         return columns.get(cid);
     }
 
+    /**
+     * For getting the values of a column in row order.
+     *
+     * @param name The name of the column.
+     * @return The values of the column in row order or null if there is no
+     * column with the name.
+     */
+    public String[] getStrings(String name) {
+        Column_ID cid = name2id.get(name);
+        if (cid == null) {
+            return null;
+        }
+        Column column = columns.get(cid);
+        String[] r = new String[data.size()];
+        int i = 0;
+        for (Row_ID rid : data.keySet()) {
+            r[i] = column.getValue(rid).v;
+            i++;
+        }
+        return r;
+    }
+
+    /**
+     * For getting the values of a numeric column in row order.
+     *
+     * @param name The name of the column.
+     * @return The values of the column in row order or null if there is no
+     * column with the name. Values that are "." or "?" are NaN.
+     * @throws NumberFormatException If a value is not missing and not a
+     * number.
+     */
+    public double[] getDoubles(String name) {
+        Column_ID cid = name2id.get(name);
+        if (cid == null) {
+            return null;
+        }
+        Column column = columns.get(cid);
+        double[] r = new double[data.size()];
+        int i = 0;
+        for (Row_ID rid : data.keySet()) {
+            r[i] = column.getValue(rid).getDouble();
+            i++;
+        }
+        return r;
+    }
+
+    /**
+     * For getting a numeric column with validity and kind bitmaps.
+     *
+     * @param name The name of the column.
+     * @return The column or null if there is no column with the name.
+     * @throws NumberFormatException If a value is not missing and not a
+     * number.
+     */
+    public Column_Double getColumnDouble(String name) {
+        Column_ID cid = name2id.get(name);
+        if (cid == null) {
+            return null;
+        }
+        return new Column_Double(this, columns.get(cid));
+    }
+
+    /**
+     * For setting the values of a column from a numeric column. Values that
+     * are not changed keep their text, and missing values are restored as the
+     * marker they were read as.
+     *
+     * @param c The numeric column.
+     */
+    public void setValues(Column_Double c) {
+        Column_ID cid = name2id.get(c.name);
+        Column column = columns.get(cid);
+        int i = 0;
+        for (Row_ID rid : data.keySet()) {
+            Value old = column.getValue(rid);
+            boolean same;
+            if (c.isValid(i)) {
+                same = !old.isMissing()
+                        && Double.parseDouble(old.v) == c.values[i];
+            } else {
+                same = old.getKind() == c.getKind(i);
+            }
+            if (!same) {
+                setValue(rid, cid, c.getValue(i));
+            }
+            i++;
+        }
+    }
+
     /**
      * @return The number of columns.
      */
@@ -128,9 +217,10 @@ public class Columns extends Category {
         data.keySet().forEach(rid -> {
             TreeMap<Column_ID, Value> cols = data.get(rid);
             cols.keySet().forEach(cid -> {
-                String sv = cols.get(cid).v;
-                if (sv.contains("'")) {
-                    if (sv.startsWith("'")) {
+                Value val = cols.get(cid);
+                String sv = val.v;
+                if (val.hasSingleQuote()) {
+                    if (val.isSingleQuoted()) {
                         sb.append(sv);
                     } else {
                         sb.append("\"");
@@ -138,8 +228,8 @@ public class Columns extends Category {
                         sb.append("\"");
                     }
                 } else {
-                    if (sv.contains("\"")) {
-                        if (sv.startsWith("\"")) {
+                    if (val.hasDoubleQuote()) {
+                        if (val.isDoubleQuoted()) {
                             sb.append(sv);
                         } else {
                             sb.append("'");
@@ -154,6 +154,34 @@ public class DataBlock extends Mol_Object {
         return dataItemss.get(dataItemsName2DataItemsId.get(name));
     }
     
+    /**
+     * For getting the values of a category regardless of whether it is stored
+     * as DataItems (a single row) or as Columns (a loop).
+     *
+     * @param name The name of the category.
+     * @return A list with a look up from item name to value for each row. The
+     * list is empty if there is no category with the name.
+     */
+    public ArrayList<HashMap<String, String>> getRows(String name) {
+        ArrayList<HashMap<String, String>> r = new ArrayList<>();
+        Columns cs = getColumns(name);
+        if (cs != null) {
+            cs.data.values().forEach(row -> {
+                HashMap<String, String> m = new HashMap<>();
+                row.forEach((cid, v) -> m.put(cs.id2name.get(cid), v.v));
+                r.add(m);
+            });
+        } else {
+            DataItems ds = getDataItems(name);
+            if (ds != null) {
+                HashMap<String, String> m = new HashMap<>();
+                ds.dataItems.values().forEach(d -> m.put(d.name, d.value));
+                r.add(m);
+            }
+        }
+        return r;
+    }
+
     /**
      * @return The next Columns_ID.
      */
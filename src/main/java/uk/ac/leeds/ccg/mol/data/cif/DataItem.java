@@ -25,16 +25,34 @@ public class DataItem extends Variable {
      * The value. 
      */
     public String value;
+
+    /**
+     * The kind of {@link #value} (one of the kinds of {@link Value}).
+     */
+    public byte kind;
     
     /**
-     * Create a new instance.
+     * Create a new instance. The kind is determined from the value as for
+     * {@link Value#getKind(java.lang.String)}.
      * @param category What {@link #category} is set to.
      * @param name What {@link #name} is set to.
      * @param value What {@link #value} is set to.
      */
     public DataItem(Category category, String name, String value) {
+        this(category, name, value, Value.getKind(value));
+    }
+
+    /**
+     * Create a new instance.
+     * @param category What {@link #category} is set to.
+     * @param name What {@link #name} is set to.
+     * @param value What {@link #value} is set to.
+     * @param kind What {@link #kind} is set to.
+     */
+    public DataItem(Category category, String name, String value, byte kind) {
         super(category, name);
         this.value = value;
+        this.kind = kind;
     }
     
 }
@@ -0,0 +1,400 @@
+/*
+ * Copyright 2025 University of Leeds.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.ac.leeds.ccg.mol.data.cif;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+
+/**
+ * A model, chain, residue, atom hierarchy index of atom_site built in a
+ * single pass. Atoms of a model, chain and residue are expected to be
+ * contiguous in atom_site (as they are in PDB mmCIF files), so each level is
+ * an int array of offsets into the next:
+ * <ul>
+ * <li>the chains of model m are modelChainStart[m] to modelChainStart[m + 1] - 1,</li>
+ * <li>the residues of chain c are chainResidueStart[c] to chainResidueStart[c + 1] - 1,</li>
+ * <li>the atoms of residue r are residueAtomStart[r] to residueAtomStart[r + 1] - 1.</li>
+ * </ul>
+ * Models are distinguished by pdbx_PDB_model_num, chains by label_asym_id and
+ * residues by label_seq_id and pdbx_PDB_ins_code (auth_seq_id is used where
+ * label_seq_id is "." so that non-polymer residues such as waters are
+ * separated). The coordinates are parsed once and slices of them for a model,
+ * chain or residue are views rather than copies.
+ *
+ * @author Andy Turner
+ */
+public class Hierarchy {
+
+    /**
+     * A view of a contiguous range of the coordinates.
+     */
+    public static class Slice {
+
+        /**
+         * The coordinate arrays.
+         */
+        final double[] x, y, z;
+
+        /**
+         * The first atom index (inclusive).
+         */
+        public final int from;
+
+        /**
+         * The last atom index (exclusive).
+         */
+        public final int to;
+
+        Slice(double[] x, double[] y, double[] z, int from, int to) {
+            this.x = x;
+            this.y = y;
+            this.z = z;
+            this.from = from;
+            this.to = to;
+        }
+
+        /**
+         * @return The number of atoms.
+         */
+        public int size() {
+            return to - from;
+        }
+
+        /**
+         * @param i The index in this slice.
+         * @return The x coordinate.
+         */
+        public double x(int i) {
+            return x[from + i];
+        }
+
+        /**
+         * @param i The index in this slice.
+         * @return The y coordinate.
+         */
+        public double y(int i) {
+            return y[from + i];
+        }
+
+        /**
+         * @param i The index in this slice.
+         * @return The z coordinate.
+         */
+        public double z(int i) {
+            return z[from + i];
+        }
+
+        /**
+         * @return A copy of the coordinates in the form used by QCProt.
+         */
+        public double[][] toArray() {
+            return new double[][]{Arrays.copyOfRange(x, from, to),
+                Arrays.copyOfRange(y, from, to),
+                Arrays.copyOfRange(z, from, to)};
+        }
+    }
+
+    /**
+     * The coordinates.
+     */
+    public final double[] x, y, z;
+
+    /**
+     * The pdbx_PDB_model_num of each model.
+     */
+    public final String[] modelNums;
+
+    /**
+     * The first chain of each model, with a final entry of the number of
+     * chains.
+     */
+    public final int[] modelChainStart;
+
+    /**
+     * The label_asym_id of each chain.
+     */
+    public final String[] chainIds;
+
+    /**
+     * The model of each chain.
+     */
+    public final int[] chainModel;
+
+    /**
+     * The first residue of each chain, with a final entry of the number of
+     * residues.
+     */
+    public final int[] chainResidueStart;
+
+    /**
+     * The label_seq_id of each residue, or the auth_seq_id where the
+     * label_seq_id is ".".
+     */
+    public final String[] residueSeqIds;
+
+    /**
+     * The pdbx_PDB_ins_code of each residue.
+     */
+    public final String[] residueInsCodes;
+
+    /**
+     * The label_comp_id of each residue.
+     */
+    public final String[] residueCompIds;
+
+    /**
+     * The chain of each residue.
+     */
+    public final int[] residueChain;
+
+    /**
+     * The first atom of each residue, with a final entry of the number of
+     * atoms.
+     */
+    public final int[] residueAtomStart;
+
+    /**
+     * The residue of each atom.
+     */
+    public final int[] atomResidue;
+
+    /**
+     * For looking up a chain index from model index and label_asym_id.
+     */
+    private final HashMap<String, Integer> chainLookup;
+
+    /**
+     * For looking up a residue index from chain index, {@link #residueSeqIds}
+     * and pdbx_PDB_ins_code.
+     */
+    private final HashMap<String, Integer> residueLookup;
+
+    /**
+     * Create a new instance.
+     *
+     * @param cif The CIF.
+     */
+    public Hierarchy(CIF cif) {
+        this(cif.getAtomSite());
+    }
+
+    /**
+     * Create a new instance.
+     *
+     * @param atomSite The atom_site Columns.
+     */
+    public Hierarchy(Columns atomSite) {
+        int n = atomSite.getNRows();
+        String[] model = getStrings(atomSite, "pdbx_PDB_model_num", n);
+        String[] asym = getStrings(atomSite, "label_asym_id", n);
+        String[] seq = getStrings(atomSite, "label_seq_id", n);
+        String[] authSeq = getStrings(atomSite, "auth_seq_id", n);
+        String[] ins = getStrings(atomSite, "pdbx_PDB_ins_code", n);
+        String[] comp = getStrings(atomSite, "label_comp_id", n);
+        x = atomSite.getDoubles("Cartn_x");
+        y = atomSite.getDoubles("Cartn_y");
+        z = atomSite.getDoubles("Cartn_z");
+        ArrayList<String> mn = new ArrayList<>();
+        ArrayList<Integer> mcs = new ArrayList<>();
+        ArrayList<String> ci = new ArrayList<>();
+        ArrayList<Integer> cm = new ArrayList<>();
+        ArrayList<Integer> crs = new ArrayList<>();
+        ArrayList<String> rs = new ArrayList<>();
+        ArrayList<String> ri = new ArrayList<>();
+        ArrayList<String> rc = new ArrayList<>();
+        ArrayList<Integer> rch = new ArrayList<>();
+        ArrayList<Integer> ras = new ArrayList<>();
+        atomResidue = new int[n];
+        String seqKey = null;
+        for (int i = 0; i < n; i++) {
+            boolean newModel = i == 0 || !model[i].equals(model[i - 1]);
+            boolean newChain = newModel || !asym[i].equals(asym[i - 1]);
+            String sk = ".".equals(seq[i]) ? authSeq[i] : seq[i];
+            boolean newResidue = newChain || !sk.equals(seqKey)
+                    || !ins[i].equals(ins[i - 1]);
+            seqKey = sk;
+            if (newModel) {
+                mn.add(model[i]);
+                mcs.add(ci.size());
+            }
+            if (newChain) {
+                ci.add(asym[i]);
+                cm.add(mn.size() - 1);
+                crs.add(rs.size());
+            }
+            if (newResidue) {
+                rs.add(sk);
+                ri.add(ins[i]);
+                rc.add(comp[i]);
+                rch.add(ci.size() - 1);
+                ras.add(i);
+            }
+            atomResidue[i] = rs.size() - 1;
+        }
+        mcs.add(ci.size());
+        crs.add(rs.size());
+        ras.add(n);
+        modelNums = mn.toArray(String[]::new);
+        modelChainStart = toArray(mcs);
+        chainIds = ci.toArray(String[]::new);
+        chainModel = toArray(cm);
+        chainResidueStart = toArray(crs);
+        residueSeqIds = rs.toArray(String[]::new);
+        residueInsCodes = ri.toArray(String[]::new);
+        residueCompIds = rc.toArray(String[]::new);
+        residueChain = toArray(rch);
+        residueAtomStart = toArray(ras);
+        chainLookup = new HashMap<>();
+        for (int c = chainIds.length - 1; c >= 0; c--) {
+            chainLookup.put(chainModel[c] + "\t" + chainIds[c], c);
+        }
+        residueLookup = new HashMap<>();
+        for (int r = residueSeqIds.length - 1; r >= 0; r--) {
+            residueLookup.put(residueChain[r] + "\t" + residueSeqIds[r]
+                    + "\t" + residueInsCodes[r], r);
+        }
+    }
+
+    /**
+     * @param atomSite The atom_site Columns.
+     * @param name The column name.
+     * @param n The number of rows.
+     * @return The column values or an array of "?" if there is no such
+     * column.
+     */
+    private static String[] getStrings(Columns atomSite, String name, int n) {
+        String[] r = atomSite.getStrings(name);
+        if (r == null) {
+            r = new String[n];
+            Arrays.fill(r, "?");
+        }
+        return r;
+    }
+
+    private static int[] toArray(ArrayList<Integer> l) {
+        int[] r = new int[l.size()];
+        for (int i = 0; i < r.length; i++) {
+            r[i] = l.get(i);
+        }
+        return r;
+    }
+
+    /**
+     * @return The number of models.
+     */
+    public int getNModels() {
+        return modelNums.length;
+    }
+
+    /**
+     * @return The number of chains over all models.
+     */
+    public int getNChains() {
+        return chainIds.length;
+    }
+
+    /**
+     * @return The number of residues over all models.
+     */
+    public int getNResidues() {
+        return residueSeqIds.length;
+    }
+
+    /**
+     * @return The number of atoms.
+     */
+    public int getNAtoms() {
+        return atomResidue.length;
+    }
+
+    /**
+     * @param model The model index.
+     * @param asymId The label_asym_id.
+     * @return The chain index or -1 if there is no such chain.
+     */
+    public int getChain(int model, String asymId) {
+        Integer r = chainLookup.get(model + "\t" + asymId);
+        return r == null ? -1 : r;
+    }
+
+    /**
+     * For non-polymer residues, which have a label_seq_id of ".", seqId is the
+     * auth_seq_id (as in {@link #residueSeqIds}).
+     *
+     * @param chain The chain index.
+     * @param seqId The label_seq_id, or the auth_seq_id where the label_seq_id
+     * is ".".
+     * @param insCode The pdbx_PDB_ins_code.
+     * @return The residue index or -1 if there is no such residue.
+     */
+    public int getResidue(int chain, String seqId, String insCode) {
+        Integer r = residueLookup.get(chain + "\t" + seqId + "\t" + insCode);
+        return r == null ? -1 : r;
+    }
+
+    /**
+     * @param atom The atom index.
+     * @return The chain index of the atom.
+     */
+    public int getAtomChain(int atom) {
+        return residueChain[atomResidue[atom]];
+    }
+
+    /**
+     * @param model The model index.
+     * @return The index of the first atom of the model.
+     */
+    public int getModelAtomStart(int model) {
+        return getChainAtomStart(modelChainStart[model]);
+    }
+
+    /**
+     * @param chain The chain index (or the number of chains).
+     * @return The index of the first atom of the chain (or the number of
+     * atoms).
+     */
+    public int getChainAtomStart(int chain) {
+        return residueAtomStart[chainResidueStart[chain]];
+    }
+
+    /**
+     * @param model The model index.
+     * @return A view of the coordinates of the model.
+     */
+    public Slice getModelSlice(int model) {
+        return new Slice(x, y, z, getModelAtomStart(model),
+                getModelAtomStart(model + 1));
+    }
+
+    /**
+     * @param chain The chain index.
+     * @return A view of the coordinates of the chain.
+     */
+    public Slice getChainSlice(int chain) {
+        return new Slice(x, y, z, getChainAtomStart(chain),
+                getChainAtomStart(chain + 1));
+    }
+
+    /**
+     * @param residue The residue index.
+     * @return A view of the coordinates of the residue.
+     */
+    public Slice getResidueSlice(int residue) {
+        return new Slice(x, y, z, residueAtomStart[residue],
+                residueAtomStart[residue + 1]);
+    }
+}
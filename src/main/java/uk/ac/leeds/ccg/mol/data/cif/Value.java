@@ -16,14 +16,209 @@
 package uk.ac.leeds.ccg.mol.data.cif;
 
 /**
- * Value class.
+ * Value class. As well as the text, a value has {@link #flags} which record
+ * how it was delimited and whether it contains spaces or quotes. These are
+ * calculated once so that writers need not look inside the text.
+ *
  * @author Andy Turner
  */
 public class Value {
-    
-    public String v;
-    
+
+    /**
+     * Kind: not delimited.
+     */
+    public static final byte BARE = 0;
+
+    /**
+     * Kind: delimited by single quotes.
+     */
+    public static final byte SINGLE_QUOTED = 1;
+
+    /**
+     * Kind: delimited by double quotes.
+     */
+    public static final byte DOUBLE_QUOTED = 2;
+
+    /**
+     * Kind: a text field delimited by lines starting with a semicolon.
+     */
+    public static final byte TEXT_FIELD = 3;
+
+    /**
+     * Kind: ".", i.e. inapplicable.
+     */
+    public static final byte INAPPLICABLE = 4;
+
+    /**
+     * Kind: "?", i.e. unknown.
+     */
+    public static final byte UNKNOWN = 5;
+
+    /**
+     * For getting the kind from {@link #flags}.
+     */
+    public static final byte KIND_MASK = 7;
+
+    /**
+     * Flag set if {@link #v} contains a space.
+     */
+    public static final byte HAS_SPACE = 8;
+
+    /**
+     * Flag set if {@link #v} contains a single quote.
+     */
+    public static final byte HAS_SINGLE_QUOTE = 16;
+
+    /**
+     * Flag set if {@link #v} contains a double quote.
+     */
+    public static final byte HAS_DOUBLE_QUOTE = 32;
+
+    /**
+     * The text including any quotes.
+     */
+    public final String v;
+
+    /**
+     * The kind and the content flags.
+     */
+    public final byte flags;
+
+    /**
+     * Create a new instance. The kind is determined from the first character
+     * (a value that is not a text field cannot start with a quote unless it
+     * is quoted).
+     *
+     * @param v What {@link #v} is set to.
+     */
     public Value(String v) {
-        this.v = v;        
+        this(v, getKind(v));
+    }
+
+    /**
+     * Create a new instance.
+     *
+     * @param v What {@link #v} is set to.
+     * @param kind The kind.
+     */
+    public Value(String v, byte kind) {
+        this.v = v;
+        int f = kind;
+        for (int i = 0; i < v.length(); i++) {
+            switch (v.charAt(i)) {
+                case ' ' ->
+                    f |= HAS_SPACE;
+                case '\'' ->
+                    f |= HAS_SINGLE_QUOTE;
+                case '"' ->
+                    f |= HAS_DOUBLE_QUOTE;
+                default -> {
+                }
+            }
+        }
+        this.flags = (byte) f;
+    }
+
+    /**
+     * @param v The text.
+     * @return The kind of v if it is not a text field.
+     */
+    public static byte getKind(String v) {
+        if (v.isEmpty()) {
+            return BARE;
+        }
+        return switch (v.charAt(0)) {
+            case '\'' ->
+                SINGLE_QUOTED;
+            case '"' ->
+                DOUBLE_QUOTED;
+            case '.' ->
+                v.length() == 1 ? INAPPLICABLE : BARE;
+            case '?' ->
+                v.length() == 1 ? UNKNOWN : BARE;
+            default ->
+                BARE;
+        };
+    }
+
+    /**
+     * @return The kind.
+     */
+    public byte getKind() {
+        return (byte) (flags & KIND_MASK);
+    }
+
+    /**
+     * @return true if the kind is {@link #SINGLE_QUOTED}.
+     */
+    public boolean isSingleQuoted() {
+        return getKind() == SINGLE_QUOTED;
+    }
+
+    /**
+     * @return true if the kind is {@link #DOUBLE_QUOTED}.
+     */
+    public boolean isDoubleQuoted() {
+        return getKind() == DOUBLE_QUOTED;
+    }
+
+    /**
+     * @return true if the kind is {@link #TEXT_FIELD}.
+     */
+    public boolean isTextField() {
+        return getKind() == TEXT_FIELD;
+    }
+
+    /**
+     * @return true if the kind is {@link #INAPPLICABLE} or {@link #UNKNOWN}.
+     */
+    public boolean isMissing() {
+        byte k = getKind();
+        return k == INAPPLICABLE || k == UNKNOWN;
+    }
+
+    /**
+     * @return The value as a double or NaN if it {@link #isMissing()}.
+     * @throws NumberFormatException If the value is not missing and not a
+     * number.
+     */
+    public double getDouble() {
+        return isMissing() ? Double.NaN : Double.parseDouble(v);
+    }
+
+    /**
+     * @return true if {@link #v} contains a space.
+     */
+    public boolean hasSpace() {
+        return (flags & HAS_SPACE) != 0;
+    }
+
+    /**
+     * @return true if {@link #v} contains a single quote.
+     */
+    public boolean hasSingleQuote() {
+        return (flags & HAS_SINGLE_QUOTE) != 0;
+    }
+
+    /**
+     * @return true if {@link #v} contains a double quote.
+     */
+    public boolean hasDoubleQuote() {
+        return (flags & HAS_DOUBLE_QUOTE) != 0;
+    }
+    
+    /**
+     * @param s The String.
+     * @return s without enclosing single or double quotes.
+     */
+    public static String unquote(String s) {
+        int n = s.length();
+        if (n > 1) {
+            char c = s.charAt(0);
+            if ((c == '\'' || c == '"') && s.charAt(n - 1) == c) {
+                return s.substring(1, n - 1);
+            }
+        }
+        return s;
     }
 }
@@ -0,0 +1,258 @@
+/*
+ * Copyright 2025 University of Leeds.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.ac.leeds.ccg.mol.geom;
+
+import java.util.ArrayList;
+import java.util.TreeMap;
+import uk.ac.leeds.ccg.mol.data.cif.CIF;
+import uk.ac.leeds.ccg.mol.data.cif.Category_ID;
+import uk.ac.leeds.ccg.mol.data.cif.Column;
+import uk.ac.leeds.ccg.mol.data.cif.Column_ID;
+import uk.ac.leeds.ccg.mol.data.cif.Columns;
+import uk.ac.leeds.ccg.mol.data.cif.Columns_ID;
+import uk.ac.leeds.ccg.mol.data.cif.DataBlock;
+import uk.ac.leeds.ccg.mol.data.cif.DataItems_ID;
+import uk.ac.leeds.ccg.mol.data.cif.Row_ID;
+import uk.ac.leeds.ccg.mol.data.cif.Value;
+import uk.ac.leeds.ccg.mol.data.cif.columns.Atom_Site;
+import uk.ac.leeds.ccg.mol.io.Mol_CifCodec;
+import uk.ac.leeds.ccg.mol.io.Mol_TextCifReader;
+
+/**
+ * A biological assembly. This is a set of {@link Instance}s each of which is
+ * a lazy view of some of the atoms of the asymmetric unit with a transform.
+ * All instances share the coordinate arrays of the asymmetric unit, so memory
+ * use does not grow with the number of copies. Transformed coordinates are
+ * calculated on demand and the full assembly is only materialized by
+ * {@link #getCoords()} or {@link #toCIF(uk.ac.leeds.ccg.mol.data.cif.CIF)}.
+ *
+ * @author Andy Turner
+ */
+public class Assembly {
+
+    /**
+     * A copy of some atoms of the asymmetric unit.
+     */
+    public class Instance {
+
+        /**
+         * The operator, e.g. "1" or "X0,5" for the product of X0 and 5.
+         */
+        public final String operator;
+
+        /**
+         * The transform: a rotation matrix m[0..8] in row order and a
+         * translation m[9..11].
+         */
+        public final double[] m;
+
+        /**
+         * The atom_site row indexes of the atoms.
+         */
+        public final int[] rows;
+
+        /**
+         * Create a new instance.
+         *
+         * @param operator What {@link #operator} is set to.
+         * @param m What {@link #m} is set to.
+         * @param rows What {@link #rows} is set to.
+         */
+        public Instance(String operator, double[] m, int[] rows) {
+            this.operator = operator;
+            this.m = m;
+            this.rows = rows;
+        }
+
+        /**
+         * @return The number of atoms.
+         */
+        public int size() {
+            return rows.length;
+        }
+
+        /**
+         * @param k The index of the atom in this.
+         * @return The transformed x coordinate.
+         */
+        public double x(int k) {
+            int i = rows[k];
+            return m[0] * xs[i] + m[1] * ys[i] + m[2] * zs[i] + m[9];
+        }
+
+        /**
+         * @param k The index of the atom in this.
+         * @return The transformed y coordinate.
+         */
+        public double y(int k) {
+            int i = rows[k];
+            return m[3] * xs[i] + m[4] * ys[i] + m[5] * zs[i] + m[10];
+        }
+
+        /**
+         * @param k The index of the atom in this.
+         * @return The transformed z coordinate.
+         */
+        public double z(int k) {
+            int i = rows[k];
+            return m[6] * xs[i] + m[7] * ys[i] + m[8] * zs[i] + m[11];
+        }
+
+        /**
+         * @return true if the transform is the identity.
+         */
+        public boolean isIdentity() {
+            return m[0] == 1d && m[4] == 1d && m[8] == 1d
+                    && m[1] == 0d && m[2] == 0d && m[3] == 0d
+                    && m[5] == 0d && m[6] == 0d && m[7] == 0d
+                    && m[9] == 0d && m[10] == 0d && m[11] == 0d;
+        }
+    }
+
+    /**
+     * The assembly id.
+     */
+    public final String id;
+
+    /**
+     * The shared asymmetric unit coordinates.
+     */
+    final double[] xs, ys, zs;
+
+    /**
+     * The instances.
+     */
+    public final ArrayList<Instance> instances;
+
+    /**
+     * Create a new instance.
+     *
+     * @param id What {@link #id} is set to.
+     * @param coords The asymmetric unit coordinates.
+     */
+    public Assembly(String id, double[][] coords) {
+        this.id = id;
+        this.xs = coords[0];
+        this.ys = coords[1];
+        this.zs = coords[2];
+        instances = new ArrayList<>();
+    }
+
+    /**
+     * @return The total number of atoms over all instances.
+     */
+    public long getNAtoms() {
+        long r = 0L;
+        for (Instance i : instances) {
+            r += i.size();
+        }
+        return r;
+    }
+
+    /**
+     * @return The coordinates of all instances in order.
+     */
+    public double[][] getCoords() {
+        int n = Math.toIntExact(getNAtoms());
+        double[][] r = new double[3][n];
+        int j = 0;
+        for (Instance i : instances) {
+            for (int k = 0; k < i.size(); k++) {
+                r[0][j] = i.x(k);
+                r[1][j] = i.y(k);
+                r[2][j] = i.z(k);
+                j++;
+            }
+        }
+        return r;
+    }
+
+    /**
+     * Materializes the assembly as a new CIF for output. Categories other than
+     * atom_site are copied from cif. The atom_site rows are copied for each
+     * instance with transformed coordinates (rounded with
+     * {@link CIF#round(double)}, or "?" if any are missing), renumbered ids and, for other than identity
+     * transforms, label_asym_id suffixed with "-" and the operator.
+     *
+     * @param cif The CIF of the asymmetric unit.
+     * @return A new CIF that can be changed independently of cif.
+     */
+    public CIF toCIF(CIF cif) {
+        CIF r = new CIF(cif.env);
+        r.comments.addAll(cif.comments);
+        DataBlock db = cif.dataBlocks.get(0);
+        DataBlock rdb = new DataBlock(cif.env, db.dbh);
+        r.dataBlocks.add(rdb);
+        Mol_TextCifReader reader = new Mol_TextCifReader(cif.env);
+        Columns as = db.getColumns(Atom_Site.NAME);
+        for (Category_ID cid : db.columnsAndDataItems) {
+            if (cid instanceof Columns_ID id) {
+                Columns cs = db.getColumns(id);
+                rdb.addColumns(cs == as ? materialize(as)
+                        : Mol_CifCodec.copy(cs, reader));
+            } else {
+                rdb.addDataItems(Mol_CifCodec.copy(db.getDataItems(
+                        (DataItems_ID) cid), reader));
+            }
+        }
+        return r;
+    }
+
+    /**
+     * @param as The atom_site of the asymmetric unit.
+     * @return The atom_site of the assembly.
+     */
+    private Atom_Site materialize(Columns as) {
+        Atom_Site r = new Atom_Site(as.id);
+        as.columns.values().forEach(c -> r.addColumn(new Column(r, c.name)));
+        Column_ID idCid = as.name2id.get("id");
+        Column_ID asymCid = as.name2id.get("label_asym_id");
+        Column_ID xCid = as.name2id.get("Cartn_x");
+        Column_ID yCid = as.name2id.get("Cartn_y");
+        Column_ID zCid = as.name2id.get("Cartn_z");
+        ArrayList<Row_ID> rids = new ArrayList<>(as.data.keySet());
+        long row = 0L;
+        for (Instance i : instances) {
+            boolean identity = i.isIdentity();
+            for (int k = 0; k < i.size(); k++) {
+                TreeMap<Column_ID, Value> source = as.data.get(rids.get(i.rows[k]));
+                Row_ID rid = new Row_ID(row);
+                r.data.put(rid, new TreeMap<>());
+                for (var e : source.entrySet()) {
+                    Column_ID c = e.getKey();
+                    Value v = e.getValue();
+                    if (c.equals(idCid)) {
+                        v = new Value(Long.toString(row + 1L));
+                    } else if (!identity) {
+                        if (c.equals(xCid) || c.equals(yCid)
+                                || c.equals(zCid)) {
+                            double d = c.equals(xCid) ? i.x(k)
+                                    : c.equals(yCid) ? i.y(k) : i.z(k);
+                            // Unknown if any coordinate is missing.
+                            v = Double.isNaN(d) ? new Value("?")
+                                    : new Value(CIF.round(d));
+                        } else if (c.equals(asymCid)) {
+                            v = new Value(v.v + "-" + i.operator);
+                        }
+                    }
+                    r.setValue(rid, c, v);
+                }
+                row++;
+            }
+        }
+        return r;
+    }
+}
@@ -0,0 +1,255 @@
+/*
+ * Copyright 2025 University of Leeds.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.ac.leeds.ccg.mol.geom;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import uk.ac.leeds.ccg.mol.data.cif.CIF;
+import uk.ac.leeds.ccg.mol.data.cif.Columns;
+import uk.ac.leeds.ccg.mol.data.cif.DataBlock;
+import uk.ac.leeds.ccg.mol.data.cif.Value;
+import uk.ac.leeds.ccg.mol.data.cif.data_items.PDBX_Struct_Assembly_Gen;
+import uk.ac.leeds.ccg.mol.data.cif.data_items.PDBX_Struct_Oper_List;
+
+/**
+ * For building biological {@link Assembly}s from the asymmetric unit using
+ * pdbx_struct_assembly_gen and pdbx_struct_oper_list. Both may be present as
+ * either DataItems or Columns.
+ *
+ * An operator expression is a sequence of groups, e.g. "1", "(1-60)",
+ * "1,2,5" or "(X0)(1-60)". Each group is a comma separated list of operator
+ * ids or ranges of numeric ids. Where there is more than one group the
+ * operators are the Cartesian product of the groups and the rightmost is
+ * applied first.
+ *
+ * @author Andy Turner
+ */
+public class AssemblyBuilder {
+
+    /**
+     * The CIF.
+     */
+    public final CIF cif;
+
+    /**
+     * The operators by id. Each is a rotation matrix in row order followed by
+     * a translation.
+     */
+    public final HashMap<String, double[]> operators;
+
+    /**
+     * The pdbx_struct_assembly_gen rows.
+     */
+    final ArrayList<HashMap<String, String>> gens;
+
+    /**
+     * The label_asym_id for each atom.
+     */
+    String[] asym;
+
+    /**
+     * The shared coordinates.
+     */
+    double[][] coords;
+
+    /**
+     * Create a new instance.
+     *
+     * @param cif The CIF of the asymmetric unit.
+     */
+    public AssemblyBuilder(CIF cif) {
+        this.cif = cif;
+        DataBlock db = cif.dataBlocks.get(0);
+        operators = new HashMap<>();
+        for (HashMap<String, String> row : db.getRows(PDBX_Struct_Oper_List.NAME)) {
+            double[] m = new double[12];
+            for (int i = 0; i < 3; i++) {
+                for (int j = 0; j < 3; j++) {
+                    m[3 * i + j] = Double.parseDouble(Value.unquote(row.get(
+                            "matrix[" + (i + 1) + "][" + (j + 1) + "]")));
+                }
+                m[9 + i] = Double.parseDouble(Value.unquote(row.get(
+                        "vector[" + (i + 1) + "]")));
+            }
+            operators.put(Value.unquote(row.get("id")), m);
+        }
+        gens = db.getRows(PDBX_Struct_Assembly_Gen.NAME);
+    }
+
+    /**
+     * @return The assembly ids in order.
+     */
+    public ArrayList<String> getAssemblyIds() {
+        LinkedHashSet<String> r = new LinkedHashSet<>();
+        gens.forEach(g -> r.add(Value.unquote(g.get("assembly_id"))));
+        return new ArrayList<>(r);
+    }
+
+    /**
+     * Builds the assembly with the given id. The asymmetric unit coordinates
+     * are parsed once and shared by every assembly built.
+     *
+     * @param assemblyId The assembly id, e.g. "1".
+     * @return The Assembly.
+     * @throws Exception If an operator expression cannot be parsed or an
+     * operator is not in pdbx_struct_oper_list.
+     */
+    public Assembly build(String assemblyId) throws Exception {
+        if (coords == null) {
+            Columns as = cif.getAtomSite();
+            asym = as.getStrings("label_asym_id");
+            coords = new double[][]{as.getDoubles("Cartn_x"),
+                as.getDoubles("Cartn_y"), as.getDoubles("Cartn_z")};
+        }
+        Assembly r = new Assembly(assemblyId, coords);
+        for (HashMap<String, String> g : gens) {
+            if (!Value.unquote(g.get("assembly_id")).equals(assemblyId)) {
+                continue;
+            }
+            HashSet<String> chains = new HashSet<>();
+            for (String c : Value.unquote(g.get("asym_id_list")).split(",")) {
+                chains.add(c.trim());
+            }
+            int n = 0;
+            for (String a : asym) {
+                if (chains.contains(a)) {
+                    n++;
+                }
+            }
+            int[] rows = new int[n];
+            n = 0;
+            for (int i = 0; i < asym.length; i++) {
+                if (chains.contains(asym[i])) {
+                    rows[n++] = i;
+                }
+            }
+            String expression = Value.unquote(g.get("oper_expression"));
+            ArrayList<String[]> combinations;
+            try {
+                combinations = parseOperatorExpression(expression);
+            } catch (IllegalArgumentException ex) {
+                throw new Exception("Assembly " + assemblyId + ": "
+                        + ex.getMessage(), ex);
+            }
+            for (String[] ops : combinations) {
+                double[] m = null;
+                for (String op : ops) {
+                    double[] o = operators.get(op);
+                    if (o == null) {
+                        throw new Exception("Unrecognised operator " + op);
+                    }
+                    m = m == null ? o : multiply(m, o);
+                }
+                r.instances.add(r.new Instance(String.join(",", ops), m, rows));
+            }
+        }
+        return r;
+    }
+
+    /**
+     * @param a A transform.
+     * @param b A transform.
+     * @return The transform that applies b then a.
+     */
+    static double[] multiply(double[] a, double[] b) {
+        double[] r = new double[12];
+        for (int i = 0; i < 3; i++) {
+            for (int j = 0; j < 3; j++) {
+                r[3 * i + j] = a[3 * i] * b[j] + a[3 * i + 1] * b[3 + j]
+                        + a[3 * i + 2] * b[6 + j];
+            }
+            r[9 + i] = a[3 * i] * b[9] + a[3 * i + 1] * b[10]
+                    + a[3 * i + 2] * b[11] + a[9 + i];
+        }
+        return r;
+    }
+
+    /**
+     * @param expression The operator expression.
+     * @return The operator id combinations, each leftmost first.
+     * @throws IllegalArgumentException If a parenthesis is not closed or a
+     * range is not of numeric ids.
+     */
+    public static ArrayList<String[]> parseOperatorExpression(String expression) {
+        ArrayList<ArrayList<String>> groups = new ArrayList<>();
+        String e = expression.trim();
+        if (e.indexOf('(') < 0) {
+            groups.add(parseGroup(e));
+        } else {
+            int i = 0;
+            while (i < e.length()) {
+                int open = e.indexOf('(', i);
+                if (open < 0) {
+                    break;
+                }
+                int close = e.indexOf(')', open);
+                if (close < 0) {
+                    throw new IllegalArgumentException("Unclosed parenthesis"
+                            + " in operator expression " + expression);
+                }
+                groups.add(parseGroup(e.substring(open + 1, close)));
+                i = close + 1;
+            }
+        }
+        ArrayList<String[]> r = new ArrayList<>();
+        r.add(new String[0]);
+        for (ArrayList<String> g : groups) {
+            ArrayList<String[]> r2 = new ArrayList<>();
+            for (String[] prefix : r) {
+                for (String op : g) {
+                    String[] c = new String[prefix.length + 1];
+                    System.arraycopy(prefix, 0, c, 0, prefix.length);
+                    c[prefix.length] = op;
+                    r2.add(c);
+                }
+            }
+            r = r2;
+        }
+        return r;
+    }
+
+    /**
+     * @param group A comma separated list of ids and ranges.
+     * @return The ids.
+     * @throws IllegalArgumentException If a range is not of numeric ids.
+     */
+    static ArrayList<String> parseGroup(String group) {
+        ArrayList<String> r = new ArrayList<>();
+        for (String s : group.split(",")) {
+            String t = s.trim();
+            int dash = t.indexOf('-', 1);
+            if (dash > 0) {
+                int from;
+                int to;
+                try {
+                    from = Integer.parseInt(t.substring(0, dash).trim());
+                    to = Integer.parseInt(t.substring(dash + 1).trim());
+                } catch (NumberFormatException ex) {
+                    throw new IllegalArgumentException("Operator range " + t
+                            + " is not of numeric ids", ex);
+                }
+                for (int i = from; i <= to; i++) {
+                    r.add(Integer.toString(i));
+                }
+            } else if (!t.isEmpty()) {
+                r.add(t);
+            }
+        }
+        return r;
+    }
+}
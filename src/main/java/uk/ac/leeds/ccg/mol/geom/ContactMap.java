@@ -0,0 +1,478 @@
+/*
+ * Copyright 2025 University of Leeds.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.ac.leeds.ccg.mol.geom;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.stream.IntStream;
+import uk.ac.leeds.ccg.mol.data.cif.CIF;
+import uk.ac.leeds.ccg.mol.data.cif.Columns;
+
+/**
+ * A residue (or nucleotide) level contact map. Two residues are in contact if
+ * any pair of their atoms are within a cutoff distance. Atoms are grouped into
+ * residues by label_asym_id and label_seq_id (so non-polymer entities are
+ * grouped per label_asym_id). For a CIF, only atoms of the first model
+ * (pdbx_PDB_model_num) are used, and atoms without coordinates ("?" or ".")
+ * are in no contacts. The contacts are stored symmetrically in
+ * compressed sparse row (CSR) format: the contacts of residue i are
+ * {@code colIdx[rowPtr[i]]} to {@code colIdx[rowPtr[i + 1] - 1]} in ascending
+ * order.
+ *
+ * Contacts are found using a uniform grid with a cell size of at least the
+ * cutoff, so only atoms in the same or adjacent cells are compared. Grid cells
+ * are processed in parallel.
+ *
+ * @author Andy Turner
+ */
+public class ContactMap {
+
+    /**
+     * The maximum number of grid cells.
+     */
+    public static int MAX_CELLS = 1 << 24;
+
+    /**
+     * The label_asym_id for each residue.
+     */
+    public final String[] asymIds;
+
+    /**
+     * The label_seq_id for each residue.
+     */
+    public final String[] seqIds;
+
+    /**
+     * The CSR row pointers. This has length the number of residues + 1.
+     */
+    public final int[] rowPtr;
+
+    /**
+     * The CSR column indexes.
+     */
+    public final int[] colIdx;
+
+    /**
+     * For looking up a residue index from a key.
+     */
+    private final HashMap<String, Integer> key2index;
+
+    /**
+     * Create a new instance.
+     *
+     * @param asymIds What {@link #asymIds} is set to.
+     * @param seqIds What {@link #seqIds} is set to.
+     * @param pairs The distinct contacts each encoded as
+     * {@code (long) i << 32 | j} with i < j, in ascending order.
+     */
+    protected ContactMap(String[] asymIds, String[] seqIds, long[] pairs) {
+        this.asymIds = asymIds;
+        this.seqIds = seqIds;
+        int nr = asymIds.length;
+        key2index = new HashMap<>();
+        for (int i = 0; i < nr; i++) {
+            key2index.put(getKey(asymIds[i], seqIds[i]), i);
+        }
+        rowPtr = new int[nr + 1];
+        for (long p : pairs) {
+            rowPtr[(int) (p >>> 32) + 1]++;
+            rowPtr[(int) p + 1]++;
+        }
+        for (int i = 0; i < nr; i++) {
+            rowPtr[i + 1] += rowPtr[i];
+        }
+        colIdx = new int[rowPtr[nr]];
+        int[] next = Arrays.copyOf(rowPtr, nr);
+        // Lower neighbours first so that each row is in ascending order.
+        for (long p : pairs) {
+            int i = (int) (p >>> 32);
+            int j = (int) p;
+            colIdx[next[j]++] = i;
+        }
+        for (long p : pairs) {
+            int i = (int) (p >>> 32);
+            int j = (int) p;
+            colIdx[next[i]++] = j;
+        }
+    }
+
+    /**
+     * @param asymId The label_asym_id.
+     * @param seqId The label_seq_id.
+     * @return A key for the residue.
+     */
+    static String getKey(String asymId, String seqId) {
+        return asymId + "\t" + seqId;
+    }
+
+    /**
+     * Computes the contact map for the atom_site of a CIF.
+     *
+     * @param cif The CIF.
+     * @param cutoff The contact distance.
+     * @param interChainOnly If true then only contacts between residues with
+     * different label_asym_id are included.
+     * @return A new ContactMap.
+     */
+    public static ContactMap compute(CIF cif, double cutoff,
+            boolean interChainOnly) {
+        Columns atomSite = cif.getAtomSite();
+        double[][] coords = new double[3][];
+        coords[0] = atomSite.getDoubles("Cartn_x");
+        coords[1] = atomSite.getDoubles("Cartn_y");
+        coords[2] = atomSite.getDoubles("Cartn_z");
+        String[] asym = atomSite.getStrings("label_asym_id");
+        String[] seq = atomSite.getStrings("label_seq_id");
+        String[] model = atomSite.getStrings("pdbx_PDB_model_num");
+        if (model != null && model.length > 0) {
+            // Copies of residues in other models would be in contact.
+            int[] first = IntStream.range(0, model.length)
+                    .filter(i -> model[i].equals(model[0])).toArray();
+            if (first.length < model.length) {
+                asym = select(asym, first);
+                seq = select(seq, first);
+                for (int d = 0; d < 3; d++) {
+                    double[] c = coords[d];
+                    coords[d] = Arrays.stream(first).mapToDouble(i -> c[i])
+                            .toArray();
+                }
+            }
+        }
+        return compute(asym, seq, coords, cutoff, interChainOnly);
+    }
+
+    /**
+     * @param a The values.
+     * @param indexes The indexes of the values to select.
+     * @return The selected values.
+     */
+    private static String[] select(String[] a, int[] indexes) {
+        String[] r = new String[indexes.length];
+        for (int i = 0; i < indexes.length; i++) {
+            r[i] = a[indexes[i]];
+        }
+        return r;
+    }
+
+    /**
+     * Computes the contact map.
+     *
+     * @param asym The label_asym_id of each atom.
+     * @param seq The label_seq_id of each atom.
+     * @param coords The coordinates of each atom. Atoms with a coordinate that
+     * is NaN are in no contacts.
+     * @param cutoff The contact distance.
+     * @param interChainOnly If true then only contacts between residues with
+     * different label_asym_id are included.
+     * @return A new ContactMap.
+     */
+    public static ContactMap compute(String[] asym, String[] seq,
+            double[][] coords, double cutoff, boolean interChainOnly) {
+        if (!(cutoff > 0d)) {
+            throw new IllegalArgumentException("cutoff must be positive");
+        }
+        int n = asym.length;
+        // Group atoms into residues.
+        int[] res = new int[n];
+        int[] chain = new int[n];
+        HashMap<String, Integer> residues = new HashMap<>();
+        HashMap<String, Integer> chains = new HashMap<>();
+        ArrayList<String> ras = new ArrayList<>();
+        ArrayList<String> rss = new ArrayList<>();
+        for (int i = 0; i < n; i++) {
+            String key = getKey(asym[i], seq[i]);
+            Integer r = residues.get(key);
+            if (r == null) {
+                r = ras.size();
+                residues.put(key, r);
+                ras.add(asym[i]);
+                rss.add(seq[i]);
+            }
+            res[i] = r;
+            Integer c = chains.get(asym[i]);
+            if (c == null) {
+                c = chains.size();
+                chains.put(asym[i], c);
+            }
+            chain[i] = c;
+        }
+        String[] asymIds = ras.toArray(String[]::new);
+        String[] seqIds = rss.toArray(String[]::new);
+        // Atoms with coordinates.
+        double[] xs = coords[0];
+        double[] ys = coords[1];
+        double[] zs = coords[2];
+        int[] located = IntStream.range(0, n).filter(i -> Double.isFinite(xs[i])
+                && Double.isFinite(ys[i]) && Double.isFinite(zs[i])).toArray();
+        int m = located.length;
+        if (m == 0) {
+            return new ContactMap(asymIds, seqIds, new long[0]);
+        }
+        // Set up the grid.
+        double[] min = {Double.POSITIVE_INFINITY, Double.POSITIVE_INFINITY,
+            Double.POSITIVE_INFINITY};
+        double[] max = {Double.NEGATIVE_INFINITY, Double.NEGATIVE_INFINITY,
+            Double.NEGATIVE_INFINITY};
+        for (int i : located) {
+            for (int d = 0; d < 3; d++) {
+                min[d] = Math.min(min[d], coords[d][i]);
+                max[d] = Math.max(max[d], coords[d][i]);
+            }
+        }
+        double cell = cutoff;
+        int[] dim = new int[3];
+        while (true) {
+            long nc = 1L;
+            for (int d = 0; d < 3; d++) {
+                dim[d] = (int) ((max[d] - min[d]) / cell) + 1;
+                nc *= dim[d];
+            }
+            if (nc <= MAX_CELLS) {
+                break;
+            }
+            cell *= 2d;
+        }
+        int nx = dim[0], ny = dim[1], nz = dim[2];
+        int ncells = nx * ny * nz;
+        // Counting sort of atoms by cell.
+        int[] cellOf = new int[n];
+        int[] cellStart = new int[ncells + 1];
+        for (int i : located) {
+            int ix = (int) ((xs[i] - min[0]) / cell);
+            int iy = (int) ((ys[i] - min[1]) / cell);
+            int iz = (int) ((zs[i] - min[2]) / cell);
+            cellOf[i] = (ix * ny + iy) * nz + iz;
+            cellStart[cellOf[i] + 1]++;
+        }
+        for (int c = 0; c < ncells; c++) {
+            cellStart[c + 1] += cellStart[c];
+        }
+        int[] cellAtoms = new int[m];
+        int[] next = Arrays.copyOf(cellStart, ncells);
+        for (int i : located) {
+            cellAtoms[next[cellOf[i]]++] = i;
+        }
+        double c2 = cutoff * cutoff;
+        long[] pairs = IntStream.range(0, ncells).parallel()
+                .filter(c -> cellStart[c + 1] > cellStart[c])
+                .mapToObj(c -> {
+                    int ix = c / (ny * nz);
+                    int iy = (c / nz) % ny;
+                    int iz = c % nz;
+                    long[] found = new long[16];
+                    int nf = 0;
+                    for (int a = cellStart[c]; a < cellStart[c + 1]; a++) {
+                        int i = cellAtoms[a];
+                        double x = xs[i], y = ys[i], z = zs[i];
+                        for (int jx = Math.max(ix - 1, 0); jx <= Math.min(ix + 1, nx - 1); jx++) {
+                            for (int jy = Math.max(iy - 1, 0); jy <= Math.min(iy + 1, ny - 1); jy++) {
+                                for (int jz = Math.max(iz - 1, 0); jz <= Math.min(iz + 1, nz - 1); jz++) {
+                                    int cc = (jx * ny + jy) * nz + jz;
+                                    for (int b = cellStart[cc]; b < cellStart[cc + 1]; b++) {
+                                        int j = cellAtoms[b];
+                                        // Each residue pair is recorded from the lower residue.
+                                        if (res[j] <= res[i]) {
+                                            continue;
+                                        }
+                                        if (interChainOnly && chain[i] == chain[j]) {
+                                            continue;
+                                        }
+                                        double dx = xs[j] - x;
+                                        double dy = ys[j] - y;
+                                        double dz = zs[j] - z;
+                                        if (dx * dx + dy * dy + dz * dz <= c2) {
+                                            if (nf == found.length) {
+                                                found = Arrays.copyOf(found, nf * 2);
+                                            }
+                                            found[nf++] = ((long) res[i] << 32) | res[j];
+                                        }
+                                    }
+                                }
+                            }
+                        }
+                    }
+                    return unique(found, nf);
+                })
+                .flatMapToLong(Arrays::stream)
+                .toArray();
+        Arrays.parallelSort(pairs);
+        return new ContactMap(asymIds, seqIds, unique(pairs, pairs.length));
+    }
+
+    /**
+     * @param a The values. The first n of which are sorted in place.
+     * @param n The number of values.
+     * @return The distinct values in ascending order.
+     */
+    static long[] unique(long[] a, int n) {
+        Arrays.sort(a, 0, n);
+        int m = 0;
+        for (int i = 0; i < n; i++) {
+            if (m == 0 || a[i] != a[m - 1]) {
+                a[m++] = a[i];
+            }
+        }
+        return Arrays.copyOf(a, m);
+    }
+
+    /**
+     * @return The number of residues.
+     */
+    public int getNResidues() {
+        return asymIds.length;
+    }
+
+    /**
+     * @return The number of distinct contacts (each contact is counted once).
+     */
+    public int getNContacts() {
+        return colIdx.length / 2;
+    }
+
+    /**
+     * @param asymId The label_asym_id.
+     * @param seqId The label_seq_id.
+     * @return The index of the residue or -1 if it is not in the map.
+     */
+    public int indexOf(String asymId, String seqId) {
+        Integer r = key2index.get(getKey(asymId, seqId));
+        return r == null ? -1 : r;
+    }
+
+    /**
+     * @param i A residue index.
+     * @param j A residue index.
+     * @return true if residues i and j are in contact.
+     */
+    public boolean isContact(int i, int j) {
+        return Arrays.binarySearch(colIdx, rowPtr[i], rowPtr[i + 1], j) >= 0;
+    }
+
+    /**
+     * @param i A residue index.
+     * @return The indexes of the residues in contact with residue i.
+     */
+    public int[] getContacts(int i) {
+        return Arrays.copyOfRange(colIdx, rowPtr[i], rowPtr[i + 1]);
+    }
+
+    /**
+     * @return The distinct contacts each encoded as {@code (long) i << 32 | j}
+     * with i < j, in ascending order.
+     */
+    public long[] getPairs() {
+        long[] r = new long[getNContacts()];
+        int k = 0;
+        for (int i = 0; i < asymIds.length; i++) {
+            for (int p = rowPtr[i]; p < rowPtr[i + 1]; p++) {
+                if (colIdx[p] > i) {
+                    r[k++] = ((long) i << 32) | colIdx[p];
+                }
+            }
+        }
+        return r;
+    }
+
+    /**
+     * The difference between the contact maps of two structures. Residues are
+     * matched by label_asym_id and label_seq_id, so the structures should share
+     * numbering and be aligned. All three maps share the same residues: those
+     * of the first map followed by those only in the second.
+     */
+    public static class Difference {
+
+        /**
+         * Contacts in both maps.
+         */
+        public final ContactMap common;
+
+        /**
+         * Contacts only in the first map (lost).
+         */
+        public final ContactMap onlyIn1;
+
+        /**
+         * Contacts only in the second map (gained).
+         */
+        public final ContactMap onlyIn2;
+
+        Difference(ContactMap common, ContactMap onlyIn1, ContactMap onlyIn2) {
+            this.common = common;
+            this.onlyIn1 = onlyIn1;
+            this.onlyIn2 = onlyIn2;
+        }
+    }
+
+    /**
+     * For comparing the contact maps of two aligned structures.
+     *
+     * @param cm1 The first contact map.
+     * @param cm2 The second contact map.
+     * @return The Difference.
+     */
+    public static Difference compare(ContactMap cm1, ContactMap cm2) {
+        // Union of residues.
+        ArrayList<String> ras = new ArrayList<>(Arrays.asList(cm1.asymIds));
+        ArrayList<String> rss = new ArrayList<>(Arrays.asList(cm1.seqIds));
+        int[] map2 = new int[cm2.getNResidues()];
+        for (int i = 0; i < map2.length; i++) {
+            int r = cm1.indexOf(cm2.asymIds[i], cm2.seqIds[i]);
+            if (r < 0) {
+                r = ras.size();
+                ras.add(cm2.asymIds[i]);
+                rss.add(cm2.seqIds[i]);
+            }
+            map2[i] = r;
+        }
+        String[] asymIds = ras.toArray(String[]::new);
+        String[] seqIds = rss.toArray(String[]::new);
+        long[] p1 = cm1.getPairs();
+        long[] p2 = cm2.getPairs();
+        for (int k = 0; k < p2.length; k++) {
+            int i = map2[(int) (p2[k] >>> 32)];
+            int j = map2[(int) p2[k]];
+            p2[k] = i < j ? ((long) i << 32) | j : ((long) j << 32) | i;
+        }
+        Arrays.sort(p2);
+        // Merge the two sorted lists.
+        long[] both = new long[Math.min(p1.length, p2.length)];
+        long[] only1 = new long[p1.length];
+        long[] only2 = new long[p2.length];
+        int a = 0, b = 0, nb = 0, n1 = 0, n2 = 0;
+        while (a < p1.length && b < p2.length) {
+            if (p1[a] == p2[b]) {
+                both[nb++] = p1[a];
+                a++;
+                b++;
+            } else if (p1[a] < p2[b]) {
+                only1[n1++] = p1[a++];
+            } else {
+                only2[n2++] = p2[b++];
+            }
+        }
+        while (a < p1.length) {
+            only1[n1++] = p1[a++];
+        }
+        while (b < p2.length) {
+            only2[n2++] = p2[b++];
+        }
+        return new Difference(
+                new ContactMap(asymIds, seqIds, Arrays.copyOf(both, nb)),
+                new ContactMap(asymIds, seqIds, Arrays.copyOf(only1, n1)),
+                new ContactMap(asymIds, seqIds, Arrays.copyOf(only2, n2)));
+    }
+}
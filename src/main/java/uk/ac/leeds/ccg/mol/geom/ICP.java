@@ -0,0 +1,306 @@
+/*
+ * Copyright 2025 University of Leeds.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.ac.leeds.ccg.mol.geom;
+
+import java.util.ArrayList;
+import java.util.TreeSet;
+import uk.ac.leeds.ccg.mol.data.cif.CIF;
+
+/**
+ * Iterative Closest Point (ICP) alignment. This is for aligning structures
+ * that have no shared numbering, so there is no known correspondence between
+ * the atoms. A {@link KDTree} is built on the reference coordinates and for
+ * each iteration every mobile atom is paired with its nearest reference atom,
+ * the optimal superposition of the pairs is calculated using {@link QCProt}
+ * and the mobile coordinates are transformed. Iteration stops when the change
+ * in the RMSD of the pairs is less than a threshold.
+ *
+ * The resulting transformation is:
+ * x' = rotmat[0] * x + rotmat[1] * y + rotmat[2] * z + translation[0], and
+ * similarly for y' and z'.
+ *
+ * @author Andy Turner
+ */
+public class ICP {
+
+    /**
+     * The default maximum number of iterations.
+     */
+    public static int MAX_ITERATIONS = 100;
+
+    /**
+     * The default RMSD convergence threshold.
+     */
+    public static double THRESHOLD = 1e-4;
+
+    /**
+     * For storing the timing and fit for an iteration.
+     */
+    public static class Iteration {
+
+        /**
+         * The number of pairs.
+         */
+        public int pairs;
+
+        /**
+         * The RMSD of the pairs after superposition.
+         */
+        public double rmsd;
+
+        /**
+         * Nanoseconds taken to find the nearest neighbours.
+         */
+        public long nearestNanos;
+
+        /**
+         * Nanoseconds taken to calculate the superposition.
+         */
+        public long solveNanos;
+
+        /**
+         * Nanoseconds taken to transform the mobile coordinates.
+         */
+        public long transformNanos;
+
+        @Override
+        public String toString() {
+            return "pairs=" + pairs + ", rmsd=" + rmsd
+                    + ", nearestNanos=" + nearestNanos
+                    + ", solveNanos=" + solveNanos
+                    + ", transformNanos=" + transformNanos;
+        }
+    }
+
+    /**
+     * The accumulated rotation matrix.
+     */
+    public final double[] rotmat;
+
+    /**
+     * The accumulated translation.
+     */
+    public final double[] translation;
+
+    /**
+     * The RMSD of the pairs for the last iteration.
+     */
+    public double rmsd;
+
+    /**
+     * True if the RMSD converged within the maximum number of iterations.
+     */
+    public boolean converged;
+
+    /**
+     * Nanoseconds taken to build the k-d tree.
+     */
+    public long buildNanos;
+
+    /**
+     * The timing and fit for each iteration.
+     */
+    public final ArrayList<Iteration> iterations;
+
+    /**
+     * For storing the transformed mobile coordinates.
+     */
+    double[][] coords2Transformed;
+
+    /**
+     * For storing the nearest reference index for each mobile coordinate.
+     */
+    int[] nn;
+
+    /**
+     * Create a new instance and run the alignment using {@link #MAX_ITERATIONS}
+     * and {@link #THRESHOLD} with no limit on the pair distance.
+     *
+     * @param cif1 The CIF with coordinates to fit to.
+     * @param cif2 The CIF with coordinates to be fitted.
+     * @param atomTypes If null then all atom types are used.
+     */
+    public ICP(CIF cif1, CIF cif2, TreeSet<String> atomTypes) {
+        this(cif1.getCoords(atomTypes), cif2.getCoords(atomTypes),
+                MAX_ITERATIONS, THRESHOLD, Double.POSITIVE_INFINITY);
+    }
+
+    /**
+     * Create a new instance and run the alignment.
+     *
+     * @param coords1 The reference coordinates to be fitted to.
+     * @param coords2 The mobile coordinates to be fitted. These are not
+     * modified.
+     * @param maxIterations The maximum number of iterations.
+     * @param threshold Iteration stops once the change in RMSD between
+     * iterations is less than this.
+     * @param maxDistance Pairs further apart than this are not used.
+     */
+    public ICP(double[][] coords1, double[][] coords2, int maxIterations,
+            double threshold, double maxDistance) {
+        rotmat = new double[]{1d, 0d, 0d, 0d, 1d, 0d, 0d, 0d, 1d};
+        translation = new double[3];
+        iterations = new ArrayList<>();
+        int len = coords2[0].length;
+        coords2Transformed = new double[3][];
+        for (int d = 0; d < 3; d++) {
+            coords2Transformed[d] = coords2[d].clone();
+        }
+        long t0 = System.nanoTime();
+        KDTree tree = new KDTree(coords1);
+        buildNanos = System.nanoTime() - t0;
+        double maxD2 = maxDistance * maxDistance;
+        nn = new int[len];
+        double[] d2 = new double[len];
+        double[][] p1 = new double[3][len];
+        double[][] p2 = new double[3][len];
+        double previous = Double.POSITIVE_INFINITY;
+        rmsd = Double.NaN;
+        for (int it = 0; it < maxIterations; it++) {
+            Iteration i = new Iteration();
+            t0 = System.nanoTime();
+            tree.nearest(coords2Transformed, maxD2, nn, d2);
+            long t1 = System.nanoTime();
+            i.nearestNanos = t1 - t0;
+            // Gather and centre the pairs.
+            int np = 0;
+            double[] c1 = new double[3];
+            double[] c2 = new double[3];
+            for (int j = 0; j < len; j++) {
+                if (nn[j] >= 0) {
+                    for (int d = 0; d < 3; d++) {
+                        double v1 = coords1[d][nn[j]];
+                        double v2 = coords2Transformed[d][j];
+                        p1[d][np] = v1;
+                        p2[d][np] = v2;
+                        c1[d] += v1;
+                        c2[d] += v2;
+                    }
+                    np++;
+                }
+            }
+            i.pairs = np;
+            if (np < 3) {
+                i.rmsd = Double.NaN;
+                iterations.add(i);
+                break;
+            }
+            double[][] q1 = new double[3][np];
+            double[][] q2 = new double[3][np];
+            for (int d = 0; d < 3; d++) {
+                c1[d] /= np;
+                c2[d] /= np;
+                for (int j = 0; j < np; j++) {
+                    q1[d][j] = p1[d][j] - c1[d];
+                    q2[d][j] = p2[d][j] - c2[d];
+                }
+            }
+            QCProt qcp = new QCProt(q1, q2);
+            long t2 = System.nanoTime();
+            i.solveNanos = t2 - t1;
+            i.rmsd = qcp.rmsd;
+            rmsd = qcp.rmsd;
+            // x' = R (x - c2) + c1 = R x + (c1 - R c2)
+            double[] r = qcp.rotmat;
+            double[] t = new double[3];
+            for (int d = 0; d < 3; d++) {
+                t[d] = c1[d] - (r[3 * d] * c2[0] + r[3 * d + 1] * c2[1]
+                        + r[3 * d + 2] * c2[2]);
+            }
+            transform(coords2Transformed, r, t);
+            accumulate(r, t);
+            i.transformNanos = System.nanoTime() - t2;
+            iterations.add(i);
+            if (Math.abs(previous - rmsd) < threshold) {
+                converged = true;
+                break;
+            }
+            previous = rmsd;
+        }
+    }
+
+    /**
+     * Applies the rotation r and translation t to coords in place.
+     *
+     * @param coords The coordinates to transform.
+     * @param r The rotation matrix.
+     * @param t The translation.
+     */
+    public static void transform(double[][] coords, double[] r, double[] t) {
+        double[] xs = coords[0];
+        double[] ys = coords[1];
+        double[] zs = coords[2];
+        for (int j = 0; j < xs.length; j++) {
+            double x = xs[j];
+            double y = ys[j];
+            double z = zs[j];
+            xs[j] = r[0] * x + r[1] * y + r[2] * z + t[0];
+            ys[j] = r[3] * x + r[4] * y + r[5] * z + t[1];
+            zs[j] = r[6] * x + r[7] * y + r[8] * z + t[2];
+        }
+    }
+
+    /**
+     * Composes the rotation r and translation t after {@link #rotmat} and
+     * {@link #translation}.
+     *
+     * @param r The rotation matrix.
+     * @param t The translation.
+     */
+    private void accumulate(double[] r, double[] t) {
+        double[] m = new double[9];
+        for (int a = 0; a < 3; a++) {
+            for (int b = 0; b < 3; b++) {
+                m[3 * a + b] = r[3 * a] * rotmat[b] + r[3 * a + 1] * rotmat[3 + b]
+                        + r[3 * a + 2] * rotmat[6 + b];
+            }
+        }
+        double[] tr = new double[3];
+        for (int a = 0; a < 3; a++) {
+            tr[a] = r[3 * a] * translation[0] + r[3 * a + 1] * translation[1]
+                    + r[3 * a + 2] * translation[2] + t[a];
+        }
+        System.arraycopy(m, 0, rotmat, 0, 9);
+        System.arraycopy(tr, 0, translation, 0, 3);
+    }
+
+    /**
+     * @return The transformed mobile coordinates.
+     */
+    public double[][] getTransformedCoordinates() {
+        return coords2Transformed;
+    }
+
+    /**
+     * @return For each mobile coordinate the index of the nearest reference
+     * coordinate found in the last iteration, or -1 if there was none within
+     * the maximum pair distance.
+     */
+    public int[] getPairs() {
+        return nn;
+    }
+
+    /**
+     * @return The total nanoseconds spent over all iterations.
+     */
+    public long getIterationNanos() {
+        long r = 0L;
+        for (Iteration i : iterations) {
+            r += i.nearestNanos + i.solveNanos + i.transformNanos;
+        }
+        return r;
+    }
+}
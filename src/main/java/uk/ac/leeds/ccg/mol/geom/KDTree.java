@@ -0,0 +1,264 @@
+/*
+ * Copyright 2025 University of Leeds.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.ac.leeds.ccg.mol.geom;
+
+import java.util.stream.IntStream;
+
+/**
+ * A static 3D k-d tree for nearest neighbour queries. The tree is stored
+ * implicitly: the points are permuted so that each node is the median of a
+ * contiguous range and the split axis for the node is stored at the median
+ * index. The coordinates are copied in permuted order for locality.
+ *
+ * @author Andy Turner
+ */
+public class KDTree {
+
+    /**
+     * Ranges with this number of points or fewer are searched exhaustively.
+     */
+    public static final int LEAF_SIZE = 8;
+
+    /**
+     * The x, y and z coordinates in tree order.
+     */
+    final double[] x, y, z;
+
+    /**
+     * For mapping from tree order to the index of the point as given.
+     */
+    final int[] index;
+
+    /**
+     * The split axis for each node (0 for x, 1 for y, 2 for z).
+     */
+    final byte[] axis;
+
+    /**
+     * The number of points.
+     */
+    public final int n;
+
+    /**
+     * Create a new instance.
+     *
+     * @param coords The coordinates: coords[0] are the x coordinates,
+     * coords[1] the y coordinates and coords[2] the z coordinates.
+     */
+    public KDTree(double[][] coords) {
+        n = coords[0].length;
+        index = new int[n];
+        for (int i = 0; i < n; i++) {
+            index[i] = i;
+        }
+        axis = new byte[n];
+        build(coords, 0, n);
+        x = new double[n];
+        y = new double[n];
+        z = new double[n];
+        for (int i = 0; i < n; i++) {
+            x[i] = coords[0][index[i]];
+            y[i] = coords[1][index[i]];
+            z[i] = coords[2][index[i]];
+        }
+    }
+
+    /**
+     * Recursively orders {@link #index} for the range [lo, hi).
+     *
+     * @param c The coordinates.
+     * @param lo The start of the range (inclusive).
+     * @param hi The end of the range (exclusive).
+     */
+    private void build(double[][] c, int lo, int hi) {
+        if (hi - lo <= LEAF_SIZE) {
+            return;
+        }
+        // Split on the axis with the largest spread.
+        int a = 0;
+        double spread = -1d;
+        for (int d = 0; d < 3; d++) {
+            double min = Double.POSITIVE_INFINITY;
+            double max = Double.NEGATIVE_INFINITY;
+            double[] cd = c[d];
+            for (int i = lo; i < hi; i++) {
+                double v = cd[index[i]];
+                if (v < min) {
+                    min = v;
+                }
+                if (v > max) {
+                    max = v;
+                }
+            }
+            if (max - min > spread) {
+                spread = max - min;
+                a = d;
+            }
+        }
+        int mid = (lo + hi) >>> 1;
+        select(c[a], lo, hi - 1, mid);
+        axis[mid] = (byte) a;
+        build(c, lo, mid);
+        build(c, mid + 1, hi);
+    }
+
+    /**
+     * Quickselect so that index[k] refers to the k-th smallest value of v in
+     * the range [lo, hi].
+     *
+     * @param v The values.
+     * @param lo The start of the range (inclusive).
+     * @param hi The end of the range (inclusive).
+     * @param k The index to select.
+     */
+    private void select(double[] v, int lo, int hi, int k) {
+        while (hi > lo) {
+            double pivot = v[index[(lo + hi) >>> 1]];
+            int i = lo;
+            int j = hi;
+            while (i <= j) {
+                while (v[index[i]] < pivot) {
+                    i++;
+                }
+                while (v[index[j]] > pivot) {
+                    j--;
+                }
+                if (i <= j) {
+                    int t = index[i];
+                    index[i] = index[j];
+                    index[j] = t;
+                    i++;
+                    j--;
+                }
+            }
+            if (k <= j) {
+                hi = j;
+            } else if (k >= i) {
+                lo = i;
+            } else {
+                return;
+            }
+        }
+    }
+
+    /**
+     * For holding the state of a nearest neighbour search.
+     */
+    private static class Search {
+
+        final double qx, qy, qz;
+        int best = -1;
+        double bestD2;
+
+        Search(double qx, double qy, double qz, double maxD2) {
+            this.qx = qx;
+            this.qy = qy;
+            this.qz = qz;
+            this.bestD2 = maxD2;
+        }
+    }
+
+    /**
+     * @param qx The query x coordinate.
+     * @param qy The query y coordinate.
+     * @param qz The query z coordinate.
+     * @return The index (as given to the constructor) of the nearest point.
+     */
+    public int nearest(double qx, double qy, double qz) {
+        Search s = new Search(qx, qy, qz, Double.POSITIVE_INFINITY);
+        search(s, 0, n);
+        return s.best < 0 ? -1 : index[s.best];
+    }
+
+    /**
+     * For finding the nearest neighbour of every query point. Queries are
+     * processed in parallel.
+     *
+     * @param query The query coordinates.
+     * @param maxD2 The maximum squared distance. Queries with no point within
+     * this distance are given the index -1.
+     * @param nn For returning the index of the nearest point for each query.
+     * @param d2 For returning the squared distance to the nearest point for
+     * each query.
+     */
+    public void nearest(double[][] query, double maxD2, int[] nn, double[] d2) {
+        double[] qx = query[0];
+        double[] qy = query[1];
+        double[] qz = query[2];
+        IntStream.range(0, qx.length).parallel().forEach(i -> {
+            Search s = new Search(qx[i], qy[i], qz[i], maxD2);
+            search(s, 0, n);
+            if (s.best < 0) {
+                nn[i] = -1;
+                d2[i] = Double.POSITIVE_INFINITY;
+            } else {
+                nn[i] = index[s.best];
+                d2[i] = s.bestD2;
+            }
+        });
+    }
+
+    /**
+     * Search the range [lo, hi).
+     *
+     * @param s The search state.
+     * @param lo The start of the range (inclusive).
+     * @param hi The end of the range (exclusive).
+     */
+    private void search(Search s, int lo, int hi) {
+        if (hi - lo <= LEAF_SIZE) {
+            for (int i = lo; i < hi; i++) {
+                double dx = x[i] - s.qx;
+                double dy = y[i] - s.qy;
+                double dz = z[i] - s.qz;
+                double d2 = dx * dx + dy * dy + dz * dz;
+                if (d2 < s.bestD2) {
+                    s.bestD2 = d2;
+                    s.best = i;
+                }
+            }
+            return;
+        }
+        int mid = (lo + hi) >>> 1;
+        double dx = x[mid] - s.qx;
+        double dy = y[mid] - s.qy;
+        double dz = z[mid] - s.qz;
+        double d2 = dx * dx + dy * dy + dz * dz;
+        if (d2 < s.bestD2) {
+            s.bestD2 = d2;
+            s.best = mid;
+        }
+        double diff = switch (axis[mid]) {
+            case 0 ->
+                s.qx - x[mid];
+            case 1 ->
+                s.qy - y[mid];
+            default ->
+                s.qz - z[mid];
+        };
+        if (diff < 0) {
+            search(s, lo, mid);
+            if (diff * diff < s.bestD2) {
+                search(s, mid + 1, hi);
+            }
+        } else {
+            search(s, mid + 1, hi);
+            if (diff * diff < s.bestD2) {
+                search(s, lo, mid);
+            }
+        }
+    }
+}
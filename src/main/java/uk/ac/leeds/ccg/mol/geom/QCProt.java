@@ -68,7 +68,9 @@ public class QCProt {
     public double q1, q2, q3, q4;
 
     /**
-     * For storing the root mean squared error.
+     * For storing the root mean squared error. This is first set from the
+     * characteristic polynomial solution and is recalculated explicitly in
+     * {@link #getRotatedCoordinates()}.
      */
     public double rmsd;
 
@@ -268,6 +270,7 @@ public class QCProt {
         }
         /* the Math.abs() is to guard against extremely small, but *negative* numbers due to floating point error */
         double score = Math.sqrt(Math.abs(2d * (E0 - mxEigenV) / len));
+        rmsd = score;
 
         //System.out.println("rmsd " + rmsd);
         if (minScore > 0) {
@@ -0,0 +1,860 @@
+/*
+ * Copyright 2025 University of Leeds.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.ac.leeds.ccg.mol.io;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.function.ToLongFunction;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+import uk.ac.leeds.ccg.mol.data.cif.CIF;
+import uk.ac.leeds.ccg.mol.data.cif.Columns;
+import uk.ac.leeds.ccg.mol.data.cif.DataBlock;
+import uk.ac.leeds.ccg.mol.data.cif.DataItem;
+import uk.ac.leeds.ccg.mol.data.cif.DataItems;
+import uk.ac.leeds.ccg.mol.data.cif.Value;
+import uk.ac.leeds.ccg.mol.pipeline.Pipeline;
+
+/**
+ * A catalog of the entries in a local mirror of mmCIF files for answering
+ * questions such as which entries have a resolution better than 3 Angstrom
+ * and an entity described as 28S rRNA without opening the files.
+ *
+ * The catalog is a file with a column for each of the fields of
+ * {@link Entry}, the rows sorted by entry ID. Numeric columns are stored as
+ * arrays together with the row order sorted by value so that a range of
+ * values can be found by binary search. The file is memory mapped when it is
+ * opened, so opening is quick and only the parts used are read.
+ *
+ * The catalog is built by {@link #build(Path, String, Path,
+ * Mol_TextCifReader, int)} which scans the files in parallel. If the catalog
+ * already exists, files with the same size and modified time as when they
+ * were last scanned are not scanned again.
+ *
+ * For example:
+ * <pre>
+ * Mol_Catalog.build(mirror, Mol_TextCifBatchReader.GLOB, file, reader, 16);
+ * Mol_Catalog c = Mol_Catalog.open(file);
+ * for (int i : c.range(Mol_Catalog.RESOLUTION, 0d, 3d)) {
+ *     if (c.getString(Mol_Catalog.ENTITIES, i).contains("28S")) {
+ *         System.out.println(c.getString(Mol_Catalog.ID, i));
+ *     }
+ * }
+ * </pre>
+ *
+ * @author Andy Turner
+ */
+public class Mol_Catalog {
+
+    /**
+     * The magic number at the start of a catalog.
+     */
+    public static final byte[] MAGIC = "RCMOLCAT".getBytes(StandardCharsets.US_ASCII);
+
+    /**
+     * The version of the format.
+     */
+    public static final int VERSION = 1;
+
+    /**
+     * The categories read from each file.
+     */
+    public static final Set<String> NAMES = Set.of("entry", "struct", "exptl",
+            "em_3d_reconstruction", "refine", "reflns", "pdbx_database_status",
+            "entity", "entity_poly");
+
+    /**
+     * Column type for longs.
+     */
+    protected static final byte LONG = 0;
+
+    /**
+     * Column type for doubles.
+     */
+    protected static final byte DOUBLE = 1;
+
+    /**
+     * Column type for Strings.
+     */
+    protected static final byte STRING = 2;
+
+    /**
+     * The entry ID column.
+     */
+    public static final String ID = "id";
+
+    /**
+     * The path column: the path of the file relative to the mirror.
+     */
+    public static final String PATH = "path";
+
+    /**
+     * The file size column.
+     */
+    public static final String SIZE = "size";
+
+    /**
+     * The file modified time column (milliseconds).
+     */
+    public static final String MODIFIED = "modified";
+
+    /**
+     * The number of atom_site rows column.
+     */
+    public static final String ATOMS = "atoms";
+
+    /**
+     * The resolution column: em_3d_reconstruction.resolution,
+     * refine.ls_d_res_high or reflns.d_resolution_high, NaN if none.
+     */
+    public static final String RESOLUTION = "resolution";
+
+    /**
+     * The exptl.method column.
+     */
+    public static final String METHOD = "method";
+
+    /**
+     * The struct.title column.
+     */
+    public static final String TITLE = "title";
+
+    /**
+     * The pdbx_database_status.recvd_initial_deposition_date column.
+     */
+    public static final String DATE = "date";
+
+    /**
+     * The entity.pdbx_description column with descriptions separated by
+     * ";".
+     */
+    public static final String ENTITIES = "entities";
+
+    /**
+     * The chain lengths column, e.g. "A:3400,B:120", from entity_poly.
+     */
+    public static final String CHAINS = "chains";
+
+    /**
+     * The error column: empty unless the file could not be read.
+     */
+    public static final String ERROR = "error";
+
+    /**
+     * The catalog record of an entry.
+     */
+    public static class Entry {
+
+        /**
+         * The entry ID or file name if there is no entry.id.
+         */
+        public final String id;
+
+        /**
+         * The path relative to the mirror.
+         */
+        public final String path;
+
+        /**
+         * The file size.
+         */
+        public final long size;
+
+        /**
+         * The file modified time.
+         */
+        public final long modified;
+
+        /**
+         * The number of atoms.
+         */
+        public final long atoms;
+
+        /**
+         * The resolution or NaN.
+         */
+        public final double resolution;
+
+        /**
+         * The experimental methods.
+         */
+        public final String method;
+
+        /**
+         * The title.
+         */
+        public final String title;
+
+        /**
+         * The deposition date.
+         */
+        public final String date;
+
+        /**
+         * The entity descriptions.
+         */
+        public final String entities;
+
+        /**
+         * The chain lengths.
+         */
+        public final String chains;
+
+        /**
+         * The error or "".
+         */
+        public final String error;
+
+        /**
+         * Create a new instance.
+         *
+         * @param id What {@link #id} is set to.
+         * @param path What {@link #path} is set to.
+         * @param size What {@link #size} is set to.
+         * @param modified What {@link #modified} is set to.
+         * @param atoms What {@link #atoms} is set to.
+         * @param resolution What {@link #resolution} is set to.
+         * @param method What {@link #method} is set to.
+         * @param title What {@link #title} is set to.
+         * @param date What {@link #date} is set to.
+         * @param entities What {@link #entities} is set to.
+         * @param chains What {@link #chains} is set to.
+         * @param error What {@link #error} is set to.
+         */
+        public Entry(String id, String path, long size, long modified,
+                long atoms, double resolution, String method, String title,
+                String date, String entities, String chains, String error) {
+            this.id = id;
+            this.path = path;
+            this.size = size;
+            this.modified = modified;
+            this.atoms = atoms;
+            this.resolution = resolution;
+            this.method = method;
+            this.title = title;
+            this.date = date;
+            this.entities = entities;
+            this.chains = chains;
+            this.error = error;
+        }
+    }
+
+    /**
+     * The positions of a column in the file.
+     */
+    private static class Col {
+
+        final byte type;
+
+        /**
+         * The position of the values or of the String offsets.
+         */
+        final int pos;
+
+        /**
+         * The position of the sorted order or of the String bytes.
+         */
+        final int pos2;
+
+        Col(byte type, int pos, int pos2) {
+            this.type = type;
+            this.pos = pos;
+            this.pos2 = pos2;
+        }
+    }
+
+    /**
+     * The catalog file.
+     */
+    public final Path file;
+
+    /**
+     * The number of entries.
+     */
+    public final int n;
+
+    /**
+     * The mapped file.
+     */
+    private final ByteBuffer bb;
+
+    /**
+     * The columns by name.
+     */
+    private final Map<String, Col> cols;
+
+    /**
+     * @param file What {@link #file} is set to.
+     * @param n What {@link #n} is set to.
+     * @param bb What {@link #bb} is set to.
+     * @param cols What {@link #cols} is set to.
+     */
+    private Mol_Catalog(Path file, int n, ByteBuffer bb, Map<String, Col> cols) {
+        this.file = file;
+        this.n = n;
+        this.bb = bb;
+        this.cols = cols;
+    }
+
+    /**
+     * Opens a catalog by memory mapping it.
+     *
+     * @param file The catalog file.
+     * @return The catalog.
+     * @throws IOException If file cannot be read or is not a catalog.
+     */
+    public static Mol_Catalog open(Path file) throws IOException {
+        ByteBuffer bb;
+        try (FileChannel fc = FileChannel.open(file, StandardOpenOption.READ)) {
+            if (fc.size() > Integer.MAX_VALUE) {
+                throw new IOException("Catalog too large " + file);
+            }
+            bb = fc.map(FileChannel.MapMode.READ_ONLY, 0, fc.size());
+        }
+        try {
+            for (byte m : MAGIC) {
+                if (bb.get() != m) {
+                    throw new IOException("Not a catalog " + file);
+                }
+            }
+            int version = bb.getInt();
+            if (version != VERSION) {
+                throw new IOException("Catalog version " + version + " not "
+                        + VERSION + " " + file);
+            }
+            int n = bb.getInt();
+            int ncols = bb.getInt();
+            Map<String, Col> cols = new LinkedHashMap<>();
+            for (int c = 0; c < ncols; c++) {
+                byte type = bb.get();
+                String name = readUTF(bb);
+                int pos = bb.position();
+                Col col;
+                if (type == STRING) {
+                    int pos2 = pos + (n + 1) * 4;
+                    col = new Col(type, pos, pos2);
+                    bb.position(pos2 + bb.getInt(pos + n * 4));
+                } else {
+                    int pos2 = pos + n * 8;
+                    col = new Col(type, pos, pos2);
+                    bb.position(pos2 + n * 4);
+                }
+                cols.put(name, col);
+            }
+            return new Mol_Catalog(file, n, bb, cols);
+        } catch (RuntimeException e) {
+            throw new IOException("Corrupt catalog " + file, e);
+        }
+    }
+
+    /**
+     * Reads what {@link DataOutputStream#writeUTF(java.lang.String)} wrote.
+     */
+    private static String readUTF(ByteBuffer bb) {
+        int len = bb.getShort() & 0xFFFF;
+        byte[] b = new byte[len];
+        bb.get(b);
+        return new String(b, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * @return The number of entries.
+     */
+    public int size() {
+        return n;
+    }
+
+    /**
+     * @return The names of the columns.
+     */
+    public Set<String> getColumnNames() {
+        return cols.keySet();
+    }
+
+    private Col getCol(String name, byte type) {
+        Col c = cols.get(name);
+        if (c == null) {
+            throw new IllegalArgumentException("No column " + name);
+        }
+        if (type == STRING ? c.type != STRING : c.type == STRING) {
+            throw new IllegalArgumentException("Column " + name + " type "
+                    + c.type);
+        }
+        return c;
+    }
+
+    /**
+     * @param name The column name.
+     * @param i The row.
+     * @return The value.
+     */
+    public String getString(String name, int i) {
+        Col c = getCol(name, STRING);
+        int from = bb.getInt(c.pos + i * 4);
+        int to = bb.getInt(c.pos + (i + 1) * 4);
+        byte[] b = new byte[to - from];
+        bb.get(c.pos2 + from, b);
+        return new String(b, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * @param name The column name.
+     * @param i The row.
+     * @return The value.
+     */
+    public long getLong(String name, int i) {
+        Col c = getCol(name, LONG);
+        return c.type == LONG ? bb.getLong(c.pos + i * 8)
+                : (long) bb.getDouble(c.pos + i * 8);
+    }
+
+    /**
+     * @param name The column name.
+     * @param i The row.
+     * @return The value.
+     */
+    public double getDouble(String name, int i) {
+        Col c = getCol(name, DOUBLE);
+        return getDouble(c, i);
+    }
+
+    private double getDouble(Col c, int i) {
+        return c.type == DOUBLE ? bb.getDouble(c.pos + i * 8)
+                : bb.getLong(c.pos + i * 8);
+    }
+
+    /**
+     * @param i The row.
+     * @return The entry.
+     */
+    public Entry getEntry(int i) {
+        return new Entry(getString(ID, i), getString(PATH, i),
+                getLong(SIZE, i), getLong(MODIFIED, i), getLong(ATOMS, i),
+                getDouble(RESOLUTION, i), getString(METHOD, i),
+                getString(TITLE, i), getString(DATE, i),
+                getString(ENTITIES, i), getString(CHAINS, i),
+                getString(ERROR, i));
+    }
+
+    /**
+     * @param id The entry ID.
+     * @return The first row with the id or -1.
+     */
+    public int find(String id) {
+        int i = lowerBound(id);
+        return i < n && getString(ID, i).equals(id) ? i : -1;
+    }
+
+    /**
+     * @param id An entry ID.
+     * @return The first row with an ID not less than id.
+     */
+    private int lowerBound(String id) {
+        int lo = 0;
+        int hi = n;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (getString(ID, mid).compareTo(id) < 0) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return lo;
+    }
+
+    /**
+     * @param from The first entry ID.
+     * @param to The entry ID after the last.
+     * @return The rows with IDs from from (inclusive) to to (exclusive).
+     */
+    public int[] rangeId(String from, String to) {
+        int lo = lowerBound(from);
+        int hi = Math.max(lo, lowerBound(to));
+        return IntStream.range(lo, hi).toArray();
+    }
+
+    /**
+     * @param name The name of a numeric column.
+     * @param min The minimum.
+     * @param max The maximum.
+     * @return The rows with values from min to max inclusive in order of
+     * value. NaN values are not in any range.
+     */
+    public int[] range(String name, double min, double max) {
+        Col c = getCol(name, DOUBLE);
+        int lo = bound(c, min, false);
+        int hi = bound(c, max, true);
+        int[] r = new int[Math.max(0, hi - lo)];
+        for (int k = 0; k < r.length; k++) {
+            r[k] = bb.getInt(c.pos2 + (lo + k) * 4);
+        }
+        return r;
+    }
+
+    /**
+     * @param c A numeric column.
+     * @param x The value.
+     * @param after If true, the first position in the sorted order after the
+     * values equal to x, otherwise the first position of a value not less
+     * than x.
+     * @return The position in the sorted order.
+     */
+    private int bound(Col c, double x, boolean after) {
+        int lo = 0;
+        int hi = n;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            int cmp = Double.compare(getDouble(c, bb.getInt(c.pos2 + mid * 4)), x);
+            if (cmp < 0 || (after && cmp == 0)) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return lo;
+    }
+
+    /**
+     * Builds or refreshes a catalog. Files that were in the catalog with the
+     * same size and modified time and without an error are not scanned
+     * again. The catalog is
+     * written to a temporary file which is moved into place, so a catalog
+     * that is open is not changed.
+     *
+     * @param mirror The directory of the mirror which is searched
+     * recursively.
+     * @param glob The glob for file names, e.g. {@link
+     * Mol_TextCifBatchReader#GLOB}.
+     * @param file The catalog file.
+     * @param reader The reader.
+     * @param threads The number of threads to scan with.
+     * @return The number of files scanned.
+     * @throws Exception If the mirror cannot be listed or the catalog cannot
+     * be written.
+     */
+    public static int build(Path mirror, String glob, Path file,
+            Mol_TextCifReader reader, int threads) throws Exception {
+        Map<String, Entry> old = new HashMap<>();
+        if (Files.exists(file)) {
+            try {
+                Mol_Catalog c = open(file);
+                for (int i = 0; i < c.n; i++) {
+                    Entry e = c.getEntry(i);
+                    old.put(e.path, e);
+                }
+            } catch (IOException e) {
+                // Rebuild from scratch.
+            }
+        }
+        List<Path> paths = list(mirror, glob);
+        List<Entry> entries = new ArrayList<>(paths.size());
+        List<Path> toScan = new ArrayList<>();
+        for (Path p : paths) {
+            BasicFileAttributes a = Files.readAttributes(p,
+                    BasicFileAttributes.class);
+            Entry e = old.get(getPath(mirror, p));
+            // Entries with an error are scanned again as the error may
+            // have been transient or fixed by a newer reader.
+            if (e != null && e.error.isEmpty() && e.size == a.size()
+                    && e.modified == a.lastModifiedTime().toMillis()) {
+                entries.add(e);
+            } else {
+                toScan.add(p);
+            }
+        }
+        if (!toScan.isEmpty()) {
+            Pipeline.<Path>of(threads * 4)
+                    .then("scan", threads, p -> scan(mirror, p, reader))
+                    .run(toScan.iterator(), entries::add);
+        }
+        write(entries, file);
+        return toScan.size();
+    }
+
+    /**
+     * @param mirror The directory.
+     * @param glob The glob for file names.
+     * @return The files in mirror and its subdirectories sorted.
+     * @throws IOException If encountered.
+     */
+    public static List<Path> list(Path mirror, String glob) throws IOException {
+        PathMatcher pm = FileSystems.getDefault().getPathMatcher("glob:" + glob);
+        try (Stream<Path> s = Files.walk(mirror)) {
+            return s.filter(p -> Files.isRegularFile(p)
+                    && pm.matches(p.getFileName())).sorted().toList();
+        }
+    }
+
+    /**
+     * @param mirror The directory of the mirror.
+     * @param p A path in it.
+     * @return The relative path with "/" separators.
+     */
+    protected static String getPath(Path mirror, Path p) {
+        return mirror.relativize(p).toString().replace('\\', '/');
+    }
+
+    /**
+     * Reads the metadata of a file. The rows of the atom_site loop are
+     * counted but not parsed.
+     *
+     * @param mirror The directory of the mirror.
+     * @param p The path of the file.
+     * @param reader The reader.
+     * @return The entry which has an error if p could not be read.
+     * @throws IOException If the attributes of p cannot be read.
+     */
+    public static Entry scan(Path mirror, Path p, Mol_TextCifReader reader)
+            throws IOException {
+        BasicFileAttributes a = Files.readAttributes(p,
+                BasicFileAttributes.class);
+        String path = getPath(mirror, p);
+        long size = a.size();
+        long modified = a.lastModifiedTime().toMillis();
+        String name = Mol_TextCifBatchReader.Result.getName(p);
+        try {
+            Map<String, Long> counts = new HashMap<>();
+            CIF cif = reader.getCif(p, NAMES, counts);
+            if (cif.dataBlocks.isEmpty()) {
+                return new Entry(name, path, size, modified, 0L, Double.NaN,
+                        "", "", "", "", "", "No data block");
+            }
+            DataBlock db = cif.dataBlocks.get(0);
+            String id = String.join(";", getValues(db, "entry", "id"));
+            double resolution = Double.NaN;
+            for (String[] item : new String[][]{
+                {"em_3d_reconstruction", "resolution"},
+                {"refine", "ls_d_res_high"}, {"reflns", "d_resolution_high"}}) {
+                for (String v : getValues(db, item[0], item[1])) {
+                    try {
+                        double r = Double.parseDouble(v);
+                        if (!(r >= resolution)) {
+                            resolution = r;
+                        }
+                    } catch (NumberFormatException e) {
+                        // '?' or '.'
+                    }
+                }
+                if (!Double.isNaN(resolution)) {
+                    break;
+                }
+            }
+            return new Entry(id.isEmpty() ? name : id, path, size, modified,
+                    counts.getOrDefault("atom_site", 0L), resolution,
+                    String.join(";", getValues(db, "exptl", "method")),
+                    String.join(";", getValues(db, "struct", "title")),
+                    String.join(";", getValues(db, "pdbx_database_status",
+                            "recvd_initial_deposition_date")),
+                    String.join(";", getValues(db, "entity", "pdbx_description")),
+                    getChains(db), "");
+        } catch (Exception e) {
+            return new Entry(name, path, size, modified, 0L, Double.NaN, "", "",
+                    "", "", "", e.getClass().getSimpleName() + ": "
+                    + e.getMessage());
+        }
+    }
+
+    /**
+     * @param db The DataBlock.
+     * @param name The category name.
+     * @param item The item name.
+     * @return The unquoted values of the item, one for a DataItems and one
+     * for each row of a Columns, or none.
+     */
+    protected static String[] getValues(DataBlock db, String name, String item) {
+        DataItems dis = db.getDataItems(name);
+        if (dis != null) {
+            for (DataItem d : dis.dataItems.values()) {
+                if (d.name.equalsIgnoreCase(item)) {
+                    return new String[]{Value.unquote(d.value)};
+                }
+            }
+            return new String[0];
+        }
+        Columns cs = db.getColumns(name);
+        if (cs != null) {
+            String[] vs = cs.getStrings(item);
+            if (vs != null) {
+                for (int i = 0; i < vs.length; i++) {
+                    vs[i] = Value.unquote(vs[i]);
+                }
+                return vs;
+            }
+        }
+        return new String[0];
+    }
+
+    /**
+     * @param db The DataBlock.
+     * @return The length of each polymer chain from the canonical sequences
+     * of entity_poly, e.g. "A:3400,B:120".
+     */
+    protected static String getChains(DataBlock db) {
+        String[] strands = getValues(db, "entity_poly", "pdbx_strand_id");
+        String[] seqs = getValues(db, "entity_poly",
+                "pdbx_seq_one_letter_code_can");
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < Math.min(strands.length, seqs.length); i++) {
+            int len = getLength(seqs[i]);
+            for (String chain : strands[i].split(",")) {
+                if (!sb.isEmpty()) {
+                    sb.append(',');
+                }
+                sb.append(chain.trim()).append(':').append(len);
+            }
+        }
+        return sb.toString();
+    }
+
+    /**
+     * @param seq A one letter code sequence.
+     * @return The number of residues: letters outside brackets and bracketed
+     * codes.
+     */
+    protected static int getLength(String seq) {
+        int r = 0;
+        boolean bracket = false;
+        for (int i = 0; i < seq.length(); i++) {
+            char c = seq.charAt(i);
+            if (c == '(') {
+                bracket = true;
+                r++;
+            } else if (c == ')') {
+                bracket = false;
+            } else if (!bracket && Character.isLetter(c)) {
+                r++;
+            }
+        }
+        return r;
+    }
+
+    /**
+     * Writes a catalog with the entries sorted by ID and then path.
+     *
+     * @param entries The entries.
+     * @param file The catalog file.
+     * @throws IOException If encountered.
+     */
+    public static void write(List<Entry> entries, Path file) throws IOException {
+        Entry[] es = entries.toArray(Entry[]::new);
+        Arrays.sort(es, Comparator.comparing((Entry e) -> e.id)
+                .thenComparing(e -> e.path));
+        Path dir = file.toAbsolutePath().getParent();
+        Files.createDirectories(dir);
+        Path tmp = Files.createTempFile(dir, "tmp", ".part");
+        try {
+            try (DataOutputStream out = new DataOutputStream(
+                    new BufferedOutputStream(Files.newOutputStream(tmp),
+                            1 << 16))) {
+                out.write(MAGIC);
+                out.writeInt(VERSION);
+                out.writeInt(es.length);
+                out.writeInt(12);
+                writeStrings(out, ID, es, e -> e.id);
+                writeStrings(out, PATH, es, e -> e.path);
+                writeLongs(out, SIZE, es, e -> e.size);
+                writeLongs(out, MODIFIED, es, e -> e.modified);
+                writeLongs(out, ATOMS, es, e -> e.atoms);
+                double[] rs = new double[es.length];
+                for (int i = 0; i < es.length; i++) {
+                    rs[i] = es[i].resolution;
+                }
+                out.writeByte(DOUBLE);
+                out.writeUTF(RESOLUTION);
+                for (double r : rs) {
+                    out.writeDouble(r);
+                }
+                writeOrder(out, IntStream.range(0, es.length).boxed()
+                        .sorted((i, j) -> Double.compare(rs[i], rs[j])));
+                writeStrings(out, METHOD, es, e -> e.method);
+                writeStrings(out, TITLE, es, e -> e.title);
+                writeStrings(out, DATE, es, e -> e.date);
+                writeStrings(out, ENTITIES, es, e -> e.entities);
+                writeStrings(out, CHAINS, es, e -> e.chains);
+                writeStrings(out, ERROR, es, e -> e.error);
+            }
+            try {
+                Files.move(tmp, file, StandardCopyOption.ATOMIC_MOVE,
+                        StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+    }
+
+    private static void writeLongs(DataOutputStream out, String name,
+            Entry[] es, ToLongFunction<Entry> f)
+            throws IOException {
+        out.writeByte(LONG);
+        out.writeUTF(name);
+        long[] vs = new long[es.length];
+        for (int i = 0; i < es.length; i++) {
+            vs[i] = f.applyAsLong(es[i]);
+            out.writeLong(vs[i]);
+        }
+        writeOrder(out, IntStream.range(0, es.length).boxed()
+                .sorted((i, j) -> Long.compare(vs[i], vs[j])));
+    }
+
+    private static void writeOrder(DataOutputStream out, Stream<Integer> order)
+            throws IOException {
+        for (int i : order.toList()) {
+            out.writeInt(i);
+        }
+    }
+
+    private static void writeStrings(DataOutputStream out, String name,
+            Entry[] es, Function<Entry, String> f)
+            throws IOException {
+        out.writeByte(STRING);
+        out.writeUTF(name);
+        byte[][] bs = new byte[es.length][];
+        int offset = 0;
+        out.writeInt(0);
+        for (int i = 0; i < es.length; i++) {
+            bs[i] = f.apply(es[i]).getBytes(StandardCharsets.UTF_8);
+            offset += bs[i].length;
+            out.writeInt(offset);
+        }
+        for (byte[] b : bs) {
+            out.write(b);
+        }
+    }
+}
@@ -0,0 +1,596 @@
+/*
+ * Copyright 2025 University of Leeds.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.ac.leeds.ccg.mol.io;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import uk.ac.leeds.ccg.mol.data.cif.CIF;
+import uk.ac.leeds.ccg.mol.data.cif.Category_ID;
+import uk.ac.leeds.ccg.mol.data.cif.Column;
+import uk.ac.leeds.ccg.mol.data.cif.Column_ID;
+import uk.ac.leeds.ccg.mol.data.cif.Columns;
+import uk.ac.leeds.ccg.mol.data.cif.Columns_ID;
+import uk.ac.leeds.ccg.mol.data.cif.Comment;
+import uk.ac.leeds.ccg.mol.data.cif.DataBlock;
+import uk.ac.leeds.ccg.mol.data.cif.DataBlockHeading;
+import uk.ac.leeds.ccg.mol.data.cif.DataItem;
+import uk.ac.leeds.ccg.mol.data.cif.DataItems;
+import uk.ac.leeds.ccg.mol.data.cif.DataItems_ID;
+import uk.ac.leeds.ccg.mol.data.cif.Row_ID;
+import uk.ac.leeds.ccg.mol.data.cif.Value;
+
+/**
+ * A binary encoding of the CIF model. Loops are written column by column
+ * after the row IDs. A column whose values are all bare decimal numbers with
+ * the same number of decimal places, such as atom coordinates and IDs, is
+ * written as the differences between successive scaled integers. Other
+ * columns are written as a dictionary of the distinct values and an index
+ * into it for each row. Integers are written as variable length
+ * (LEB128) and zig-zag encoded so small numbers take a single byte. Decoding
+ * reads from a ByteBuffer so that the encoding can be memory mapped.
+ * Categories are created as by {@link Mol_TextCifReader} so decoded CIFs have
+ * the same classes as parsed ones, and rows with the same value in a
+ * dictionary column share a Value.
+ *
+ * @author Andy Turner
+ */
+public class Mol_CifCodec {
+
+    /**
+     * The version of the encoding.
+     */
+    public static final int VERSION = 3;
+
+    /**
+     * Tag for a Columns.
+     */
+    protected static final byte COLUMNS = 0;
+
+    /**
+     * Tag for a DataItems.
+     */
+    protected static final byte DATA_ITEMS = 1;
+
+    /**
+     * Tag for a column written as a dictionary.
+     */
+    protected static final byte DICTIONARY = 0;
+
+    /**
+     * Tag for a column written as scaled integers.
+     */
+    protected static final byte NUMERIC = 1;
+
+    /**
+     * The maximum number of digits in a NUMERIC value so that the scaled
+     * integer and the differences fit in a long.
+     */
+    protected static final int DIGITS_MAX = 17;
+
+    private Mol_CifCodec() {
+    }
+
+    /**
+     * @param cif The CIF to encode.
+     * @return The encoding.
+     * @throws IOException If encountered.
+     */
+    public static byte[] encode(CIF cif) throws IOException {
+        ByteArrayOutputStream baos = new ByteArrayOutputStream(1 << 16);
+        try (DataOutputStream out = new DataOutputStream(baos)) {
+            encode(cif, out);
+        }
+        return baos.toByteArray();
+    }
+
+    /**
+     * @param cif The CIF to encode.
+     * @param out The output.
+     * @throws IOException If encountered.
+     */
+    public static void encode(CIF cif, DataOutputStream out) throws IOException {
+        writeVarint(out, cif.comments.size());
+        for (Comment c : cif.comments) {
+            writeString(out, c.comment);
+        }
+        writeVarint(out, cif.dataBlocks.size());
+        for (DataBlock db : cif.dataBlocks) {
+            writeString(out, db.dbh.name);
+            writeVarint(out, db.columnsAndDataItems.size());
+            for (Category_ID id : db.columnsAndDataItems) {
+                if (id instanceof Columns_ID cid) {
+                    out.writeByte(COLUMNS);
+                    writeVarint(out, cid.id);
+                    encode(db.getColumns(cid), out);
+                } else {
+                    DataItems_ID did = (DataItems_ID) id;
+                    out.writeByte(DATA_ITEMS);
+                    writeVarint(out, did.id);
+                    encode(db.getDataItems(did), out);
+                }
+            }
+        }
+    }
+
+    /**
+     * @param columns The Columns to encode.
+     * @param out The output.
+     * @throws IOException If encountered.
+     */
+    protected static void encode(Columns columns, DataOutputStream out)
+            throws IOException {
+        writeString(out, columns.name);
+        writeVarint(out, columns.columns.size());
+        for (Column c : columns.columns.values()) {
+            writeString(out, c.name);
+        }
+        Row_ID[] rids = columns.data.keySet().toArray(Row_ID[]::new);
+        writeVarint(out, rids.length);
+        long prev = 0L;
+        for (Row_ID rid : rids) {
+            writeVarlong(out, zigzag(rid.id - prev));
+            prev = rid.id;
+        }
+        Value[] vs = new Value[rids.length];
+        long[] scaled = new long[rids.length];
+        for (Column c : columns.columns.values()) {
+            for (int r = 0; r < rids.length; r++) {
+                vs[r] = c.getValue(rids[r]);
+            }
+            int scale = getScale(vs, scaled);
+            if (scale >= 0) {
+                out.writeByte(NUMERIC);
+                out.writeByte(scale);
+                prev = 0L;
+                for (long x : scaled) {
+                    writeVarlong(out, zigzag(x - prev));
+                    prev = x;
+                }
+            } else {
+                out.writeByte(DICTIONARY);
+                encodeDictionary(vs, out);
+            }
+        }
+    }
+
+    /**
+     * Writes the distinct values and then for each row the index of its
+     * value plus one, or 0 for a missing value.
+     *
+     * @param vs The values.
+     * @param out The output.
+     * @throws IOException If encountered.
+     */
+    protected static void encodeDictionary(Value[] vs, DataOutputStream out)
+            throws IOException {
+        HashMap<String, Integer>[] indexes = newIndexes();
+        List<Value> dictionary = new ArrayList<>();
+        int[] is = new int[vs.length];
+        for (int r = 0; r < vs.length; r++) {
+            Value v = vs[r];
+            if (v != null) {
+                HashMap<String, Integer> index = indexes[v.getKind()];
+                Integer i = index.get(v.v);
+                if (i == null) {
+                    i = dictionary.size();
+                    index.put(v.v, i);
+                    dictionary.add(v);
+                }
+                is[r] = i + 1;
+            }
+        }
+        writeVarint(out, dictionary.size());
+        for (Value v : dictionary) {
+            out.writeByte(v.getKind());
+            writeString(out, v.v);
+        }
+        for (int i : is) {
+            writeVarint(out, i);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static HashMap<String, Integer>[] newIndexes() {
+        HashMap<String, Integer>[] r = new HashMap[Value.KIND_MASK + 1];
+        for (int k = 0; k < r.length; k++) {
+            r[k] = new HashMap<>();
+        }
+        return r;
+    }
+
+    /**
+     * Finds if all the values are bare decimal numbers with the same number
+     * of decimal places that are written back exactly from scaled integers.
+     *
+     * @param vs The values.
+     * @param scaled For returning the scaled integers.
+     * @return The number of decimal places or -1 if the values cannot be
+     * written as scaled integers.
+     */
+    protected static int getScale(Value[] vs, long[] scaled) {
+        if (vs.length == 0) {
+            return -1;
+        }
+        int scale = -1;
+        for (int r = 0; r < vs.length; r++) {
+            Value v = vs[r];
+            if (v == null || v.getKind() != Value.BARE) {
+                return -1;
+            }
+            String s = v.v;
+            int n = s.length();
+            int i = 0;
+            boolean negative = n > 0 && s.charAt(0) == '-';
+            if (negative) {
+                i++;
+            }
+            int point = s.indexOf('.', i);
+            int sc = point < 0 ? 0 : n - point - 1;
+            if (scale < 0) {
+                scale = sc;
+            } else if (sc != scale) {
+                return -1;
+            }
+            int digits = n - i - (point < 0 ? 0 : 1);
+            if (digits < 1 || digits > DIGITS_MAX || (point >= 0 && sc == 0)
+                    || point == i) {
+                return -1;
+            }
+            long x = 0L;
+            for (; i < n; i++) {
+                char c = s.charAt(i);
+                if (c >= '0' && c <= '9') {
+                    x = x * 10 + (c - '0');
+                } else if (i != point) {
+                    return -1;
+                }
+            }
+            scaled[r] = negative ? -x : x;
+            // Only values written back exactly: no leading zeros, no -0.
+            if (!toString(scaled[r], scale).equals(s)) {
+                return -1;
+            }
+        }
+        return scale;
+    }
+
+    /**
+     * @param x A scaled integer.
+     * @param scale The number of decimal places.
+     * @return x divided by 10 to the power of scale written with scale
+     * decimal places.
+     */
+    protected static String toString(long x, int scale) {
+        String s = Long.toString(Math.abs(x));
+        if (scale == 0) {
+            return x < 0 ? "-" + s : s;
+        }
+        StringBuilder sb = new StringBuilder(s.length() + 3);
+        if (x < 0) {
+            sb.append('-');
+        }
+        for (int i = s.length(); i <= scale; i++) {
+            sb.append('0');
+        }
+        sb.append(s);
+        sb.insert(sb.length() - scale, '.');
+        return sb.toString();
+    }
+
+    /**
+     * @param dataItems The DataItems to encode.
+     * @param out The output.
+     * @throws IOException If encountered.
+     */
+    protected static void encode(DataItems dataItems, DataOutputStream out)
+            throws IOException {
+        writeString(out, dataItems.name);
+        writeVarint(out, dataItems.dataItems.size());
+        for (DataItem d : dataItems.dataItems.values()) {
+            writeString(out, d.name);
+            out.writeByte(d.kind);
+            writeString(out, d.value);
+        }
+    }
+
+    /**
+     * @param x The value.
+     * @return x zig-zag encoded so that small negative values are small.
+     */
+    protected static long zigzag(long x) {
+        return (x << 1) ^ (x >> 63);
+    }
+
+    /**
+     * @param x A zig-zag encoded value.
+     * @return The value.
+     */
+    protected static long unzigzag(long x) {
+        return (x >>> 1) ^ -(x & 1);
+    }
+
+    /**
+     * Writes x in groups of 7 bits, least significant first, with the high
+     * bit set on all but the last.
+     *
+     * @param out The output.
+     * @param x The value treated as unsigned.
+     * @throws IOException If encountered.
+     */
+    protected static void writeVarlong(DataOutputStream out, long x)
+            throws IOException {
+        while ((x & ~0x7FL) != 0L) {
+            out.writeByte((int) ((x & 0x7F) | 0x80));
+            x >>>= 7;
+        }
+        out.writeByte((int) x);
+    }
+
+    /**
+     * @param out The output.
+     * @param x A value that is not negative.
+     * @throws IOException If encountered.
+     */
+    protected static void writeVarint(DataOutputStream out, int x)
+            throws IOException {
+        writeVarlong(out, x);
+    }
+
+    /**
+     * Writes the length of the UTF-8 encoding of s and then the encoding.
+     *
+     * @param out The output.
+     * @param s The String.
+     * @throws IOException If encountered.
+     */
+    protected static void writeString(DataOutputStream out, String s)
+            throws IOException {
+        byte[] b = s.getBytes(StandardCharsets.UTF_8);
+        writeVarint(out, b.length);
+        out.write(b);
+    }
+
+    /**
+     * @param bb The encoding from the current position.
+     * @param reader For the environment and for creating categories.
+     * @return The CIF.
+     */
+    public static CIF decode(ByteBuffer bb, Mol_TextCifReader reader) {
+        CIF cif = new CIF(reader.env);
+        int n = readVarint(bb);
+        for (int i = 0; i < n; i++) {
+            cif.comments.add(new Comment(readString(bb)));
+        }
+        n = readVarint(bb);
+        for (int i = 0; i < n; i++) {
+            DataBlock db = new DataBlock(reader.env, new DataBlockHeading(
+                    reader.env, readString(bb)));
+            cif.dataBlocks.add(db);
+            int m = readVarint(bb);
+            for (int j = 0; j < m; j++) {
+                byte tag = bb.get();
+                int id = readVarint(bb);
+                String name = readString(bb);
+                if (tag == COLUMNS) {
+                    Columns columns = newColumns(reader, name,
+                            new Columns_ID(id));
+                    decode(bb, columns);
+                    db.addColumns(columns);
+                } else if (tag == DATA_ITEMS) {
+                    DataItems dataItems = newDataItems(reader, name,
+                            new DataItems_ID(id));
+                    decode(bb, dataItems);
+                    db.addDataItems(dataItems);
+                } else {
+                    throw new IllegalArgumentException("Unknown tag " + tag);
+                }
+            }
+        }
+        return cif;
+    }
+
+    /**
+     * @param reader For creating categories.
+     * @param name The name.
+     * @param id The id.
+     * @return A new Columns of the class the reader creates for name, or of
+     * class Columns if the name is not recognised.
+     */
+    protected static Columns newColumns(Mol_TextCifReader reader, String name,
+            Columns_ID id) {
+        try {
+            return reader.getColumns(name, id);
+        } catch (Exception e) {
+            return new Columns(name, id);
+        }
+    }
+
+    /**
+     * @param reader For creating categories.
+     * @param name The name.
+     * @param id The id.
+     * @return A new DataItems of the class the reader creates for name, or of
+     * class DataItems if the name is not recognised.
+     */
+    protected static DataItems newDataItems(Mol_TextCifReader reader,
+            String name, DataItems_ID id) {
+        try {
+            return reader.getDataItems(name, id);
+        } catch (Exception e) {
+            return new DataItems(name, id);
+        }
+    }
+
+    /**
+     * Values are immutable so they are shared with the copy.
+     *
+     * @param columns The Columns to copy.
+     * @param reader For creating the copy.
+     * @return A copy of columns that can be changed independently.
+     */
+    public static Columns copy(Columns columns, Mol_TextCifReader reader) {
+        Columns r = newColumns(reader, columns.name, columns.id);
+        columns.columns.values().forEach(c -> r.addColumn(new Column(r,
+                c.name)));
+        columns.data.forEach((rid, row) -> {
+            r.data.put(rid, new TreeMap<>(row));
+            row.forEach((cid, v) -> {
+                if (v != null) {
+                    r.columns.get(cid).setValue(rid, v);
+                }
+            });
+        });
+        return r;
+    }
+
+    /**
+     * @param dataItems The DataItems to copy.
+     * @param reader For creating the copy.
+     * @return A copy of dataItems that can be changed independently.
+     */
+    public static DataItems copy(DataItems dataItems,
+            Mol_TextCifReader reader) {
+        DataItems r = newDataItems(reader, dataItems.name, dataItems.id);
+        dataItems.dataItems.values().forEach(d -> r.add(new DataItem(r,
+                d.name, d.value, d.kind)));
+        return r;
+    }
+
+    /**
+     * @param bb The encoding of the columns after the name.
+     * @param columns The Columns to add the columns and values to.
+     */
+    protected static void decode(ByteBuffer bb, Columns columns) {
+        int ncols = readVarint(bb);
+        for (int c = 0; c < ncols; c++) {
+            columns.addColumn(new Column(columns, readString(bb)));
+        }
+        int nrows = readVarint(bb);
+        Row_ID[] rids = new Row_ID[nrows];
+        List<TreeMap<Column_ID, Value>> rows = new ArrayList<>(nrows);
+        long prev = 0L;
+        for (int r = 0; r < nrows; r++) {
+            prev += unzigzag(readVarlong(bb));
+            rids[r] = new Row_ID(prev);
+            rows.add(new TreeMap<>());
+            columns.data.put(rids[r], rows.get(r));
+        }
+        // The row maps are held so that values are not put by Row_ID.
+        for (Map.Entry<Column_ID, Column> e : columns.columns.entrySet()) {
+            Column_ID cid = e.getKey();
+            Column column = e.getValue();
+            byte type = bb.get();
+            if (type == NUMERIC) {
+                int scale = bb.get();
+                long x = 0L;
+                for (int r = 0; r < nrows; r++) {
+                    x += unzigzag(readVarlong(bb));
+                    Value v = new Value(toString(x, scale), Value.BARE);
+                    rows.get(r).put(cid, v);
+                    column.setValue(rids[r], v);
+                }
+            } else if (type == DICTIONARY) {
+                Value[] dictionary = new Value[readVarint(bb)];
+                for (int i = 0; i < dictionary.length; i++) {
+                    byte kind = bb.get();
+                    dictionary[i] = new Value(readString(bb), kind);
+                }
+                for (int r = 0; r < nrows; r++) {
+                    int i = readVarint(bb);
+                    if (i == 0) {
+                        rows.get(r).put(cid, null);
+                    } else {
+                        rows.get(r).put(cid, dictionary[i - 1]);
+                        column.setValue(rids[r], dictionary[i - 1]);
+                    }
+                }
+            } else {
+                throw new IllegalArgumentException("Unknown column type "
+                        + type);
+            }
+        }
+    }
+
+    /**
+     * @param bb The encoding of the data items after the name.
+     * @param dataItems The DataItems to add the data items to.
+     */
+    protected static void decode(ByteBuffer bb, DataItems dataItems) {
+        int n = readVarint(bb);
+        for (int i = 0; i < n; i++) {
+            String name = readString(bb);
+            byte kind = bb.get();
+            dataItems.add(new DataItem(dataItems, name, readString(bb), kind));
+        }
+    }
+
+    /**
+     * @param bb The buffer.
+     * @return The value written by
+     * {@link #writeVarlong(java.io.DataOutputStream, long)}.
+     */
+    protected static long readVarlong(ByteBuffer bb) {
+        long x = 0L;
+        for (int shift = 0; shift < 64; shift += 7) {
+            byte b = bb.get();
+            x |= (long) (b & 0x7F) << shift;
+            if (b >= 0) {
+                return x;
+            }
+        }
+        throw new IllegalArgumentException("Malformed varint");
+    }
+
+    /**
+     * @param bb The buffer.
+     * @return The value written by
+     * {@link #writeVarint(java.io.DataOutputStream, int)}.
+     */
+    protected static int readVarint(ByteBuffer bb) {
+        long x = readVarlong(bb);
+        if (x < 0 || x > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Malformed varint");
+        }
+        return (int) x;
+    }
+
+    /**
+     * @param bb The buffer.
+     * @return The String read.
+     */
+    protected static String readString(ByteBuffer bb) {
+        int n = readVarint(bb);
+        String s;
+        if (bb.hasArray()) {
+            s = new String(bb.array(), bb.arrayOffset() + bb.position(), n,
+                    StandardCharsets.UTF_8);
+        } else {
+            byte[] b = new byte[n];
+            bb.get(bb.position(), b);
+            s = new String(b, StandardCharsets.UTF_8);
+        }
+        bb.position(bb.position() + n);
+        return s;
+    }
+}
@@ -0,0 +1,305 @@
+/*
+ * Copyright 2025 University of Leeds.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.ac.leeds.ccg.mol.io;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.zip.CRC32;
+import uk.ac.leeds.ccg.mol.data.cif.CIF;
+
+/**
+ * An on-disk cache of parsed CIFs. A snapshot is stored after a file is
+ * parsed, keyed by the SHA-256 hash of the file content, so a changed file
+ * is parsed again. Later loads memory map the snapshot and decode it with
+ * {@link Mol_CifCodec} instead of parsing the text.
+ *
+ * A snapshot has a header: {@link #MAGIC}, the codec version, the payload
+ * length and a CRC32 of the payload. A snapshot that fails any check is
+ * deleted and the file is parsed again. When the total size of the
+ * snapshots is more than {@link #bytesMax}, the least recently used are
+ * deleted (use is recorded in the file modified time).
+ *
+ * @author Andy Turner
+ */
+public class Mol_CifDiskCache {
+
+    /**
+     * The magic number at the start of a snapshot.
+     */
+    public static final byte[] MAGIC = "RCMOLCIF".getBytes(StandardCharsets.US_ASCII);
+
+    /**
+     * The header length.
+     */
+    public static final int HEADER_LENGTH = MAGIC.length + 4 + 8 + 4;
+
+    /**
+     * The snapshot file name extension.
+     */
+    public static final String EXT = ".rcmol";
+
+    /**
+     * The directory of snapshots.
+     */
+    public final Path dir;
+
+    /**
+     * The maximum total size of snapshots.
+     */
+    public final long bytesMax;
+
+    /**
+     * For parsing files not in the cache.
+     */
+    public final Mol_TextCifReader reader;
+
+    /**
+     * Create a new instance.
+     *
+     * @param dir What {@link #dir} is set to.
+     * @param bytesMax What {@link #bytesMax} is set to.
+     * @param reader What {@link #reader} is set to.
+     * @throws IOException If dir cannot be created.
+     */
+    public Mol_CifDiskCache(Path dir, long bytesMax, Mol_TextCifReader reader)
+            throws IOException {
+        this.dir = dir;
+        this.bytesMax = bytesMax;
+        this.reader = reader;
+        Files.createDirectories(dir);
+    }
+
+    /**
+     * Gets the CIF for a file from the cache or, if it is not cached, parses
+     * the file and caches it.
+     *
+     * @param p The path of the file.
+     * @return The CIF.
+     * @throws Exception If the file cannot be read or parsed.
+     */
+    public CIF getCif(Path p) throws Exception {
+        String key = hash(p);
+        Path s = dir.resolve(key + EXT);
+        if (Files.exists(s)) {
+            CIF cif = load(s);
+            if (cif != null) {
+                touch(s);
+                return cif;
+            }
+            Files.deleteIfExists(s);
+        }
+        CIF cif = reader.getCif(p);
+        store(cif, s);
+        evict();
+        return cif;
+    }
+
+    /**
+     * @param p The path of the file.
+     * @return The hex SHA-256 of the file content.
+     * @throws IOException If encountered.
+     */
+    public static String hash(Path p) throws IOException {
+        MessageDigest md;
+        try {
+            md = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IOException(e);
+        }
+        try (FileChannel fc = FileChannel.open(p, StandardOpenOption.READ)) {
+            ByteBuffer bb = ByteBuffer.allocate(1 << 16);
+            while (fc.read(bb) >= 0) {
+                bb.flip();
+                md.update(bb);
+                bb.clear();
+            }
+        }
+        return HexFormat.of().formatHex(md.digest());
+    }
+
+    /**
+     * @param s The path of a snapshot.
+     * @return The CIF or null if the snapshot fails a check.
+     * @throws IOException If encountered.
+     */
+    protected CIF load(Path s) throws IOException {
+        try (FileChannel fc = FileChannel.open(s, StandardOpenOption.READ)) {
+            long size = fc.size();
+            if (size < HEADER_LENGTH) {
+                return null;
+            }
+            MappedByteBuffer bb = fc.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            for (byte m : MAGIC) {
+                if (bb.get() != m) {
+                    return null;
+                }
+            }
+            if (bb.getInt() != Mol_CifCodec.VERSION) {
+                return null;
+            }
+            long length = bb.getLong();
+            int crc = bb.getInt();
+            if (length != size - HEADER_LENGTH) {
+                return null;
+            }
+            ByteBuffer payload = bb.slice();
+            CRC32 c = new CRC32();
+            c.update(payload.duplicate());
+            if ((int) c.getValue() != crc) {
+                return null;
+            }
+            try {
+                return Mol_CifCodec.decode(payload, reader);
+            } catch (RuntimeException e) {
+                return null;
+            }
+        }
+    }
+
+    /**
+     * Writes a snapshot to a temporary file which is then moved into place,
+     * so a partly written snapshot is never read.
+     *
+     * @param cif The CIF.
+     * @param s The path of the snapshot.
+     * @throws IOException If encountered.
+     */
+    protected void store(CIF cif, Path s) throws IOException {
+        byte[] payload = Mol_CifCodec.encode(cif);
+        CRC32 c = new CRC32();
+        c.update(payload);
+        ByteBuffer header = ByteBuffer.allocate(HEADER_LENGTH);
+        header.put(MAGIC).putInt(Mol_CifCodec.VERSION).putLong(payload.length)
+                .putInt((int) c.getValue()).flip();
+        Path tmp = Files.createTempFile(dir, "tmp", EXT + ".part");
+        try {
+            try (FileChannel fc = FileChannel.open(tmp,
+                    StandardOpenOption.WRITE)) {
+                ByteBuffer[] bbs = {header, ByteBuffer.wrap(payload)};
+                while (bbs[0].hasRemaining() || bbs[1].hasRemaining()) {
+                    fc.write(bbs);
+                }
+            }
+            try {
+                Files.move(tmp, s, StandardCopyOption.ATOMIC_MOVE,
+                        StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(tmp, s, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+    }
+
+    /**
+     * Records that a snapshot has been used.
+     *
+     * @param s The path of the snapshot.
+     */
+    protected void touch(Path s) {
+        try {
+            Files.setLastModifiedTime(s, FileTime.fromMillis(
+                    System.currentTimeMillis()));
+        } catch (IOException e) {
+            // Eviction order is only a little worse.
+        }
+    }
+
+    /**
+     * @return The total size of the snapshots.
+     * @throws IOException If encountered.
+     */
+    public long size() throws IOException {
+        long r = 0L;
+        for (Path s : list()) {
+            r += Files.size(s);
+        }
+        return r;
+    }
+
+    /**
+     * @return The paths of the snapshots.
+     * @throws IOException If encountered.
+     */
+    protected List<Path> list() throws IOException {
+        List<Path> r = new ArrayList<>();
+        try (DirectoryStream<Path> ds = Files.newDirectoryStream(dir,
+                "*" + EXT)) {
+            ds.forEach(r::add);
+        }
+        return r;
+    }
+
+    /**
+     * Deletes the least recently used snapshots until the total size is at
+     * most {@link #bytesMax}.
+     *
+     * @throws IOException If encountered.
+     */
+    public synchronized void evict() throws IOException {
+        List<Path> ss = list();
+        long[] sizes = new long[ss.size()];
+        FileTime[] times = new FileTime[ss.size()];
+        long total = 0L;
+        List<Integer> order = new ArrayList<>();
+        for (int i = 0; i < ss.size(); i++) {
+            try {
+                sizes[i] = Files.size(ss.get(i));
+                times[i] = Files.getLastModifiedTime(ss.get(i));
+            } catch (IOException e) {
+                // Deleted by another process.
+                continue;
+            }
+            total += sizes[i];
+            order.add(i);
+        }
+        order.sort(Comparator.comparing(i -> times[i]));
+        for (int i : order) {
+            if (total <= bytesMax) {
+                break;
+            }
+            Files.deleteIfExists(ss.get(i));
+            total -= sizes[i];
+        }
+    }
+
+    /**
+     * Deletes all snapshots.
+     *
+     * @throws IOException If encountered.
+     */
+    public synchronized void clear() throws IOException {
+        for (Path s : list()) {
+            Files.deleteIfExists(s);
+        }
+    }
+}
@@ -0,0 +1,439 @@
+/*
+ * Copyright 2025 University of Leeds.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.ac.leeds.ccg.mol.io;
+
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.SoftReference;
+import java.nio.ByteBuffer;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.LongAdder;
+import uk.ac.leeds.ccg.mol.data.cif.CIF;
+import uk.ac.leeds.ccg.mol.data.cif.Category_ID;
+import uk.ac.leeds.ccg.mol.data.cif.Columns;
+import uk.ac.leeds.ccg.mol.data.cif.Columns_ID;
+import uk.ac.leeds.ccg.mol.data.cif.Comment;
+import uk.ac.leeds.ccg.mol.data.cif.DataBlock;
+import uk.ac.leeds.ccg.mol.data.cif.DataItem;
+import uk.ac.leeds.ccg.mol.data.cif.DataItems;
+import uk.ac.leeds.ccg.mol.data.cif.DataItems_ID;
+import uk.ac.leeds.ccg.mol.data.cif.Value;
+
+/**
+ * An in-memory cache of CIFs for long running processes. The cache is
+ * bounded by an estimate of the heap retained by the CIFs (see
+ * {@link #estimateBytes(CIF)}) rather than by the number of entries, and the
+ * least recently used are evicted first.
+ *
+ * If {@link #soft} is true, evicted CIFs are kept by SoftReference so they
+ * can still be got until the garbage collector needs the memory.
+ *
+ * Concurrent gets for a key that is not cached load it only once: the first
+ * caller loads and the others wait for the result. Each get is counted once,
+ * as a hit, a soft hit or a miss (a get that loaded or waited for a load).
+ *
+ * The CIFs got are the cached instances which are shared by all callers, so
+ * they must be treated as read only. A CIF to be changed, e.g. by
+ * {@link CIF#rotate(double[])}, should be got with {@link #getCopy(String)}.
+ *
+ * For example:
+ * <pre>
+ * Mol_CifMemoryCache cache = new Mol_CifMemoryCache(2L &lt;&lt; 30, true,
+ *     pdbId -&gt; reader.getCif(pdbId, dir));
+ * CIF cif = cache.get("4ug0");
+ * </pre>
+ *
+ * @author Andy Turner
+ */
+public class Mol_CifMemoryCache {
+
+    /**
+     * For loading a CIF that is not cached.
+     */
+    public interface Loader {
+
+        /**
+         * @param key The key.
+         * @return The CIF or null if there is none.
+         * @throws Exception If the CIF cannot be loaded.
+         */
+        CIF load(String key) throws Exception;
+    }
+
+    /**
+     * A strongly held CIF.
+     */
+    private static class Entry {
+
+        final CIF cif;
+
+        final long bytes;
+
+        Entry(CIF cif, long bytes) {
+            this.cif = cif;
+            this.bytes = bytes;
+        }
+    }
+
+    /**
+     * A softly held CIF.
+     */
+    private static class SoftEntry extends SoftReference<CIF> {
+
+        final String key;
+
+        SoftEntry(String key, CIF cif, ReferenceQueue<CIF> q) {
+            super(cif, q);
+            this.key = key;
+        }
+    }
+
+    /**
+     * The maximum estimated size of the strongly held CIFs.
+     */
+    public final long bytesMax;
+
+    /**
+     * Whether evicted CIFs are kept by SoftReference.
+     */
+    public final boolean soft;
+
+    /**
+     * The loader.
+     */
+    public final Loader loader;
+
+    /**
+     * The strongly held CIFs in access order.
+     */
+    private final LinkedHashMap<String, Entry> entries;
+
+    /**
+     * The softly held CIFs.
+     */
+    private final HashMap<String, SoftEntry> softEntries;
+
+    /**
+     * For the SoftEntries that have been cleared.
+     */
+    private final ReferenceQueue<CIF> cleared;
+
+    /**
+     * The loads in progress.
+     */
+    private final ConcurrentHashMap<String, CompletableFuture<CIF>> loading;
+
+    /**
+     * The estimated size of the strongly held CIFs.
+     */
+    private long bytes;
+
+    /**
+     * The number of gets for strongly held CIFs.
+     */
+    private final LongAdder hits;
+
+    /**
+     * The number of gets for softly held CIFs.
+     */
+    private final LongAdder softHits;
+
+    /**
+     * The number of gets that loaded or waited for a load.
+     */
+    private final LongAdder misses;
+
+    /**
+     * The number of CIFs evicted from the strongly held CIFs.
+     */
+    private final LongAdder evictions;
+
+    /**
+     * Create a new instance.
+     *
+     * @param bytesMax What {@link #bytesMax} is set to.
+     * @param soft What {@link #soft} is set to.
+     * @param loader What {@link #loader} is set to.
+     */
+    public Mol_CifMemoryCache(long bytesMax, boolean soft, Loader loader) {
+        this.bytesMax = bytesMax;
+        this.soft = soft;
+        this.loader = loader;
+        this.entries = new LinkedHashMap<>(16, 0.75f, true);
+        this.softEntries = new HashMap<>();
+        this.cleared = new ReferenceQueue<>();
+        this.loading = new ConcurrentHashMap<>();
+        this.hits = new LongAdder();
+        this.softHits = new LongAdder();
+        this.misses = new LongAdder();
+        this.evictions = new LongAdder();
+    }
+
+    /**
+     * Gets a CIF from the cache or loads it.
+     *
+     * @param key The key.
+     * @return The CIF or null if the loader returned null. The CIF is shared
+     * and must not be changed.
+     * @throws Exception If thrown by the loader.
+     */
+    public CIF get(String key) throws Exception {
+        CIF cif = getIfPresent(key);
+        if (cif != null) {
+            return cif;
+        }
+        CompletableFuture<CIF> f = new CompletableFuture<>();
+        CompletableFuture<CIF> other = loading.putIfAbsent(key, f);
+        if (other != null) {
+            misses.increment();
+            try {
+                return other.get();
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof Exception ex) {
+                    throw ex;
+                }
+                throw e;
+            }
+        }
+        try {
+            // It may have been put while the loading entry was being added.
+            cif = getIfPresent(key);
+            if (cif == null) {
+                misses.increment();
+                cif = loader.load(key);
+                if (cif != null) {
+                    put(key, cif);
+                }
+            }
+            f.complete(cif);
+            return cif;
+        } catch (Exception | Error e) {
+            f.completeExceptionally(e);
+            throw e;
+        } finally {
+            loading.remove(key, f);
+        }
+    }
+
+    /**
+     * Gets a copy of a CIF from the cache or loads it. The copy is decoded
+     * from the {@link Mol_CifCodec} encoding of the cached CIF so it can be
+     * changed without changing the cached CIF.
+     *
+     * @param key The key.
+     * @return A copy of the CIF or null if the loader returned null.
+     * @throws Exception If thrown by the loader or encountered copying.
+     */
+    public CIF getCopy(String key) throws Exception {
+        CIF cif = get(key);
+        if (cif == null) {
+            return null;
+        }
+        return Mol_CifCodec.decode(ByteBuffer.wrap(Mol_CifCodec.encode(cif)),
+                new Mol_TextCifReader(cif.env));
+    }
+
+    /**
+     * @param key The key.
+     * @return The CIF or null if it is not cached. The CIF is shared and
+     * must not be changed.
+     */
+    public synchronized CIF getIfPresent(String key) {
+        Entry e = entries.get(key);
+        if (e != null) {
+            hits.increment();
+            return e.cif;
+        }
+        expunge();
+        SoftEntry s = softEntries.get(key);
+        if (s != null) {
+            CIF cif = s.get();
+            if (cif != null) {
+                softHits.increment();
+                softEntries.remove(key);
+                put(key, cif);
+                return cif;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Adds a CIF to the strongly held CIFs and evicts the least recently
+     * used until the estimated size is at most {@link #bytesMax}. A CIF
+     * larger than bytesMax is evicted straight away.
+     *
+     * @param key The key.
+     * @param cif The CIF.
+     */
+    public synchronized void put(String key, CIF cif) {
+        Entry old = entries.put(key, new Entry(cif, estimateBytes(cif)));
+        if (old != null) {
+            bytes -= old.bytes;
+        }
+        softEntries.remove(key);
+        bytes += entries.get(key).bytes;
+        Iterator<Map.Entry<String, Entry>> ite = entries.entrySet().iterator();
+        while (bytes > bytesMax && ite.hasNext()) {
+            Map.Entry<String, Entry> e = ite.next();
+            ite.remove();
+            bytes -= e.getValue().bytes;
+            evictions.increment();
+            if (soft) {
+                softEntries.put(e.getKey(), new SoftEntry(e.getKey(),
+                        e.getValue().cif, cleared));
+            }
+        }
+    }
+
+    /**
+     * Removes the softly held entries that have been cleared.
+     */
+    private void expunge() {
+        for (Reference<? extends CIF> r = cleared.poll(); r != null;
+                r = cleared.poll()) {
+            SoftEntry s = (SoftEntry) r;
+            softEntries.remove(s.key, s);
+        }
+    }
+
+    /**
+     * @param key The key of the CIF to remove.
+     */
+    public synchronized void invalidate(String key) {
+        Entry e = entries.remove(key);
+        if (e != null) {
+            bytes -= e.bytes;
+        }
+        softEntries.remove(key);
+    }
+
+    /**
+     * Removes all CIFs.
+     */
+    public synchronized void clear() {
+        entries.clear();
+        softEntries.clear();
+        bytes = 0L;
+    }
+
+    /**
+     * @return The number of strongly held CIFs.
+     */
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    /**
+     * @return The estimated size of the strongly held CIFs.
+     */
+    public synchronized long getBytes() {
+        return bytes;
+    }
+
+    /**
+     * @return The number of gets for strongly held CIFs.
+     */
+    public long getHits() {
+        return hits.sum();
+    }
+
+    /**
+     * @return The number of gets for softly held CIFs.
+     */
+    public long getSoftHits() {
+        return softHits.sum();
+    }
+
+    /**
+     * @return The number of gets that loaded or waited for a load.
+     */
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    /**
+     * @return The number of CIFs evicted from the strongly held CIFs.
+     */
+    public long getEvictions() {
+        return evictions.sum();
+    }
+
+    @Override
+    public String toString() {
+        return getClass().getSimpleName() + "(size=" + size() + ", bytes="
+                + getBytes() + ", hits=" + getHits() + ", softHits="
+                + getSoftHits() + ", misses=" + getMisses() + ", evictions="
+                + getEvictions() + ")";
+    }
+
+    /**
+     * Estimates the heap retained by a CIF assuming compressed object
+     * pointers. Each loop value is held in the row map of the Columns and
+     * the value map of the Column, so a value costs a TreeMap entry, a
+     * HashMap node and table slot, the Value, the String and its array.
+     *
+     * @param cif The CIF.
+     * @return An estimate of the heap retained in bytes.
+     */
+    public static long estimateBytes(CIF cif) {
+        long r = 64L;
+        for (Comment c : cif.comments) {
+            r += 16L + string(c.comment);
+        }
+        for (DataBlock db : cif.dataBlocks) {
+            r += 256L + string(db.dbh.name);
+            for (Category_ID id : db.columnsAndDataItems) {
+                if (id instanceof Columns_ID cid) {
+                    Columns cs = db.getColumns(cid);
+                    r += 256L + string(cs.name);
+                    // Row_ID, its row TreeMap and the entry for it.
+                    r += cs.data.size() * (16L + 48L + 40L);
+                    for (var row : cs.data.values()) {
+                        for (Value v : row.values()) {
+                            r += 40L + 40L + 24L;
+                            if (v != null) {
+                                r += string(v.v);
+                            }
+                        }
+                    }
+                    r += cs.columns.size() * (128L + 64L);
+                } else {
+                    DataItems dis = db.getDataItems((DataItems_ID) id);
+                    r += 128L + string(dis.name);
+                    for (DataItem d : dis.dataItems.values()) {
+                        r += 40L + 48L + string(d.name) + string(d.value);
+                    }
+                }
+            }
+        }
+        return r;
+    }
+
+    /**
+     * @param s The String.
+     * @return An estimate of the heap retained by s assuming it is Latin-1.
+     */
+    private static long string(String s) {
+        return s == null ? 0L : 24L + ((16L + s.length() + 7L) & ~7L);
+    }
+}
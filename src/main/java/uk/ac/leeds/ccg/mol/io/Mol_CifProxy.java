@@ -0,0 +1,85 @@
+/*
+ * Copyright 2025 University of Leeds.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.ac.leeds.ccg.mol.io;
+
+import java.io.IOException;
+import java.io.InvalidObjectException;
+import java.io.ObjectStreamException;
+import java.io.Serializable;
+import java.nio.ByteBuffer;
+import uk.ac.leeds.ccg.mol.core.Mol_Environment;
+import uk.ac.leeds.ccg.mol.data.cif.CIF;
+
+/**
+ * The serialized form of a {@link CIF}. It holds the {@link Mol_CifCodec}
+ * encoding and resolves to a decoded CIF when deserialized. The environment
+ * of the decoded CIF is not set.
+ *
+ * @author Andy Turner
+ */
+public class Mol_CifProxy implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * The encoding version.
+     */
+    private final int version;
+
+    /**
+     * The encoding.
+     */
+    private final byte[] encoding;
+
+    /**
+     * Create a new instance.
+     *
+     * @param cif The CIF to encode.
+     * @throws ObjectStreamException If cif cannot be encoded.
+     */
+    public Mol_CifProxy(CIF cif) throws ObjectStreamException {
+        version = Mol_CifCodec.VERSION;
+        try {
+            encoding = Mol_CifCodec.encode(cif);
+        } catch (IOException e) {
+            InvalidObjectException r = new InvalidObjectException(
+                    e.getMessage());
+            r.initCause(e);
+            throw r;
+        }
+    }
+
+    /**
+     * @return The decoded CIF.
+     * @throws ObjectStreamException If the encoding version differs or the
+     * encoding is not valid.
+     */
+    private Object readResolve() throws ObjectStreamException {
+        if (version != Mol_CifCodec.VERSION) {
+            throw new InvalidObjectException("Encoding version " + version
+                    + " not " + Mol_CifCodec.VERSION);
+        }
+        try {
+            return Mol_CifCodec.decode(ByteBuffer.wrap(encoding),
+                    new Mol_TextCifReader((Mol_Environment) null));
+        } catch (RuntimeException e) {
+            InvalidObjectException r = new InvalidObjectException(
+                    e.getMessage());
+            r.initCause(e);
+            throw r;
+        }
+    }
+}
@@ -0,0 +1,542 @@
+/*
+ * Copyright 2025 University of Leeds.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.ac.leeds.ccg.mol.io;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import uk.ac.leeds.ccg.mol.data.cif.CIF;
+import uk.ac.leeds.ccg.mol.data.cif.Category_ID;
+import uk.ac.leeds.ccg.mol.data.cif.Column_ID;
+import uk.ac.leeds.ccg.mol.data.cif.Columns;
+import uk.ac.leeds.ccg.mol.data.cif.Columns_ID;
+import uk.ac.leeds.ccg.mol.data.cif.DataBlock;
+import uk.ac.leeds.ccg.mol.data.cif.DataItems_ID;
+import uk.ac.leeds.ccg.mol.data.cif.Value;
+import uk.ac.leeds.ccg.mol.data.cif.columns.Atom_Site;
+
+/**
+ * A summary of a CIF: the number of atoms in each model and chain, the
+ * bounding box, the number and coordinate sums of the atoms of each element
+ * and the number of rows of each category. The summary is computed when a
+ * CIF is read (see {@link CIF#summary}) and can be written to a small
+ * sidecar file next to the CIF (see {@link #getSidecar(Path)}) so that
+ * jobs can be planned without parsing the CIF again.
+ *
+ * The coordinate sums are exact so the centroid of any set of elements is
+ * the same as that calculated from the coordinates (see
+ * {@link CIF#centralise(java.util.TreeSet, Mol_CifSummary)}). They are
+ * accumulated as longs scaled by a power of ten, and only values that do not
+ * fit are added as BigDecimals.
+ *
+ * The sidecar is text with a record per line:
+ * <pre>
+ * atoms N
+ * model ID N
+ * chain ID N
+ * min X Y Z
+ * max X Y Z
+ * element SYMBOL N LOCATED SUM_X SUM_Y SUM_Z
+ * category NAME ROWS
+ * </pre>
+ *
+ * @author Andy Turner
+ */
+public class Mol_CifSummary {
+
+    /**
+     * The sidecar file name extension which is appended to the CIF file
+     * name.
+     */
+    public static final String EXT = ".summary";
+
+    /**
+     * The atoms of an element.
+     */
+    public static class Element {
+
+        /**
+         * The number of atoms.
+         */
+        public long count;
+
+        /**
+         * The number of atoms with numeric coordinates.
+         */
+        public long located;
+
+        /**
+         * The parts of the coordinate sums that did not fit in
+         * {@link #unscaled}.
+         */
+        private final BigDecimal[] sums;
+
+        /**
+         * The coordinate sums times ten to the power of {@link #scales}.
+         */
+        private final long[] unscaled;
+
+        /**
+         * The scales of {@link #unscaled}.
+         */
+        private final int[] scales;
+
+        /**
+         * Create a new instance.
+         */
+        public Element() {
+            sums = new BigDecimal[]{BigDecimal.ZERO, BigDecimal.ZERO,
+                BigDecimal.ZERO};
+            unscaled = new long[3];
+            scales = new int[3];
+        }
+
+        /**
+         * @param i The coordinate index (0 for x, 1 for y, 2 for z).
+         * @return The exact sum of the coordinate of the located atoms.
+         */
+        public BigDecimal getSum(int i) {
+            return sums[i].add(BigDecimal.valueOf(unscaled[i], scales[i]));
+        }
+
+        /**
+         * Adds u / 10^s to the sum of coordinate i.
+         *
+         * @param i The coordinate index.
+         * @param u The unscaled value.
+         * @param s The scale of u.
+         */
+        void add(int i, long u, int s) {
+            try {
+                long a = unscaled[i];
+                long b = u;
+                int sc = scales[i];
+                if (s > sc) {
+                    a = Math.multiplyExact(a, POW10[s - sc]);
+                    sc = s;
+                } else if (s < sc) {
+                    b = Math.multiplyExact(b, POW10[sc - s]);
+                }
+                unscaled[i] = Math.addExact(a, b);
+                scales[i] = sc;
+            } catch (ArithmeticException e) {
+                sums[i] = sums[i].add(BigDecimal.valueOf(u, s));
+            }
+        }
+    }
+
+    /**
+     * The maximum number of digits of a coordinate that is parsed to a long.
+     * Such values are exact doubles.
+     */
+    private static final int DIGITS = 15;
+
+    /**
+     * Powers of ten that are longs.
+     */
+    private static final long[] POW10 = new long[19];
+
+    static {
+        POW10[0] = 1L;
+        for (int i = 1; i < POW10.length; i++) {
+            POW10[i] = POW10[i - 1] * 10L;
+        }
+    }
+
+    /**
+     * The number of atoms.
+     */
+    public long atoms;
+
+    /**
+     * The number of atoms in each model (pdbx_PDB_model_num).
+     */
+    public final TreeMap<String, Long> models;
+
+    /**
+     * The number of atoms in each chain (auth_asym_id or, if there is none,
+     * label_asym_id).
+     */
+    public final TreeMap<String, Long> chains;
+
+    /**
+     * The minimum coordinates or NaN if there are none.
+     */
+    public final double[] min;
+
+    /**
+     * The maximum coordinates or NaN if there are none.
+     */
+    public final double[] max;
+
+    /**
+     * The atoms of each element (type_symbol).
+     */
+    public final TreeMap<String, Element> elements;
+
+    /**
+     * The number of rows of each category, 1 for categories that are not
+     * loops.
+     */
+    public final TreeMap<String, Long> categories;
+
+    /**
+     * Create a new empty instance.
+     */
+    public Mol_CifSummary() {
+        models = new TreeMap<>();
+        chains = new TreeMap<>();
+        min = new double[]{Double.NaN, Double.NaN, Double.NaN};
+        max = new double[]{Double.NaN, Double.NaN, Double.NaN};
+        elements = new TreeMap<>();
+        categories = new TreeMap<>();
+    }
+
+    /**
+     * Calculates the summary of the first DataBlock of a CIF.
+     *
+     * @param cif The CIF.
+     * @return The summary.
+     */
+    public static Mol_CifSummary of(CIF cif) {
+        Mol_CifSummary r = new Mol_CifSummary();
+        if (cif.dataBlocks.isEmpty()) {
+            return r;
+        }
+        DataBlock db = cif.dataBlocks.get(0);
+        for (Category_ID id : db.columnsAndDataItems) {
+            if (id instanceof Columns_ID cid) {
+                Columns cs = db.getColumns(cid);
+                r.categories.merge(cs.name, (long) cs.data.size(), Long::sum);
+            } else {
+                r.categories.merge(db.getDataItems((DataItems_ID) id).name, 1L,
+                        Long::sum);
+            }
+        }
+        Columns cs = db.getColumns(Atom_Site.NAME);
+        if (cs != null) {
+            r.add(cs);
+        }
+        return r;
+    }
+
+    /**
+     * Adds the atoms of an atom_site.
+     *
+     * @param cs The atom_site Columns.
+     */
+    private void add(Columns cs) {
+        Column_ID model = cs.name2id.get("pdbx_PDB_model_num");
+        Column_ID chain = cs.name2id.get("auth_asym_id");
+        if (chain == null) {
+            chain = cs.name2id.get("label_asym_id");
+        }
+        Column_ID type = cs.name2id.get("type_symbol");
+        Column_ID[] xyz = {cs.name2id.get("Cartn_x"), cs.name2id.get("Cartn_y"),
+            cs.name2id.get("Cartn_z")};
+        boolean located = xyz[0] != null && xyz[1] != null && xyz[2] != null;
+        long[] u = new long[3];
+        int[] s = new int[3];
+        BigDecimal[] big = new BigDecimal[3];
+        double[] c = new double[3];
+        for (var row : cs.data.values()) {
+            atoms++;
+            models.merge(getString(row, model, "1"), 1L, Long::sum);
+            chains.merge(getString(row, chain, "."), 1L, Long::sum);
+            Element e = elements.computeIfAbsent(getString(row, type, "?"),
+                    k -> new Element());
+            e.count++;
+            if (located && getCoordinates(row, xyz, u, s, big, c)) {
+                e.located++;
+                for (int i = 0; i < 3; i++) {
+                    if (big[i] == null) {
+                        e.add(i, u[i], s[i]);
+                    } else {
+                        e.sums[i] = e.sums[i].add(big[i]);
+                    }
+                    double d = c[i];
+                    if (!(d >= min[i])) {
+                        min[i] = d;
+                    }
+                    if (!(d <= max[i])) {
+                        max[i] = d;
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * @param row The row.
+     * @param cid The column or null.
+     * @param def The default.
+     * @return The value text or def if the column or value is missing.
+     */
+    private static String getString(Map<Column_ID, Value> row, Column_ID cid,
+            String def) {
+        if (cid == null) {
+            return def;
+        }
+        Value v = row.get(cid);
+        return v == null ? def : v.v;
+    }
+
+    /**
+     * Parses coordinates. Plain decimals of up to {@link #DIGITS} digits are
+     * parsed to u and s, and other numbers to big.
+     *
+     * @param row The row.
+     * @param xyz The coordinate columns.
+     * @param u For the unscaled coordinates.
+     * @param s For the scales of u.
+     * @param big For the coordinates that are not in u or null.
+     * @param c For the coordinates.
+     * @return true if all the coordinates are numbers.
+     */
+    private static boolean getCoordinates(Map<Column_ID, Value> row,
+            Column_ID[] xyz, long[] u, int[] s, BigDecimal[] big, double[] c) {
+        for (int i = 0; i < 3; i++) {
+            Value v = row.get(xyz[i]);
+            if (v == null || v.getKind() != Value.BARE) {
+                return false;
+            }
+            if (parse(v.v, u, s, i)) {
+                big[i] = null;
+                c[i] = (double) u[i] / POW10[s[i]];
+            } else {
+                try {
+                    big[i] = new BigDecimal(v.v);
+                } catch (NumberFormatException e) {
+                    return false;
+                }
+                c[i] = big[i].doubleValue();
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @param v The text.
+     * @param u For the unscaled value.
+     * @param s For the scale.
+     * @param i The index of u and s.
+     * @return true if v is a plain decimal of up to {@link #DIGITS} digits
+     * such as "-12.345" and was parsed.
+     */
+    private static boolean parse(String v, long[] u, int[] s, int i) {
+        int n = v.length();
+        int j = 0;
+        boolean negative = false;
+        if (n > 0 && (v.charAt(0) == '-' || v.charAt(0) == '+')) {
+            negative = v.charAt(0) == '-';
+            j++;
+        }
+        long r = 0L;
+        int digits = 0;
+        int scale = -1;
+        for (; j < n; j++) {
+            char c = v.charAt(j);
+            if (c >= '0' && c <= '9') {
+                if (++digits > DIGITS) {
+                    return false;
+                }
+                r = r * 10L + (c - '0');
+                if (scale >= 0) {
+                    scale++;
+                }
+            } else if (c == '.' && scale < 0) {
+                scale = 0;
+            } else {
+                return false;
+            }
+        }
+        if (digits == 0) {
+            return false;
+        }
+        u[i] = negative ? -r : r;
+        s[i] = Math.max(scale, 0);
+        return true;
+    }
+
+    /**
+     * @param elements The element symbols or null for all.
+     * @return The number of located atoms of the elements.
+     */
+    public long getLocated(Set<String> elements) {
+        long r = 0L;
+        for (var e : this.elements.entrySet()) {
+            if (elements == null || elements.contains(e.getKey())) {
+                r += e.getValue().located;
+            }
+        }
+        return r;
+    }
+
+    /**
+     * @param elements The element symbols or null for all.
+     * @return The exact sums of the coordinates of the located atoms of the
+     * elements.
+     */
+    public BigDecimal[] getSums(Set<String> elements) {
+        BigDecimal[] r = {BigDecimal.ZERO, BigDecimal.ZERO, BigDecimal.ZERO};
+        for (var e : this.elements.entrySet()) {
+            if (elements == null || elements.contains(e.getKey())) {
+                for (int i = 0; i < 3; i++) {
+                    r[i] = r[i].add(e.getValue().getSum(i));
+                }
+            }
+        }
+        return r;
+    }
+
+    /**
+     * @param elements The element symbols or null for all.
+     * @return The centroid of the located atoms of the elements or null if
+     * there are none.
+     */
+    public double[] getCentroid(Set<String> elements) {
+        long n = getLocated(elements);
+        if (n == 0L) {
+            return null;
+        }
+        BigDecimal[] s = getSums(elements);
+        return new double[]{s[0].doubleValue() / n, s[1].doubleValue() / n,
+            s[2].doubleValue() / n};
+    }
+
+    /**
+     * @param cif The path of a CIF file.
+     * @return The path of the sidecar of cif.
+     */
+    public static Path getSidecar(Path cif) {
+        return cif.resolveSibling(cif.getFileName().toString() + EXT);
+    }
+
+    /**
+     * Writes this to a file via a temporary file so that a reader never sees
+     * a partial summary.
+     *
+     * @param p The path of the file.
+     * @throws IOException If encountered.
+     */
+    public void write(Path p) throws IOException {
+        Path tmp = p.resolveSibling(p.getFileName().toString() + ".part");
+        try (PrintWriter pw = new PrintWriter(Files.newBufferedWriter(tmp))) {
+            pw.println("atoms " + atoms);
+            models.forEach((k, v) -> pw.println("model " + k + " " + v));
+            chains.forEach((k, v) -> pw.println("chain " + k + " " + v));
+            pw.println("min " + min[0] + " " + min[1] + " " + min[2]);
+            pw.println("max " + max[0] + " " + max[1] + " " + max[2]);
+            elements.forEach((k, e) -> pw.println("element " + k + " "
+                    + e.count + " " + e.located + " "
+                    + e.getSum(0).toPlainString() + " "
+                    + e.getSum(1).toPlainString() + " "
+                    + e.getSum(2).toPlainString()));
+            categories.forEach((k, v) -> pw.println("category " + k + " " + v));
+        }
+        Files.move(tmp, p, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    /**
+     * Reads what {@link #write(Path)} wrote.
+     *
+     * @param p The path of the file.
+     * @return The summary.
+     * @throws IOException If p cannot be read or is not a summary.
+     */
+    public static Mol_CifSummary read(Path p) throws IOException {
+        Mol_CifSummary r = new Mol_CifSummary();
+        try (BufferedReader br = Files.newBufferedReader(p)) {
+            for (String line = br.readLine(); line != null;
+                    line = br.readLine()) {
+                String[] s = line.split(" ");
+                switch (s[0]) {
+                    case "atoms" ->
+                        r.atoms = Long.parseLong(s[1]);
+                    case "model" ->
+                        r.models.put(s[1], Long.valueOf(s[2]));
+                    case "chain" ->
+                        r.chains.put(s[1], Long.valueOf(s[2]));
+                    case "min", "max" -> {
+                        double[] m = s[0].equals("min") ? r.min : r.max;
+                        for (int i = 0; i < 3; i++) {
+                            m[i] = Double.parseDouble(s[i + 1]);
+                        }
+                    }
+                    case "element" -> {
+                        Element e = new Element();
+                        e.count = Long.parseLong(s[2]);
+                        e.located = Long.parseLong(s[3]);
+                        for (int i = 0; i < 3; i++) {
+                            e.sums[i] = new BigDecimal(s[i + 4]);
+                        }
+                        r.elements.put(s[1], e);
+                    }
+                    case "category" ->
+                        r.categories.put(s[1], Long.valueOf(s[2]));
+                    default ->
+                        throw new IOException("Unrecognised line " + line);
+                }
+            }
+        } catch (RuntimeException e) {
+            throw new IOException("Not a summary " + p, e);
+        }
+        return r;
+    }
+
+    /**
+     * Gets the summary of a CIF file from its sidecar or, if there is no
+     * sidecar or it is older than the file, reads the file and writes the
+     * sidecar.
+     *
+     * @param cif The path of the CIF file.
+     * @param reader The reader.
+     * @return The summary.
+     * @throws Exception If the file cannot be read.
+     */
+    public static Mol_CifSummary get(Path cif, Mol_TextCifReader reader)
+            throws Exception {
+        Path p = getSidecar(cif);
+        if (Files.exists(p) && Files.getLastModifiedTime(p).compareTo(
+                Files.getLastModifiedTime(cif)) >= 0) {
+            try {
+                return read(p);
+            } catch (IOException e) {
+                // Rewrite it.
+            }
+        }
+        Mol_CifSummary r = reader.getCif(cif).summary;
+        r.write(p);
+        return r;
+    }
+
+    @Override
+    public String toString() {
+        return getClass().getSimpleName() + "(atoms=" + atoms + ", models="
+                + models.size() + ", chains=" + chains.size() + ", min="
+                + Arrays.toString(min) + ", max=" + Arrays.toString(max)
+                + ", elements=" + elements.size() + ", categories="
+                + categories.size() + ")";
+    }
+}
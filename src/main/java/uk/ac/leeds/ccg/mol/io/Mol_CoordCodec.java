@@ -0,0 +1,551 @@
+/*
+ * Copyright 2025 University of Leeds.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.ac.leeds.ccg.mol.io;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.BitSet;
+import uk.ac.leeds.ccg.mol.data.cif.Column;
+import uk.ac.leeds.ccg.mol.data.cif.Column_Double;
+import uk.ac.leeds.ccg.mol.data.cif.Column_ID;
+import uk.ac.leeds.ccg.mol.data.cif.Columns;
+import uk.ac.leeds.ccg.mol.data.cif.Row_ID;
+import uk.ac.leeds.ccg.mol.data.cif.Value;
+
+/**
+ * A compact encoding of atom_site coordinates, B factors and occupancies for
+ * archiving. Coordinates are rounded to {@link #SCALE} (0.001 Angstrom, the
+ * precision of mmCIF files) and B factors and occupancies to
+ * {@link #SCALE_B}. The atoms are split into blocks of {@link #BLOCK} which
+ * can be decoded one at a time. In a block, each coordinate is written as the
+ * difference from the previous atom, which for atoms in chain order is
+ * mostly less than 8 Angstrom and so takes two bytes as a zig-zag varint. B
+ * factors and occupancies are written as runs of equal values since
+ * occupancies and often B factors are the same for many atoms in a row.
+ *
+ * Values in a coordinate text with no more than 3 decimal places are decoded
+ * to the same double as parsing the text, so the text is restored if the
+ * decoded values are set with {@link #setValues(Columns, Coords)}.
+ *
+ * @author Andy Turner
+ */
+public class Mol_CoordCodec {
+
+    /**
+     * The version of the encoding.
+     */
+    public static final int VERSION = 1;
+
+    /**
+     * The number of atoms in a block.
+     */
+    public static final int BLOCK = 4096;
+
+    /**
+     * The number of coordinate quanta per Angstrom.
+     */
+    public static final double SCALE = 1000d;
+
+    /**
+     * The number of B factor and occupancy quanta per unit.
+     */
+    public static final double SCALE_B = 100d;
+
+    /**
+     * Flag for B factors being encoded.
+     */
+    protected static final int HAS_B = 1;
+
+    /**
+     * Flag for occupancies being encoded.
+     */
+    protected static final int HAS_OCCUPANCY = 2;
+
+    /**
+     * The run code for an inapplicable value. Values are coded as the zig-zag
+     * of the quantized value plus 2.
+     */
+    protected static final long INAPPLICABLE = 0L;
+
+    /**
+     * The run code for an unknown value.
+     */
+    protected static final long UNKNOWN = 1L;
+
+    /**
+     * Decoded coordinates, B factors and occupancies.
+     */
+    public static class Coords {
+
+        /**
+         * The coordinates as double[3][n].
+         */
+        public final double[][] coords;
+
+        /**
+         * The B factors or null.
+         */
+        public final Column_Double b;
+
+        /**
+         * The occupancies or null.
+         */
+        public final Column_Double occupancy;
+
+        /**
+         * Create a new instance.
+         *
+         * @param coords What {@link #coords} is set to.
+         * @param b What {@link #b} is set to.
+         * @param occupancy What {@link #occupancy} is set to.
+         */
+        public Coords(double[][] coords, Column_Double b,
+                Column_Double occupancy) {
+            this.coords = coords;
+            this.b = b;
+            this.occupancy = occupancy;
+        }
+    }
+
+    private Mol_CoordCodec() {
+    }
+
+    /**
+     * @param atomSite The atom_site Columns.
+     * @return The encoding of the Cartn_x, Cartn_y and Cartn_z columns and,
+     * if there are any, the B_iso_or_equiv and occupancy columns.
+     * @throws IOException If encountered.
+     * @throws IllegalArgumentException If a coordinate is missing ('?' or
+     * '.') or is not a number. Unlike B factors and occupancies, coordinates
+     * have no codes for missing values.
+     */
+    public static byte[] encode(Columns atomSite) throws IOException {
+        double[][] coords = new double[3][];
+        coords[0] = atomSite.getColumnDouble("Cartn_x").values;
+        coords[1] = atomSite.getColumnDouble("Cartn_y").values;
+        coords[2] = atomSite.getColumnDouble("Cartn_z").values;
+        return encode(coords, atomSite.getColumnDouble("B_iso_or_equiv"),
+                atomSite.getColumnDouble("occupancy"));
+    }
+
+    /**
+     * @param coords The coordinates as double[3][n].
+     * @param b The B factors or null.
+     * @param occupancy The occupancies or null.
+     * @return The encoding.
+     * @throws IOException If encountered.
+     */
+    public static byte[] encode(double[][] coords, Column_Double b,
+            Column_Double occupancy) throws IOException {
+        int n = coords[0].length;
+        ByteArrayOutputStream baos = new ByteArrayOutputStream(n * 7 + 16);
+        try (DataOutputStream out = new DataOutputStream(baos)) {
+            encode(coords, b, occupancy, out);
+        }
+        return baos.toByteArray();
+    }
+
+    /**
+     * @param coords The coordinates as double[3][n].
+     * @param b The B factors or null.
+     * @param occupancy The occupancies or null.
+     * @param out The output.
+     * @throws IOException If encountered.
+     * @throws IllegalArgumentException If a coordinate is not finite or a
+     * column has a different length.
+     */
+    public static void encode(double[][] coords, Column_Double b,
+            Column_Double occupancy, DataOutputStream out) throws IOException {
+        int n = coords[0].length;
+        if (coords[1].length != n || coords[2].length != n
+                || (b != null && b.size() != n)
+                || (occupancy != null && occupancy.size() != n)) {
+            throw new IllegalArgumentException("Lengths differ");
+        }
+        Mol_CifCodec.writeVarint(out, VERSION);
+        Mol_CifCodec.writeVarint(out, n);
+        Mol_CifCodec.writeVarint(out, BLOCK);
+        out.writeByte((b == null ? 0 : HAS_B)
+                | (occupancy == null ? 0 : HAS_OCCUPANCY));
+        long[] codes = new long[Math.min(n, BLOCK)];
+        for (int start = 0; start < n; start += BLOCK) {
+            int end = Math.min(n, start + BLOCK);
+            for (double[] c : coords) {
+                long prev = 0L;
+                for (int i = start; i < end; i++) {
+                    long q = quantize(c[i], SCALE);
+                    Mol_CifCodec.writeVarlong(out, Mol_CifCodec.zigzag(q - prev));
+                    prev = q;
+                }
+            }
+            if (b != null) {
+                writeRuns(b, start, end, codes, out);
+            }
+            if (occupancy != null) {
+                writeRuns(occupancy, start, end, codes, out);
+            }
+        }
+    }
+
+    /**
+     * @param x The value.
+     * @param scale The number of quanta per unit.
+     * @return x in quanta.
+     * @throws IllegalArgumentException If x is not finite.
+     */
+    protected static long quantize(double x, double scale) {
+        if (!Double.isFinite(x)) {
+            throw new IllegalArgumentException("Not finite " + x);
+        }
+        return Math.round(x * scale);
+    }
+
+    /**
+     * Writes the number of runs and then for each run the code and length.
+     *
+     * @param c The column.
+     * @param start The first row.
+     * @param end One after the last row.
+     * @param codes For the codes.
+     * @param out The output.
+     * @throws IOException If encountered.
+     */
+    protected static void writeRuns(Column_Double c, int start, int end,
+            long[] codes, DataOutputStream out) throws IOException {
+        int m = end - start;
+        int runs = 0;
+        for (int i = 0; i < m; i++) {
+            int r = start + i;
+            if (c.isValid(r)) {
+                codes[i] = Mol_CifCodec.zigzag(quantize(c.values[r], SCALE_B))
+                        + 2L;
+            } else {
+                codes[i] = c.getKind(r) == Value.UNKNOWN ? UNKNOWN
+                        : INAPPLICABLE;
+            }
+            if (i == 0 || codes[i] != codes[i - 1]) {
+                runs++;
+            }
+        }
+        Mol_CifCodec.writeVarint(out, runs);
+        int i = 0;
+        while (i < m) {
+            int j = i + 1;
+            while (j < m && codes[j] == codes[i]) {
+                j++;
+            }
+            Mol_CifCodec.writeVarlong(out, codes[i]);
+            Mol_CifCodec.writeVarint(out, j - i);
+            i = j;
+        }
+    }
+
+    /**
+     * Decodes all the blocks.
+     *
+     * @param bb The encoding from the current position.
+     * @return The coordinates, B factors and occupancies.
+     */
+    public static Coords decode(ByteBuffer bb) {
+        Decoder d = new Decoder(bb);
+        double[][] coords = new double[3][d.n];
+        Column_Double b = d.hasB ? newColumn("B_iso_or_equiv", d.n) : null;
+        Column_Double occupancy = d.hasOccupancy
+                ? newColumn("occupancy", d.n) : null;
+        int start = 0;
+        for (int m = d.next(); m > 0; m = d.next()) {
+            System.arraycopy(d.x, 0, coords[0], start, m);
+            System.arraycopy(d.y, 0, coords[1], start, m);
+            System.arraycopy(d.z, 0, coords[2], start, m);
+            if (b != null) {
+                copy(d.b, d.bKinds, b, start, m);
+            }
+            if (occupancy != null) {
+                copy(d.occupancy, d.occupancyKinds, occupancy, start, m);
+            }
+            start += m;
+        }
+        return new Coords(coords, b, occupancy);
+    }
+
+    private static Column_Double newColumn(String name, int n) {
+        return new Column_Double(name, new double[n], new BitSet(n),
+                new BitSet(n));
+    }
+
+    private static void copy(double[] vs, byte[] kinds, Column_Double c,
+            int start, int m) {
+        for (int i = 0; i < m; i++) {
+            if (kinds[i] == Value.BARE) {
+                c.setValue(start + i, vs[i]);
+            } else {
+                c.setMissing(start + i, kinds[i]);
+            }
+        }
+    }
+
+    /**
+     * Sets the coordinates, B factors and occupancies of an atom_site
+     * Columns. Values that are unchanged keep their text and changed values
+     * are written with 3 decimal places for coordinates and 2 for B factors
+     * and occupancies.
+     *
+     * @param atomSite The atom_site Columns with the same rows as were
+     * encoded.
+     * @param c The decoded values.
+     */
+    public static void setValues(Columns atomSite, Coords c) {
+        String[] names = {"Cartn_x", "Cartn_y", "Cartn_z"};
+        for (int d = 0; d < 3; d++) {
+            int n = c.coords[d].length;
+            BitSet valid = new BitSet(n);
+            valid.set(0, n);
+            setValues(atomSite, new Column_Double(names[d], c.coords[d], valid,
+                    new BitSet(n)), SCALE, 3);
+        }
+        if (c.b != null) {
+            setValues(atomSite, c.b, SCALE_B, 2);
+        }
+        if (c.occupancy != null) {
+            setValues(atomSite, c.occupancy, SCALE_B, 2);
+        }
+    }
+
+    /**
+     * @param atomSite The atom_site Columns.
+     * @param c The values.
+     * @param scale The number of quanta per unit.
+     * @param dp The number of decimal places to write changed values with.
+     */
+    private static void setValues(Columns atomSite, Column_Double c,
+            double scale, int dp) {
+        Column_ID cid = atomSite.name2id.get(c.name);
+        Column column = atomSite.getColumn(cid);
+        int i = 0;
+        for (Row_ID rid : atomSite.data.keySet()) {
+            Value old = column.getValue(rid);
+            Value v;
+            if (c.isValid(i)) {
+                if (!old.isMissing() && old.getDouble() == c.values[i]) {
+                    v = old;
+                } else {
+                    v = new Value(Mol_CifCodec.toString(
+                            quantize(c.values[i], scale), dp), Value.BARE);
+                }
+            } else {
+                v = old.getKind() == c.getKind(i) ? old : c.getValue(i);
+            }
+            if (v != old) {
+                atomSite.setValue(rid, cid, v);
+            }
+            i++;
+        }
+    }
+
+    /**
+     * Decodes a block at a time into arrays that are reused, so that a large
+     * encoding can be processed without decoding it all into memory. The
+     * varints are read into a long array and then converted to doubles in a
+     * separate loop that the JIT compiler can vectorise.
+     *
+     * For example:
+     * <pre>
+     * Decoder d = new Decoder(bb);
+     * for (int m = d.next(); m &gt; 0; m = d.next()) {
+     *     for (int i = 0; i &lt; m; i++) {
+     *         sum += d.x[i];
+     *     }
+     * }
+     * </pre>
+     */
+    public static class Decoder {
+
+        /**
+         * The number of atoms.
+         */
+        public final int n;
+
+        /**
+         * The number of atoms in a block.
+         */
+        public final int blockSize;
+
+        /**
+         * Whether there are B factors.
+         */
+        public final boolean hasB;
+
+        /**
+         * Whether there are occupancies.
+         */
+        public final boolean hasOccupancy;
+
+        /**
+         * The x coordinates of the current block.
+         */
+        public final double[] x;
+
+        /**
+         * The y coordinates of the current block.
+         */
+        public final double[] y;
+
+        /**
+         * The z coordinates of the current block.
+         */
+        public final double[] z;
+
+        /**
+         * The B factors of the current block, NaN if missing.
+         */
+        public final double[] b;
+
+        /**
+         * The kinds of {@link #b}: {@link Value#BARE},
+         * {@link Value#INAPPLICABLE} or {@link Value#UNKNOWN}.
+         */
+        public final byte[] bKinds;
+
+        /**
+         * The occupancies of the current block, NaN if missing.
+         */
+        public final double[] occupancy;
+
+        /**
+         * The kinds of {@link #occupancy}.
+         */
+        public final byte[] occupancyKinds;
+
+        /**
+         * The encoding.
+         */
+        private final ByteBuffer bb;
+
+        /**
+         * For the quantized values.
+         */
+        private final long[] q;
+
+        /**
+         * The number of atoms decoded.
+         */
+        private int decoded;
+
+        /**
+         * Create a new instance and read the header.
+         *
+         * @param bb The encoding from the current position.
+         * @throws IllegalArgumentException If the version is not
+         * {@link #VERSION}.
+         */
+        public Decoder(ByteBuffer bb) {
+            this.bb = bb;
+            int version = Mol_CifCodec.readVarint(bb);
+            if (version != VERSION) {
+                throw new IllegalArgumentException("Version " + version
+                        + " not " + VERSION);
+            }
+            n = Mol_CifCodec.readVarint(bb);
+            blockSize = Mol_CifCodec.readVarint(bb);
+            int flags = bb.get();
+            hasB = (flags & HAS_B) != 0;
+            hasOccupancy = (flags & HAS_OCCUPANCY) != 0;
+            int m = Math.min(n, blockSize);
+            x = new double[m];
+            y = new double[m];
+            z = new double[m];
+            b = hasB ? new double[m] : null;
+            bKinds = hasB ? new byte[m] : null;
+            occupancy = hasOccupancy ? new double[m] : null;
+            occupancyKinds = hasOccupancy ? new byte[m] : null;
+            q = new long[m];
+        }
+
+        /**
+         * Decodes the next block.
+         *
+         * @return The number of atoms in the block or 0 if there are no more.
+         */
+        public int next() {
+            int m = Math.min(blockSize, n - decoded);
+            if (m <= 0) {
+                return 0;
+            }
+            readDeltas(x, m);
+            readDeltas(y, m);
+            readDeltas(z, m);
+            if (hasB) {
+                readRuns(b, bKinds, m);
+            }
+            if (hasOccupancy) {
+                readRuns(occupancy, occupancyKinds, m);
+            }
+            decoded += m;
+            return m;
+        }
+
+        /**
+         * @return The number of atoms decoded.
+         */
+        public int getDecoded() {
+            return decoded;
+        }
+
+        private void readDeltas(double[] to, int m) {
+            long p = 0L;
+            for (int i = 0; i < m; i++) {
+                p += Mol_CifCodec.unzigzag(Mol_CifCodec.readVarlong(bb));
+                q[i] = p;
+            }
+            for (int i = 0; i < m; i++) {
+                to[i] = q[i] / SCALE;
+            }
+        }
+
+        private void readRuns(double[] to, byte[] kinds, int m) {
+            int runs = Mol_CifCodec.readVarint(bb);
+            int i = 0;
+            for (int r = 0; r < runs; r++) {
+                long code = Mol_CifCodec.readVarlong(bb);
+                int len = Mol_CifCodec.readVarint(bb);
+                if (i + len > m) {
+                    throw new IllegalArgumentException("Run too long");
+                }
+                double v;
+                byte kind;
+                if (code == INAPPLICABLE) {
+                    v = Double.NaN;
+                    kind = Value.INAPPLICABLE;
+                } else if (code == UNKNOWN) {
+                    v = Double.NaN;
+                    kind = Value.UNKNOWN;
+                } else {
+                    v = Mol_CifCodec.unzigzag(code - 2L) / SCALE_B;
+                    kind = Value.BARE;
+                }
+                Arrays.fill(to, i, i + len, v);
+                Arrays.fill(kinds, i, i + len, kind);
+                i += len;
+            }
+            if (i != m) {
+                throw new IllegalArgumentException("Runs too short");
+            }
+        }
+    }
+}
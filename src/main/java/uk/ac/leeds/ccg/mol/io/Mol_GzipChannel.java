@@ -0,0 +1,259 @@
+/*
+ * Copyright 2025 University of Leeds.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.ac.leeds.ccg.mol.io;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * A channel that gzip compresses what is written to it. Input is cut into
+ * blocks and each block is compressed into a complete gzip member, so blocks
+ * can be compressed in parallel (as pigz does). Concatenated members are a
+ * valid gzip file which gunzip and java.util.zip.GZIPInputStream read as the
+ * concatenation of the blocks.
+ *
+ * @author Andy Turner
+ */
+public class Mol_GzipChannel implements WritableByteChannel {
+
+    /**
+     * The default block size.
+     */
+    public static int BLOCK_SIZE = 1 << 20;
+
+    /**
+     * The channel written to.
+     */
+    protected final WritableByteChannel channel;
+
+    /**
+     * For compressing blocks in parallel. If null, blocks are compressed by
+     * the calling thread.
+     */
+    protected final ExecutorService executor;
+
+    /**
+     * The compression level.
+     */
+    protected final int level;
+
+    /**
+     * The maximum number of blocks being compressed or waiting to be
+     * written.
+     */
+    protected final int blocksInFlightMax;
+
+    /**
+     * The blocks being compressed in order.
+     */
+    protected final ArrayDeque<Future<byte[]>> inFlight;
+
+    /**
+     * The block being filled.
+     */
+    protected byte[] block;
+
+    /**
+     * The number of bytes in {@link #block}.
+     */
+    protected int pos;
+
+    /**
+     * Whether any member has been written.
+     */
+    protected boolean written;
+
+    /**
+     * Whether this is open.
+     */
+    protected boolean open;
+
+    /**
+     * Create a new instance.
+     *
+     * @param channel What {@link #channel} is set to.
+     * @param executor What {@link #executor} is set to.
+     */
+    public Mol_GzipChannel(WritableByteChannel channel, ExecutorService executor) {
+        this(channel, executor, Deflater.DEFAULT_COMPRESSION, BLOCK_SIZE);
+    }
+
+    /**
+     * Create a new instance.
+     *
+     * @param channel What {@link #channel} is set to.
+     * @param executor What {@link #executor} is set to.
+     * @param level What {@link #level} is set to.
+     * @param blockSize The block size.
+     */
+    public Mol_GzipChannel(WritableByteChannel channel, ExecutorService executor,
+            int level, int blockSize) {
+        this.channel = channel;
+        this.executor = executor;
+        this.level = level;
+        this.blocksInFlightMax = 2 * Runtime.getRuntime().availableProcessors();
+        this.inFlight = new ArrayDeque<>();
+        this.block = new byte[blockSize];
+        this.open = true;
+    }
+
+    @Override
+    public int write(ByteBuffer src) throws IOException {
+        int r = src.remaining();
+        while (src.hasRemaining()) {
+            int n = Math.min(src.remaining(), block.length - pos);
+            src.get(block, pos, n);
+            pos += n;
+            if (pos == block.length) {
+                submit();
+            }
+        }
+        return r;
+    }
+
+    /**
+     * Submits {@link #block} for compression and writes out the oldest
+     * compressed blocks if too many are in flight.
+     *
+     * @throws IOException If encountered.
+     */
+    protected void submit() throws IOException {
+        byte[] b = block;
+        int n = pos;
+        if (executor == null) {
+            writeMember(compress(b, n, level));
+        } else {
+            while (inFlight.size() >= blocksInFlightMax) {
+                writeMember(get(inFlight.poll()));
+            }
+            inFlight.add(executor.submit(() -> compress(b, n, level)));
+            block = new byte[b.length];
+        }
+        pos = 0;
+    }
+
+    /**
+     * @param f A block being compressed.
+     * @return The compressed block.
+     * @throws IOException If compression failed.
+     */
+    private static byte[] get(Future<byte[]> f) throws IOException {
+        try {
+            return f.get();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException(ex.getMessage());
+        } catch (ExecutionException ex) {
+            throw new IOException(ex.getCause());
+        }
+    }
+
+    /**
+     * @param member A gzip member.
+     * @throws IOException If encountered.
+     */
+    protected void writeMember(byte[] member) throws IOException {
+        ByteBuffer bb = ByteBuffer.wrap(member);
+        while (bb.hasRemaining()) {
+            channel.write(bb);
+        }
+        written = true;
+    }
+
+    /**
+     * Compresses b into a gzip member.
+     *
+     * @param b The bytes.
+     * @param n The number of bytes of b to compress.
+     * @param level The compression level.
+     * @return The gzip member.
+     */
+    public static byte[] compress(byte[] b, int n, int level) {
+        Deflater d = new Deflater(level, true);
+        try {
+            d.setInput(b, 0, n);
+            d.finish();
+            byte[] r = new byte[n + (n >>> 3) + 64];
+            // Header: magic, deflate, no flags, no time, no extra flags, OS
+            // unknown.
+            r[0] = (byte) 0x1f;
+            r[1] = (byte) 0x8b;
+            r[2] = 8;
+            r[9] = (byte) 0xff;
+            int len = 10;
+            while (!d.finished()) {
+                if (len == r.length) {
+                    r = Arrays.copyOf(r, r.length * 2);
+                }
+                len += d.deflate(r, len, r.length - len);
+            }
+            CRC32 crc = new CRC32();
+            crc.update(b, 0, n);
+            r = Arrays.copyOf(r, len + 8);
+            putIntLE(r, len, (int) crc.getValue());
+            putIntLE(r, len + 4, n);
+            return r;
+        } finally {
+            d.end();
+        }
+    }
+
+    private static void putIntLE(byte[] b, int i, int v) {
+        b[i] = (byte) v;
+        b[i + 1] = (byte) (v >>> 8);
+        b[i + 2] = (byte) (v >>> 16);
+        b[i + 3] = (byte) (v >>> 24);
+    }
+
+    @Override
+    public boolean isOpen() {
+        return open;
+    }
+
+    /**
+     * Compresses any remaining input, writes all members and closes
+     * {@link #channel}.
+     *
+     * @throws IOException If encountered.
+     */
+    @Override
+    public void close() throws IOException {
+        if (!open) {
+            return;
+        }
+        open = false;
+        try {
+            if (pos > 0 || (!written && inFlight.isEmpty())) {
+                submit();
+            }
+            while (!inFlight.isEmpty()) {
+                writeMember(get(inFlight.poll()));
+            }
+        } finally {
+            inFlight.forEach(f -> f.cancel(true));
+            channel.close();
+        }
+    }
+}
@@ -0,0 +1,865 @@
+/*
+ * Copyright 2025 University of Leeds.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.ac.leeds.ccg.mol.io;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.zip.Deflater;
+
+/**
+ * For generating synthetic mmCIF files like those of ribosomes for tests
+ * and benchmarks without downloading data. The files have the categories of
+ * files such as 4ug0 and 6xu8: entry, database_2, pdbx_database_status,
+ * audit_author, citation, entity, entity_poly with the sequences in text
+ * fields, entity_poly_seq, struct_asym, chem_comp, atom_type, exptl,
+ * em_3d_reconstruction, struct, struct_keywords, struct_ref,
+ * pdbx_struct_assembly, pdbx_struct_assembly_gen, pdbx_struct_oper_list,
+ * struct_conf (helices of the protein chains), struct_conn (hydrogen bonds
+ * pairing the residues of each RNA chain from its ends inwards),
+ * pdbx_poly_seq_scheme and atom_site. Values include quoted strings, text
+ * fields and the '.' and '?' markers.
+ *
+ * Each entity is a chain of RNA or protein residues with the heavy atoms of
+ * the residue. The residues follow a random walk around a centre for the
+ * chain and the chain centres are spread over a sphere. The output only
+ * depends on the parameters and the seed.
+ *
+ * The text is formatted into a byte buffer without String formatting so
+ * that large files can be written at about the speed of the disk.
+ *
+ * For example:
+ * <pre>
+ * Mol_SyntheticCifGenerator.ofAtoms("SYN1", 1_000_000, 1L)
+ *     .write(Paths.get("syn1.cif.gz"));
+ * </pre>
+ *
+ * @author Andy Turner
+ */
+public class Mol_SyntheticCifGenerator {
+
+    /**
+     * The RNA residues.
+     */
+    static final String[] RNA = {"A", "C", "G", "U"};
+
+    /**
+     * The protein residues.
+     */
+    static final String[] PROTEIN = {"ALA", "ARG", "ASP", "GLU", "GLY", "ILE",
+        "LEU", "LYS", "PHE", "PRO", "SER", "THR", "VAL"};
+
+    /**
+     * The one letter codes of {@link #PROTEIN}.
+     */
+    static final String PROTEIN_CODES = "ARDEGILKFPSTV";
+
+    /**
+     * The RNA backbone atoms.
+     */
+    static final String[] RNA_BACKBONE = {"P", "OP1", "OP2", "O5'", "C5'",
+        "C4'", "O4'", "C3'", "O3'", "C2'", "O2'", "C1'"};
+
+    /**
+     * The base atoms of each of {@link #RNA}.
+     */
+    static final String[][] RNA_BASES = {
+        {"N9", "C8", "N7", "C5", "C6", "N6", "N1", "C2", "N3", "C4"},
+        {"N1", "C2", "O2", "N3", "C4", "N4", "C5", "C6"},
+        {"N9", "C8", "N7", "C5", "C6", "O6", "N1", "C2", "N2", "N3", "C4"},
+        {"N1", "C2", "O2", "N3", "C4", "O4", "C5", "C6"}};
+
+    /**
+     * The protein backbone atoms.
+     */
+    static final String[] PROTEIN_BACKBONE = {"N", "CA", "C", "O"};
+
+    /**
+     * The side chain atoms of each of {@link #PROTEIN}.
+     */
+    static final String[][] PROTEIN_SIDE_CHAINS = {{"CB"},
+        {"CB", "CG", "CD", "NE", "CZ", "NH1", "NH2"},
+        {"CB", "CG", "OD1", "OD2"}, {"CB", "CG", "CD", "OE1", "OE2"}, {},
+        {"CB", "CG1", "CG2", "CD1"}, {"CB", "CG", "CD1", "CD2"},
+        {"CB", "CG", "CD", "CE", "NZ"},
+        {"CB", "CG", "CD1", "CD2", "CE1", "CE2", "CZ"}, {"CB", "CG", "CD"},
+        {"CB", "OG"}, {"CB", "OG1", "CG2"}, {"CB", "CG1", "CG2"}};
+
+    /**
+     * The chem_comp rows for {@link #RNA} then {@link #PROTEIN}.
+     */
+    static final String[] CHEM_COMP = {
+        "A 'RNA linking' y \"ADENOSINE-5'-MONOPHOSPHATE\" 'C10 H14 N5 O7 P' 347.221",
+        "C 'RNA linking' y \"CYTIDINE-5'-MONOPHOSPHATE\" 'C9 H14 N3 O8 P' 323.197",
+        "G 'RNA linking' y \"GUANOSINE-5'-MONOPHOSPHATE\" 'C10 H14 N5 O8 P' 363.221",
+        "U 'RNA linking' y \"URIDINE-5'-MONOPHOSPHATE\" 'C9 H13 N2 O9 P' 324.181",
+        "ALA 'L-peptide linking' y ALANINE 'C3 H7 N O2' 89.093",
+        "ARG 'L-peptide linking' y ARGININE 'C6 H15 N4 O2 1' 175.209",
+        "ASP 'L-peptide linking' y 'ASPARTIC ACID' 'C4 H7 N O4' 133.103",
+        "GLU 'L-peptide linking' y 'GLUTAMIC ACID' 'C5 H9 N O4' 147.129",
+        "GLY 'peptide linking' y GLYCINE 'C2 H5 N O2' 75.067",
+        "ILE 'L-peptide linking' y ISOLEUCINE 'C6 H13 N O2' 131.173",
+        "LEU 'L-peptide linking' y LEUCINE 'C6 H13 N O2' 131.173",
+        "LYS 'L-peptide linking' y LYSINE 'C6 H15 N2 O2 1' 147.195",
+        "PHE 'L-peptide linking' y PHENYLALANINE 'C9 H11 N O2' 165.189",
+        "PRO 'L-peptide linking' y PROLINE 'C5 H9 N O2' 115.130",
+        "SER 'L-peptide linking' y SERINE 'C3 H7 N O3' 105.093",
+        "THR 'L-peptide linking' y THREONINE 'C4 H9 N O3' 119.119",
+        "VAL 'L-peptide linking' y VALINE 'C5 H11 N O2' 117.146"};
+
+    /**
+     * The descriptions of the first RNA entities.
+     */
+    static final String[] RNA_NAMES = {"28S ribosomal RNA",
+        "18S ribosomal RNA", "5.8S ribosomal RNA", "5S ribosomal RNA"};
+
+    /**
+     * The average number of atoms of an RNA residue.
+     */
+    static final double RNA_ATOMS = 21.25;
+
+    /**
+     * The average number of atoms of a protein residue.
+     */
+    static final double PROTEIN_ATOMS = 7.7;
+
+    /**
+     * The entry ID.
+     */
+    public final String id;
+
+    /**
+     * The number of RNA chains.
+     */
+    public final int rnaChains;
+
+    /**
+     * The number of residues in each RNA chain.
+     */
+    public final int rnaResidues;
+
+    /**
+     * The number of protein chains.
+     */
+    public final int proteinChains;
+
+    /**
+     * The number of residues in each protein chain.
+     */
+    public final int proteinResidues;
+
+    /**
+     * The maximum number of atoms. The atom_site loop ends when this is
+     * reached and the remaining residues have no atoms.
+     */
+    public final long atomsMax;
+
+    /**
+     * The seed.
+     */
+    public final long seed;
+
+    /**
+     * The output.
+     */
+    private OutputStream out;
+
+    /**
+     * The buffer.
+     */
+    private byte[] buf;
+
+    /**
+     * The number of bytes in {@link #buf}.
+     */
+    private int pos;
+
+    /**
+     * Create a new instance.
+     *
+     * @param id What {@link #id} is set to.
+     * @param rnaChains What {@link #rnaChains} is set to.
+     * @param rnaResidues What {@link #rnaResidues} is set to.
+     * @param proteinChains What {@link #proteinChains} is set to.
+     * @param proteinResidues What {@link #proteinResidues} is set to.
+     * @param atomsMax What {@link #atomsMax} is set to.
+     * @param seed What {@link #seed} is set to.
+     */
+    public Mol_SyntheticCifGenerator(String id, int rnaChains, int rnaResidues,
+            int proteinChains, int proteinResidues, long atomsMax, long seed) {
+        this.id = id;
+        this.rnaChains = rnaChains;
+        this.rnaResidues = rnaResidues;
+        this.proteinChains = proteinChains;
+        this.proteinResidues = proteinResidues;
+        this.atomsMax = atomsMax;
+        this.seed = seed;
+    }
+
+    /**
+     * Creates a generator for a ribosome like structure with a number of
+     * atoms, about 60% of which are in RNA chains of up to 5000 residues
+     * and the rest in protein chains of 150 residues.
+     *
+     * @param id The entry ID.
+     * @param atoms The number of atoms.
+     * @param seed The seed.
+     * @return The generator.
+     */
+    public static Mol_SyntheticCifGenerator ofAtoms(String id, long atoms,
+            long seed) {
+        // 10% more residues than needed on average, then atomsMax trims.
+        long rna = (long) Math.ceil(atoms * 0.6 * 1.1 / RNA_ATOMS);
+        long protein = (long) Math.ceil(atoms * 0.4 * 1.1 / PROTEIN_ATOMS);
+        int rnaChains = (int) Math.max(1L, (rna + 4999L) / 5000L);
+        int proteinChains = (int) Math.max(1L, (protein + 149L) / 150L);
+        return new Mol_SyntheticCifGenerator(id, rnaChains,
+                (int) ((rna + rnaChains - 1) / rnaChains), proteinChains,
+                (int) ((protein + proteinChains - 1) / proteinChains), atoms,
+                seed);
+    }
+
+    /**
+     * Writes to a file which is gzip compressed in parallel (see
+     * {@link Mol_GzipChannel}) if the name ends with ".gz".
+     *
+     * @param p The path of the file.
+     * @return The number of atoms written.
+     * @throws IOException If encountered.
+     */
+    public long write(Path p) throws IOException {
+        FileChannel fc = FileChannel.open(p, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+        if (!p.getFileName().toString().endsWith(".gz")) {
+            try (OutputStream os = Channels.newOutputStream(fc)) {
+                return write(os);
+            }
+        }
+        ExecutorService executor = Executors.newFixedThreadPool(
+                Runtime.getRuntime().availableProcessors());
+        try (OutputStream os = Channels.newOutputStream(new Mol_GzipChannel(fc,
+                executor, Deflater.BEST_SPEED, Mol_GzipChannel.BLOCK_SIZE))) {
+            return write(os);
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    /**
+     * Writes the CIF.
+     *
+     * @param out The output which is not closed.
+     * @return The number of atoms written.
+     * @throws IOException If encountered.
+     */
+    public synchronized long write(OutputStream out) throws IOException {
+        this.out = out;
+        this.buf = new byte[1 << 20];
+        this.pos = 0;
+        try {
+            int[][] seqs = getSequences();
+            writeHeader();
+            writeEntities(seqs);
+            writeMetadata();
+            writeStructure(seqs);
+            writeScheme(seqs);
+            long atoms = writeAtoms(seqs);
+            flush();
+            return atoms;
+        } finally {
+            this.out = null;
+            this.buf = null;
+        }
+    }
+
+    /**
+     * @return The number of chains.
+     */
+    public int getChains() {
+        return rnaChains + proteinChains;
+    }
+
+    /**
+     * @param c The chain index.
+     * @return true if chain c is RNA.
+     */
+    protected boolean isRNA(int c) {
+        return c < rnaChains;
+    }
+
+    /**
+     * @param i The chain index.
+     * @return The label_asym_id: A to Z, then AA, AB and so on.
+     */
+    protected static String getLabel(int i) {
+        String s = String.valueOf((char) ('A' + i % 26));
+        return i < 26 ? s : getLabel(i / 26 - 1) + s;
+    }
+
+    /**
+     * @param c The chain index.
+     * @return The auth_asym_id: R1, R2 and so on for RNA and P1, P2 and so on
+     * for protein.
+     */
+    protected String getAuth(int c) {
+        return isRNA(c) ? "R" + (c + 1) : "P" + (c - rnaChains + 1);
+    }
+
+    /**
+     * @return The residues of each chain as indexes of {@link #RNA} or
+     * {@link #PROTEIN}.
+     */
+    protected int[][] getSequences() {
+        int[][] r = new int[getChains()][];
+        for (int c = 0; c < r.length; c++) {
+            SplittableRandom rand = new SplittableRandom(seed * 31L + c);
+            boolean rna = isRNA(c);
+            r[c] = new int[rna ? rnaResidues : proteinResidues];
+            for (int i = 0; i < r[c].length; i++) {
+                r[c][i] = rand.nextInt(rna ? RNA.length : PROTEIN.length);
+            }
+        }
+        return r;
+    }
+
+    private void writeHeader() throws IOException {
+        put("data_").put(id).eol();
+        put("# ").eol();
+        put("_entry.id ").put(id).eol();
+        put("# ").eol();
+        put("_audit_conform.dict_name mmcif_pdbx.dic").eol();
+        put("_audit_conform.dict_version 5.380").eol();
+        put("_audit_conform.dict_location http://mmcif.pdb.org/dictionaries/ascii/mmcif_pdbx.dic").eol();
+        put("# ").eol();
+        put("loop_").eol();
+        put("_database_2.database_id").eol();
+        put("_database_2.database_code").eol();
+        put("PDB ").put(id).eol();
+        put("WWPDB D_").put(Long.toString(1000000000L + Math.floorMod(seed, 1000000L))).eol();
+        put("# ").eol();
+        put("_pdbx_database_status.status_code REL").eol();
+        put("_pdbx_database_status.entry_id ").put(id).eol();
+        put("_pdbx_database_status.recvd_initial_deposition_date 2020-01-01").eol();
+        put("_pdbx_database_status.SG_entry ?").eol();
+        put("_pdbx_database_status.pdb_format_compatible N").eol();
+        put("# ").eol();
+        put("loop_").eol();
+        put("_audit_author.name").eol();
+        put("_audit_author.pdbx_ordinal").eol();
+        put("'Smith, J.' 1").eol();
+        put("\"O'Neill, A.\" 2").eol();
+        put("'Zhang, X.' 3").eol();
+        put("# ").eol();
+        put("_citation.id primary").eol();
+        put("_citation.title").eol();
+        put(";A synthetic ribosome with ").putLong(rnaChains)
+                .put(" RNA chains and ").putLong(proteinChains).eol();
+        put("protein chains for tests and benchmarks").eol();
+        put(";").eol();
+        put("_citation.journal_abbrev ?").eol();
+        put("_citation.journal_volume ?").eol();
+        put("_citation.year 2020").eol();
+        put("_citation.pdbx_database_id_DOI ?").eol();
+        put("# ").eol();
+    }
+
+    private void writeEntities(int[][] seqs) throws IOException {
+        put("loop_").eol();
+        put("_entity.id").eol();
+        put("_entity.type").eol();
+        put("_entity.src_method").eol();
+        put("_entity.pdbx_description").eol();
+        put("_entity.formula_weight").eol();
+        put("_entity.pdbx_number_of_molecules").eol();
+        put("_entity.pdbx_ec").eol();
+        put("_entity.pdbx_mutation").eol();
+        put("_entity.pdbx_fragment").eol();
+        put("_entity.details").eol();
+        for (int c = 0; c < seqs.length; c++) {
+            putLong(c + 1).put(" polymer nat '").put(getDescription(c))
+                    .put("' ").putFixed(seqs[c].length
+                            * (isRNA(c) ? 330000L : 110000L), 3)
+                    .put(" 1 ? ? ? ?").eol();
+        }
+        put("# ").eol();
+        put("loop_").eol();
+        put("_entity_poly.entity_id").eol();
+        put("_entity_poly.type").eol();
+        put("_entity_poly.nstd_linkage").eol();
+        put("_entity_poly.nstd_monomer").eol();
+        put("_entity_poly.pdbx_seq_one_letter_code").eol();
+        put("_entity_poly.pdbx_seq_one_letter_code_can").eol();
+        put("_entity_poly.pdbx_strand_id").eol();
+        put("_entity_poly.pdbx_target_identifier").eol();
+        for (int c = 0; c < seqs.length; c++) {
+            putLong(c + 1).put(isRNA(c) ? " polyribonucleotide"
+                    : " 'polypeptide(L)'").put(" no no").eol();
+            putSequence(c, seqs[c]);
+            putSequence(c, seqs[c]);
+            put(getAuth(c)).put(" ?").eol();
+        }
+        put("# ").eol();
+        put("loop_").eol();
+        put("_entity_poly_seq.entity_id").eol();
+        put("_entity_poly_seq.num").eol();
+        put("_entity_poly_seq.mon_id").eol();
+        put("_entity_poly_seq.hetero").eol();
+        for (int c = 0; c < seqs.length; c++) {
+            String[] names = isRNA(c) ? RNA : PROTEIN;
+            for (int i = 0; i < seqs[c].length; i++) {
+                putLong(c + 1).put(' ').putLong(i + 1).put(' ')
+                        .put(names[seqs[c][i]]).put(" n").eol();
+            }
+        }
+        put("# ").eol();
+        put("loop_").eol();
+        put("_struct_asym.id").eol();
+        put("_struct_asym.pdbx_blank_PDB_chainid_flag").eol();
+        put("_struct_asym.pdbx_modified").eol();
+        put("_struct_asym.entity_id").eol();
+        put("_struct_asym.details").eol();
+        for (int c = 0; c < seqs.length; c++) {
+            put(getLabel(c)).put(" N N ").putLong(c + 1).put(" ?").eol();
+        }
+        put("# ").eol();
+        put("loop_").eol();
+        put("_chem_comp.id").eol();
+        put("_chem_comp.type").eol();
+        put("_chem_comp.mon_nstd_flag").eol();
+        put("_chem_comp.name").eol();
+        put("_chem_comp.formula").eol();
+        put("_chem_comp.formula_weight").eol();
+        for (String row : CHEM_COMP) {
+            put(row).eol();
+        }
+        put("# ").eol();
+        put("loop_").eol();
+        put("_atom_type.symbol").eol();
+        put("C").eol();
+        put("N").eol();
+        put("O").eol();
+        put("P").eol();
+        put("# ").eol();
+    }
+
+    /**
+     * @param c The chain index.
+     * @return The entity description.
+     */
+    protected String getDescription(int c) {
+        if (isRNA(c)) {
+            return c < RNA_NAMES.length ? RNA_NAMES[c]
+                    : "ribosomal RNA " + (c + 1);
+        }
+        return "60S ribosomal protein L" + (c - rnaChains + 1);
+    }
+
+    /**
+     * Writes a sequence as a text field with lines of up to 80 codes.
+     */
+    private void putSequence(int c, int[] seq) throws IOException {
+        put(';');
+        for (int i = 0; i < seq.length; i++) {
+            if (i > 0 && i % 80 == 0) {
+                eol();
+            }
+            put(isRNA(c) ? RNA[seq[i]].charAt(0)
+                    : PROTEIN_CODES.charAt(seq[i]));
+        }
+        eol();
+        put(';').eol();
+    }
+
+    private void writeMetadata() throws IOException {
+        put("_exptl.entry_id ").put(id).eol();
+        put("_exptl.method 'ELECTRON MICROSCOPY'").eol();
+        put("_exptl.crystals_number ?").eol();
+        put("# ").eol();
+        put("_em_3d_reconstruction.entry_id ").put(id).eol();
+        put("_em_3d_reconstruction.id 1").eol();
+        put("_em_3d_reconstruction.method ?").eol();
+        put("_em_3d_reconstruction.num_particles ")
+                .putLong(100000L + Math.floorMod(seed, 100000L)).eol();
+        put("_em_3d_reconstruction.resolution ")
+                .putFixed(200L + Math.floorMod(seed, 300L), 2).eol();
+        put("_em_3d_reconstruction.resolution_method 'FSC 0.143 CUT-OFF'").eol();
+        put("_em_3d_reconstruction.symmetry_type POINT").eol();
+        put("# ").eol();
+        put("_struct.entry_id ").put(id).eol();
+        put("_struct.title 'Synthetic ribosome, ").putLong(getChains())
+                .put(" chains'").eol();
+        put("_struct.pdbx_descriptor .").eol();
+        put("_struct.pdbx_model_details ?").eol();
+        put("# ").eol();
+        put("_struct_keywords.entry_id ").put(id).eol();
+        put("_struct_keywords.pdbx_keywords RIBOSOME").eol();
+        put("_struct_keywords.text 'RIBOSOME, SYNTHETIC'").eol();
+        put("# ").eol();
+    }
+
+    private void writeStructure(int[][] seqs) throws IOException {
+        put("loop_").eol();
+        for (String item : new String[]{"id", "db_name", "db_code",
+            "pdbx_db_accession", "pdbx_db_isoform", "entity_id",
+            "pdbx_seq_one_letter_code", "pdbx_align_begin"}) {
+            put("_struct_ref.").put(item).eol();
+        }
+        for (int c = 0; c < seqs.length; c++) {
+            putLong(c + 1);
+            if (isRNA(c)) {
+                put(" PDB ").put(id).put(' ').put(id);
+            } else {
+                int p = c - rnaChains + 1;
+                put(" UNP RL").putLong(p).put("_SYNTH P")
+                        .putLong(10000L + p);
+            }
+            put(" ? ").putLong(c + 1).eol();
+            putSequence(c, seqs[c]);
+            put('1').eol();
+        }
+        put("# ").eol();
+        put("_pdbx_struct_assembly.id 1").eol();
+        put("_pdbx_struct_assembly.details author_defined_assembly").eol();
+        put("_pdbx_struct_assembly.method_details ?").eol();
+        put("_pdbx_struct_assembly.oligomeric_details ")
+                .putLong(seqs.length).put("-meric").eol();
+        put("_pdbx_struct_assembly.oligomeric_count ").putLong(seqs.length)
+                .eol();
+        put("# ").eol();
+        put("_pdbx_struct_assembly_gen.assembly_id 1").eol();
+        put("_pdbx_struct_assembly_gen.oper_expression 1").eol();
+        StringBuilder asyms = new StringBuilder();
+        for (int c = 0; c < seqs.length; c++) {
+            asyms.append(c == 0 ? "" : ",").append(getLabel(c));
+        }
+        String item = "_pdbx_struct_assembly_gen.asym_id_list ";
+        if (item.length() + asyms.length() <= 80) {
+            put(item).put(asyms.toString()).eol();
+        } else {
+            put(item.trim()).eol();
+            put(';').put(asyms.toString()).eol();
+            put(';').eol();
+        }
+        put("# ").eol();
+        put("_pdbx_struct_oper_list.id 1").eol();
+        put("_pdbx_struct_oper_list.type 'identity operation'").eol();
+        put("_pdbx_struct_oper_list.name 1_555").eol();
+        put("_pdbx_struct_oper_list.symmetry_operation x,y,z").eol();
+        for (int i = 1; i <= 3; i++) {
+            for (int j = 1; j <= 3; j++) {
+                put("_pdbx_struct_oper_list.matrix[").putLong(i).put("][")
+                        .putLong(j).put(i == j ? "] 1.0000000000"
+                        : "] 0.0000000000").eol();
+            }
+            put("_pdbx_struct_oper_list.vector[").putLong(i)
+                    .put("] 0.0000000000").eol();
+        }
+        put("# ").eol();
+        writeHelices(seqs);
+        writeBasePairs(seqs);
+    }
+
+    /**
+     * Writes struct_conf with a helix of 10 residues starting at every 30th
+     * residue of each protein chain.
+     */
+    private void writeHelices(int[][] seqs) throws IOException {
+        boolean header = false;
+        long n = 0L;
+        for (int c = rnaChains; c < seqs.length; c++) {
+            String label = getLabel(c);
+            String auth = getAuth(c);
+            for (int b = 4; b + 10 <= seqs[c].length; b += 30) {
+                if (!header) {
+                    put("loop_").eol();
+                    for (String item : new String[]{"conf_type_id", "id",
+                        "pdbx_PDB_helix_id", "beg_label_comp_id",
+                        "beg_label_asym_id", "beg_label_seq_id",
+                        "pdbx_beg_PDB_ins_code", "end_label_comp_id",
+                        "end_label_asym_id", "end_label_seq_id",
+                        "pdbx_end_PDB_ins_code", "beg_auth_comp_id",
+                        "beg_auth_asym_id", "beg_auth_seq_id",
+                        "end_auth_comp_id", "end_auth_asym_id",
+                        "end_auth_seq_id", "pdbx_PDB_helix_class", "details",
+                        "pdbx_PDB_helix_length"}) {
+                        put("_struct_conf.").put(item).eol();
+                    }
+                    header = true;
+                }
+                n++;
+                String beg = PROTEIN[seqs[c][b]];
+                String end = PROTEIN[seqs[c][b + 9]];
+                put("HELX_P HELX_P").putLong(n).put(' ').putLong(n).put(' ')
+                        .put(beg).put(' ').put(label).put(' ').putLong(b + 1)
+                        .put(" ? ").put(end).put(' ').put(label).put(' ')
+                        .putLong(b + 10).put(" ? ").put(beg).put(' ')
+                        .put(auth).put(' ').putLong(b + 1).put(' ').put(end)
+                        .put(' ').put(auth).put(' ').putLong(b + 10)
+                        .put(" 1 ? 10").eol();
+            }
+        }
+        if (header) {
+            put("# ").eol();
+            put("_struct_conf_type.id HELX_P").eol();
+            put("_struct_conf_type.criteria ?").eol();
+            put("_struct_conf_type.reference ?").eol();
+            put("# ").eol();
+        }
+    }
+
+    /**
+     * Writes struct_conn with a hydrogen bond between the N1 or N3 atoms of
+     * every 7th residue of each RNA chain and the residue as far from the
+     * other end.
+     */
+    private void writeBasePairs(int[][] seqs) throws IOException {
+        boolean header = false;
+        long n = 0L;
+        for (int c = 0; c < rnaChains; c++) {
+            String label = getLabel(c);
+            String auth = getAuth(c);
+            int len = seqs[c].length;
+            for (int i = 0; i < len - 1 - i; i += 7) {
+                if (!header) {
+                    put("loop_").eol();
+                    for (String item : new String[]{"id", "conn_type_id",
+                        "pdbx_leaving_atom_flag", "pdbx_PDB_id",
+                        "ptnr1_label_asym_id", "ptnr1_label_comp_id",
+                        "ptnr1_label_seq_id", "ptnr1_label_atom_id",
+                        "pdbx_ptnr1_label_alt_id", "pdbx_ptnr1_PDB_ins_code",
+                        "pdbx_ptnr1_standard_comp_id", "ptnr1_symmetry",
+                        "ptnr2_label_asym_id", "ptnr2_label_comp_id",
+                        "ptnr2_label_seq_id", "ptnr2_label_atom_id",
+                        "pdbx_ptnr2_label_alt_id", "pdbx_ptnr2_PDB_ins_code",
+                        "ptnr1_auth_asym_id", "ptnr1_auth_seq_id",
+                        "ptnr2_auth_asym_id", "ptnr2_auth_seq_id",
+                        "ptnr2_symmetry", "details", "pdbx_dist_value",
+                        "pdbx_value_order", "pdbx_role"}) {
+                        put("_struct_conn.").put(item).eol();
+                    }
+                    header = true;
+                }
+                n++;
+                int j = len - 1 - i;
+                int r1 = seqs[c][i];
+                int r2 = seqs[c][j];
+                // A with U (0, 3) and C with G (1, 2).
+                boolean wc = r1 + r2 == 3;
+                put("hydrog").putLong(n).put(" hydrog ? ? ").put(label)
+                        .put(' ').put(RNA[r1]).put(' ').putLong(i + 1)
+                        .put(r1 % 2 == 0 ? " N1" : " N3").put(" ? ? ? 1_555 ")
+                        .put(label).put(' ').put(RNA[r2]).put(' ')
+                        .putLong(j + 1).put(r2 % 2 == 0 ? " N1" : " N3")
+                        .put(" ? ? ").put(auth).put(' ').putLong(i + 1)
+                        .put(' ').put(auth).put(' ').putLong(j + 1)
+                        .put(" 1_555 ").put(wc ? "WATSON-CRICK" : "TYPE_28_PAIR")
+                        .put(" ? ? ?").eol();
+            }
+        }
+        if (header) {
+            put("# ").eol();
+            put("_struct_conn_type.id hydrog").eol();
+            put("_struct_conn_type.criteria ?").eol();
+            put("_struct_conn_type.reference ?").eol();
+            put("# ").eol();
+        }
+    }
+
+    private void writeScheme(int[][] seqs) throws IOException {
+        put("loop_").eol();
+        for (String item : new String[]{"asym_id", "entity_id", "seq_id",
+            "mon_id", "ndb_seq_num", "pdb_seq_num", "auth_seq_num",
+            "pdb_mon_id", "auth_mon_id", "pdb_strand_id", "pdb_ins_code",
+            "hetero"}) {
+            put("_pdbx_poly_seq_scheme.").put(item).eol();
+        }
+        for (int c = 0; c < seqs.length; c++) {
+            String[] names = isRNA(c) ? RNA : PROTEIN;
+            String label = getLabel(c);
+            String auth = getAuth(c);
+            for (int i = 0; i < seqs[c].length; i++) {
+                String name = names[seqs[c][i]];
+                put(label).put(' ').putLong(c + 1).put(' ').putLong(i + 1)
+                        .put(' ').put(name).put(' ').putLong(i + 1).put(' ')
+                        .putLong(i + 1).put(' ').putLong(i + 1).put(' ')
+                        .put(name).put(' ').put(name).put(' ').put(auth)
+                        .put(" . n").eol();
+            }
+        }
+        put("# ").eol();
+    }
+
+    private long writeAtoms(int[][] seqs) throws IOException {
+        put("loop_").eol();
+        for (String item : new String[]{"group_PDB", "id", "type_symbol",
+            "label_atom_id", "label_alt_id", "label_comp_id", "label_asym_id",
+            "label_entity_id", "label_seq_id", "pdbx_PDB_ins_code", "Cartn_x",
+            "Cartn_y", "Cartn_z", "occupancy", "B_iso_or_equiv",
+            "pdbx_formal_charge", "auth_seq_id", "auth_comp_id",
+            "auth_asym_id", "auth_atom_id", "pdbx_PDB_model_num"}) {
+            put("_atom_site.").put(item).eol();
+        }
+        long n = 0L;
+        int chains = seqs.length;
+        // Chain centres on a sphere about 4 * cbrt(atoms) in radius.
+        double radius = 4d * Math.cbrt(Math.min(atomsMax,
+                (long) (rnaChains * (long) rnaResidues * RNA_ATOMS
+                + proteinChains * (long) proteinResidues * PROTEIN_ATOMS)));
+        for (int c = 0; c < chains && n < atomsMax; c++) {
+            SplittableRandom rand = new SplittableRandom(seed * 37L + c);
+            boolean rna = isRNA(c);
+            String[] names = rna ? RNA : PROTEIN;
+            String label = getLabel(c);
+            String auth = getAuth(c);
+            double t = Math.acos(1d - 2d * (c + 0.5d) / chains);
+            double phi = Math.PI * (1d + Math.sqrt(5d)) * c;
+            double[] centre = {radius * 0.6d * Math.sin(t) * Math.cos(phi),
+                radius * 0.6d * Math.sin(t) * Math.sin(phi),
+                radius * 0.6d * Math.cos(t)};
+            double spread = radius * (rna ? 0.4d : 0.15d);
+            double[] p = centre.clone();
+            for (int i = 0; i < seqs[c].length && n < atomsMax; i++) {
+                // Step about 6 Angstrom and turn back towards the centre.
+                for (int k = 0; k < 3; k++) {
+                    p[k] += rand.nextDouble(-3.5d, 3.5d);
+                    if (Math.abs(p[k] - centre[k]) > spread) {
+                        p[k] -= Math.signum(p[k] - centre[k]) * 3.5d;
+                    }
+                }
+                String comp = names[seqs[c][i]];
+                String[] backbone = rna ? RNA_BACKBONE : PROTEIN_BACKBONE;
+                String[] side = rna ? RNA_BASES[seqs[c][i]]
+                        : PROTEIN_SIDE_CHAINS[seqs[c][i]];
+                for (int a = 0; a < backbone.length + side.length
+                        && n < atomsMax; a++) {
+                    String atom = a < backbone.length ? backbone[a]
+                            : side[a - backbone.length];
+                    n++;
+                    put("ATOM ").putLong(n).put(' ').put(atom.charAt(0))
+                            .put(' ');
+                    putAtomName(atom);
+                    put(" . ").put(comp).put(' ').put(label).put(' ')
+                            .putLong(c + 1).put(' ').putLong(i + 1)
+                            .put(" ? ");
+                    for (int k = 0; k < 3; k++) {
+                        putFixed(Math.round((p[k] + rand.nextDouble(-2.5d,
+                                2.5d)) * 1000d), 3).put(' ');
+                    }
+                    put("1.00 ").putFixed(2000L + rand.nextLong(6000L), 2)
+                            .put(" ? ").putLong(i + 1).put(' ').put(comp)
+                            .put(' ').put(auth).put(' ');
+                    putAtomName(atom);
+                    put(" 1").eol();
+                }
+            }
+        }
+        put("# ").eol();
+        return n;
+    }
+
+    /**
+     * Writes an atom name in double quotes if it contains a prime.
+     */
+    private void putAtomName(String atom) throws IOException {
+        if (atom.indexOf('\'') < 0) {
+            put(atom);
+        } else {
+            put('"').put(atom).put('"');
+        }
+    }
+
+    private Mol_SyntheticCifGenerator put(String s) throws IOException {
+        int len = s.length();
+        if (pos + len > buf.length) {
+            flush();
+            if (len > buf.length) {
+                out.write(s.getBytes(StandardCharsets.US_ASCII));
+                return this;
+            }
+        }
+        for (int i = 0; i < len; i++) {
+            buf[pos++] = (byte) s.charAt(i);
+        }
+        return this;
+    }
+
+    private Mol_SyntheticCifGenerator put(char c) throws IOException {
+        if (pos == buf.length) {
+            flush();
+        }
+        buf[pos++] = (byte) c;
+        return this;
+    }
+
+    private Mol_SyntheticCifGenerator eol() throws IOException {
+        return put('\n');
+    }
+
+    private Mol_SyntheticCifGenerator putLong(long v) throws IOException {
+        if (pos + 20 > buf.length) {
+            flush();
+        }
+        if (v < 0L) {
+            buf[pos++] = '-';
+            v = -v;
+        }
+        int start = pos;
+        do {
+            buf[pos++] = (byte) ('0' + v % 10L);
+            v /= 10L;
+        } while (v > 0L);
+        for (int i = start, j = pos - 1; i < j; i++, j--) {
+            byte b = buf[i];
+            buf[i] = buf[j];
+            buf[j] = b;
+        }
+        return this;
+    }
+
+    /**
+     * @param v The value times 10 to the power of decimals.
+     * @param decimals The number of decimal places.
+     */
+    private Mol_SyntheticCifGenerator putFixed(long v, int decimals)
+            throws IOException {
+        long scale = 1L;
+        for (int i = 0; i < decimals; i++) {
+            scale *= 10L;
+        }
+        if (v < 0L) {
+            put('-');
+            v = -v;
+        }
+        putLong(v / scale).put('.');
+        long f = v % scale;
+        for (long s = scale / 10L; s > 0L; s /= 10L) {
+            put((char) ('0' + f / s % 10L));
+        }
+        return this;
+    }
+
+    private void flush() throws IOException {
+        out.write(buf, 0, pos);
+        pos = 0;
+    }
+}
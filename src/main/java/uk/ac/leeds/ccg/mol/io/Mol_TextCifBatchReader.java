@@ -0,0 +1,442 @@
+/*
+ * Copyright 2025 University of Leeds.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.ac.leeds.ccg.mol.io;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+import java.util.zip.GZIPInputStream;
+import uk.ac.leeds.ccg.mol.data.cif.CIF;
+
+/**
+ * For reading many CIF files at once. Files are read on virtual threads and
+ * parsed on a fixed pool of platform threads. The bytes of files that have
+ * been read but whose results have not yet been taken from the stream are
+ * limited, so a slow consumer holds back reading. A file that fails gives a
+ * {@link Result} with an error and does not stop the batch. If the reader is
+ * closed, the files of a batch that are not yet done give results with a
+ * CancellationException error.
+ *
+ * @author Andy Turner
+ */
+public class Mol_TextCifBatchReader implements AutoCloseable {
+
+    /**
+     * The glob matching text and gzipped CIF files.
+     */
+    public static final String GLOB = "*.{cif,cif.gz}";
+
+    /**
+     * The result of reading a file.
+     */
+    public static class Result {
+
+        /**
+         * The index of the file in the batch.
+         */
+        public final int index;
+
+        /**
+         * The path of the file.
+         */
+        public final Path path;
+
+        /**
+         * The CIF or null if there was an error.
+         */
+        public final CIF cif;
+
+        /**
+         * The error or null.
+         */
+        public final Throwable error;
+
+        /**
+         * The size of the file in bytes.
+         */
+        public final long bytes;
+
+        /**
+         * The time taken to read the bytes in nanoseconds.
+         */
+        public final long readNanos;
+
+        /**
+         * The time taken to parse in nanoseconds.
+         */
+        public final long parseNanos;
+
+        /**
+         * The permits held until the result is taken.
+         */
+        final int permits;
+
+        Result(int index, Path path, CIF cif, Throwable error, long bytes,
+                long readNanos, long parseNanos, int permits) {
+            this.index = index;
+            this.path = path;
+            this.cif = cif;
+            this.error = error;
+            this.bytes = bytes;
+            this.readNanos = readNanos;
+            this.parseNanos = parseNanos;
+            this.permits = permits;
+        }
+
+        /**
+         * @return true if the file was read without error.
+         */
+        public boolean isOK() {
+            return error == null;
+        }
+
+        /**
+         * @return The file name without ".cif" or ".cif.gz".
+         */
+        public String getName() {
+            return getName(path);
+        }
+
+        /**
+         * @param p The path.
+         * @return The file name of p without ".cif" or ".cif.gz".
+         */
+        public static String getName(Path p) {
+            String n = p.getFileName().toString();
+            if (n.endsWith(".gz")) {
+                n = n.substring(0, n.length() - 3);
+            }
+            if (n.endsWith(".cif")) {
+                n = n.substring(0, n.length() - 4);
+            }
+            return n;
+        }
+    }
+
+    /**
+     * The reader which is shared by all parsing threads.
+     */
+    public final Mol_TextCifReader reader;
+
+    /**
+     * For reading bytes.
+     */
+    protected final ExecutorService io;
+
+    /**
+     * For parsing.
+     */
+    protected final ExecutorService cpu;
+
+    /**
+     * The maximum number of bytes in flight.
+     */
+    protected final int bytesInFlightMax;
+
+    /**
+     * The batches being read.
+     */
+    private final Set<Batch> batches = ConcurrentHashMap.newKeySet();
+
+    /**
+     * The results of a batch.
+     */
+    private static class Batch {
+
+        final List<Path> paths;
+
+        final List<CompletableFuture<Result>> futures;
+
+        /**
+         * The results in the order in which they complete or null if the
+         * results are ordered.
+         */
+        final LinkedBlockingQueue<Result> done;
+
+        /**
+         * The thread submitting the files for reading.
+         */
+        volatile Thread submitter;
+
+        Batch(List<Path> paths, boolean ordered) {
+            this.paths = paths;
+            int n = paths.size();
+            futures = new ArrayList<>(n);
+            for (int i = 0; i < n; i++) {
+                futures.add(new CompletableFuture<>());
+            }
+            done = ordered ? null : new LinkedBlockingQueue<>();
+        }
+
+        /**
+         * Gives the files from i that are not yet done a result with an
+         * error.
+         *
+         * @param i The index of the first file.
+         * @param error The error.
+         */
+        void fail(int i, Throwable error) {
+            for (int j = i; j < futures.size(); j++) {
+                finish(futures.get(j), done, new Result(j, paths.get(j), null,
+                        error, 0, 0, 0, 0));
+            }
+        }
+    }
+
+    /**
+     * Create a new instance with a parsing thread for each processor and up
+     * to 256MB in flight.
+     *
+     * @param reader What {@link #reader} is set to.
+     */
+    public Mol_TextCifBatchReader(Mol_TextCifReader reader) {
+        this(reader, Runtime.getRuntime().availableProcessors(), 1 << 28);
+    }
+
+    /**
+     * Create a new instance.
+     *
+     * @param reader What {@link #reader} is set to.
+     * @param nThreads The number of parsing threads.
+     * @param bytesInFlightMax What {@link #bytesInFlightMax} is set to.
+     */
+    public Mol_TextCifBatchReader(Mol_TextCifReader reader, int nThreads,
+            int bytesInFlightMax) {
+        this.reader = reader;
+        this.io = Executors.newVirtualThreadPerTaskExecutor();
+        this.cpu = Executors.newFixedThreadPool(nThreads);
+        this.bytesInFlightMax = bytesInFlightMax;
+    }
+
+    /**
+     * @param dir The directory.
+     * @param glob The glob, e.g. {@link #GLOB}.
+     * @return The paths of files in dir with names matching glob in order.
+     * @throws IOException If encountered.
+     */
+    public static List<Path> list(Path dir, String glob) throws IOException {
+        List<Path> r = new ArrayList<>();
+        try (DirectoryStream<Path> ds = Files.newDirectoryStream(dir, glob)) {
+            for (Path p : ds) {
+                if (Files.isRegularFile(p)) {
+                    r.add(p);
+                }
+            }
+        }
+        Collections.sort(r);
+        return r;
+    }
+
+    /**
+     * Reads the CIF files in dir with names matching glob.
+     *
+     * @param dir The directory.
+     * @param glob The glob, e.g. {@link #GLOB}.
+     * @param ordered If true results are in the order of the paths, otherwise
+     * they are in the order in which they complete.
+     * @return The results.
+     * @throws IOException If dir cannot be listed.
+     */
+    public Stream<Result> read(Path dir, String glob, boolean ordered)
+            throws IOException {
+        return read(list(dir, glob), ordered);
+    }
+
+    /**
+     * Reads CIF files. The stream should be closed if it is not consumed
+     * fully.
+     *
+     * @param paths The paths of the files.
+     * @param ordered If true results are in the order of paths, otherwise
+     * they are in the order in which they complete.
+     * @return The results.
+     */
+    public Stream<Result> read(List<Path> paths, boolean ordered) {
+        int n = paths.size();
+        Semaphore bytesInFlight = new Semaphore(bytesInFlightMax);
+        Batch batch = new Batch(paths, ordered);
+        List<CompletableFuture<Result>> futures = batch.futures;
+        LinkedBlockingQueue<Result> done = batch.done;
+        batches.add(batch);
+        if (io.isShutdown()) {
+            batch.fail(0, new CancellationException("Closed"));
+        }
+        Thread submitter = Thread.ofVirtual().start(() -> {
+            for (int i = 0; i < n; i++) {
+                Path p = paths.get(i);
+                int permits = getPermits(p);
+                try {
+                    bytesInFlight.acquire(permits);
+                } catch (InterruptedException ex) {
+                    batch.fail(i, ex);
+                    return;
+                }
+                try {
+                    load(i, p, permits, futures.get(i), done);
+                } catch (Throwable ex) {
+                    batch.fail(i, ex);
+                    return;
+                }
+            }
+        });
+        batch.submitter = submitter;
+        return IntStream.range(0, n).mapToObj(i -> {
+            Result r = ordered ? futures.get(i).join() : take(done);
+            bytesInFlight.release(r.permits);
+            if (i == n - 1) {
+                batches.remove(batch);
+            }
+            return r;
+        }).onClose(() -> {
+            submitter.interrupt();
+            batches.remove(batch);
+        });
+    }
+
+    /**
+     * @param p The path.
+     * @return The number of permits for reading p.
+     */
+    protected int getPermits(Path p) {
+        try {
+            return (int) Math.min(Files.size(p), bytesInFlightMax);
+        } catch (IOException ex) {
+            return 0;
+        }
+    }
+
+    /**
+     * Reads the bytes of p on a virtual thread and then parses them on a
+     * platform thread. If either is rejected the result has the
+     * RejectedExecutionException as the error.
+     */
+    private void load(int i, Path p, int permits, CompletableFuture<Result> f,
+            LinkedBlockingQueue<Result> done) {
+        try {
+            io.execute(() -> read(i, p, permits, f, done));
+        } catch (RejectedExecutionException ex) {
+            finish(f, done, new Result(i, p, null, ex, 0, 0, 0, permits));
+        }
+    }
+
+    /**
+     * Reads the bytes of p and submits them for parsing.
+     */
+    private void read(int i, Path p, int permits, CompletableFuture<Result> f,
+            LinkedBlockingQueue<Result> done) {
+        long t0 = System.nanoTime();
+        byte[] b;
+        try {
+            b = Files.readAllBytes(p);
+        } catch (Throwable ex) {
+            finish(f, done, new Result(i, p, null, ex, 0,
+                    System.nanoTime() - t0, 0, permits));
+            return;
+        }
+        long readNanos = System.nanoTime() - t0;
+        try {
+            cpu.execute(() -> {
+                long t1 = System.nanoTime();
+                CIF cif = null;
+                Throwable error = null;
+                try {
+                    cif = reader.getCif(getBufferedReader(p, b));
+                } catch (Throwable ex) {
+                    error = ex;
+                }
+                finish(f, done, new Result(i, p, cif, error, b.length,
+                        readNanos, System.nanoTime() - t1, permits));
+            });
+        } catch (RejectedExecutionException ex) {
+            finish(f, done, new Result(i, p, null, ex, b.length,
+                    readNanos, 0, permits));
+        }
+    }
+
+    /**
+     * @param p The path the bytes were read from.
+     * @param b The bytes.
+     * @return A reader of the bytes decompressing them if p ends with ".gz".
+     * @throws IOException If encountered.
+     */
+    protected static BufferedReader getBufferedReader(Path p, byte[] b)
+            throws IOException {
+        InputStream is = new ByteArrayInputStream(b);
+        if (p.getFileName().toString().endsWith(".gz")) {
+            is = new GZIPInputStream(is, 1 << 16);
+        }
+        return new BufferedReader(new InputStreamReader(is,
+                StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Completes f with r unless it is already complete.
+     */
+    private static void finish(CompletableFuture<Result> f,
+            LinkedBlockingQueue<Result> done, Result r) {
+        if (f.complete(r) && done != null) {
+            done.add(r);
+        }
+    }
+
+    private static Result take(LinkedBlockingQueue<Result> done) {
+        try {
+            return done.take();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(ex);
+        }
+    }
+
+    /**
+     * Shuts down the threads. Files of batches being read that are not yet
+     * done, including those whose tasks are dropped, give results with a
+     * CancellationException error so that consumers do not block.
+     */
+    @Override
+    public void close() {
+        io.shutdownNow();
+        cpu.shutdownNow();
+        CancellationException ex = new CancellationException("Closed");
+        for (Batch b : batches) {
+            if (b.submitter != null) {
+                b.submitter.interrupt();
+            }
+            b.fail(0, ex);
+        }
+        batches.clear();
+    }
+}
@@ -0,0 +1,319 @@
+/*
+ * Copyright 2025 University of Leeds.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.ac.leeds.ccg.mol.io;
+
+import java.util.HashMap;
+import java.util.Locale;
+import uk.ac.leeds.ccg.mol.data.cif.CIF;
+import uk.ac.leeds.ccg.mol.data.cif.Column;
+import uk.ac.leeds.ccg.mol.data.cif.Column_ID;
+import uk.ac.leeds.ccg.mol.data.cif.Columns;
+import uk.ac.leeds.ccg.mol.data.cif.DataItems;
+import uk.ac.leeds.ccg.mol.data.cif.columns.Atom_Site;
+import uk.ac.leeds.ccg.mol.data.cif.columns.Citation_Author;
+import uk.ac.leeds.ccg.mol.data.cif.columns.Database_PDB_Caveat;
+import uk.ac.leeds.ccg.mol.data.cif.columns.Entity;
+import uk.ac.leeds.ccg.mol.data.cif.columns.Entity_Name_Com;
+import uk.ac.leeds.ccg.mol.data.cif.columns.Entity_Poly;
+import uk.ac.leeds.ccg.mol.data.cif.columns.Entity_Src_Gen;
+import uk.ac.leeds.ccg.mol.data.cif.columns.NDB_Struct_NA_Base_Pair_Step;
+import uk.ac.leeds.ccg.mol.data.cif.columns.PDBX_Entity_NonPoly;
+import uk.ac.leeds.ccg.mol.data.cif.columns.PDBX_Struct_Conn_Angle;
+import uk.ac.leeds.ccg.mol.data.cif.columns.Struct_Conn;
+import uk.ac.leeds.ccg.mol.data.cif.columns.Struct_Ref;
+import uk.ac.leeds.ccg.mol.data.cif.data_items.EM_Entity_Assembly;
+import uk.ac.leeds.ccg.mol.data.cif.data_items.PDBX_Struct_Assembly_Gen;
+
+/**
+ * A formatting plan for a category. The layout rules for the special cases
+ * are all in {@link #COLUMNS} and {@link #DATA_ITEMS}. A plan is compiled
+ * once per category, so writing a value is an array lookup and a switch.
+ *
+ * For Columns each column has a rule for values longer than
+ * CIF.HEADER_LENGTH_MAX ("long") and a rule for other values ("short"). The
+ * limits are line lengths at which a value is wrapped onto a new line or
+ * written as a text field.
+ *
+ * @author Andy Turner
+ */
+public class Mol_TextCifFormat {
+
+    /**
+     * The layout rules.
+     */
+    public enum Rule {
+
+        /**
+         * Long: as a text field split into lines of longWrap.
+         */
+        LONG_MULTILINE,
+        /**
+         * Long: inline if the row length plus the value length is at most
+         * longWrap, otherwise as a text field.
+         */
+        LONG_ROW_WRAP,
+        /**
+         * Long: as a text field split into lines of longWrap if longer than
+         * longLimit, otherwise inline on a new line (with single padding) if
+         * it would make the line longer than longWrap.
+         */
+        LONG_MULTILINE_OR_WRAP,
+        /**
+         * Long: as a text field if longer than longLimit, otherwise inline
+         * on a new line if it would make the line longer than longWrap.
+         */
+        LONG_TEXT_OR_WRAP,
+        /**
+         * Long: inline on a new line if it would make the line longer than
+         * longWrap, otherwise as a text field.
+         */
+        LONG_WRAP_OR_TEXT,
+        /**
+         * Short: inline.
+         */
+        SHORT_PAD,
+        /**
+         * Short: as a text field if unquoted and containing a space,
+         * otherwise inline.
+         */
+        SHORT_DEFAULT,
+        /**
+         * Short: inline on a new line if it would make the line longer than
+         * shortWrap.
+         */
+        SHORT_WRAP,
+        /**
+         * Short: inline on a new line if it and the padding would make the
+         * line longer than shortWrap.
+         */
+        SHORT_WRAP_WITH_PAD,
+        /**
+         * Short: inline on a new line with single padding if it would make
+         * the line longer than shortWrap.
+         */
+        SHORT_WRAP_SINGLE_PAD,
+        /**
+         * Short: inline (on a new line if the row ends with ";") if the row
+         * length plus the value length is more than shortWrap, otherwise as
+         * for SHORT_DEFAULT.
+         */
+        SHORT_ROW_WRAP,
+        /**
+         * Short: as a text field with an extra line if the value length is at
+         * least CIF.HEADER_LENGTH_MAX, otherwise inline.
+         */
+        SHORT_TEXT_IF_FULL,
+        /**
+         * Short: inline with single padding on a new line if the last line is
+         * ";".
+         */
+        SHORT_AFTER_TEXT,
+        /**
+         * Short: as a text field if unquoted and not "." or "?", otherwise
+         * inline.
+         */
+        SHORT_TEXT_IF_UNQUOTED,
+        /**
+         * DataItems: as a text field if the padding and value are longer than
+         * the limit, otherwise inline.
+         */
+        ITEM_TEXT_IF_LONG,
+        /**
+         * DataItems: as a text field if unquoted and containing a space,
+         * otherwise inline.
+         */
+        ITEM_DEFAULT
+    }
+
+    /**
+     * A row of the layout table.
+     */
+    static class Entry {
+
+        final Rule longRule;
+
+        final int longLimit;
+
+        final int longWrap;
+
+        final Rule shortRule;
+
+        final int shortWrap;
+
+        final boolean singlePad;
+
+        Entry(Rule longRule, int longLimit, int longWrap, Rule shortRule,
+                int shortWrap, boolean singlePad) {
+            this.longRule = longRule;
+            this.longLimit = longLimit;
+            this.longWrap = longWrap;
+            this.shortRule = shortRule;
+            this.shortWrap = shortWrap;
+            this.singlePad = singlePad;
+        }
+    }
+
+    /**
+     * The layout of Columns by category name or by category name, "." and
+     * column name (all lower case).
+     */
+    static final HashMap<String, Entry> COLUMNS = new HashMap<>();
+
+    /**
+     * The layout of DataItems by category name (lower case): the rule and
+     * limit.
+     */
+    static final HashMap<String, Entry> DATA_ITEMS = new HashMap<>();
+
+    static {
+        int h = CIF.HEADER_LENGTH_MAX;
+        column(Entity_Name_Com.NAME, Rule.LONG_ROW_WRAP, 0, 130, Rule.SHORT_ROW_WRAP, 130);
+        column(EM_Entity_Assembly.NAME, Rule.LONG_MULTILINE_OR_WRAP, 131, 139, Rule.SHORT_WRAP_SINGLE_PAD, 131);
+        column(Database_PDB_Caveat.NAME, Rule.LONG_WRAP_OR_TEXT, 0, 131, Rule.SHORT_DEFAULT, 0);
+        column(Entity.NAME, Rule.LONG_TEXT_OR_WRAP, 131, 131, Rule.SHORT_WRAP, 131);
+        column(PDBX_Entity_NonPoly.NAME, Rule.LONG_TEXT_OR_WRAP, 131, 131, Rule.SHORT_DEFAULT, 0);
+        column(PDBX_Struct_Assembly_Gen.NAME, Rule.LONG_TEXT_OR_WRAP, 131, 131, Rule.SHORT_DEFAULT, 0);
+        column(PDBX_Struct_Conn_Angle.NAME, Rule.LONG_MULTILINE, 0, h, Rule.SHORT_WRAP, 131);
+        column(Atom_Site.NAME, Rule.LONG_MULTILINE, 0, h, Rule.SHORT_PAD, 0);
+        column(NDB_Struct_NA_Base_Pair_Step.NAME, Rule.LONG_MULTILINE, 0, h, Rule.SHORT_WRAP, 131);
+        column(NDB_Struct_NA_Base_Pair_Step.NAME + ".details", Rule.LONG_MULTILINE, 0, h, Rule.SHORT_WRAP, 131, true);
+        column(NDB_Struct_NA_Base_Pair_Step.NAME + ".pdbx_dist_value", Rule.LONG_MULTILINE, 0, h, Rule.SHORT_WRAP, 131, true);
+        column(Struct_Conn.NAME, Rule.LONG_MULTILINE, 0, h, Rule.SHORT_WRAP_WITH_PAD, 131);
+        column(Struct_Conn.NAME + ".details", Rule.LONG_MULTILINE, 0, h, Rule.SHORT_WRAP_WITH_PAD, 131, true);
+        column(Struct_Conn.NAME + ".pdbx_dist_value", Rule.LONG_MULTILINE, 0, h, Rule.SHORT_WRAP_WITH_PAD, 131, true);
+        column(Struct_Ref.NAME, Rule.LONG_MULTILINE, 0, h, Rule.SHORT_TEXT_IF_FULL, 0);
+        column(Entity_Poly.NAME, Rule.LONG_MULTILINE, 0, h, Rule.SHORT_AFTER_TEXT, 0, true);
+        column(Entity_Src_Gen.NAME, Rule.LONG_MULTILINE, 0, h, Rule.SHORT_WRAP, 131);
+        column(Citation_Author.NAME + ".name", Rule.LONG_MULTILINE, 0, h, Rule.SHORT_TEXT_IF_UNQUOTED, 0);
+        dataItem(EM_Entity_Assembly.NAME, Rule.ITEM_TEXT_IF_LONG, 130);
+        dataItem(PDBX_Struct_Assembly_Gen.NAME, Rule.ITEM_TEXT_IF_LONG, h);
+    }
+
+    private static void column(String name, Rule longRule, int longLimit,
+            int longWrap, Rule shortRule, int shortWrap) {
+        column(name, longRule, longLimit, longWrap, shortRule, shortWrap, false);
+    }
+
+    private static void column(String name, Rule longRule, int longLimit,
+            int longWrap, Rule shortRule, int shortWrap, boolean singlePad) {
+        COLUMNS.put(name.toLowerCase(Locale.ROOT), new Entry(longRule,
+                longLimit, longWrap, shortRule, shortWrap, singlePad));
+    }
+
+    private static void dataItem(String name, Rule rule, int limit) {
+        DATA_ITEMS.put(name.toLowerCase(Locale.ROOT), new Entry(rule, limit,
+                0, null, 0, false));
+    }
+
+    /**
+     * The rule for long values of each column.
+     */
+    public final Rule[] longRule;
+
+    /**
+     * The limits for {@link #longRule}.
+     */
+    public final int[] longLimit;
+
+    /**
+     * The wraps for {@link #longRule}.
+     */
+    public final int[] longWrap;
+
+    /**
+     * The rule for short values of each column.
+     */
+    public final Rule[] shortRule;
+
+    /**
+     * The wraps for {@link #shortRule}.
+     */
+    public final int[] shortWrap;
+
+    /**
+     * The width of each column or -1 if values are always single padded.
+     */
+    public final int[] width;
+
+    /**
+     * For DataItems, the rule.
+     */
+    public final Rule itemRule;
+
+    /**
+     * For DataItems, the limit for {@link #itemRule}.
+     */
+    public final int itemLimit;
+
+    /**
+     * Compiles the plan for a loop.
+     *
+     * @param columns The Columns.
+     */
+    public Mol_TextCifFormat(Columns columns) {
+        int n = columns.getNCols();
+        longRule = new Rule[n];
+        longLimit = new int[n];
+        longWrap = new int[n];
+        shortRule = new Rule[n];
+        shortWrap = new int[n];
+        width = new int[n];
+        String cname = columns.name.toLowerCase(Locale.ROOT);
+        Entry ce = COLUMNS.get(cname);
+        for (Column_ID cid : columns.columns.keySet()) {
+            Column column = columns.columns.get(cid);
+            Entry e = COLUMNS.get(cname + "." + column.name.toLowerCase(Locale.ROOT));
+            if (e == null) {
+                e = ce;
+            }
+            if (e == null) {
+                e = new Entry(Rule.LONG_MULTILINE, 0, CIF.HEADER_LENGTH_MAX,
+                        Rule.SHORT_DEFAULT, 0, false);
+            }
+            int i = cid.id;
+            longRule[i] = e.longRule;
+            longLimit[i] = e.longLimit;
+            longWrap[i] = e.longWrap;
+            shortRule[i] = e.shortRule;
+            shortWrap[i] = e.shortWrap;
+            width[i] = e.singlePad || i == n - 1 ? -1 : column.getWidth();
+        }
+        itemRule = null;
+        itemLimit = 0;
+    }
+
+    /**
+     * Compiles the plan for DataItems.
+     *
+     * @param dataItems The DataItems.
+     */
+    public Mol_TextCifFormat(DataItems dataItems) {
+        longRule = null;
+        longLimit = null;
+        longWrap = null;
+        shortRule = null;
+        shortWrap = null;
+        width = null;
+        Entry e = DATA_ITEMS.get(dataItems.name.toLowerCase(Locale.ROOT));
+        if (e == null) {
+            itemRule = Rule.ITEM_DEFAULT;
+            itemLimit = 0;
+        } else {
+            itemRule = e.longRule;
+            itemLimit = e.longLimit;
+        }
+    }
+}
@@ -0,0 +1,360 @@
+/*
+ * Copyright 2025 University of Leeds.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.ac.leeds.ccg.mol.io;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import uk.ac.leeds.ccg.mol.core.Mol_Environment;
+
+/**
+ * A reusable byte buffer for writing CIF text. Characters are encoded as
+ * UTF-8 directly into the buffer which is written to a channel when full, or,
+ * if there is no channel, grows to hold everything written.
+ *
+ * The position in the current row is tracked so that the writer can make
+ * layout decisions without building and splitting Strings. The line state
+ * follows the semantics of String.split(Mol_Environment.EOL) on the row
+ * written so far: the "last line" is the last non-empty line.
+ *
+ * @author Andy Turner
+ */
+public class Mol_TextCifOutput implements Closeable {
+
+    /**
+     * The default buffer capacity.
+     */
+    public static int BUFFER_CAPACITY = 1 << 20;
+
+    /**
+     * The channel or null if writing to memory.
+     */
+    protected final WritableByteChannel channel;
+
+    /**
+     * The buffer.
+     */
+    protected byte[] buf;
+
+    /**
+     * The number of bytes in {@link #buf}.
+     */
+    protected int pos;
+
+    /**
+     * The line separator.
+     */
+    protected final String eol;
+
+    /**
+     * The number of chars written in the current row.
+     */
+    protected int rowLength;
+
+    /**
+     * The length of the current line.
+     */
+    protected int lineLength;
+
+    /**
+     * The first char of the current line.
+     */
+    protected char lineFirst;
+
+    /**
+     * The length of the last non-empty line ended in the current row.
+     */
+    protected int lastLineLength;
+
+    /**
+     * Whether the last non-empty line ended in the current row is ";".
+     */
+    protected boolean lastLineSemiColon;
+
+    /**
+     * The last char written in the current row.
+     */
+    protected char last;
+
+    /**
+     * Create a new instance for writing to a channel.
+     *
+     * @param channel What {@link #channel} is set to.
+     */
+    public Mol_TextCifOutput(WritableByteChannel channel) {
+        this(channel, BUFFER_CAPACITY);
+    }
+
+    /**
+     * Create a new instance.
+     *
+     * @param channel What {@link #channel} is set to.
+     * @param capacity The initial capacity of {@link #buf}.
+     */
+    public Mol_TextCifOutput(WritableByteChannel channel, int capacity) {
+        this.channel = channel;
+        this.buf = new byte[capacity];
+        this.eol = Mol_Environment.EOL;
+    }
+
+    /**
+     * Create a new instance for writing to memory.
+     *
+     * @param capacity The initial capacity.
+     */
+    public Mol_TextCifOutput(int capacity) {
+        this(null, capacity);
+    }
+
+    /**
+     * Resets the row state.
+     */
+    public void startRow() {
+        rowLength = 0;
+        lineLength = 0;
+        lastLineLength = 0;
+        lastLineSemiColon = false;
+        last = 0;
+    }
+
+    /**
+     * @return The number of chars written in the current row.
+     */
+    public int getRowLength() {
+        return rowLength;
+    }
+
+    /**
+     * @return The length of the last non-empty line of the current row.
+     */
+    public int getLastLineLength() {
+        return lineLength > 0 ? lineLength : lastLineLength;
+    }
+
+    /**
+     * @return true if the last non-empty line of the current row is ";".
+     */
+    public boolean isLastLineSemiColon() {
+        return lineLength > 0 ? lineLength == 1 && lineFirst == ';'
+                : lastLineSemiColon;
+    }
+
+    /**
+     * @param c The char.
+     * @return true if the current row ends with c.
+     */
+    public boolean endsWith(char c) {
+        return rowLength > 0 && last == c;
+    }
+
+    /**
+     * Appends s. Any line separators in s end lines.
+     *
+     * @param s The String.
+     * @throws IOException If encountered.
+     */
+    public void append(String s) throws IOException {
+        int from = 0;
+        int i = s.indexOf(eol);
+        while (i >= 0) {
+            appendLine(s, from, i);
+            appendEOL();
+            from = i + eol.length();
+            i = s.indexOf(eol, from);
+        }
+        appendLine(s, from, s.length());
+    }
+
+    /**
+     * Appends chars of s that contain no line separator.
+     *
+     * @param s The String.
+     * @param from The index of the first char.
+     * @param to The index after the last char.
+     * @throws IOException If encountered.
+     */
+    protected void appendLine(String s, int from, int to) throws IOException {
+        int n = to - from;
+        if (n == 0) {
+            return;
+        }
+        if (lineLength == 0) {
+            lineFirst = s.charAt(from);
+        }
+        lineLength += n;
+        rowLength += n;
+        last = s.charAt(to - 1);
+        ensure(n);
+        for (int i = from; i < to; i++) {
+            char c = s.charAt(i);
+            if (c < 0x80) {
+                buf[pos++] = (byte) c;
+            } else {
+                put(s.substring(i, to).getBytes(StandardCharsets.UTF_8));
+                return;
+            }
+        }
+    }
+
+    /**
+     * Appends n spaces.
+     *
+     * @param n The number of spaces.
+     * @throws IOException If encountered.
+     */
+    public void appendSpaces(int n) throws IOException {
+        if (n <= 0) {
+            return;
+        }
+        if (lineLength == 0) {
+            lineFirst = ' ';
+        }
+        lineLength += n;
+        rowLength += n;
+        last = ' ';
+        ensure(n);
+        Arrays.fill(buf, pos, pos + n, (byte) ' ');
+        pos += n;
+    }
+
+    /**
+     * Appends the line separator.
+     *
+     * @throws IOException If encountered.
+     */
+    public void appendEOL() throws IOException {
+        if (lineLength > 0) {
+            lastLineLength = lineLength;
+            lastLineSemiColon = lineLength == 1 && lineFirst == ';';
+            lineLength = 0;
+        }
+        int n = eol.length();
+        rowLength += n;
+        last = eol.charAt(n - 1);
+        ensure(n);
+        for (int i = 0; i < n; i++) {
+            buf[pos++] = (byte) eol.charAt(i);
+        }
+    }
+
+    /**
+     * Appends bytes that are already formatted.
+     *
+     * @param b The bytes.
+     * @throws IOException If encountered.
+     */
+    public void put(byte[] b) throws IOException {
+        put(b, 0, b.length);
+    }
+
+    /**
+     * Appends bytes that are already formatted.
+     *
+     * @param b The bytes.
+     * @param off The offset.
+     * @param len The number of bytes.
+     * @throws IOException If encountered.
+     */
+    public void put(byte[] b, int off, int len) throws IOException {
+        if (channel != null && len > buf.length) {
+            flush();
+            write(ByteBuffer.wrap(b, off, len));
+            return;
+        }
+        ensure(len);
+        System.arraycopy(b, off, buf, pos, len);
+        pos += len;
+    }
+
+    /**
+     * Ensures there is space for n more bytes by flushing to the channel or
+     * growing the buffer.
+     *
+     * @param n The number of bytes.
+     * @throws IOException If encountered.
+     */
+    protected void ensure(int n) throws IOException {
+        if (pos + n > buf.length) {
+            if (channel != null) {
+                flush();
+            }
+            if (n > buf.length - pos) {
+                buf = Arrays.copyOf(buf, Math.max(buf.length * 2, pos + n));
+            }
+        }
+    }
+
+    /**
+     * @return The number of bytes buffered.
+     */
+    public int size() {
+        return pos;
+    }
+
+    /**
+     * @return The buffered bytes. These are only complete if there is no
+     * channel.
+     */
+    public ByteBuffer getBytes() {
+        return ByteBuffer.wrap(buf, 0, pos);
+    }
+
+    /**
+     * Clears the buffer so it can be reused.
+     */
+    public void clear() {
+        pos = 0;
+        startRow();
+    }
+
+    /**
+     * Writes the buffered bytes to the channel.
+     *
+     * @throws IOException If encountered.
+     */
+    public void flush() throws IOException {
+        if (channel != null && pos > 0) {
+            write(ByteBuffer.wrap(buf, 0, pos));
+            pos = 0;
+        }
+    }
+
+    /**
+     * @param bb The bytes to write to the channel.
+     * @throws IOException If encountered.
+     */
+    protected void write(ByteBuffer bb) throws IOException {
+        while (bb.hasRemaining()) {
+            channel.write(bb);
+        }
+    }
+
+    /**
+     * Flushes and closes the channel.
+     *
+     * @throws IOException If encountered.
+     */
+    @Override
+    public void close() throws IOException {
+        flush();
+        if (channel != null) {
+            channel.close();
+        }
+    }
+}
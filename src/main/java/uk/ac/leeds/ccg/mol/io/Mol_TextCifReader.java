@@ -17,10 +17,17 @@ package uk.ac.leeds.ccg.mol.io;
 
 import java.io.BufferedReader;
 import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
 import java.util.TreeMap;
+import java.util.zip.GZIPInputStream;
 import uk.ac.leeds.ccg.data.format.Data_ReadCSV;
 import uk.ac.leeds.ccg.generic.core.Generic_Environment;
 import uk.ac.leeds.ccg.generic.io.Generic_Defaults;
@@ -156,113 +163,331 @@ import uk.ac.leeds.ccg.mol.data.cif.data_items.Software;
 import uk.ac.leeds.ccg.mol.data.cif.data_items.Symmetry;
 
 /**
+ * For reading mmCIF text. Instances hold no state for a read other than the
+ * shared {@link #env}, so one instance can read many files at the same time
+ * from different threads.
  *
  * @author Andy Turner
  */
 public class Mol_TextCifReader {
 
-    protected Data_ReadCSV reader;
+    /**
+     * The environment shared by instances created with
+     * {@link #Mol_TextCifReader()}.
+     */
+    private static Mol_Environment defaultEnv;
+
+    /**
+     * The categories of loops that are large and come after the metadata.
+     * When only some categories are read, reading stops at the first of
+     * these that is not one of them.
+     */
+    public static final Set<String> LARGE_LOOPS = Set.of("atom_site",
+            "atom_site_anisotrop", "pdbx_poly_seq_scheme",
+            "pdbx_nonpoly_scheme", "pdbx_branch_scheme");
+
+    /**
+     * The environment given to each CIF read.
+     */
+    public final Mol_Environment env;
+
+    /**
+     * Whether {@link #getCif(java.nio.file.Path)} writes the summary of each
+     * CIF to a sidecar file next to it (see {@link Mol_CifSummary}).
+     */
+    public boolean writeSummaries;
+
+    /**
+     * Create a new instance using a shared default environment.
+     *
+     * @throws IOException If the default environment cannot be created.
+     */
+    public Mol_TextCifReader() throws IOException {
+        this(getDefaultEnvironment());
+    }
 
     /**
      * Create a new instance.
+     *
+     * @param env What {@link #env} is set to.
      */
-    public Mol_TextCifReader() {
+    public Mol_TextCifReader(Mol_Environment env) {
+        this.env = env;
+    }
+
+    /**
+     * @return The shared default environment creating it on first use.
+     * @throws IOException If the environment cannot be created.
+     */
+    public static synchronized Mol_Environment getDefaultEnvironment()
+            throws IOException {
+        if (defaultEnv == null) {
+            try {
+                Generic_Files files = new Generic_Files(new Generic_Defaults());
+                defaultEnv = new Mol_Environment(new Generic_Environment(files));
+            } catch (IOException e) {
+                throw e;
+            } catch (Exception e) {
+                throw new IOException(e);
+            }
+        }
+        return defaultEnv;
     }
 
     /**
      * https://files.rcsb.org/download/4ug0.cif
      * https://files.rcsb.org/download/6xu8.cif
      *
+     * If there is no pdbId.cif in dir but there is a pdbId.cif.gz then that
+     * is read.
+     *
      * @param pdbId e.g. 4ug0, 6xu8
      * @param dir = Paths.get("C:", "Users", "geoagdt", "Downloads");
-     * @return
+     * @return The CIF or null if it could not be read.
      */
     public CIF getCif(String pdbId, Path dir) {
-        CIF cif = null;
         try {
-            //boolean parseBinary = true;
-            boolean parseBinary = false;
-            System.out.println("Load " + pdbId + " parseBinary " + Boolean.toString(parseBinary));
+            System.out.println("Load " + pdbId);
             Path p = Paths.get(dir.toString(), pdbId + ".cif");
+            Path pgz = Paths.get(dir.toString(), pdbId + ".cif.gz");
+            if (!Files.exists(p) && Files.exists(pgz)) {
+                p = pgz;
+            }
+            return getCif(p);
+        } catch (Exception e) {
+            System.err.println(e.getMessage());
+            e.printStackTrace();
+        }
+        return null;
+    }
 
-            // Read data
-            // Set up reader
-            BufferedReader br = Generic_IO.getBufferedReader(p);
-            Generic_Files files = new Generic_Files(new Generic_Defaults());
-            Mol_Environment env = new Mol_Environment(new Generic_Environment(files));
-            reader = new Data_ReadCSV(env);
-            reader.setStreamTokenizer(br, 10);
-            // Initialise in memory store
-            cif = new CIF(env);
-            DataBlock db = null;
-            String line = reader.readLine();
-            //System.out.println(line);
-            while (line != null) {
-                if (line.startsWith(Mol_Strings.SYMBOL_HASH)) {
-                    cif.comments.add(new Comment(line.split(Mol_Strings.SYMBOL_HASH)[1]));
-                } else if (line.startsWith(Mol_Strings.s_data_)) {
-                    DataBlockHeading dbh = new DataBlockHeading(env,
-                            line.split(Mol_Strings.s_data_)[1]);
-                    db = new DataBlock(env, dbh);
-                    cif.dataBlocks.add(db);
-                } else {
-                    if (line.startsWith(Mol_Strings.s_loop_)) {
-                        // Columnss
-                        parseLoop(db);
+    /**
+     * Reads a CIF from a file which is decompressed if the file name ends
+     * with ".gz". If {@link #writeSummaries} is true the summary is written
+     * to the sidecar of p.
+     *
+     * @param p The path of the file.
+     * @return The CIF.
+     * @throws Exception If the file cannot be read or an unrecognised
+     * DataItems category is encountered.
+     */
+    public CIF getCif(Path p) throws Exception {
+        BufferedReader br;
+        if (p.getFileName().toString().endsWith(".gz")) {
+            br = getBufferedReaderGzip(p);
+        } else {
+            br = Generic_IO.getBufferedReader(p);
+        }
+        CIF cif;
+        try (br) {
+            cif = getCif(br);
+        }
+        if (writeSummaries) {
+            cif.summary.write(Mol_CifSummary.getSidecar(p));
+        }
+        return cif;
+    }
+
+    /**
+     * Reads a CIF and sets its {@link CIF#summary}.
+     *
+     * @param br The reader which is not closed.
+     * @return The CIF.
+     * @throws Exception If br cannot be read or an unrecognised DataItems
+     * category is encountered.
+     */
+    public CIF getCif(BufferedReader br) throws Exception {
+        return getCif(br, null);
+    }
+
+    /**
+     * Reads only some categories from a file which is decompressed if the
+     * file name ends with ".gz". See
+     * {@link #getCif(java.io.BufferedReader, java.util.Set)}.
+     *
+     * @param p The path of the file.
+     * @param names The names of the categories to read.
+     * @return The CIF.
+     * @throws Exception If the file cannot be read or an unrecognised
+     * DataItems category is encountered.
+     */
+    public CIF getCif(Path p, Set<String> names) throws Exception {
+        return getCif(p, names, null);
+    }
+
+    /**
+     * Reads a CIF or, if names is not null, only the categories named in it.
+     * The rows of other loops are skipped without being parsed and reading
+     * stops at the first loop in {@link #LARGE_LOOPS} that is not named or,
+     * once all the categories named have been read, at the start of another
+     * category.
+     * This is for quickly getting metadata such as entry, struct and exptl
+     * from near the top of a file.
+     *
+     * @param br The reader which is not closed.
+     * @param names The names of the categories to read or null to read all.
+     * @return The CIF.
+     * @throws Exception If br cannot be read or an unrecognised DataItems
+     * category is encountered.
+     */
+    public CIF getCif(BufferedReader br, Set<String> names) throws Exception {
+        return getCif(br, names, null);
+    }
+
+    /**
+     * Reads the categories named and, if counts is not null, reads to the
+     * end counting the rows of the other loops as they are skipped.
+     *
+     * @param p The path of the file.
+     * @param names The names of the categories to read.
+     * @param counts For the number of rows of each loop that is skipped
+     * (see {@link #skipLoop(uk.ac.leeds.ccg.data.format.Data_ReadCSV)}) or
+     * null to stop early.
+     * @return The CIF.
+     * @throws Exception If the file cannot be read or an unrecognised
+     * DataItems category is encountered.
+     */
+    public CIF getCif(Path p, Set<String> names, Map<String, Long> counts)
+            throws Exception {
+        BufferedReader br;
+        if (p.getFileName().toString().endsWith(".gz")) {
+            br = getBufferedReaderGzip(p);
+        } else {
+            br = Generic_IO.getBufferedReader(p);
+        }
+        try (br) {
+            return getCif(br, names, counts);
+        }
+    }
+
+    /**
+     * Reads the categories named and, if counts is not null, reads to the
+     * end counting the rows of the other loops as they are skipped.
+     *
+     * @param br The reader which is not closed.
+     * @param names The names of the categories to read.
+     * @param counts For the number of rows of each loop that is skipped or
+     * null to stop early.
+     * @return The CIF.
+     * @throws Exception If br cannot be read or an unrecognised DataItems
+     * category is encountered.
+     */
+    public CIF getCif(BufferedReader br, Set<String> names,
+            Map<String, Long> counts) throws Exception {
+        boolean stop = counts == null;
+        Set<String> found = new HashSet<>();
+        String last = null;
+        Data_ReadCSV reader = new Data_ReadCSV(env);
+        reader.setStreamTokenizer(br, 10);
+        // Initialise in memory store
+        CIF cif = new CIF(env);
+        DataBlock db = null;
+        String line = reader.readLine();
+        //System.out.println(line);
+        while (line != null) {
+            if (line.startsWith(Mol_Strings.SYMBOL_HASH)) {
+                cif.comments.add(new Comment(line.split(Mol_Strings.SYMBOL_HASH)[1]));
+            } else if (line.startsWith(Mol_Strings.s_data_)) {
+                DataBlockHeading dbh = new DataBlockHeading(env,
+                        line.split(Mol_Strings.s_data_)[1]);
+                db = new DataBlock(env, dbh);
+                cif.dataBlocks.add(db);
+            } else {
+                if (line.startsWith(Mol_Strings.s_loop_)) {
+                    // Columnss
+                    if (names == null) {
+                        parseLoop(reader, db);
                     } else {
-                        // DataItemss
-                        if (line.startsWith(Mol_Strings.symbol_underscore)) {
-                            ArrayList<String> values = Mol_TextCifReader.this.getValues(line);
-                            String[] parts = values.get(0).split("\\."); // Need to escape the dot
-                            String name = parts[0].substring(1);
-                            String vname = parts[1];
-                            DataItems dataItems = db.getDataItems(name);
-                            if (dataItems == null) {
-                                DataItems_ID id = db.getNextDataItems_ID();
-                                //dataItems = new DataItems(name, id);
-                                dataItems = getDataItems(name, id);
-                                db.addDataItems(dataItems);
+                        line = reader.readLine().trim();
+                        String name = getCategoryName(line);
+                        if (stop && ((LARGE_LOOPS.contains(name)
+                                && !names.contains(name))
+                                || (!name.equals(last)
+                                && found.containsAll(names)))) {
+                            break;
+                        }
+                        last = name;
+                        if (names.contains(name)) {
+                            found.add(name);
+                            parseLoop(reader, db, line);
+                        } else {
+                            long rows = skipLoop(reader);
+                            if (counts != null) {
+                                counts.merge(name, rows, Long::sum);
+                            }
+                        }
+                    }
+                } else {
+                    // DataItemss
+                    if (line.startsWith(Mol_Strings.symbol_underscore)) {
+                        ArrayList<String> values = getValues(line);
+                        String[] parts = values.get(0).split("\\."); // Need to escape the dot
+                        String name = parts[0].substring(1);
+                        String vname = parts[1];
+                        boolean keep = true;
+                        if (names != null) {
+                            if (stop && !name.equals(last)
+                                    && found.containsAll(names)) {
+                                break;
+                            }
+                            last = name;
+                            keep = names.contains(name);
+                            if (keep) {
+                                found.add(name);
                             }
-                            String value = "";
-                            if (values.size() == 1) {
-                                line = reader.readLine();
-                                //System.out.println(line);
-                                if (line.startsWith(Mol_Strings.SYMBOL_SEMI_COLON)) {
-                                    value += line.trim().substring(1);
-                                    line = reader.readLine();
-                                    if (!line.trim().equalsIgnoreCase(Mol_Strings.SYMBOL_SEMI_COLON)) {
-                                        throw new Exception("Multiline?");
-                                    }
-                                } else {
-                                    value += line.trim();
-                                }
+                        }
+                        DataItems dataItems = keep ? db.getDataItems(name) : null;
+                        if (keep && dataItems == null) {
+                            DataItems_ID id = db.getNextDataItems_ID();
+                            //dataItems = new DataItems(name, id);
+                            dataItems = getDataItems(name, id);
+                            db.addDataItems(dataItems);
+                        }
+                        String value = "";
+                        byte kind = -1;
+                        if (values.size() == 1) {
+                            line = reader.readLine();
+                            //System.out.println(line);
+                            if (line.startsWith(Mol_Strings.SYMBOL_SEMI_COLON)) {
+                                StringBuilder sb = new StringBuilder(
+                                        line.trim().substring(1));
+                                readMultiLine(reader, sb);
+                                value += sb;
+                                kind = Value.TEXT_FIELD;
                             } else {
-                                for (int i = 1; i < values.size(); i++) {
-                                    value += values.get(i);
-                                }
+                                value += line.trim();
                             }
-                            dataItems.add(new DataItem(dataItems, vname, value));
                         } else {
-                            if (!line.trim().equalsIgnoreCase(Mol_Strings.SYMBOL_SEMI_COLON)) {
-                                int debug = 1;
+                            for (int i = 1; i < values.size(); i++) {
+                                value += values.get(i);
                             }
                         }
+                        if (keep) {
+                            dataItems.add(new DataItem(dataItems, vname, value,
+                                    kind < 0 ? Value.getKind(value) : kind));
+                        }
                     }
                 }
-                line = reader.readLine();
-                //System.out.println(line);
             }
-
-            //cif.centralise();
-            //Mol_TextCifWriter writer = new Mol_TextCifWriter();
-            //writer.write(cif, dir, pdbId);
-        } catch (Exception e) {
-            System.err.println(e.getMessage());
-            e.printStackTrace();
+            line = reader.readLine();
+            //System.out.println(line);
+        }
+        if (names == null) {
+            cif.summary = Mol_CifSummary.of(cif);
         }
         return cif;
     }
 
+    /**
+     * @param p The path of a gzip file (which may have several members).
+     * @return A BufferedReader of the decompressed text.
+     * @throws IOException If encountered.
+     */
+    public static BufferedReader getBufferedReaderGzip(Path p) throws IOException {
+        return new BufferedReader(new InputStreamReader(new GZIPInputStream(
+                Files.newInputStream(p), 1 << 16), StandardCharsets.UTF_8));
+    }
+
     /**
      * For initialising a DataItems instance using the given parameters.
      *
@@ -469,7 +694,8 @@ public class Mol_TextCifReader {
             r = new uk.ac.leeds.ccg.mol.data.cif.columns.PDBX_Struct_Assembly(id);
         } else if (name.equalsIgnoreCase(uk.ac.leeds.ccg.mol.data.cif.columns.PDBX_Struct_Assembly_Gen.NAME)) {
             r = new uk.ac.leeds.ccg.mol.data.cif.columns.PDBX_Struct_Assembly_Gen(id);
-
+        } else if (name.equalsIgnoreCase(uk.ac.leeds.ccg.mol.data.cif.columns.PDBX_Struct_Oper_List.NAME)) {
+            r = new uk.ac.leeds.ccg.mol.data.cif.columns.PDBX_Struct_Oper_List(id);
         } else if (name.equalsIgnoreCase(Struct_Conf.NAME)) {
             r = new Struct_Conf(id);
         } else if (name.equalsIgnoreCase(Struct_Conn.NAME)) {
@@ -557,99 +783,154 @@ public class Mol_TextCifReader {
     }
 
     /**
-     * For parsing a loop.
+     * @param line A line such as "_atom_site.id".
+     * @return The category name, e.g. "atom_site".
+     */
+    protected static String getCategoryName(String line) {
+        int i = line.indexOf('.');
+        return line.substring(1, i < 0 ? line.length() : i);
+    }
+
+    /**
+     * Reads to the end of a loop without parsing the rows. A loop ends at a
+     * line that is "#" outside of a text field.
+     *
+     * @param reader The reader positioned in the loop.
+     * @return The number of lines of values not in text fields, which is the
+     * number of rows for loops such as atom_site that have a row per line.
+     * @throws IOException If encountered.
+     */
+    protected long skipLoop(Data_ReadCSV reader) throws IOException {
+        boolean textField = false;
+        long r = 0L;
+        for (String line = reader.readLine(); line != null;
+                line = reader.readLine()) {
+            if (line.startsWith(Mol_Strings.SYMBOL_SEMI_COLON)) {
+                textField = !textField;
+            } else if (!textField) {
+                String t = line.trim();
+                if (t.equals(Mol_Strings.SYMBOL_HASH)) {
+                    break;
+                }
+                if (!t.isEmpty() && !t.startsWith(Mol_Strings.symbol_underscore)) {
+                    r++;
+                }
+            }
+        }
+        return r;
+    }
+
+    /**
+     * For parsing a loop. A loop of an unrecognised category is reported and
+     * skipped.
      *
+     * @param reader The reader.
      * @param db The DataBlock
+     * @throws IOException If encountered or if a row cannot be parsed.
      */
-    protected void parseLoop(DataBlock db) {
-        try {
-            String line = reader.readLine().trim();
-            //System.out.println(line);
+    protected void parseLoop(Data_ReadCSV reader, DataBlock db)
+            throws IOException {
+        parseLoop(reader, db, reader.readLine().trim());
+    }
 
-            // Initialise columnss
-            String[] parts = line.split("\\."); // Need to escape the dot.
-            
-            if (parts.length < 2) {
-                int debug = 1;
-            }
-            
-            Columns columns = getColumns(parts[0].substring(1),
-                    db.getNextColumns_ID());
-            db.addColumns(columns);
+    /**
+     * @param reader The reader positioned after the first column name.
+     * @param db The DataBlock to add the Columns to.
+     * @param first The first column name line.
+     * @throws IOException If encountered or if a row cannot be parsed, in
+     * which case the message has the category name and row number.
+     */
+    protected void parseLoop(Data_ReadCSV reader, DataBlock db, String first)
+            throws IOException {
+        String name = getCategoryName(first);
+        Columns columns;
+        try {
+            columns = getColumns(name, db.getNextColumns_ID());
+        } catch (Exception e) {
+            System.err.println(e.getMessage() + ", skipping loop");
+            skipLoop(reader);
+            return;
+        }
+        db.addColumns(columns);
+        int row = 0;
+        try {
+            String line = first;
             // Initialise Columns
-            while (line.startsWith(Mol_Strings.symbol_underscore)) {
-                parts = line.split("\\."); // Need to escape the dot.
-                
-                if (parts.length < 2) {
-                    int debug = 1;
-                }
-                
-                columns.addColumn(new Column(columns, parts[1].trim()));
-                //columns.cols.put(new Column_ID(columns.cols.size()),
-                //        new Column(columns, parts[1].trim()));
-                line = reader.readLine().trim();
-                //System.out.println(line);
-            }
-            
-            if (line.trim().equalsIgnoreCase(";")) {
-                int debug = 1;
+            while (line != null
+                    && line.startsWith(Mol_Strings.symbol_underscore)) {
+                columns.addColumn(new Column(columns,
+                        line.substring(line.indexOf('.') + 1).trim()));
+                line = readLineTrimmed(reader);
             }
-
-            // Add values
+            // Add values (a loop ends with "#" or at the end of the file)
             int ncols = columns.getNCols();
-            int row = 0;
-            while (!line.equalsIgnoreCase(Mol_Strings.SYMBOL_HASH)) {
-                ArrayList<String> values = Mol_TextCifReader.this.getValues(line, ncols);
-                Row_ID rid = new Row_ID(row);
-
+            while (line != null
+                    && !line.equalsIgnoreCase(Mol_Strings.SYMBOL_HASH)) {
+                ArrayList<Value> values = getValues(reader, line, ncols);
                 if (values.size() != ncols) {
-                    int debug = 1;
+                    throw new IOException("Expected " + ncols
+                            + " values not " + values.size());
                 }
-
+                Row_ID rid = new Row_ID(row);
                 columns.data.put(rid, new TreeMap<>());
-
                 for (int col = 0; col < ncols; col++) {
                     Column_ID cid = new Column_ID(col);
-                    columns.setValue(rid, cid, new Value(values.get(col)));
+                    columns.setValue(rid, cid, values.get(col));
                 }
                 row++;
-                line = reader.readLine().trim();
-                //System.out.println(line);
+                line = readLineTrimmed(reader);
             }
-
-        } catch (Exception e) {
-            System.err.println(e.getMessage());
-            e.printStackTrace();
+        } catch (IOException | RuntimeException e) {
+            throw new IOException("Error reading loop " + name + " row "
+                    + row + ": " + e.getMessage(), e);
         }
     }
 
-    protected ArrayList<String> getValues(String line, int ncols) throws IOException {
-        ArrayList<String> values = new ArrayList<>(ncols);
-        getValues(values, line, ncols);
-        while (values.size() != ncols) {
+    /**
+     * @param reader The reader.
+     * @return The next line trimmed or null at the end of the file.
+     * @throws IOException If encountered.
+     */
+    private static String readLineTrimmed(Data_ReadCSV reader)
+            throws IOException {
+        String line = reader.readLine();
+        return line == null ? null : line.trim();
+    }
+
+    protected ArrayList<Value> getValues(Data_ReadCSV reader, String line,
+            int ncols) throws IOException {
+        ArrayList<Value> values = new ArrayList<>(ncols);
+        getValues(reader, values, line, ncols);
+        while (values.size() < ncols) {
             String line2 = reader.readLine().trim();
             //System.out.println(line2);
-            getValues(values, line2, ncols);
+            getValues(reader, values, line2, ncols);
         }
         return values;
     }
 
-    protected void getValues(ArrayList<String> values, String line, int ncols) throws IOException {
-        if (line.startsWith(Mol_Strings.SYMBOL_SEMI_COLON)) {
-            getMultilineValue(values, line, ncols);
+    protected void getValues(Data_ReadCSV reader, ArrayList<Value> values,
+            String line, int ncols) throws IOException {
+        if (line.isBlank()) {
+            // Blank lines in loops, e.g. after text fields, have no values.
+        } else if (line.startsWith(Mol_Strings.SYMBOL_SEMI_COLON)) {
+            getMultilineValue(reader, values, line, ncols);
         } else {
-            values.addAll(getValues(line));
+            for (String v : getValues(line)) {
+                values.add(new Value(v));
+            }
         }
     }
 
-    protected void getMultilineValue(ArrayList<String> values, String line, int ncols)
+    protected void getMultilineValue(Data_ReadCSV reader,
+            ArrayList<Value> values, String line, int ncols)
             throws IOException {
         String line2 = reader.readLine();
         //System.out.println(line2);
         if (line2.trim().equalsIgnoreCase(Mol_Strings.SYMBOL_SEMI_COLON)) {
-            values.add(line.substring(1));
+            values.add(new Value(line.substring(1), Value.TEXT_FIELD));
         } else {
-            getMultilineValue(values, line.concat(line2), ncols);
+            getMultilineValue(reader, values, line.concat(line2), ncols);
         }
     }
 //           while (values.size() != columns.getNCols()) {
@@ -715,7 +996,8 @@ public class Mol_TextCifReader {
 //        }
 //    }
 
-    protected void readMultiLine(StringBuilder sb) throws IOException {
+    protected void readMultiLine(Data_ReadCSV reader, StringBuilder sb)
+            throws IOException {
         String line = reader.readLine().trim();
         //System.out.println(line);
         while (!line.equalsIgnoreCase(Mol_Strings.SYMBOL_SEMI_COLON)) {
@@ -725,8 +1007,8 @@ public class Mol_TextCifReader {
         }
     }
 
-    public char delimiter = ' ';
-    public String delimiter_s = String.valueOf(delimiter);
+    public final char delimiter = ' ';
+    public final String delimiter_s = String.valueOf(delimiter);
 
     /**
      * @param line The line to get the values from.
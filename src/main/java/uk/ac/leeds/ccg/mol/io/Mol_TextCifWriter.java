@@ -15,43 +15,43 @@
  */
 package uk.ac.leeds.ccg.mol.io;
 
-import java.io.BufferedWriter;
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.file.Path;
 import java.nio.file.Paths;
-import java.util.HashMap;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
 import java.util.TreeMap;
-import java.util.logging.Level;
-import java.util.logging.Logger;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import org.rcsb.cif.CifIO;
+import org.rcsb.cif.model.CifFile;
 import uk.ac.leeds.ccg.generic.core.Generic_Strings;
-import uk.ac.leeds.ccg.generic.io.Generic_IO;
 import uk.ac.leeds.ccg.mol.core.Mol_Environment;
 import uk.ac.leeds.ccg.mol.core.Mol_Strings;
 import uk.ac.leeds.ccg.mol.data.cif.CIF;
-import uk.ac.leeds.ccg.mol.data.cif.Column;
+import uk.ac.leeds.ccg.mol.data.cif.Category_ID;
 import uk.ac.leeds.ccg.mol.data.cif.Column_ID;
 import uk.ac.leeds.ccg.mol.data.cif.Columns;
 import uk.ac.leeds.ccg.mol.data.cif.Columns_ID;
+import uk.ac.leeds.ccg.mol.data.cif.DataBlock;
 import uk.ac.leeds.ccg.mol.data.cif.DataItem;
 import uk.ac.leeds.ccg.mol.data.cif.DataItems;
 import uk.ac.leeds.ccg.mol.data.cif.DataItems_ID;
 import uk.ac.leeds.ccg.mol.data.cif.Value;
-import uk.ac.leeds.ccg.mol.data.cif.columns.Atom_Site;
-import uk.ac.leeds.ccg.mol.data.cif.columns.Citation_Author;
-import uk.ac.leeds.ccg.mol.data.cif.columns.Database_PDB_Caveat;
-import uk.ac.leeds.ccg.mol.data.cif.columns.Entity;
-import uk.ac.leeds.ccg.mol.data.cif.columns.Entity_Name_Com;
-import uk.ac.leeds.ccg.mol.data.cif.columns.Entity_Poly;
-import uk.ac.leeds.ccg.mol.data.cif.columns.Entity_Src_Gen;
-import uk.ac.leeds.ccg.mol.data.cif.columns.NDB_Struct_NA_Base_Pair_Step;
-import uk.ac.leeds.ccg.mol.data.cif.columns.PDBX_Entity_NonPoly;
-import uk.ac.leeds.ccg.mol.data.cif.columns.PDBX_Struct_Conn_Angle;
-import uk.ac.leeds.ccg.mol.data.cif.columns.Struct_Conn;
-import uk.ac.leeds.ccg.mol.data.cif.columns.Struct_Ref;
-import uk.ac.leeds.ccg.mol.data.cif.data_items.EM_Entity_Assembly;
-import uk.ac.leeds.ccg.mol.data.cif.data_items.PDBX_Struct_Assembly_Gen;
 
 /**
+ * For writing CIF text. Output is streamed through a
+ * {@link Mol_TextCifOutput} which tracks the position in the current row, so
+ * no per row StringBuilder is needed. The layout of each category is compiled
+ * once into a {@link Mol_TextCifFormat}.
  *
  * @author Andy Turner
  */
@@ -63,15 +63,45 @@ public class Mol_TextCifWriter {
 
     public static int HEADER_LENGTH_MAX = 80;
 
-    public final HashMap<Integer, String> padding;
+    /**
+     * Loops with at least this many rows are formatted in parallel if there
+     * is an {@link #executor}.
+     */
+    public static int PARALLEL_ROWS_MIN = 16384;
+
+    /**
+     * The number of rows in each block formatted in parallel.
+     */
+    public static int BLOCK_ROWS = 4096;
+
+    /**
+     * For formatting blocks of rows in parallel. If null, rows are formatted
+     * sequentially.
+     */
+    public final ExecutorService executor;
+
+    /**
+     * The maximum number of formatted blocks held waiting to be written.
+     */
+    public final int blocksInFlightMax;
 
+    /**
+     * Create a new instance.
+     */
     public Mol_TextCifWriter() {
-        padding = new HashMap<>();
-        String s = "";
-        for (int i = 0; i < LINE_CHAR_LENGTH_MAX; i++) {
-            padding.put(i, s);
-            s += Mol_Strings.symbol_space;
-        }
+        this(null);
+    }
+
+    /**
+     * Create a new instance which formats large loops in parallel. Rows are
+     * independent given a {@link Mol_TextCifFormat}, so blocks of rows are
+     * formatted into separate buffers by executor and written in order.
+     *
+     * @param executor What {@link #executor} is set to.
+     */
+    public Mol_TextCifWriter(ExecutorService executor) {
+        this.executor = executor;
+        this.blocksInFlightMax = 2 * Runtime.getRuntime().availableProcessors();
     }
 
     /**
@@ -79,310 +109,401 @@ public class Mol_TextCifWriter {
      * @param dir The directory to write to.
      * @param pdbId The first part of the filename.
      * @param name The second part of the filename.
-     * @throws IOException
+     * @throws IOException If encountered.
      */
     public void write(CIF cif, Path dir, String pdbId, String name) throws IOException {
         // Print/write from the in memory representation.
         // Set up writer
         Path outp = Paths.get(dir.toString(), pdbId + name + ".cif");
-        try (BufferedWriter bw = Generic_IO.getBufferedWriter(outp, false)) {
-            cif.dataBlocks.stream().forEach(x -> {
-                try {
-                    String s0 = x.dbh + Mol_Environment.EOL;
-                    //System.out.print(s0);
-                    bw.write(s0);
-                    x.columnsAndDataItems.forEach(y -> {
-                        try {
-                            //System.out.println(Mol_Strings.SYMBOL_HASH);
-                            bw.write(Mol_Strings.SYMBOL_HASH);
-                            bw.write(Mol_Strings.symbol_space);
-                            bw.write(Mol_Environment.EOL);
-                            if (y instanceof Columns_ID id) {
-                                //System.out.print(Mol_Strings.s_loop_);
-                                bw.write(Mol_Strings.s_loop_);
-                                bw.write(Mol_Environment.EOL);
-                                Columns columns = x.getColumns(id);
-                                // Header
-                                columns.columns.keySet().forEach(cid -> {
-                                    String columnName = columns.id2name.get(cid);
-                                    try {
-                                        writeName(bw, columns.name, columnName);
-                                        //System.out.println();
-                                        bw.write(Mol_Strings.symbol_space);
-                                        bw.write(Mol_Environment.EOL);
-                                    } catch (IOException ex1) {
-                                        Logger.getLogger(Mol_TextCifReader.class.getName()).log(Level.SEVERE, null, ex1);
-                                    }
-                                });
-                                // Values
-                                columns.data.keySet().forEach(rid -> {
-                                    TreeMap<Column_ID, Value> cols = columns.data.get(rid);
-                                    StringBuilder sb = new StringBuilder();
-                                    cols.keySet().forEach(cid -> {
-                                        Value v = cols.get(cid);
-                                        Column column = columns.columns.get(cid);
-                                        int length = v.v.length();
-                                        int padLength = column.getWidth() - length + 1;
-                                        String pad;
-                                        if (padLength >= CIF.HEADER_LENGTH_MAX) {
-                                            pad = " ";
-                                        } else {
-                                            pad = padding.get(padLength);
-                                        }
-                                        if (pad == null) {
-                                            pad = " ";
-                                        }
-                                        if (cid.id == columns.getNCols() - 1) {
-                                            pad = " ";
-                                        }
-                                        String sbs = sb.toString();
-                                        String[] sbss = sbs.split(Mol_Environment.EOL);
-                                        if (length > CIF.HEADER_LENGTH_MAX) {
-                                            // Handle special cases:
-                                            if (columns.name.equalsIgnoreCase(Entity_Name_Com.NAME)) {
-                                                if (length + sbs.length() <= 130) {
-                                                    add_s_pad(sb, pad, v.v);
-                                                } else {
-                                                    addMultiline1(sb, v.v);
-                                                }
-                                            } else if (columns.name.equalsIgnoreCase(EM_Entity_Assembly.NAME)) {
-                                                int maxLength = 139;
-                                                if (length > 131) {
-                                                    addMultiline0(sb, maxLength, v.v);
-                                                } else {
-                                                    if (sbss[sbss.length - 1].length() + length > maxLength) {
-                                                        sb.append(Mol_Environment.EOL);
-                                                        pad = " ";
-                                                    }
-                                                    add_s_pad(sb, pad, v.v);
-                                                }
-                                            } else if (columns.name.equalsIgnoreCase(Database_PDB_Caveat.NAME)) {
-                                                if (sbss[sbss.length - 1].length() + length > 131) {
-                                                    sb.append(Mol_Environment.EOL);
-                                                    add_s_pad(sb, pad, v.v);
-                                                } else {
-                                                    addMultiline1(sb, v.v);
-                                                }
-                                            } else if (columns.name.equalsIgnoreCase(Entity.NAME)
-                                                    || columns.name.equalsIgnoreCase(PDBX_Entity_NonPoly.NAME)
-                                                    || columns.name.equalsIgnoreCase(PDBX_Struct_Assembly_Gen.NAME)) {
-                                                if (length > 131) {
-                                                    addMultiline1(sb, v.v);
-                                                } else {
-                                                    if (sbss[sbss.length - 1].length() + length > 131) {
-                                                        sb.append(Mol_Environment.EOL);
-                                                    }
-                                                    add_s_pad(sb, pad, v.v);
-                                                }
-                                            } else {
-                                                addMultiline0(sb, CIF.HEADER_LENGTH_MAX, v.v);
-                                            }
-                                        } else {
-                                            // Handle special cases:
-                                            if (columns.name.equalsIgnoreCase(PDBX_Struct_Conn_Angle.NAME)
-                                                    || columns.name.equalsIgnoreCase(Entity.NAME)) {
-                                                if (sbss[sbss.length - 1].length() + length > 131) {
-                                                    sb.append(Mol_Environment.EOL);
-                                                }
-                                                add_s_pad(sb, pad, v.v);
-                                            } else if (columns.name.equalsIgnoreCase(EM_Entity_Assembly.NAME)) {
-                                                if (sbss[sbss.length - 1].length() + length > 131) {
-                                                    sb.append(Mol_Environment.EOL);
-                                                    pad = " ";
-                                                }
-                                                add_s_pad(sb, pad, v.v);
-                                            } else if (columns.name.equalsIgnoreCase(Entity_Name_Com.NAME)) {
-                                                if (length + sbs.length() > 130) {
-                                                    if (sbs.endsWith(Mol_Strings.SYMBOL_SEMI_COLON)) {
-                                                        sb.append(Mol_Environment.EOL);
-                                                    }
-                                                    add_s_pad(sb, pad, v.v);
-                                                } else {
-                                                    if (v.v.contains(" ") && !v.v.startsWith("'")) {
-                                                        addMultiline1(sb, v.v);
-                                                    } else {
-                                                        add_s_pad(sb, pad, v.v);
-                                                    }
-                                                }
-                                            } else if (columns.name.equalsIgnoreCase(Atom_Site.NAME)) {
-                                                add_s_pad(sb, pad, v.v);
-                                            } else if (columns.name.equalsIgnoreCase(NDB_Struct_NA_Base_Pair_Step.NAME)) {
-                                                if (sbss[sbss.length - 1].length() + length > 131) {
-                                                    sb.append(Mol_Environment.EOL);
-                                                }
-                                                if (column.name.equalsIgnoreCase("details") || column.name.equalsIgnoreCase("pdbx_dist_value")) {
-                                                    pad = " ";
-                                                }
-                                                add_s_pad(sb, pad, v.v);
-                                            } else if (columns.name.equalsIgnoreCase(Struct_Conn.NAME)) {
-                                                if (column.name.equalsIgnoreCase("details") || column.name.equalsIgnoreCase("pdbx_dist_value")) {
-                                                    pad = " ";
-                                                }
-                                                if (sbss[sbss.length - 1].length() + length + pad.length() > 131) {
-                                                    sb.append(Mol_Environment.EOL);
-                                                }
-                                                add_s_pad(sb, pad, v.v);
-                                            } else if (columns.name.equalsIgnoreCase(Struct_Ref.NAME)) {
-                                                if (length >= CIF.HEADER_LENGTH_MAX) {
-                                                    add2(sb, v.v.concat(Mol_Environment.EOL));
-                                                } else {
-                                                    add_s_pad(sb, pad, v.v);
-                                                }
-                                            } else if (columns.name.equalsIgnoreCase(Entity_Poly.NAME)) {
-//                                                if (sbss[sbss.length - 1].length() >= CIF.HEADER_LENGTH_MAX) {
-//                                                    if (sw > 10 || sbss[sbss.length - 1].length() > 120) {
-//                                                        sb.append(Mol_Environment.EOL);
-//                                                    }
-//                                                }
-//                                                if (column.name.equalsIgnoreCase("pdbx_strand_id")) {
-//                                                    if (sw + sbs.length() >= CIF.HEADER_LENGTH_MAX) {
-//                                                        if (sbs.endsWith(Mol_Strings.SYMBOL_SEMI_COLON)) {
-//                                                            sb.append(Mol_Environment.EOL);
-//                                                        }
-//                                                    }
-//                                                }
-                                                if (sbss[sbss.length - 1].equalsIgnoreCase(Mol_Strings.SYMBOL_SEMI_COLON)) {
-                                                    sb.append(Mol_Environment.EOL);
-                                                }
-                                                pad = " ";
+        try (Mol_TextCifOutput out = new Mol_TextCifOutput(FileChannel.open(
+                outp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING))) {
+            write(cif, out);
+        }
+    }
+
+    /**
+     * For writing gzip compressed output. Blocks are compressed in parallel
+     * by {@link #executor} if it is not null.
+     *
+     * @param cif The CIF to write.
+     * @param dir The directory to write to.
+     * @param pdbId The first part of the filename.
+     * @param name The second part of the filename.
+     * @throws IOException If encountered.
+     */
+    public void writeGzip(CIF cif, Path dir, String pdbId, String name) throws IOException {
+        Path outp = Paths.get(dir.toString(), pdbId + name + ".cif.gz");
+        try (Mol_TextCifOutput out = new Mol_TextCifOutput(new Mol_GzipChannel(
+                FileChannel.open(outp, StandardOpenOption.CREATE,
+                        StandardOpenOption.WRITE,
+                        StandardOpenOption.TRUNCATE_EXISTING), executor))) {
+            write(cif, out);
+        }
+    }
 
-                                                if (v.v.contains(";;")) {
-                                                    int debug = 1;
-                                                }
+    /**
+     * For writing BinaryCIF. The text is written to memory and then encoded
+     * using ciftools-java.
+     *
+     * @param cif The CIF to write.
+     * @param dir The directory to write to.
+     * @param pdbId The first part of the filename.
+     * @param name The second part of the filename.
+     * @throws IOException If encountered.
+     */
+    public void writeBinary(CIF cif, Path dir, String pdbId, String name) throws IOException {
+        Path outp = Paths.get(dir.toString(), pdbId + name + ".bcif");
+        Mol_TextCifOutput out = new Mol_TextCifOutput(Mol_TextCifOutput.BUFFER_CAPACITY);
+        write(cif, out);
+        ByteBuffer bb = out.getBytes();
+        CifFile cifFile = CifIO.readFromInputStream(new ByteArrayInputStream(
+                bb.array(), bb.position(), bb.remaining()));
+        CifIO.writeBinary(cifFile, outp);
+    }
 
-                                                add_s_pad(sb, pad, v.v);
-                                            } else if (columns.name.equalsIgnoreCase(Entity_Src_Gen.NAME)) {
-                                                if (sbss[sbss.length - 1].length() + length > 131) {
-                                                    sb.append(Mol_Environment.EOL);
-                                                }
-                                                add_s_pad(sb, pad, v.v);
-                                            } else if (columns.name.equalsIgnoreCase(Citation_Author.NAME) && column.name.equalsIgnoreCase("name")) {
-                                                if (!v.v.startsWith("'")) {
-                                                    add2(sb, v.v);
-                                                } else {
-                                                    add_s_pad(sb, pad, v.v);
-                                                }
-                                            } else {
-                                                if (v.v.contains(" ") && !v.v.startsWith("'")) {
-                                                    addMultiline1(sb, v.v);
-                                                    sb.append(Mol_Environment.EOL);
-                                                } else {
-                                                    add_s_pad(sb, pad, v.v);
-                                                }
-                                            }
-                                        }
-                                    });
-                                    //sb.append(Mol_Strings.symbol_space);
-                                    sb.append(Mol_Environment.EOL);
-                                    try {
-                                        //System.out.print(sb.toString());
-                                        bw.write(sb.toString());
-                                    } catch (IOException ex1) {
-                                        Logger.getLogger(Mol_TextCifReader.class.getName()).log(Level.SEVERE, null, ex1);
-                                        ex1.printStackTrace();
-                                    }
-                                });
-                            } else {
-                                DataItems dataItems = x.getDataItems((DataItems_ID) y);
-                                int nml = dataItems.getNameMaxLength();
-                                //dataItems.dataItems.values().forEach(z -> {
-                                dataItems.dataItems.keySet().forEach(z -> {
-                                    try {
-                                        DataItem d = dataItems.dataItems.get(z);
-                                        writeName(bw, dataItems.name, d.name);
-                                        String dv = d.value;
-                                        String pad = padding.get(nml - d.name.length() + 3);
-                                        StringBuilder sb = new StringBuilder();
-                                        // Handle special cases:
-                                        if (dataItems.name.equalsIgnoreCase(EM_Entity_Assembly.NAME)) {
-                                            if (sb.toString().length() + pad.length() + dv.length() > 130) {
-                                                add1(sb, pad, dv);
-                                            } else {
-                                                add0(sb, pad, dv);
-                                            }
-                                        } else if (dataItems.name.equalsIgnoreCase(PDBX_Struct_Assembly_Gen.NAME)) {
-                                            if (sb.toString().length() + pad.length() + dv.length() > CIF.HEADER_LENGTH_MAX) {
-                                                add1(sb, pad, dv);
-                                            } else {
-                                                add0(sb, pad, dv);
-                                            }
-                                        } else {
-                                            if (dv.contains(" ") && !dv.startsWith("'")) {
-                                                addMultiline1(sb, dv);
-                                                sb.append(Mol_Environment.EOL);
-                                            } else {
-                                                add0(sb, pad, dv);
-                                            }
-                                        }
-                                        //System.out.print(sb.toString());
-                                        bw.write(sb.toString());
-                                    } catch (IOException ex1) {
-                                        Logger.getLogger(Mol_TextCifReader.class.getName()).log(Level.SEVERE, null, ex1);
-                                        ex1.printStackTrace();
-                                    }
-                                });
+    /**
+     * @param cif The CIF to write.
+     * @param out The output.
+     * @throws IOException If encountered.
+     */
+    public void write(CIF cif, Mol_TextCifOutput out) throws IOException {
+        for (DataBlock x : cif.dataBlocks) {
+            out.append(x.dbh.toString());
+            out.appendEOL();
+            for (Category_ID y : x.columnsAndDataItems) {
+                out.append(Mol_Strings.SYMBOL_HASH);
+                out.append(Mol_Strings.symbol_space);
+                out.appendEOL();
+                if (y instanceof Columns_ID id) {
+                    writeColumns(out, x.getColumns(id));
+                } else {
+                    writeDataItems(out, x.getDataItems((DataItems_ID) y));
+                }
+            }
+        }
+        out.append(Mol_Strings.SYMBOL_HASH + Mol_Strings.symbol_space);
+        out.appendEOL();
+    }
+
+    /**
+     * For writing a loop.
+     *
+     * @param out The output.
+     * @param columns The Columns.
+     * @throws IOException If encountered.
+     */
+    protected void writeColumns(Mol_TextCifOutput out, Columns columns) throws IOException {
+        out.append(Mol_Strings.s_loop_);
+        out.appendEOL();
+        // Header
+        for (Column_ID cid : columns.columns.keySet()) {
+            writeName(out, columns.name, columns.id2name.get(cid));
+            out.append(Mol_Strings.symbol_space);
+            out.appendEOL();
+        }
+        // Values
+        Mol_TextCifFormat plan = new Mol_TextCifFormat(columns);
+        if (executor != null && columns.getNRows() >= PARALLEL_ROWS_MIN) {
+            writeRowsParallel(out, plan, columns);
+        } else {
+            for (TreeMap<Column_ID, Value> cols : columns.data.values()) {
+                writeRow(out, plan, cols);
+            }
+        }
+    }
+
+    /**
+     * Formats blocks of rows into buffers using {@link #executor} and writes
+     * them to out in order. At most {@link #blocksInFlightMax} blocks are
+     * formatted or waiting at any time, and their buffers are reused.
+     *
+     * @param out The output.
+     * @param plan The plan for the Columns.
+     * @param columns The Columns.
+     * @throws IOException If encountered.
+     */
+    protected void writeRowsParallel(Mol_TextCifOutput out,
+            Mol_TextCifFormat plan, Columns columns) throws IOException {
+        ArrayDeque<Future<Mol_TextCifOutput>> inFlight = new ArrayDeque<>();
+        ArrayDeque<Mol_TextCifOutput> free = new ArrayDeque<>();
+        ArrayList<TreeMap<Column_ID, Value>> block = new ArrayList<>(BLOCK_ROWS);
+        Iterator<TreeMap<Column_ID, Value>> ite = columns.data.values().iterator();
+        try {
+            while (ite.hasNext()) {
+                block.add(ite.next());
+                if (block.size() == BLOCK_ROWS || !ite.hasNext()) {
+                    if (inFlight.size() == blocksInFlightMax) {
+                        free.add(writeBlock(out, inFlight.poll()));
+                    }
+                    Mol_TextCifOutput b = free.isEmpty()
+                            ? new Mol_TextCifOutput(BLOCK_ROWS * 128) : free.poll();
+                    List<TreeMap<Column_ID, Value>> rows = block;
+                    inFlight.add(executor.submit(() -> {
+                        for (TreeMap<Column_ID, Value> cols : rows) {
+                            writeRow(b, plan, cols);
+                        }
+                        return b;
+                    }));
+                    block = new ArrayList<>(BLOCK_ROWS);
+                }
+            }
+            while (!inFlight.isEmpty()) {
+                writeBlock(out, inFlight.poll());
+            }
+        } finally {
+            inFlight.forEach(f -> f.cancel(true));
+        }
+    }
+
+    /**
+     * @param out The output.
+     * @param f The block being formatted.
+     * @return The block buffer cleared for reuse.
+     * @throws IOException If formatting failed or if encountered.
+     */
+    private Mol_TextCifOutput writeBlock(Mol_TextCifOutput out,
+            Future<Mol_TextCifOutput> f) throws IOException {
+        Mol_TextCifOutput b;
+        try {
+            b = f.get();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException(ex.getMessage());
+        } catch (ExecutionException ex) {
+            throw new IOException(ex.getCause());
+        }
+        out.put(b.buf, 0, b.size());
+        b.clear();
+        return b;
+    }
+
+    /**
+     * For writing a row of a loop. Layout decisions use the row state of out
+     * which is equivalent to splitting the row written so far into lines.
+     *
+     * @param out The output.
+     * @param plan The plan for the Columns.
+     * @param cols The row.
+     * @throws IOException If encountered.
+     */
+    protected void writeRow(Mol_TextCifOutput out, Mol_TextCifFormat plan,
+            TreeMap<Column_ID, Value> cols) throws IOException {
+        out.startRow();
+        for (var e : cols.entrySet()) {
+            int i = e.getKey().id;
+            Value val = e.getValue();
+            String v = val.v;
+            int length = v.length();
+            int pad = plan.width[i] - length + 1;
+            if (plan.width[i] < 0 || pad >= CIF.HEADER_LENGTH_MAX || pad < 0
+                    || pad >= LINE_CHAR_LENGTH_MAX) {
+                pad = 1;
+            }
+            if (length > CIF.HEADER_LENGTH_MAX) {
+                int wrap = plan.longWrap[i];
+                switch (plan.longRule[i]) {
+                    case LONG_ROW_WRAP -> {
+                        if (length + out.getRowLength() <= wrap) {
+                            add_s_pad(out, pad, v);
+                        } else {
+                            addMultiline1(out, v);
+                        }
+                    }
+                    case LONG_MULTILINE_OR_WRAP -> {
+                        if (length > plan.longLimit[i]) {
+                            addMultiline0(out, wrap, v);
+                        } else {
+                            if (out.getLastLineLength() + length > wrap) {
+                                out.appendEOL();
+                                pad = 1;
+                            }
+                            add_s_pad(out, pad, v);
+                        }
+                    }
+                    case LONG_WRAP_OR_TEXT -> {
+                        if (out.getLastLineLength() + length > wrap) {
+                            out.appendEOL();
+                            add_s_pad(out, pad, v);
+                        } else {
+                            addMultiline1(out, v);
+                        }
+                    }
+                    case LONG_TEXT_OR_WRAP -> {
+                        if (length > plan.longLimit[i]) {
+                            addMultiline1(out, v);
+                        } else {
+                            if (out.getLastLineLength() + length > wrap) {
+                                out.appendEOL();
                             }
-                        } catch (IOException ex1) {
-                            Logger.getLogger(Mol_TextCifReader.class.getName()).log(Level.SEVERE, null, ex1);
-                            ex1.printStackTrace();
+                            add_s_pad(out, pad, v);
                         }
-                    });
-                } catch (IOException ex1) {
-                    Logger.getLogger(Mol_TextCifReader.class.getName()).log(Level.SEVERE, null, ex1);
-                    ex1.printStackTrace();
+                    }
+                    default ->
+                        addMultiline0(out, wrap, v);
                 }
-            });
-            //bw.write(Mol_Environment.EOL);
-            bw.write(Mol_Strings.SYMBOL_HASH + Mol_Strings.symbol_space);
-            bw.write(Mol_Environment.EOL);
+            } else {
+                int wrap = plan.shortWrap[i];
+                switch (plan.shortRule[i]) {
+                    case SHORT_PAD ->
+                        add_s_pad(out, pad, v);
+                    case SHORT_WRAP -> {
+                        if (out.getLastLineLength() + length > wrap) {
+                            out.appendEOL();
+                        }
+                        add_s_pad(out, pad, v);
+                    }
+                    case SHORT_WRAP_WITH_PAD -> {
+                        if (out.getLastLineLength() + length + pad > wrap) {
+                            out.appendEOL();
+                        }
+                        add_s_pad(out, pad, v);
+                    }
+                    case SHORT_WRAP_SINGLE_PAD -> {
+                        if (out.getLastLineLength() + length > wrap) {
+                            out.appendEOL();
+                            pad = 1;
+                        }
+                        add_s_pad(out, pad, v);
+                    }
+                    case SHORT_ROW_WRAP -> {
+                        if (length + out.getRowLength() > wrap) {
+                            if (out.endsWith(';')) {
+                                out.appendEOL();
+                            }
+                            add_s_pad(out, pad, v);
+                        } else if (isTextField(val)) {
+                            addMultiline1(out, v);
+                        } else {
+                            add_s_pad(out, pad, v);
+                        }
+                    }
+                    case SHORT_TEXT_IF_FULL -> {
+                        if (length >= CIF.HEADER_LENGTH_MAX) {
+                            add2(out, v.concat(Mol_Environment.EOL));
+                        } else {
+                            add_s_pad(out, pad, v);
+                        }
+                    }
+                    case SHORT_AFTER_TEXT -> {
+                        if (out.isLastLineSemiColon()) {
+                            out.appendEOL();
+                        }
+                        add_s_pad(out, pad, v);
+                    }
+                    case SHORT_TEXT_IF_UNQUOTED -> {
+                        if (!isQuoted(val.getKind()) && !val.isMissing()) {
+                            add2(out, v);
+                        } else {
+                            add_s_pad(out, pad, v);
+                        }
+                    }
+                    default -> {
+                        if (isTextField(val)) {
+                            addMultiline1(out, v);
+                            out.appendEOL();
+                        } else {
+                            add_s_pad(out, pad, v);
+                        }
+                    }
+                }
+            }
+        }
+        out.appendEOL();
+    }
+
+    /**
+     * @param v The value.
+     * @return true if v was read as a text field or if it contains a space
+     * and is not quoted.
+     */
+    protected static boolean isTextField(Value v) {
+        return v.isTextField() || (v.hasSpace() && !isQuoted(v.getKind()));
+    }
+
+    /**
+     * @param kind The kind of a value.
+     * @return true if kind is {@link Value#SINGLE_QUOTED} or
+     * {@link Value#DOUBLE_QUOTED}.
+     */
+    protected static boolean isQuoted(byte kind) {
+        return kind == Value.SINGLE_QUOTED || kind == Value.DOUBLE_QUOTED;
+    }
+
+    /**
+     * For writing DataItems.
+     *
+     * @param out The output.
+     * @param dataItems The DataItems.
+     * @throws IOException If encountered.
+     */
+    protected void writeDataItems(Mol_TextCifOutput out, DataItems dataItems) throws IOException {
+        Mol_TextCifFormat plan = new Mol_TextCifFormat(dataItems);
+        int nml = dataItems.getNameMaxLength();
+        for (DataItem d : dataItems.dataItems.values()) {
+            writeName(out, dataItems.name, d.name);
+            String dv = d.value;
+            int pad = nml - d.name.length() + 3;
+            if (plan.itemRule == Mol_TextCifFormat.Rule.ITEM_TEXT_IF_LONG) {
+                if (pad + dv.length() > plan.itemLimit) {
+                    add1(out, pad, dv);
+                } else {
+                    add0(out, pad, dv);
+                }
+            } else if ((dv.contains(" ") && !isQuoted(d.kind))
+                    || d.kind == Value.TEXT_FIELD) {
+                addMultiline1(out, dv);
+                out.appendEOL();
+            } else {
+                add0(out, pad, dv);
+            }
         }
     }
 
     /**
-     * @param sb The StringBuilder.
+     * @param out The output.
      * @param lineMaxLength The maximum length for a line. Lines greater than 
      * this are split into multiple lines.
      * @param s The String.
+     * @throws IOException If encountered.
      */
-    protected void addMultiline0(StringBuilder sb, int lineMaxLength, String s) {
-        sb.append(Mol_Environment.EOL);
-        sb.append(Mol_Strings.SYMBOL_SEMI_COLON);
+    protected void addMultiline0(Mol_TextCifOutput out, int lineMaxLength, String s) throws IOException {
+        out.appendEOL();
+        out.append(Mol_Strings.SYMBOL_SEMI_COLON);
         if (s.contains("(") && Generic_Strings.countChars(s, '(') == Generic_Strings.countChars(s, ')')) {
             String ss = s.substring(0, lineMaxLength);
-            String sv = splitAndAppend(sb, s, ss);
+            String sv = splitAndAppend(out, s, ss);
             while (sv.length() > lineMaxLength) {
                 ss = sv.substring(0, lineMaxLength);
-                sv = splitAndAppend(sb, sv, ss);
+                sv = splitAndAppend(out, sv, ss);
             }
-            sb.append(sv);
+            out.append(sv);
         } else {
             String ss = s.substring(0, lineMaxLength);
             String sv = s.substring(lineMaxLength, s.length());
-            sb.append(ss);
-            sb.append(Mol_Environment.EOL);
+            out.append(ss);
+            out.appendEOL();
             while (sv.length() > lineMaxLength) {
                 ss = sv.substring(0, lineMaxLength);
                 sv = sv.substring(lineMaxLength, sv.length());
-                sb.append(ss);
-                sb.append(Mol_Environment.EOL);
+                out.append(ss);
+                out.appendEOL();
             }
-            sb.append(sv);
-        }
-        sb.append(Mol_Environment.EOL);
-        sb.append(Mol_Strings.SYMBOL_SEMI_COLON);
-        sb.append(Mol_Environment.EOL);
-        if (sb.toString().contains(";;")) {
-            int debug = 1;
+            out.append(sv);
         }
+        out.appendEOL();
+        out.append(Mol_Strings.SYMBOL_SEMI_COLON);
+        out.appendEOL();
     }
 
     /**
-     * @param sb The StringBuilder.
+     * @param out The output.
      * @param s A string.
      * @param ss The first CIF.HEADER_LENGTH_MAX characters of s.
      * @return A next sub-string of s.
+     * @throws IOException If encountered.
      */
-    protected String splitAndAppend(StringBuilder sb, String s, String ss) {
+    protected String splitAndAppend(Mol_TextCifOutput out, String s, String ss) throws IOException {
         if (Generic_Strings.countChars(ss, '(') != Generic_Strings.countChars(ss, ')')) {
             int li = ss.lastIndexOf('(');
             ss = ss.substring(0, li);
@@ -390,108 +511,111 @@ public class Mol_TextCifWriter {
         } else {
             s = s.substring(CIF.HEADER_LENGTH_MAX, s.length());
         }
-        sb.append(ss);
-        sb.append(Mol_Environment.EOL);
+        out.append(ss);
+        out.appendEOL();
         return s;
     }
 
     /**
-     * @param sb The StringBuilder.
+     * @param out The output.
      * @param s The String.
+     * @throws IOException If encountered.
      */
-    protected void addMultiline1(StringBuilder sb, String s) {
-        sb.append(Mol_Environment.EOL);
-        sb.append(Mol_Strings.SYMBOL_SEMI_COLON);
-        sb.append(s);
-        sb.append(Mol_Environment.EOL);
-        sb.append(Mol_Strings.SYMBOL_SEMI_COLON);
-        sb.append(Mol_Environment.EOL);
+    protected void addMultiline1(Mol_TextCifOutput out, String s) throws IOException {
+        out.appendEOL();
+        out.append(Mol_Strings.SYMBOL_SEMI_COLON);
+        out.append(s);
+        out.appendEOL();
+        out.append(Mol_Strings.SYMBOL_SEMI_COLON);
+        out.appendEOL();
     }
 
     /**
      *
-     * @param sb The StringBuilder.
-     * @param pad The padding to add1 before the variable
+     * @param out The output.
+     * @param pad The number of spaces to add before s.
      * @param s The string to append after pad and before a space and EOL.
+     * @throws IOException If encountered.
      */
-    protected static void add0(StringBuilder sb, String pad, String s) {
-        sb.append(pad);
-        sb.append(s);
-        sb.append(Mol_Strings.symbol_space);
-        sb.append(Mol_Environment.EOL);
+    protected static void add0(Mol_TextCifOutput out, int pad, String s) throws IOException {
+        out.appendSpaces(pad);
+        out.append(s);
+        out.append(Mol_Strings.symbol_space);
+        out.appendEOL();
     }
 
     /**
-     * Appends pad to sb, then calls
-     * {@link #add2(java.lang.StringBuilder, java.lang.String)}.
+     * Appends pad spaces to out, then calls
+     * {@link #add2(uk.ac.leeds.ccg.mol.io.Mol_TextCifOutput, java.lang.String)}.
      *
-     * @param sb The StringBuilder.
-     * @param pad The padding to prepend to sb.
+     * @param out The output.
+     * @param pad The number of spaces to add.
      * @param s What is passed to
-     * {@link #add2(java.lang.StringBuilder, java.lang.String)}.
+     * {@link #add2(uk.ac.leeds.ccg.mol.io.Mol_TextCifOutput, java.lang.String)}.
+     * @throws IOException If encountered.
      */
-    protected static void add1(StringBuilder sb, String pad, String s) {
-        sb.append(pad);
-        add2(sb, s);
+    protected static void add1(Mol_TextCifOutput out, int pad, String s) throws IOException {
+        out.appendSpaces(pad);
+        add2(out, s);
     }
 
     /**
      * Appends Mol_Environment.EOL, Mol_Strings.SYMBOL_SEMI_COLON, s,
      * Mol_Environment.EOL, Mol_Strings.SYMBOL_SEMI_COLON and
-     * Mol_Environment.EOL to sb.
+     * Mol_Environment.EOL to out.
      *
-     * @param sb The StringBuilder.
+     * @param out The output.
      * @param s The String to add between Mol_Environment.EOL and
      * Mol_Strings.SYMBOL_SEMI_COLON symbols.
+     * @throws IOException If encountered.
      */
-    protected static void add2(StringBuilder sb, String s) {
-        sb.append(Mol_Environment.EOL);
-        sb.append(Mol_Strings.SYMBOL_SEMI_COLON);
-        sb.append(s);
-        sb.append(Mol_Environment.EOL);
-        sb.append(Mol_Strings.SYMBOL_SEMI_COLON);
-        sb.append(Mol_Environment.EOL);
+    protected static void add2(Mol_TextCifOutput out, String s) throws IOException {
+        out.appendEOL();
+        out.append(Mol_Strings.SYMBOL_SEMI_COLON);
+        out.append(s);
+        out.appendEOL();
+        out.append(Mol_Strings.SYMBOL_SEMI_COLON);
+        out.appendEOL();
     }
 
     /**
-     * Appends s and pad to sb.
+     * Appends s and pad spaces to out.
      *
-     * @param sb The StringBuilder.
-     * @param pad The padding to add after s.
+     * @param out The output.
+     * @param pad The number of spaces to add after s.
      * @param s The String to append before pad.
+     * @throws IOException If encountered.
      */
-    protected static void add_s_pad(StringBuilder sb, String pad, String s) {
-        sb.append(s);
-        sb.append(pad);
+    protected static void add_s_pad(Mol_TextCifOutput out, int pad, String s) throws IOException {
+        out.append(s);
+        out.appendSpaces(pad);
     }
 
     /**
-     * Appends pad and s to sb.
+     * Appends pad spaces and s to out.
      *
-     * @param sb The StringBuilder.
-     * @param pad The padding to add before s.
+     * @param out The output.
+     * @param pad The number of spaces to add before s.
      * @param s The String to append after pad.
+     * @throws IOException If encountered.
      */
-    protected void add_pad_s(StringBuilder sb, String pad, String s) {
-        sb.append(pad);
-        sb.append(s);
+    protected void add_pad_s(Mol_TextCifOutput out, int pad, String s) throws IOException {
+        out.appendSpaces(pad);
+        out.append(s);
     }
 
     /**
      * For writing name.
      *
-     * @param bw The BufferedWriter.
+     * @param out The output.
      * @param categoryName The category name.
      * @param variableName The variable name.
-     * @throws IOException
+     * @throws IOException If encountered.
      */
-    protected void writeName(BufferedWriter bw, String categoryName, String variableName) throws IOException {
-        StringBuilder sb = new StringBuilder();
-        sb.append(Mol_Strings.symbol_underscore);
-        sb.append(categoryName);
-        sb.append(Mol_Strings.symbol_dot);
-        sb.append(variableName);
-        //bw.write(sb.toString());
-        bw.write(sb.toString());
+    protected void writeName(Mol_TextCifOutput out, String categoryName, String variableName) throws IOException {
+        out.append(Mol_Strings.symbol_underscore);
+        out.append(categoryName);
+        out.append(Mol_Strings.symbol_dot);
+        out.append(variableName);
     }
 }
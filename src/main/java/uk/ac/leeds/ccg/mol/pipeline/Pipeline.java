@@ -0,0 +1,270 @@
+/*
+ * Copyright 2025 University of Leeds.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.ac.leeds.ccg.mol.pipeline;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+
+/**
+ * A sequence of {@link Stage}s connected by bounded queues. Each stage has
+ * its own worker threads, so while one item is being written the next can be
+ * being aligned and the one after that read. A full queue blocks the stage
+ * before it, so the number of items in memory is bounded. Items may leave a
+ * stage with more than one worker in a different order to that in which they
+ * arrived.
+ *
+ * For example:
+ * <pre>
+ * Pipeline.&lt;Path&gt;of(16)
+ *     .then("read", 4, reader::getCif)
+ *     .then("centralise", 2, cif -&gt; {cif.centralise(null); return cif;})
+ *     .run(paths.iterator(), results::add);
+ * </pre>
+ *
+ * @author Andy Turner
+ * @param <I> The type of the items put in.
+ * @param <O> The type of the items coming out.
+ */
+public class Pipeline<I, O> {
+
+    /**
+     * Marks the end of the items in a queue.
+     */
+    private static final Object END = new Object();
+
+    /**
+     * The capacity of each queue.
+     */
+    public final int capacity;
+
+    /**
+     * The stages.
+     */
+    protected final List<Stage<Object, Object>> stages;
+
+    /**
+     * The time {@link #run(java.util.Iterator, java.util.function.Consumer)}
+     * started.
+     */
+    protected volatile long start;
+
+    /**
+     * The time {@link #run(java.util.Iterator, java.util.function.Consumer)}
+     * finished or 0.
+     */
+    protected volatile long end;
+
+    /**
+     * @param capacity What {@link #capacity} is set to.
+     */
+    protected Pipeline(int capacity) {
+        this.capacity = capacity;
+        this.stages = new ArrayList<>();
+    }
+
+    /**
+     * @param <I> The type of the items put in.
+     * @param capacity The capacity of each queue.
+     * @return A new pipeline with no stages.
+     */
+    public static <I> Pipeline<I, I> of(int capacity) {
+        return new Pipeline<>(capacity);
+    }
+
+    /**
+     * Adds a stage.
+     *
+     * @param <R> The output type of the stage.
+     * @param name The name of the stage.
+     * @param parallelism The number of worker threads.
+     * @param task The task.
+     * @return This pipeline with the stage added.
+     */
+    @SuppressWarnings("unchecked")
+    public <R> Pipeline<I, R> then(String name, int parallelism,
+            Stage.Task<? super O, ? extends R> task) {
+        stages.add(new Stage<>(name, parallelism, capacity,
+                (Stage.Task<Object, Object>) (Stage.Task<?, ?>) task));
+        return (Pipeline<I, R>) this;
+    }
+
+    /**
+     * @return The stages.
+     */
+    public List<Stage<Object, Object>> getStages() {
+        return Collections.unmodifiableList(stages);
+    }
+
+    /**
+     * Runs the pipeline. The items from source are put in by another thread
+     * and sink is called by this thread for each item coming out. If a task,
+     * the source or the sink throws, no more items are put in, the items in
+     * flight are discarded and the exception is thrown once all the workers
+     * have stopped. Errors such as AssertionError are wrapped in an
+     * ExecutionException.
+     *
+     * @param source The items to put in.
+     * @param sink For the items coming out.
+     * @throws Exception The first exception thrown by a task, the source or
+     * the sink.
+     */
+    public void run(Iterator<? extends I> source, Consumer<? super O> sink)
+            throws Exception {
+        if (stages.isEmpty()) {
+            throw new IllegalStateException("No stages");
+        }
+        start = System.nanoTime();
+        end = 0L;
+        AtomicReference<Exception> failure = new AtomicReference<>();
+        BlockingQueue<Object> output = new ArrayBlockingQueue<>(capacity);
+        List<Thread> threads = new ArrayList<>();
+        for (int s = 0; s < stages.size(); s++) {
+            Stage<Object, Object> stage = stages.get(s);
+            Stage<Object, Object> next = s + 1 < stages.size()
+                    ? stages.get(s + 1) : null;
+            stage.running.set(stage.parallelism);
+            for (int w = 0; w < stage.parallelism; w++) {
+                threads.add(Thread.ofPlatform().name(stage.name + "-" + w)
+                        .daemon().start(() -> work(stage, next, output, failure)));
+            }
+        }
+        Stage<Object, Object> first = stages.get(0);
+        threads.add(Thread.ofPlatform().name("source").daemon().start(() -> {
+            try {
+                while (source.hasNext() && failure.get() == null) {
+                    first.queue.put(source.next());
+                }
+            } catch (Throwable e) {
+                failure.compareAndSet(null, wrap(e));
+            } finally {
+                putEnds(first.queue, first.parallelism);
+            }
+        }));
+        try {
+            for (Object o = output.take(); o != END; o = output.take()) {
+                if (failure.get() == null) {
+                    try {
+                        @SuppressWarnings("unchecked")
+                        O r = (O) o;
+                        sink.accept(r);
+                    } catch (Throwable e) {
+                        failure.compareAndSet(null, wrap(e));
+                    }
+                }
+            }
+            for (Thread t : threads) {
+                t.join();
+            }
+        } finally {
+            end = System.nanoTime();
+        }
+        Exception e = failure.get();
+        if (e != null) {
+            throw e;
+        }
+    }
+
+    /**
+     * The loop run by each worker of a stage.
+     */
+    private static void work(Stage<Object, Object> stage,
+            Stage<Object, Object> next, BlockingQueue<Object> output,
+            AtomicReference<Exception> failure) {
+        BlockingQueue<Object> to = next == null ? output : next.queue;
+        try {
+            for (Object o = stage.queue.take(); o != END; o = stage.queue.take()) {
+                stage.in.increment();
+                if (failure.get() != null) {
+                    continue;
+                }
+                long t = System.nanoTime();
+                Object r;
+                try {
+                    r = stage.task.apply(o);
+                } catch (Throwable e) {
+                    failure.compareAndSet(null, wrap(e));
+                    continue;
+                } finally {
+                    stage.busyNanos.add(System.nanoTime() - t);
+                }
+                if (r != null) {
+                    to.put(r);
+                    stage.out.increment();
+                }
+            }
+        } catch (InterruptedException e) {
+            failure.compareAndSet(null, e);
+        } finally {
+            if (stage.running.decrementAndGet() == 0) {
+                putEnds(to, next == null ? 1 : next.parallelism);
+            }
+        }
+    }
+
+    /**
+     * @param t The throwable.
+     * @return t if it is an Exception, otherwise t wrapped in an
+     * ExecutionException.
+     */
+    private static Exception wrap(Throwable t) {
+        return t instanceof Exception e ? e : new ExecutionException(t);
+    }
+
+    /**
+     * Puts n {@link #END}s in q.
+     */
+    private static void putEnds(BlockingQueue<Object> q, int n) {
+        for (int i = 0; i < n; i++) {
+            while (true) {
+                try {
+                    q.put(END);
+                    break;
+                } catch (InterruptedException e) {
+                    // The end must be marked or the pipeline never stops.
+                }
+            }
+        }
+    }
+
+    /**
+     * @return The time the pipeline has been running or ran for.
+     */
+    public long getElapsedNanos() {
+        if (start == 0L) {
+            return 0L;
+        }
+        return (end == 0L ? System.nanoTime() : end) - start;
+    }
+
+    /**
+     * @return A line of statistics for each stage.
+     */
+    public String getStats() {
+        long elapsed = getElapsedNanos();
+        StringBuilder sb = new StringBuilder();
+        for (Stage<Object, Object> s : stages) {
+            sb.append(s.toString(elapsed)).append(System.lineSeparator());
+        }
+        return sb.toString();
+    }
+}
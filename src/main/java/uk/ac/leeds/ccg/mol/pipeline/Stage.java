@@ -0,0 +1,170 @@
+/*
+ * Copyright 2025 University of Leeds.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.ac.leeds.ccg.mol.pipeline;
+
+import java.util.Locale;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A stage of a {@link Pipeline}. A stage has an input queue and a number of
+ * worker threads each of which takes an item from the queue, applies the
+ * {@link Task} and passes the result on to the next stage. Counts and times
+ * are kept so that bottlenecks can be found: a stage with a full queue is
+ * slower than the stages before it.
+ *
+ * @author Andy Turner
+ * @param <I> The input type.
+ * @param <O> The output type.
+ */
+public class Stage<I, O> {
+
+    /**
+     * The work done by a stage.
+     *
+     * @param <I> The input type.
+     * @param <O> The output type.
+     */
+    public interface Task<I, O> {
+
+        /**
+         * @param in The input.
+         * @return The output or null to pass nothing on.
+         * @throws Exception If the pipeline should stop.
+         */
+        O apply(I in) throws Exception;
+    }
+
+    /**
+     * The name.
+     */
+    public final String name;
+
+    /**
+     * The number of worker threads.
+     */
+    public final int parallelism;
+
+    /**
+     * The task.
+     */
+    final Task<I, O> task;
+
+    /**
+     * The input queue.
+     */
+    final BlockingQueue<Object> queue;
+
+    /**
+     * The number of workers still running.
+     */
+    final AtomicInteger running;
+
+    /**
+     * The number of items taken.
+     */
+    final LongAdder in;
+
+    /**
+     * The number of items passed on.
+     */
+    final LongAdder out;
+
+    /**
+     * The time spent in {@link #task} summed over workers.
+     */
+    final LongAdder busyNanos;
+
+    /**
+     * Create a new instance.
+     *
+     * @param name What {@link #name} is set to.
+     * @param parallelism What {@link #parallelism} is set to.
+     * @param capacity The capacity of the input queue.
+     * @param task What {@link #task} is set to.
+     */
+    Stage(String name, int parallelism, int capacity, Task<I, O> task) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("parallelism < 1 for " + name);
+        }
+        this.name = name;
+        this.parallelism = parallelism;
+        this.task = task;
+        this.queue = new ArrayBlockingQueue<>(capacity);
+        this.running = new AtomicInteger();
+        this.in = new LongAdder();
+        this.out = new LongAdder();
+        this.busyNanos = new LongAdder();
+    }
+
+    /**
+     * @return The number of items waiting in the input queue.
+     */
+    public int getQueueDepth() {
+        return queue.size();
+    }
+
+    /**
+     * @return The number of items taken.
+     */
+    public long getIn() {
+        return in.sum();
+    }
+
+    /**
+     * @return The number of items passed on.
+     */
+    public long getOut() {
+        return out.sum();
+    }
+
+    /**
+     * @return The time spent in the task summed over workers.
+     */
+    public long getBusyNanos() {
+        return busyNanos.sum();
+    }
+
+    /**
+     * @param elapsedNanos The time the pipeline has been running.
+     * @return The items passed on per second.
+     */
+    public double getThroughput(long elapsedNanos) {
+        return elapsedNanos == 0L ? 0d : getOut() * 1e9 / elapsedNanos;
+    }
+
+    /**
+     * @param elapsedNanos The time the pipeline has been running.
+     * @return The proportion of the time the workers were busy.
+     */
+    public double getUtilisation(long elapsedNanos) {
+        return elapsedNanos == 0L ? 0d
+                : getBusyNanos() / ((double) elapsedNanos * parallelism);
+    }
+
+    /**
+     * @param elapsedNanos The time the pipeline has been running.
+     * @return A line of statistics.
+     */
+    public String toString(long elapsedNanos) {
+        return String.format(Locale.ROOT,
+                "%-12s threads %3d queue %5d in %8d out %8d %10.2f/s busy %5.1f%%",
+                name, parallelism, getQueueDepth(), getIn(), getOut(),
+                getThroughput(elapsedNanos), 100d * getUtilisation(elapsedNanos));
+    }
+}
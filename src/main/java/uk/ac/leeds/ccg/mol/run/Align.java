@@ -73,7 +73,7 @@ public class Align {
         TreeSet<String> atomTypes = new TreeSet<>();
         atomTypes.add("P");
         //cif1.centralise(atomTypes);
-        cif2.centralise(atomTypes);
+        cif2.centralise(atomTypes, cif2.summary);
         String atomTypesString = "_";
         Iterator<String> ite = atomTypes.iterator();
         while (ite.hasNext()) {
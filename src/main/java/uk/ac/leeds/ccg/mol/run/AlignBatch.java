@@ -0,0 +1,686 @@
+/*
+ * Copyright 2025 University of Leeds.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.ac.leeds.ccg.mol.run;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.function.ObjLongConsumer;
+import uk.ac.leeds.ccg.generic.io.Generic_IO;
+import uk.ac.leeds.ccg.mol.data.cif.CIF;
+import uk.ac.leeds.ccg.mol.data.cif.Columns;
+import uk.ac.leeds.ccg.mol.data.cif.Hierarchy;
+import uk.ac.leeds.ccg.mol.data.cif.Value;
+import uk.ac.leeds.ccg.mol.geom.QCProt;
+import uk.ac.leeds.ccg.mol.io.Mol_CifDiskCache;
+import uk.ac.leeds.ccg.mol.io.Mol_TextCifBatchReader;
+import uk.ac.leeds.ccg.mol.io.Mol_TextCifReader;
+import uk.ac.leeds.ccg.mol.io.Mol_TextCifWriter;
+import uk.ac.leeds.ccg.mol.pipeline.Pipeline;
+import uk.ac.leeds.ccg.mol.pipeline.Stage;
+import uk.ac.leeds.ccg.mol.select.Selector;
+
+/**
+ * For aligning many entries to a reference. Each entry is read, the selected
+ * atoms are matched to those of the reference by chain, residue number,
+ * insertion code and atom name (see {@link #select(CIF)}), both sets are
+ * centralised, the entry is aligned using
+ * {@link QCProt} and the moved entry is written. A summary table is written
+ * with a row for each entry.
+ *
+ * Usage:
+ * <pre>
+ * AlignBatch --ref REF.cif --in DIR|FILE [--in DIR|FILE ...]
+ *     [--glob GLOB] [--select EXPRESSION] [--format text|gzip|bcif|none]
+ *     [--out DIR] [--summary FILE.csv|FILE.tsv] [--threads N]
+ *     [--io-threads N] [--stats SECONDS] [--cache DIR]
+ * </pre>
+ *
+ * The stages run in a {@link Pipeline}: reading and writing each have
+ * --io-threads workers and the other stages each have --threads workers.
+ * With --stats the queue depths and throughput of the stages are printed
+ * periodically; a stage with a full queue in front of it is a bottleneck.
+ *
+ * With --cache parsed files are kept in a {@link Mol_CifDiskCache} in DIR so
+ * a second run over the same files does not parse them again.
+ *
+ * @author Andy Turner
+ */
+public class AlignBatch {
+
+    /**
+     * The suffix added to the names of output files.
+     */
+    public static final String NAME = "_aligned";
+
+    /**
+     * The maximum size of the cache given with --cache.
+     */
+    public static long CACHE_BYTES_MAX = 4L << 30;
+
+    /**
+     * The summary columns.
+     */
+    public static final String[] HEADER = {"pdbId", "atoms", "rmsd", "wrmsd",
+        "q1", "q2", "q3", "q4", "read_ms", "select_ms", "centralise_ms",
+        "align_ms", "write_ms", "error"};
+
+    /**
+     * The selected atoms of an entry.
+     */
+    public static class Atoms {
+
+        /**
+         * The index in {@link #coords} of each atom key.
+         */
+        public final HashMap<String, Integer> index;
+
+        /**
+         * The coordinates in the form used by QCProt.
+         */
+        public final double[][] coords;
+
+        /**
+         * Create a new instance.
+         *
+         * @param index What {@link #index} is set to.
+         * @param coords What {@link #coords} is set to.
+         */
+        public Atoms(HashMap<String, Integer> index, double[][] coords) {
+            this.index = index;
+            this.coords = coords;
+        }
+    }
+
+    /**
+     * The matched and centralised coordinates of an entry and the reference.
+     */
+    public static class Pair {
+
+        /**
+         * The number of atoms matched.
+         */
+        public final int n;
+
+        /**
+         * The centralised reference coordinates.
+         */
+        public final double[][] ref;
+
+        /**
+         * The centralised entry coordinates.
+         */
+        public final double[][] mob;
+
+        /**
+         * The centroid of the matched reference atoms.
+         */
+        public final double[] refCentroid;
+
+        /**
+         * The centroid of the matched entry atoms.
+         */
+        public final double[] mobCentroid;
+
+        Pair(int n, double[][] ref, double[][] mob, double[] refCentroid,
+                double[] mobCentroid) {
+            this.n = n;
+            this.ref = ref;
+            this.mob = mob;
+            this.refCentroid = refCentroid;
+            this.mobCentroid = mobCentroid;
+        }
+    }
+
+    /**
+     * A row of the summary.
+     */
+    public static class Row {
+
+        /**
+         * The index of the entry in the batch.
+         */
+        public int index;
+
+        /**
+         * The entry name.
+         */
+        public String pdbId;
+
+        /**
+         * The number of atoms matched.
+         */
+        public int atoms;
+
+        /**
+         * The RMSD.
+         */
+        public double rmsd = Double.NaN;
+
+        /**
+         * The weighted RMSD.
+         */
+        public double wrmsd = Double.NaN;
+
+        /**
+         * The rotation quaternion.
+         */
+        public double q1 = Double.NaN, q2 = Double.NaN, q3 = Double.NaN,
+                q4 = Double.NaN;
+
+        /**
+         * The wall time of each stage in nanoseconds.
+         */
+        public long readNanos, selectNanos, centraliseNanos, alignNanos,
+                writeNanos;
+
+        /**
+         * The error or null.
+         */
+        public String error;
+
+        /**
+         * @param delimiter The delimiter.
+         * @return The row as delimited text.
+         */
+        public String toString(String delimiter) {
+            return String.join(delimiter, pdbId, Integer.toString(atoms),
+                    Double.toString(rmsd), Double.toString(wrmsd),
+                    Double.toString(q1), Double.toString(q2),
+                    Double.toString(q3), Double.toString(q4),
+                    ms(readNanos), ms(selectNanos), ms(centraliseNanos),
+                    ms(alignNanos), ms(writeNanos),
+                    error == null ? "" : error.replace(delimiter, " "));
+        }
+
+        private static String ms(long nanos) {
+            return String.format(Locale.ROOT, "%.3f", nanos / 1e6);
+        }
+    }
+
+    /**
+     * The selection expression.
+     */
+    public final String selection;
+
+    /**
+     * The output format: text, gzip, bcif or none.
+     */
+    public final String format;
+
+    /**
+     * The output directory.
+     */
+    public final Path out;
+
+    /**
+     * The writer.
+     */
+    public final Mol_TextCifWriter writer;
+
+    /**
+     * The selected reference atoms.
+     */
+    public final Atoms ref;
+
+    /**
+     * If not null, entries are read through this.
+     */
+    public Mol_CifDiskCache cache;
+
+    /**
+     * Create a new instance.
+     *
+     * @param ref The reference.
+     * @param selection What {@link #selection} is set to.
+     * @param format What {@link #format} is set to.
+     * @param out What {@link #out} is set to.
+     * @throws Exception If the selection is not valid.
+     */
+    public AlignBatch(CIF ref, String selection, String format, Path out)
+            throws Exception {
+        this.selection = selection;
+        this.format = format;
+        this.out = out;
+        this.writer = new Mol_TextCifWriter();
+        this.ref = select(ref);
+    }
+
+    /**
+     * The select stage. Atoms are keyed by label_asym_id, label_seq_id,
+     * pdbx_PDB_ins_code and label_atom_id. As in {@link Hierarchy},
+     * auth_seq_id is used where label_seq_id is "." so that the atoms of
+     * non-polymer residues such as waters have different keys. Only the first
+     * atom with a key (e.g. of alternate locations) is kept.
+     *
+     * @param cif The CIF.
+     * @return The selected atoms of the first model with an atom key.
+     * @throws Exception If the selection is not valid.
+     */
+    public Atoms select(CIF cif) throws Exception {
+        Selector s = new Selector(cif);
+        BitSet mask = s.select(selection);
+        Columns as = s.atomSite;
+        int n = as.getNRows();
+        String[] asym = getStrings(as, "label_asym_id", n);
+        String[] seq = getStrings(as, "label_seq_id", n);
+        String[] authSeq = getStrings(as, "auth_seq_id", n);
+        String[] ins = getStrings(as, "pdbx_PDB_ins_code", n);
+        String[] atom = getStrings(as, "label_atom_id", n);
+        double[][] c = s.getCoords(mask);
+        HashMap<String, Integer> index = new HashMap<>();
+        int j = 0;
+        for (int i = mask.nextSetBit(0); i >= 0; i = mask.nextSetBit(i + 1)) {
+            index.putIfAbsent(asym[i] + " "
+                    + (".".equals(seq[i]) ? authSeq[i] : seq[i]) + " "
+                    + ins[i] + " " + Value.unquote(atom[i]), j);
+            j++;
+        }
+        return new Atoms(index, c);
+    }
+
+    /**
+     * @param atomSite The atom_site Columns.
+     * @param name The column name.
+     * @param n The number of rows.
+     * @return The column values or an array of "?" if there is no such
+     * column.
+     */
+    private static String[] getStrings(Columns atomSite, String name, int n) {
+        String[] r = atomSite.getStrings(name);
+        if (r == null) {
+            r = new String[n];
+            Arrays.fill(r, "?");
+        }
+        return r;
+    }
+
+    /**
+     * The centralise stage.
+     *
+     * @param mob The selected atoms of an entry.
+     * @return The atoms matched with the reference and centralised.
+     */
+    public Pair centralise(Atoms mob) {
+        int[] ri = new int[Math.min(ref.index.size(), mob.index.size())];
+        int[] mi = new int[ri.length];
+        int n = 0;
+        for (var e : mob.index.entrySet()) {
+            Integer r = ref.index.get(e.getKey());
+            if (r != null) {
+                ri[n] = r;
+                mi[n] = e.getValue();
+                n++;
+            }
+        }
+        double[] rc = new double[3];
+        double[] mc = new double[3];
+        double[][] rr = new double[3][n];
+        double[][] mm = new double[3][n];
+        for (int d = 0; d < 3; d++) {
+            for (int k = 0; k < n; k++) {
+                rr[d][k] = ref.coords[d][ri[k]];
+                mm[d][k] = mob.coords[d][mi[k]];
+                rc[d] += rr[d][k];
+                mc[d] += mm[d][k];
+            }
+            if (n > 0) {
+                rc[d] /= n;
+                mc[d] /= n;
+            }
+            for (int k = 0; k < n; k++) {
+                rr[d][k] -= rc[d];
+                mm[d][k] -= mc[d];
+            }
+        }
+        return new Pair(n, rr, mm, rc, mc);
+    }
+
+    /**
+     * The align stage.
+     *
+     * @param p The matched atoms.
+     * @return The alignment with rmsd and wrmsd calculated.
+     */
+    public QCProt align(Pair p) {
+        QCProt q = new QCProt(p.ref, p.mob);
+        q.getRotatedCoordinates();
+        return q;
+    }
+
+    /**
+     * The write stage. The entry is moved onto the reference and written.
+     *
+     * @param cif The entry.
+     * @param pdbId The entry name.
+     * @param p The matched atoms.
+     * @param q The alignment.
+     * @throws IOException If encountered.
+     */
+    public void write(CIF cif, String pdbId, Pair p, QCProt q)
+            throws IOException {
+        if (format.equals("none")) {
+            return;
+        }
+        cif.transform(q.rotmat, p.mobCentroid, p.refCentroid);
+        switch (format) {
+            case "gzip" ->
+                writer.writeGzip(cif, out, pdbId, NAME);
+            case "bcif" ->
+                writer.writeBinary(cif, out, pdbId, NAME);
+            default ->
+                writer.write(cif, out, pdbId, NAME);
+        }
+    }
+
+    /**
+     * An entry passing through the pipeline.
+     */
+    public static class Job {
+
+        /**
+         * The path of the entry.
+         */
+        public final Path path;
+
+        /**
+         * The summary row.
+         */
+        public final Row row;
+
+        /**
+         * The entry.
+         */
+        public CIF cif;
+
+        /**
+         * The selected atoms.
+         */
+        public Atoms atoms;
+
+        /**
+         * The matched atoms.
+         */
+        public Pair pair;
+
+        /**
+         * The alignment.
+         */
+        public QCProt q;
+
+        /**
+         * Create a new instance.
+         *
+         * @param index The index of the entry in the batch.
+         * @param path What {@link #path} is set to.
+         */
+        public Job(int index, Path path) {
+            this.path = path;
+            this.row = new Row();
+            row.index = index;
+            row.pdbId = Mol_TextCifBatchReader.Result.getName(path);
+        }
+    }
+
+    /**
+     * A step in processing a job.
+     */
+    private interface Step {
+
+        void apply(Job j) throws Exception;
+    }
+
+    /**
+     * @param step The step.
+     * @param time For recording the time taken.
+     * @return A task running step for jobs that have not failed and
+     * recording the time taken and any error.
+     */
+    private static Stage.Task<Job, Job> task(Step step,
+            ObjLongConsumer<Row> time) {
+        return j -> {
+            if (j.row.error == null) {
+                long t = System.nanoTime();
+                try {
+                    step.apply(j);
+                } catch (Throwable e) {
+                    j.row.error = e.getClass().getSimpleName() + ": "
+                            + e.getMessage();
+                    j.cif = null;
+                }
+                time.accept(j.row, System.nanoTime() - t);
+            }
+            return j;
+        };
+    }
+
+    /**
+     * @param reader The reader.
+     * @param threads The number of threads for each compute stage.
+     * @param ioThreads The number of threads for each read and write stage.
+     * @return The pipeline: read, select, centralise, align, write.
+     */
+    public Pipeline<Job, Row> getPipeline(Mol_TextCifReader reader,
+            int threads, int ioThreads) {
+        Stage.Task<Job, Job> write = task(j -> write(j.cif, j.row.pdbId,
+                j.pair, j.q), (r, t) -> r.writeNanos = t);
+        return Pipeline.<Job>of(2 * Math.max(threads, ioThreads))
+                .then("read", ioThreads, task(j -> j.cif = cache == null
+                        ? reader.getCif(j.path) : cache.getCif(j.path),
+                        (r, t) -> r.readNanos = t))
+                .then("select", threads, task(j -> j.atoms = select(j.cif),
+                        (r, t) -> r.selectNanos = t))
+                .then("centralise", threads, task(j -> {
+                    j.pair = centralise(j.atoms);
+                    j.row.atoms = j.pair.n;
+                    if (j.pair.n < 3) {
+                        throw new Exception("Fewer than 3 atoms matched");
+                    }
+                }, (r, t) -> r.centraliseNanos = t))
+                .then("align", threads, task(j -> {
+                    QCProt q = align(j.pair);
+                    for (double m : q.rotmat) {
+                        if (Double.isNaN(m)) {
+                            throw new Exception("Rotation undefined (colinear atoms?)");
+                        }
+                    }
+                    j.q = q;
+                    j.row.rmsd = q.rmsd;
+                    j.row.wrmsd = q.wrmsd;
+                    j.row.q1 = q.q1;
+                    j.row.q2 = q.q2;
+                    j.row.q3 = q.q3;
+                    j.row.q4 = q.q4;
+                }, (r, t) -> r.alignNanos = t))
+                .then("write", ioThreads, (Job j) -> {
+                    write.apply(j);
+                    // Release the memory.
+                    j.cif = null;
+                    j.atoms = null;
+                    j.pair = null;
+                    return j.row;
+                });
+    }
+
+    /**
+     * Writes a summary.
+     *
+     * @param rows The rows.
+     * @param p The path which is tab separated if it ends with ".tsv" and
+     * comma separated otherwise.
+     * @throws IOException If encountered.
+     */
+    public static void writeSummary(List<Row> rows, Path p) throws IOException {
+        String delimiter = p.toString().endsWith(".tsv") ? "\t" : ",";
+        try (PrintWriter pw = Generic_IO.getPrintWriter(p, false)) {
+            pw.println(String.join(delimiter, HEADER));
+            rows.forEach(r -> pw.println(r.toString(delimiter)));
+        }
+    }
+
+    /**
+     * @param args See the class comment.
+     */
+    public static void main(String[] args) {
+        Path refp = null;
+        List<String> ins = new ArrayList<>();
+        String glob = Mol_TextCifBatchReader.GLOB;
+        String selection = "all";
+        String format = "text";
+        Path out = null;
+        Path summary = null;
+        int threads = Runtime.getRuntime().availableProcessors();
+        int ioThreads = 4;
+        int statsSeconds = 0;
+        Path cacheDir = null;
+        try {
+            for (int i = 0; i < args.length; i++) {
+                String a = args[i];
+                String v = ++i < args.length ? args[i] : null;
+                if (v == null) {
+                    throw new IllegalArgumentException("Missing value for " + a);
+                }
+                switch (a) {
+                    case "--ref" ->
+                        refp = Paths.get(v);
+                    case "--in" ->
+                        ins.add(v);
+                    case "--glob" ->
+                        glob = v;
+                    case "--select" ->
+                        selection = v;
+                    case "--format" -> {
+                        if (!List.of("text", "gzip", "bcif", "none").contains(v)) {
+                            throw new IllegalArgumentException("Unknown format " + v);
+                        }
+                        format = v;
+                    }
+                    case "--out" ->
+                        out = Paths.get(v);
+                    case "--summary" ->
+                        summary = Paths.get(v);
+                    case "--threads" ->
+                        threads = Integer.parseInt(v);
+                    case "--io-threads" ->
+                        ioThreads = Integer.parseInt(v);
+                    case "--stats" ->
+                        statsSeconds = Integer.parseInt(v);
+                    case "--cache" ->
+                        cacheDir = Paths.get(v);
+                    default ->
+                        throw new IllegalArgumentException("Unknown option " + a);
+                }
+            }
+            if (refp == null || ins.isEmpty()) {
+                throw new IllegalArgumentException("--ref and --in are required");
+            }
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.err.println("Usage: AlignBatch --ref REF.cif --in DIR|FILE"
+                    + " [--in DIR|FILE ...] [--glob GLOB] [--select EXPRESSION]"
+                    + " [--format text|gzip|bcif|none] [--out DIR]"
+                    + " [--summary FILE.csv|FILE.tsv] [--threads N]"
+                    + " [--io-threads N] [--stats SECONDS] [--cache DIR]");
+            System.exit(2);
+        }
+        if (out == null) {
+            out = refp.toAbsolutePath().getParent();
+        }
+        if (summary == null) {
+            summary = out.resolve("align_summary.csv");
+        }
+        try {
+            List<Path> paths = new ArrayList<>();
+            for (String in : ins) {
+                Path p = Paths.get(in);
+                if (Files.isDirectory(p)) {
+                    paths.addAll(Mol_TextCifBatchReader.list(p, glob));
+                } else {
+                    paths.add(p);
+                }
+            }
+            Files.createDirectories(out);
+            Mol_TextCifReader reader = new Mol_TextCifReader();
+            Mol_CifDiskCache cache = cacheDir == null ? null
+                    : new Mol_CifDiskCache(cacheDir, CACHE_BYTES_MAX, reader);
+            AlignBatch ab = new AlignBatch(cache == null ? reader.getCif(refp)
+                    : cache.getCif(refp), selection, format, out);
+            ab.cache = cache;
+            List<Row> rows = ab.run(reader, paths, threads, ioThreads,
+                    statsSeconds);
+            writeSummary(rows, summary);
+            long failed = rows.stream().filter(r -> r.error != null).count();
+            System.out.println("Aligned " + (rows.size() - failed) + " of "
+                    + rows.size() + ", summary " + summary);
+        } catch (Exception e) {
+            System.err.println(e.getMessage());
+            e.printStackTrace();
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Reads and processes entries in a pipeline.
+     *
+     * @param reader The reader.
+     * @param paths The paths of the entries.
+     * @param threads The number of threads for each compute stage.
+     * @param ioThreads The number of threads for each read and write stage.
+     * @param statsSeconds If greater than 0, stage statistics are printed
+     * this often.
+     * @return The rows in the order of paths.
+     * @throws Exception If the pipeline fails.
+     */
+    public List<Row> run(Mol_TextCifReader reader, List<Path> paths,
+            int threads, int ioThreads, int statsSeconds) throws Exception {
+        Pipeline<Job, Row> p = getPipeline(reader, threads, ioThreads);
+        List<Job> jobs = new ArrayList<>();
+        for (int i = 0; i < paths.size(); i++) {
+            jobs.add(new Job(i, paths.get(i)));
+        }
+        Thread stats = null;
+        if (statsSeconds > 0) {
+            stats = Thread.ofVirtual().start(() -> {
+                try {
+                    while (true) {
+                        Thread.sleep(statsSeconds * 1000L);
+                        System.out.print(p.getStats());
+                    }
+                } catch (InterruptedException e) {
+                    // Finished.
+                }
+            });
+        }
+        Row[] rows = new Row[paths.size()];
+        try {
+            p.run(jobs.iterator(), r -> rows[r.index] = r);
+        } finally {
+            if (stats != null) {
+                stats.interrupt();
+            }
+        }
+        System.out.print(p.getStats());
+        return List.of(rows);
+    }
+}
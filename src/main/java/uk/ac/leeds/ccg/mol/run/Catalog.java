@@ -0,0 +1,150 @@
+/*
+ * Copyright 2025 University of Leeds.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.ac.leeds.ccg.mol.run;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.stream.IntStream;
+import uk.ac.leeds.ccg.mol.io.Mol_Catalog;
+import uk.ac.leeds.ccg.mol.io.Mol_TextCifBatchReader;
+import uk.ac.leeds.ccg.mol.io.Mol_TextCifReader;
+
+/**
+ * For building, refreshing and querying a {@link Mol_Catalog} of a local
+ * mirror of mmCIF files. If --mirror is given the catalog is built or
+ * refreshed first. The IDs of the entries that match all the queries given
+ * are then printed one per line, or with --entry the catalog record of an
+ * entry is printed.
+ *
+ * Usage:
+ * <pre>
+ * Catalog --catalog FILE [--mirror DIR] [--glob GLOB] [--threads N]
+ *     [--max-resolution R] [--min-atoms N] [--method TEXT] [--entity TEXT]
+ *     [--entry ID]
+ * </pre>
+ *
+ * @author Andy Turner
+ */
+public class Catalog {
+
+    /**
+     * @param args See the class comment.
+     */
+    public static void main(String[] args) {
+        Path catalog = null;
+        Path mirror = null;
+        String glob = Mol_TextCifBatchReader.GLOB;
+        int threads = Runtime.getRuntime().availableProcessors() * 2;
+        double maxResolution = Double.NaN;
+        double minAtoms = Double.NaN;
+        String method = null;
+        String entity = null;
+        String entry = null;
+        try {
+            for (int i = 0; i < args.length; i++) {
+                String a = args[i];
+                String v = ++i < args.length ? args[i] : null;
+                if (v == null) {
+                    throw new IllegalArgumentException("Missing value for " + a);
+                }
+                switch (a) {
+                    case "--catalog" ->
+                        catalog = Paths.get(v);
+                    case "--mirror" ->
+                        mirror = Paths.get(v);
+                    case "--glob" ->
+                        glob = v;
+                    case "--threads" ->
+                        threads = Integer.parseInt(v);
+                    case "--max-resolution" ->
+                        maxResolution = Double.parseDouble(v);
+                    case "--min-atoms" ->
+                        minAtoms = Double.parseDouble(v);
+                    case "--method" ->
+                        method = v.toLowerCase();
+                    case "--entity" ->
+                        entity = v.toLowerCase();
+                    case "--entry" ->
+                        entry = v;
+                    default ->
+                        throw new IllegalArgumentException("Unknown option " + a);
+                }
+            }
+            if (catalog == null) {
+                throw new IllegalArgumentException("No --catalog");
+            }
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.err.println("Usage: Catalog --catalog FILE [--mirror DIR]"
+                    + " [--glob GLOB] [--threads N] [--max-resolution R]"
+                    + " [--min-atoms N] [--method TEXT] [--entity TEXT]"
+                    + " [--entry ID]");
+            System.exit(2);
+        }
+        try {
+            if (mirror != null) {
+                long t = System.nanoTime();
+                int n = Mol_Catalog.build(mirror, glob, catalog,
+                        new Mol_TextCifReader(), threads);
+                System.err.printf("Scanned %d files in %.1f s, catalog %s%n",
+                        n, (System.nanoTime() - t) / 1e9, catalog);
+            }
+            Mol_Catalog c = Mol_Catalog.open(catalog);
+            if (entry != null) {
+                int i = c.find(entry);
+                if (i < 0) {
+                    System.err.println("No entry " + entry);
+                    System.exit(1);
+                }
+                for (String name : c.getColumnNames()) {
+                    System.out.println(name + "\t" + switch (name) {
+                        case Mol_Catalog.SIZE, Mol_Catalog.MODIFIED,
+                                Mol_Catalog.ATOMS ->
+                            String.valueOf(c.getLong(name, i));
+                        case Mol_Catalog.RESOLUTION ->
+                            String.valueOf(c.getDouble(name, i));
+                        default ->
+                            c.getString(name, i);
+                    });
+                }
+                return;
+            }
+            IntStream rows = Double.isNaN(maxResolution)
+                    ? IntStream.range(0, c.size())
+                    : IntStream.of(c.range(Mol_Catalog.RESOLUTION, 0d,
+                            maxResolution)).sorted();
+            if (!Double.isNaN(minAtoms)) {
+                double min = minAtoms;
+                rows = rows.filter(i -> c.getLong(Mol_Catalog.ATOMS, i) >= min);
+            }
+            if (method != null) {
+                String m = method;
+                rows = rows.filter(i -> c.getString(Mol_Catalog.METHOD, i)
+                        .toLowerCase().contains(m));
+            }
+            if (entity != null) {
+                String e = entity;
+                rows = rows.filter(i -> c.getString(Mol_Catalog.ENTITIES, i)
+                        .toLowerCase().contains(e));
+            }
+            rows.forEach(i -> System.out.println(c.getString(Mol_Catalog.ID, i)));
+        } catch (Exception e) {
+            System.err.println(e.getMessage());
+            e.printStackTrace();
+            System.exit(1);
+        }
+    }
+}
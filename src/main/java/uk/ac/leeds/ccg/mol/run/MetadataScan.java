@@ -0,0 +1,328 @@
+/*
+ * Copyright 2025 University of Leeds.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.ac.leeds.ccg.mol.run;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.IntStream;
+import uk.ac.leeds.ccg.generic.io.Generic_IO;
+import uk.ac.leeds.ccg.mol.data.cif.CIF;
+import uk.ac.leeds.ccg.mol.data.cif.Columns;
+import uk.ac.leeds.ccg.mol.data.cif.DataBlock;
+import uk.ac.leeds.ccg.mol.data.cif.DataItem;
+import uk.ac.leeds.ccg.mol.data.cif.DataItems;
+import uk.ac.leeds.ccg.mol.data.cif.Value;
+import uk.ac.leeds.ccg.mol.io.Mol_TextCifBatchReader;
+import uk.ac.leeds.ccg.mol.io.Mol_TextCifReader;
+import uk.ac.leeds.ccg.mol.pipeline.Pipeline;
+
+/**
+ * For tabulating metadata such as titles, methods and resolutions of many
+ * entries. Only the categories of the items wanted are read, and reading of
+ * each file stops before the atom_site loop (see
+ * {@link Mol_TextCifReader#getCif(java.nio.file.Path, java.util.Set)}), so
+ * this is much quicker than reading the entries. Files are read in parallel
+ * and the table has a row for each file in the order they were listed. For an
+ * item of a loop category, the values of all the rows are joined with ";".
+ *
+ * Usage:
+ * <pre>
+ * MetadataScan --in DIR|FILE [--in DIR|FILE ...] [--glob GLOB]
+ *     [--items CATEGORY.ITEM,...] [--out FILE.csv|FILE.tsv] [--threads N]
+ * </pre>
+ *
+ * @author Andy Turner
+ */
+public class MetadataScan {
+
+    /**
+     * The items in the table if none are given.
+     */
+    public static final List<String> ITEMS = List.of("entry.id", "struct.title",
+            "struct_keywords.pdbx_keywords", "exptl.method",
+            "em_3d_reconstruction.resolution", "refine.ls_d_res_high",
+            "pdbx_database_status.recvd_initial_deposition_date");
+
+    /**
+     * The items in each row as category.item.
+     */
+    public final List<String> items;
+
+    /**
+     * The reader.
+     */
+    public final Mol_TextCifReader reader;
+
+    /**
+     * The names of the categories of {@link #items}.
+     */
+    protected final Set<String> names;
+
+    /**
+     * A row of the table.
+     */
+    public static class Row {
+
+        /**
+         * The order of the file.
+         */
+        public final int index;
+
+        /**
+         * The path of the file.
+         */
+        public final Path path;
+
+        /**
+         * The values of the items, empty strings if not found.
+         */
+        public final String[] values;
+
+        /**
+         * The error or null.
+         */
+        public final String error;
+
+        /**
+         * Create a new instance.
+         *
+         * @param index What {@link #index} is set to.
+         * @param path What {@link #path} is set to.
+         * @param values What {@link #values} is set to.
+         * @param error What {@link #error} is set to.
+         */
+        public Row(int index, Path path, String[] values, String error) {
+            this.index = index;
+            this.path = path;
+            this.values = values;
+            this.error = error;
+        }
+    }
+
+    /**
+     * Create a new instance.
+     *
+     * @param items What {@link #items} is set to.
+     * @param reader What {@link #reader} is set to.
+     */
+    public MetadataScan(List<String> items, Mol_TextCifReader reader) {
+        this.items = items;
+        this.reader = reader;
+        this.names = new LinkedHashSet<>();
+        for (String item : items) {
+            int i = item.indexOf('.');
+            if (i < 1) {
+                throw new IllegalArgumentException("Not CATEGORY.ITEM " + item);
+            }
+            names.add(item.substring(0, i));
+        }
+    }
+
+    /**
+     * Reads the items from a file. A file that cannot be read gives a row
+     * with the error.
+     *
+     * @param index The order of the file.
+     * @param p The path of the file.
+     * @return The row.
+     */
+    public Row scan(int index, Path p) {
+        String[] values = new String[items.size()];
+        Arrays.fill(values, "");
+        try {
+            CIF cif = reader.getCif(p, names);
+            if (!cif.dataBlocks.isEmpty()) {
+                DataBlock db = cif.dataBlocks.get(0);
+                for (int i = 0; i < values.length; i++) {
+                    values[i] = getValue(db, items.get(i));
+                }
+            }
+            return new Row(index, p, values, null);
+        } catch (Exception e) {
+            return new Row(index, p, values, e.getClass().getSimpleName()
+                    + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * @param db The DataBlock.
+     * @param item The category.item.
+     * @return The value or "" if there is none.
+     */
+    protected static String getValue(DataBlock db, String item) {
+        int i = item.indexOf('.');
+        String name = item.substring(0, i);
+        String vname = item.substring(i + 1);
+        DataItems dis = db.getDataItems(name);
+        if (dis != null) {
+            for (DataItem d : dis.dataItems.values()) {
+                if (d.name.equalsIgnoreCase(vname)) {
+                    return Value.unquote(d.value);
+                }
+            }
+            return "";
+        }
+        Columns cs = db.getColumns(name);
+        if (cs != null) {
+            String[] vs = cs.getStrings(vname);
+            if (vs != null) {
+                for (int j = 0; j < vs.length; j++) {
+                    vs[j] = Value.unquote(vs[j]);
+                }
+                return String.join(";", vs);
+            }
+        }
+        return "";
+    }
+
+    /**
+     * Scans files in parallel.
+     *
+     * @param paths The paths of the files.
+     * @param threads The number of threads.
+     * @return The rows in the order of paths.
+     * @throws Exception If the pipeline fails.
+     */
+    public List<Row> scan(List<Path> paths, int threads) throws Exception {
+        List<Row> rows = new ArrayList<>(paths.size());
+        Pipeline.<Integer>of(threads * 4)
+                .then("scan", threads, i -> scan(i, paths.get(i)))
+                .run(IntStream.range(0, paths.size()).iterator(), rows::add);
+        rows.sort(Comparator.comparingInt(r -> r.index));
+        return rows;
+    }
+
+    /**
+     * @param rows The rows.
+     * @param p The path of the table which is tab separated if the name ends
+     * with ".tsv" and comma separated otherwise.
+     * @throws IOException If encountered.
+     */
+    public void write(List<Row> rows, Path p) throws IOException {
+        String delimiter = p.toString().endsWith(".tsv") ? "\t" : ",";
+        try (PrintWriter pw = Generic_IO.getPrintWriter(p, false)) {
+            List<String> header = new ArrayList<>();
+            header.add("file");
+            header.addAll(items);
+            header.add("error");
+            pw.println(String.join(delimiter, header));
+            for (Row r : rows) {
+                StringBuilder sb = new StringBuilder();
+                sb.append(quote(Mol_TextCifBatchReader.Result.getName(r.path),
+                        delimiter));
+                for (String v : r.values) {
+                    sb.append(delimiter).append(quote(v, delimiter));
+                }
+                sb.append(delimiter).append(r.error == null ? ""
+                        : quote(r.error, delimiter));
+                pw.println(sb);
+            }
+        }
+    }
+
+    /**
+     * @param v A value.
+     * @param delimiter The delimiter.
+     * @return v with tabs and line breaks replaced by spaces if the
+     * delimiter is a tab, otherwise v in double quotes if it contains the
+     * delimiter, a double quote or a line break.
+     */
+    protected static String quote(String v, String delimiter) {
+        if (delimiter.equals("\t")) {
+            return v.replaceAll("[\t\r\n]", " ");
+        }
+        if (v.contains(delimiter) || v.contains("\"") || v.contains("\n")
+                || v.contains("\r")) {
+            return "\"" + v.replace("\"", "\"\"") + "\"";
+        }
+        return v;
+    }
+
+    /**
+     * @param args See the class comment.
+     */
+    public static void main(String[] args) {
+        List<String> ins = new ArrayList<>();
+        String glob = Mol_TextCifBatchReader.GLOB;
+        List<String> items = ITEMS;
+        Path out = Paths.get("metadata.csv");
+        int threads = Runtime.getRuntime().availableProcessors() * 2;
+        try {
+            for (int i = 0; i < args.length; i++) {
+                String a = args[i];
+                String v = ++i < args.length ? args[i] : null;
+                if (v == null) {
+                    throw new IllegalArgumentException("Missing value for " + a);
+                }
+                switch (a) {
+                    case "--in" ->
+                        ins.add(v);
+                    case "--glob" ->
+                        glob = v;
+                    case "--items" ->
+                        items = List.of(v.split(","));
+                    case "--out" ->
+                        out = Paths.get(v);
+                    case "--threads" ->
+                        threads = Integer.parseInt(v);
+                    default ->
+                        throw new IllegalArgumentException("Unknown option " + a);
+                }
+            }
+            if (ins.isEmpty()) {
+                throw new IllegalArgumentException("No --in");
+            }
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.err.println("Usage: MetadataScan --in DIR|FILE"
+                    + " [--in DIR|FILE ...] [--glob GLOB]"
+                    + " [--items CATEGORY.ITEM,...] [--out FILE.csv|FILE.tsv]"
+                    + " [--threads N]");
+            System.exit(2);
+        }
+        try {
+            List<Path> paths = new ArrayList<>();
+            for (String in : ins) {
+                Path p = Paths.get(in);
+                if (Files.isDirectory(p)) {
+                    paths.addAll(Mol_TextCifBatchReader.list(p, glob));
+                } else {
+                    paths.add(p);
+                }
+            }
+            MetadataScan ms = new MetadataScan(items, new Mol_TextCifReader());
+            long t = System.nanoTime();
+            List<Row> rows = ms.scan(paths, threads);
+            ms.write(rows, out);
+            long failed = rows.stream().filter(r -> r.error != null).count();
+            System.out.printf("Scanned %d files (%d failed) in %.1f s, table %s%n",
+                    rows.size(), failed, (System.nanoTime() - t) / 1e9, out);
+        } catch (Exception e) {
+            System.err.println(e.getMessage());
+            e.printStackTrace();
+            System.exit(1);
+        }
+    }
+}
@@ -0,0 +1,108 @@
+/*
+ * Copyright 2025 University of Leeds.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.ac.leeds.ccg.mol.run;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import uk.ac.leeds.ccg.mol.io.Mol_SyntheticCifGenerator;
+
+/**
+ * For writing synthetic mmCIF files (see {@link Mol_SyntheticCifGenerator})
+ * for tests and benchmarks. Files are gzip compressed if the name ends with
+ * ".gz". Either give the number of atoms, or the numbers of chains and
+ * residues.
+ *
+ * Usage:
+ * <pre>
+ * SyntheticCif --out FILE [--id ID] [--seed N] [--atoms N]
+ *     [--rna-chains N --rna-residues N --protein-chains N
+ *     --protein-residues N]
+ * </pre>
+ *
+ * @author Andy Turner
+ */
+public class SyntheticCif {
+
+    /**
+     * @param args See the class comment.
+     */
+    public static void main(String[] args) {
+        Path out = null;
+        String id = "SYN1";
+        long seed = 1L;
+        long atoms = 1_000_000L;
+        int[] chains = {-1, -1, -1, -1};
+        try {
+            for (int i = 0; i < args.length; i++) {
+                String a = args[i];
+                String v = ++i < args.length ? args[i] : null;
+                if (v == null) {
+                    throw new IllegalArgumentException("Missing value for " + a);
+                }
+                switch (a) {
+                    case "--out" ->
+                        out = Paths.get(v);
+                    case "--id" ->
+                        id = v;
+                    case "--seed" ->
+                        seed = Long.parseLong(v);
+                    case "--atoms" ->
+                        atoms = Long.parseLong(v);
+                    case "--rna-chains" ->
+                        chains[0] = Integer.parseInt(v);
+                    case "--rna-residues" ->
+                        chains[1] = Integer.parseInt(v);
+                    case "--protein-chains" ->
+                        chains[2] = Integer.parseInt(v);
+                    case "--protein-residues" ->
+                        chains[3] = Integer.parseInt(v);
+                    default ->
+                        throw new IllegalArgumentException("Unknown option " + a);
+                }
+            }
+            if (out == null) {
+                throw new IllegalArgumentException("No --out");
+            }
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.err.println("Usage: SyntheticCif --out FILE [--id ID]"
+                    + " [--seed N] [--atoms N] [--rna-chains N"
+                    + " --rna-residues N --protein-chains N"
+                    + " --protein-residues N]");
+            System.exit(2);
+        }
+        try {
+            Mol_SyntheticCifGenerator g;
+            if (chains[0] < 0) {
+                g = Mol_SyntheticCifGenerator.ofAtoms(id, atoms, seed);
+            } else {
+                g = new Mol_SyntheticCifGenerator(id, chains[0],
+                        Math.max(0, chains[1]), Math.max(0, chains[2]),
+                        Math.max(0, chains[3]), Long.MAX_VALUE, seed);
+            }
+            long t = System.nanoTime();
+            long n = g.write(out);
+            double s = (System.nanoTime() - t) / 1e9;
+            System.out.printf("Wrote %d atoms, %d bytes in %.1f s to %s%n", n,
+                    Files.size(out), s, out);
+        } catch (Exception e) {
+            System.err.println(e.getMessage());
+            e.printStackTrace();
+            System.exit(1);
+        }
+    }
+}
@@ -0,0 +1,515 @@
+/*
+ * Copyright 2025 University of Leeds.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.ac.leeds.ccg.mol.select;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import uk.ac.leeds.ccg.mol.data.cif.Value;
+
+/**
+ * A compiled atom selection. Selections are parsed from expressions such as
+ * "chain A and name P", "resname A G and within 10 of chain X" or
+ * "backbone of description \"ribosomal RNA\"" and are evaluated by a
+ * {@link Selector} to a BitSet of atom_site rows. The grammar is:
+ * <pre>
+ * or     := and ("or" and)*
+ * and    := not (("and" | "of") not)*
+ * not    := "not" not | "within" number "of" not | primary
+ * primary:= "(" or ")" | keyword | field value+ | "resid" range+
+ *         | "description" value+
+ * </pre>
+ * where the fields are:
+ * <ul>
+ * <li>chain (label_asym_id)</li>
+ * <li>authchain (auth_asym_id)</li>
+ * <li>name (label_atom_id)</li>
+ * <li>resname (label_comp_id)</li>
+ * <li>element (type_symbol, case insensitive)</li>
+ * <li>entity (label_entity_id)</li>
+ * <li>model (pdbx_PDB_model_num)</li>
+ * </ul>
+ * ranges are label_seq_id values such as "10" or "10-20", and the keywords are
+ * all, none, backbone, protein, nucleic, rna, dna, water and hetero. The
+ * polymer keywords use entity_poly.type, so "rna" includes rRNA, tRNA and
+ * mRNA. The description values select the atoms of entities with an
+ * entity.pdbx_description that contains any of them ignoring case, e.g.
+ * "description 28S 18S". Values with spaces are quoted with single or double quotes.
+ *
+ * @author Andy Turner
+ */
+public abstract class Selection {
+
+    /**
+     * The fields.
+     */
+    static final String[] FIELDS = {"chain", "authchain", "name", "resname",
+        "element", "entity", "model"};
+
+    /**
+     * The atom_site column names of {@link #FIELDS}.
+     */
+    static final String[] FIELD_COLUMNS = {"label_asym_id", "auth_asym_id",
+        "label_atom_id", "label_comp_id", "type_symbol", "label_entity_id",
+        "pdbx_PDB_model_num"};
+
+    /**
+     * Whether the values of each of {@link #FIELDS} are matched ignoring case.
+     */
+    static final boolean[] FIELD_IGNORE_CASE = {false, false, false, false,
+        true, false, false};
+
+    /**
+     * The keywords.
+     */
+    static final String[] KEYWORDS = {"all", "none", "backbone", "protein",
+        "nucleic", "rna", "dna", "water", "hetero"};
+
+    /**
+     * Create a new instance.
+     */
+    Selection() {
+    }
+
+    /**
+     * @param s The selector.
+     * @return The rows selected. The result may be modified by the caller.
+     */
+    abstract BitSet evaluate(Selector s);
+
+    /**
+     * @return A canonical form of the expression which is used as the cache
+     * key.
+     */
+    @Override
+    public abstract String toString();
+
+    /**
+     * @param values The values.
+     * @return The values each quoted if it would not otherwise be read back as
+     * a single value, separated by spaces.
+     */
+    static String join(String[] values) {
+        StringBuilder sb = new StringBuilder();
+        for (String v : values) {
+            if (!sb.isEmpty()) {
+                sb.append(" ");
+            }
+            boolean plain = !v.isEmpty();
+            for (int i = 0; plain && i < v.length(); i++) {
+                char c = v.charAt(i);
+                plain = !Character.isWhitespace(c) && c != '(' && c != ')'
+                        && c != '"' && c != '\'';
+            }
+            String lv = v.toLowerCase();
+            if (plain && !lv.equals("and") && !lv.equals("or")
+                    && !lv.equals("of") && !lv.equals("not")) {
+                sb.append(v);
+            } else {
+                sb.append('"').append(v).append('"');
+            }
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Field values.
+     */
+    static class Match extends Selection {
+
+        final int field;
+
+        final String[] values;
+
+        Match(int field, String[] values) {
+            this.field = field;
+            this.values = values;
+        }
+
+        @Override
+        BitSet evaluate(Selector s) {
+            return s.match(FIELD_COLUMNS[field], values,
+                    FIELD_IGNORE_CASE[field]);
+        }
+
+        @Override
+        public String toString() {
+            return FIELDS[field] + " " + join(values);
+        }
+    }
+
+    /**
+     * Entity descriptions.
+     */
+    static class Description extends Selection {
+
+        /**
+         * Substrings of entity.pdbx_description.
+         */
+        final String[] values;
+
+        Description(String[] values) {
+            this.values = values;
+        }
+
+        @Override
+        BitSet evaluate(Selector s) {
+            return s.description(values);
+        }
+
+        @Override
+        public String toString() {
+            return "description " + join(values);
+        }
+    }
+
+    /**
+     * Residue number ranges.
+     */
+    static class Resid extends Selection {
+
+        /**
+         * Pairs of inclusive bounds.
+         */
+        final int[] ranges;
+
+        Resid(int[] ranges) {
+            this.ranges = ranges;
+        }
+
+        @Override
+        BitSet evaluate(Selector s) {
+            return s.resid(ranges);
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder sb = new StringBuilder("resid");
+            for (int i = 0; i < ranges.length; i += 2) {
+                sb.append(" ").append(ranges[i]);
+                if (ranges[i + 1] != ranges[i]) {
+                    sb.append("-").append(ranges[i + 1]);
+                }
+            }
+            return sb.toString();
+        }
+    }
+
+    /**
+     * A keyword.
+     */
+    static class Keyword extends Selection {
+
+        final String keyword;
+
+        Keyword(String keyword) {
+            this.keyword = keyword;
+        }
+
+        @Override
+        BitSet evaluate(Selector s) {
+            return s.keyword(keyword);
+        }
+
+        @Override
+        public String toString() {
+            return keyword;
+        }
+    }
+
+    /**
+     * Atoms within a distance of a selection.
+     */
+    static class Within extends Selection {
+
+        final double distance;
+
+        final Selection of;
+
+        Within(double distance, Selection of) {
+            this.distance = distance;
+            this.of = of;
+        }
+
+        @Override
+        BitSet evaluate(Selector s) {
+            return s.within(distance, s.get(of));
+        }
+
+        @Override
+        public String toString() {
+            return "within " + distance + " of (" + of + ")";
+        }
+    }
+
+    /**
+     * Negation.
+     */
+    static class Not extends Selection {
+
+        final Selection a;
+
+        Not(Selection a) {
+            this.a = a;
+        }
+
+        @Override
+        BitSet evaluate(Selector s) {
+            BitSet r = s.get(a);
+            r.flip(0, s.n);
+            return r;
+        }
+
+        @Override
+        public String toString() {
+            return "not (" + a + ")";
+        }
+    }
+
+    /**
+     * Conjunction.
+     */
+    static class And extends Selection {
+
+        final Selection a, b;
+
+        And(Selection a, Selection b) {
+            this.a = a;
+            this.b = b;
+        }
+
+        @Override
+        BitSet evaluate(Selector s) {
+            BitSet r = s.get(a);
+            r.and(s.get(b));
+            return r;
+        }
+
+        @Override
+        public String toString() {
+            return "(" + a + ") and (" + b + ")";
+        }
+    }
+
+    /**
+     * Disjunction.
+     */
+    static class Or extends Selection {
+
+        final Selection a, b;
+
+        Or(Selection a, Selection b) {
+            this.a = a;
+            this.b = b;
+        }
+
+        @Override
+        BitSet evaluate(Selector s) {
+            BitSet r = s.get(a);
+            r.or(s.get(b));
+            return r;
+        }
+
+        @Override
+        public String toString() {
+            return "(" + a + ") or (" + b + ")";
+        }
+    }
+
+    /**
+     * For parsing an expression.
+     *
+     * @param expression The expression.
+     * @return The Selection.
+     * @throws Exception If the expression is not valid.
+     */
+    public static Selection parse(String expression) throws Exception {
+        Parser p = new Parser(tokenize(expression));
+        Selection r = p.or();
+        if (p.i < p.tokens.size()) {
+            throw new Exception("Unexpected \"" + p.tokens.get(p.i)
+                    + "\" in selection \"" + expression + "\"");
+        }
+        return r;
+    }
+
+    /**
+     * @param expression The expression.
+     * @return The tokens. Parentheses are tokens and quotes are removed.
+     */
+    static ArrayList<String> tokenize(String expression) {
+        ArrayList<String> r = new ArrayList<>();
+        int n = expression.length();
+        int i = 0;
+        while (i < n) {
+            char c = expression.charAt(i);
+            if (Character.isWhitespace(c)) {
+                i++;
+            } else if (c == '(' || c == ')') {
+                r.add(String.valueOf(c));
+                i++;
+            } else if (c == '"' || c == '\'') {
+                int j = expression.indexOf(c, i + 1);
+                j = j < 0 ? n : j;
+                r.add(expression.substring(i + 1, j));
+                i = j + 1;
+            } else {
+                int j = i;
+                while (j < n && !Character.isWhitespace(expression.charAt(j))
+                        && expression.charAt(j) != '('
+                        && expression.charAt(j) != ')') {
+                    j++;
+                }
+                r.add(Value.unquote(expression.substring(i, j)));
+                i = j;
+            }
+        }
+        return r;
+    }
+
+    /**
+     * A recursive descent parser.
+     */
+    private static class Parser {
+
+        final ArrayList<String> tokens;
+
+        int i;
+
+        Parser(ArrayList<String> tokens) {
+            this.tokens = tokens;
+        }
+
+        String peek() {
+            return i < tokens.size() ? tokens.get(i).toLowerCase() : null;
+        }
+
+        String next() throws Exception {
+            if (i >= tokens.size()) {
+                throw new Exception("Unexpected end of selection");
+            }
+            return tokens.get(i++);
+        }
+
+        Selection or() throws Exception {
+            Selection r = and();
+            while ("or".equals(peek())) {
+                i++;
+                r = new Or(r, and());
+            }
+            return r;
+        }
+
+        Selection and() throws Exception {
+            Selection r = not();
+            while ("and".equals(peek()) || "of".equals(peek())) {
+                i++;
+                r = new And(r, not());
+            }
+            return r;
+        }
+
+        Selection not() throws Exception {
+            String t = peek();
+            if ("not".equals(t)) {
+                i++;
+                return new Not(not());
+            }
+            if ("within".equals(t)) {
+                i++;
+                String d = next();
+                double distance;
+                try {
+                    distance = Double.parseDouble(d);
+                } catch (NumberFormatException e) {
+                    throw new Exception("Expected a distance not \"" + d + "\"");
+                }
+                if (!"of".equals(peek())) {
+                    throw new Exception("Expected \"of\" after within " + d);
+                }
+                i++;
+                return new Within(distance, not());
+            }
+            return primary();
+        }
+
+        Selection primary() throws Exception {
+            String t = next();
+            String lt = t.toLowerCase();
+            if (lt.equals("(")) {
+                Selection r = or();
+                if (!")".equals(next())) {
+                    throw new Exception("Expected \")\"");
+                }
+                return r;
+            }
+            for (String k : KEYWORDS) {
+                if (lt.equals(k)) {
+                    return new Keyword(k);
+                }
+            }
+            if (lt.equals("resid")) {
+                ArrayList<String> vs = values(t);
+                int[] ranges = new int[vs.size() * 2];
+                for (int j = 0; j < vs.size(); j++) {
+                    String v = vs.get(j);
+                    try {
+                        int dash = v.indexOf('-', 1);
+                        if (dash > 0) {
+                            ranges[2 * j] = Integer.parseInt(v.substring(0, dash));
+                            ranges[2 * j + 1] = Integer.parseInt(v.substring(dash + 1));
+                        } else {
+                            ranges[2 * j] = Integer.parseInt(v);
+                            ranges[2 * j + 1] = ranges[2 * j];
+                        }
+                    } catch (NumberFormatException e) {
+                        throw new Exception("Invalid resid \"" + v + "\"");
+                    }
+                }
+                return new Resid(ranges);
+            }
+            if (lt.equals("description")) {
+                return new Description(values(t).toArray(String[]::new));
+            }
+            for (int f = 0; f < FIELDS.length; f++) {
+                if (lt.equals(FIELDS[f])) {
+                    return new Match(f, values(t).toArray(String[]::new));
+                }
+            }
+            throw new Exception("Unrecognised \"" + t + "\" in selection");
+        }
+
+        /**
+         * @param field The field.
+         * @return The values up to the next operator or closing parenthesis.
+         * @throws Exception If there are no values.
+         */
+        ArrayList<String> values(String field) throws Exception {
+            ArrayList<String> r = new ArrayList<>();
+            while (i < tokens.size()) {
+                String t = peek();
+                if (t.equals("and") || t.equals("or") || t.equals("of")
+                        || t.equals("not") || t.equals("(") || t.equals(")")) {
+                    break;
+                }
+                r.add(tokens.get(i++));
+            }
+            if (r.isEmpty()) {
+                throw new Exception("Expected a value after " + field);
+            }
+            return r;
+        }
+    }
+}
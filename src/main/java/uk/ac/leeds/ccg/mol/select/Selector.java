@@ -0,0 +1,435 @@
+/*
+ * Copyright 2025 University of Leeds.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.ac.leeds.ccg.mol.select;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Set;
+import uk.ac.leeds.ccg.mol.data.cif.CIF;
+import uk.ac.leeds.ccg.mol.data.cif.Columns;
+import uk.ac.leeds.ccg.mol.data.cif.DataBlock;
+import uk.ac.leeds.ccg.mol.data.cif.Value;
+import uk.ac.leeds.ccg.mol.data.cif.columns.Atom_Site;
+import uk.ac.leeds.ccg.mol.data.cif.columns.Entity;
+import uk.ac.leeds.ccg.mol.data.cif.columns.Entity_Poly;
+import uk.ac.leeds.ccg.mol.geom.KDTree;
+
+/**
+ * For evaluating {@link Selection}s over atom_site. The columns used are
+ * dictionary encoded on first use: each distinct value is tested once and the
+ * rows are then set with a pass over an int code array writing whole words
+ * of the mask. Results are cached by the canonical form of the (sub)
+ * expression, so repeated and shared parts of selections are only evaluated
+ * once. Instances are not thread safe.
+ *
+ * @author Andy Turner
+ */
+public class Selector {
+
+    /**
+     * The names of backbone atoms of proteins and nucleic acids.
+     */
+    public static final Set<String> BACKBONE = Set.of("N", "CA", "C", "O",
+            "P", "OP1", "OP2", "O5'", "C5'", "C4'", "C3'", "O3'");
+
+    /**
+     * Residue names for when there is no entity_poly.
+     */
+    public static final Set<String> AMINO_ACIDS = Set.of("ALA", "ARG", "ASN",
+            "ASP", "CYS", "GLN", "GLU", "GLY", "HIS", "ILE", "LEU", "LYS",
+            "MET", "PHE", "PRO", "SER", "THR", "TRP", "TYR", "VAL", "MSE",
+            "SEC", "PYL");
+
+    /**
+     * Residue names for when there is no entity_poly.
+     */
+    public static final Set<String> RIBONUCLEOTIDES = Set.of("A", "C", "G",
+            "U", "I");
+
+    /**
+     * Residue names for when there is no entity_poly.
+     */
+    public static final Set<String> DEOXYRIBONUCLEOTIDES = Set.of("DA", "DC",
+            "DG", "DT", "DI", "DU");
+
+    /**
+     * Residue names of water.
+     */
+    public static final Set<String> WATER = Set.of("HOH", "WAT", "DOD");
+
+    /**
+     * A dictionary encoded column.
+     */
+    static class Encoded {
+
+        /**
+         * The distinct values.
+         */
+        final String[] dictionary;
+
+        /**
+         * The index in {@link #dictionary} of the value of each row.
+         */
+        final int[] codes;
+
+        Encoded(String[] values) {
+            HashMap<String, Integer> d = new HashMap<>();
+            codes = new int[values.length];
+            for (int i = 0; i < values.length; i++) {
+                Integer c = d.get(values[i]);
+                if (c == null) {
+                    c = d.size();
+                    d.put(values[i], c);
+                }
+                codes[i] = c;
+            }
+            dictionary = new String[d.size()];
+            d.forEach((k, v) -> dictionary[v] = k);
+        }
+    }
+
+    /**
+     * The atom_site.
+     */
+    public final Columns atomSite;
+
+    /**
+     * The number of atoms.
+     */
+    public final int n;
+
+    /**
+     * The entity_poly type for each entity_id.
+     */
+    final HashMap<String, String> entityTypes;
+
+    /**
+     * The entity.pdbx_description in lower case for each entity id.
+     */
+    final HashMap<String, String> entityDescriptions;
+
+    /**
+     * The encoded columns.
+     */
+    final HashMap<String, Encoded> encoded;
+
+    /**
+     * The cached masks.
+     */
+    final HashMap<String, BitSet> cache;
+
+    /**
+     * The coordinates loaded on first use.
+     */
+    double[][] coords;
+
+    /**
+     * Create a new instance.
+     *
+     * @param cif The CIF.
+     */
+    public Selector(CIF cif) {
+        DataBlock db = cif.dataBlocks.get(0);
+        atomSite = db.getColumns(Atom_Site.NAME);
+        n = atomSite.getNRows();
+        entityTypes = new HashMap<>();
+        db.getRows(Entity_Poly.NAME).forEach(row -> entityTypes.put(
+                Value.unquote(row.get("entity_id")),
+                Value.unquote(row.get("type")).toLowerCase()));
+        entityDescriptions = new HashMap<>();
+        db.getRows(Entity.NAME).forEach(row -> {
+            String d = row.get("pdbx_description");
+            if (d != null) {
+                entityDescriptions.put(Value.unquote(row.get("id")),
+                        Value.unquote(d).toLowerCase());
+            }
+        });
+        encoded = new HashMap<>();
+        cache = new HashMap<>();
+    }
+
+    /**
+     * @param expression The selection expression.
+     * @return The rows selected.
+     * @throws Exception If the expression is not valid.
+     */
+    public BitSet select(String expression) throws Exception {
+        return get(Selection.parse(expression));
+    }
+
+    /**
+     * @param s The selection.
+     * @return A copy of the cached mask for s, evaluating it if necessary.
+     */
+    public BitSet get(Selection s) {
+        String key = s.toString();
+        BitSet r = cache.get(key);
+        if (r == null) {
+            r = s.evaluate(this);
+            cache.put(key, r);
+        }
+        return (BitSet) r.clone();
+    }
+
+    /**
+     * Clears the cache.
+     */
+    public void clearCache() {
+        cache.clear();
+    }
+
+    /**
+     * @param mask The rows.
+     * @return The coordinates of the rows in the form used by QCProt.
+     */
+    public double[][] getCoords(BitSet mask) {
+        double[][] c = getCoords();
+        int m = mask.cardinality();
+        double[][] r = new double[3][m];
+        int j = 0;
+        for (int i = mask.nextSetBit(0); i >= 0; i = mask.nextSetBit(i + 1)) {
+            r[0][j] = c[0][i];
+            r[1][j] = c[1][i];
+            r[2][j] = c[2][i];
+            j++;
+        }
+        return r;
+    }
+
+    /**
+     * @return The coordinates of all rows.
+     */
+    double[][] getCoords() {
+        if (coords == null) {
+            coords = new double[][]{atomSite.getDoubles("Cartn_x"),
+                atomSite.getDoubles("Cartn_y"), atomSite.getDoubles("Cartn_z")};
+        }
+        return coords;
+    }
+
+    /**
+     * @param name The column name.
+     * @return The encoded column with values unquoted.
+     */
+    Encoded getEncoded(String name) {
+        Encoded r = encoded.get(name);
+        if (r == null) {
+            String[] values = atomSite.getStrings(name);
+            if (values == null) {
+                values = new String[n];
+                Arrays.fill(values, "?");
+            } else {
+                for (int i = 0; i < n; i++) {
+                    values[i] = Value.unquote(values[i]);
+                }
+            }
+            r = new Encoded(values);
+            encoded.put(name, r);
+        }
+        return r;
+    }
+
+    /**
+     * The kernel for all column tests.
+     *
+     * @param e The encoded column.
+     * @param hit Whether each dictionary value is selected.
+     * @return The rows with a selected value.
+     */
+    static BitSet mask(Encoded e, boolean[] hit) {
+        int[] codes = e.codes;
+        long[] words = new long[(codes.length + 63) >>> 6];
+        for (int i = 0; i < codes.length; i++) {
+            if (hit[codes[i]]) {
+                words[i >>> 6] |= 1L << i;
+            }
+        }
+        return BitSet.valueOf(words);
+    }
+
+    /**
+     * @param column The column name.
+     * @param values The values to select.
+     * @param ignoreCase Whether to ignore case.
+     * @return The rows where column has any of values.
+     */
+    BitSet match(String column, String[] values, boolean ignoreCase) {
+        Encoded e = getEncoded(column);
+        HashSet<String> vs = new HashSet<>();
+        for (String v : values) {
+            vs.add(ignoreCase ? v.toUpperCase() : v);
+        }
+        boolean[] hit = new boolean[e.dictionary.length];
+        for (int d = 0; d < hit.length; d++) {
+            String v = e.dictionary[d];
+            hit[d] = vs.contains(ignoreCase ? v.toUpperCase() : v);
+        }
+        return mask(e, hit);
+    }
+
+    /**
+     * @param column The column name.
+     * @param values The values to select.
+     * @return The rows where column has any of values.
+     */
+    BitSet match(String column, Set<String> values) {
+        Encoded e = getEncoded(column);
+        boolean[] hit = new boolean[e.dictionary.length];
+        for (int d = 0; d < hit.length; d++) {
+            hit[d] = values.contains(e.dictionary[d]);
+        }
+        return mask(e, hit);
+    }
+
+    /**
+     * @param ranges Pairs of inclusive label_seq_id bounds.
+     * @return The rows with label_seq_id in any of the ranges.
+     */
+    BitSet resid(int[] ranges) {
+        Encoded e = getEncoded("label_seq_id");
+        boolean[] hit = new boolean[e.dictionary.length];
+        for (int d = 0; d < hit.length; d++) {
+            int s;
+            try {
+                s = Integer.parseInt(e.dictionary[d]);
+            } catch (NumberFormatException ex) {
+                continue;
+            }
+            for (int i = 0; i < ranges.length; i += 2) {
+                if (s >= ranges[i] && s <= ranges[i + 1]) {
+                    hit[d] = true;
+                    break;
+                }
+            }
+        }
+        return mask(e, hit);
+    }
+
+    /**
+     * @param keyword The keyword.
+     * @return The rows selected.
+     */
+    BitSet keyword(String keyword) {
+        BitSet r;
+        switch (keyword) {
+            case "all" -> {
+                r = new BitSet(n);
+                r.set(0, n);
+            }
+            case "none" ->
+                r = new BitSet(n);
+            case "backbone" -> {
+                r = match("label_atom_id", BACKBONE);
+                BitSet p = keyword("protein");
+                p.or(keyword("nucleic"));
+                r.and(p);
+            }
+            case "protein" ->
+                r = polymer("polypeptide", AMINO_ACIDS);
+            case "nucleic" -> {
+                r = polymer("nucleotide", RIBONUCLEOTIDES);
+                r.or(polymer("nucleotide", DEOXYRIBONUCLEOTIDES));
+            }
+            case "rna" ->
+                r = polymer("polyribonucleotide", RIBONUCLEOTIDES);
+            case "dna" ->
+                r = polymer("polydeoxyribonucleotide", DEOXYRIBONUCLEOTIDES);
+            case "water" ->
+                r = match("label_comp_id", WATER);
+            case "hetero" ->
+                r = match("group_PDB", Set.of("HETATM"));
+            default ->
+                throw new IllegalArgumentException(keyword);
+        }
+        return r;
+    }
+
+    /**
+     * @param type A substring of the entity_poly type.
+     * @param compIds Residue names for if there is no entity_poly.
+     * @return The rows of entities with type containing type or, if there is
+     * no entity_poly, the rows with a label_comp_id in compIds.
+     */
+    BitSet polymer(String type, Set<String> compIds) {
+        if (entityTypes.isEmpty()) {
+            return match("label_comp_id", compIds);
+        }
+        Encoded e = getEncoded("label_entity_id");
+        boolean[] hit = new boolean[e.dictionary.length];
+        for (int d = 0; d < hit.length; d++) {
+            String t = entityTypes.get(e.dictionary[d]);
+            hit[d] = t != null && t.contains(type);
+        }
+        return mask(e, hit);
+    }
+
+    /**
+     * @param values Substrings of entity.pdbx_description.
+     * @return The rows of entities with a pdbx_description containing any of
+     * values ignoring case.
+     */
+    BitSet description(String[] values) {
+        Encoded e = getEncoded("label_entity_id");
+        boolean[] hit = new boolean[e.dictionary.length];
+        for (int d = 0; d < hit.length; d++) {
+            String t = entityDescriptions.get(e.dictionary[d]);
+            for (int i = 0; t != null && !hit[d] && i < values.length; i++) {
+                hit[d] = t.contains(values[i].toLowerCase());
+            }
+        }
+        return mask(e, hit);
+    }
+
+    /**
+     * @param distance The distance.
+     * @param of The rows to measure from.
+     * @return The rows within distance of any row in of (including of). Rows
+     * with a coordinate that is not finite (e.g. "?") are within distance of
+     * no other rows.
+     */
+    BitSet within(double distance, BitSet of) {
+        BitSet r = (BitSet) of.clone();
+        double[][] c = getCoords();
+        BitSet located = new BitSet(n);
+        for (int i = 0; i < n; i++) {
+            if (Double.isFinite(c[0][i]) && Double.isFinite(c[1][i])
+                    && Double.isFinite(c[2][i])) {
+                located.set(i);
+            }
+        }
+        BitSet from = (BitSet) of.clone();
+        from.and(located);
+        if (from.isEmpty()) {
+            return r;
+        }
+        KDTree tree = new KDTree(getCoords(from));
+        int m = located.cardinality();
+        int[] nn = new int[m];
+        double[] d2 = new double[m];
+        tree.nearest(getCoords(located), distance * distance, nn, d2);
+        int j = 0;
+        for (int i = located.nextSetBit(0); i >= 0;
+                i = located.nextSetBit(i + 1)) {
+            if (nn[j] >= 0) {
+                r.set(i);
+            }
+            j++;
+        }
+        return r;
+    }
+}
@@ -0,0 +1,151 @@
+/*
+ * Copyright 2025 University of Leeds.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.ac.leeds.ccg.mol.data.cif;
+
+import ch.obermuhlner.math.big.BigRational;
+import java.io.BufferedReader;
+import java.io.StringReader;
+import java.math.RoundingMode;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Set;
+import java.util.TreeSet;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+import uk.ac.leeds.ccg.math.arithmetic.Math_BigRational;
+import uk.ac.leeds.ccg.mol.core.Mol_Environment;
+import uk.ac.leeds.ccg.mol.io.Mol_TextCifReader;
+
+/**
+ * CIFTest.
+ *
+ * @author Andy Turner
+ */
+public class CIFTest {
+
+    /**
+     * Phosphorus and carbon atoms with coordinates whose averages are not
+     * exact to 3 decimal places.
+     */
+    private static final String CIF_TEXT = """
+            data_T1
+            loop_
+            _atom_site.group_PDB
+            _atom_site.id
+            _atom_site.type_symbol
+            _atom_site.Cartn_x
+            _atom_site.Cartn_y
+            _atom_site.Cartn_z
+            ATOM 1 P 1.5 -2.001 0.125
+            ATOM 2 C 2.25 1.000 -0.125
+            ATOM 3 P 10.001 7.333 3
+            ATOM 4 P -4.2 0.5 11.111
+            ATOM 5 C 0.007 -3.3 2.02
+            #\s
+            """;
+
+    /**
+     * @return A new CIF of {@link #CIF_TEXT}.
+     */
+    private static CIF getCif() throws Exception {
+        return new Mol_TextCifReader((Mol_Environment) null).getCif(
+                new BufferedReader(new StringReader(CIF_TEXT)));
+    }
+
+    /**
+     * The centralise algorithm as it was before summaries were added.
+     *
+     * @param cif The CIF.
+     * @param atomTypes The atom types or null for all.
+     */
+    private static void centralise(CIF cif, Set<String> atomTypes) {
+        Columns columns = cif.getAtomSite();
+        Column_ID type_cid = columns.name2id.get("type_symbol");
+        Column_ID[] cids = {columns.name2id.get("Cartn_x"),
+            columns.name2id.get("Cartn_y"), columns.name2id.get("Cartn_z")};
+        BigRational[] sums = {BigRational.ZERO, BigRational.ZERO,
+            BigRational.ZERO};
+        int n = 0;
+        for (var rid : columns.data.keySet()) {
+            if (atomTypes == null || atomTypes.contains(
+                    columns.getColumn(type_cid).getValue(rid).v)) {
+                for (int i = 0; i < 3; i++) {
+                    sums[i] = sums[i].add(BigRational.valueOf(
+                            columns.getColumn(cids[i]).getValue(rid).v));
+                }
+                n++;
+            }
+        }
+        for (var rid : columns.data.keySet()) {
+            for (int i = 0; i < 3; i++) {
+                BigRational v = Math_BigRational.round(BigRational.valueOf(
+                        columns.getColumn(cids[i]).getValue(rid).v)
+                        .subtract(sums[i].divide(n)), -3, RoundingMode.UP);
+                columns.setValue(rid, cids[i], new Value(v.toPlainString()));
+            }
+        }
+    }
+
+    /**
+     * @param cif The CIF.
+     * @return The coordinate values.
+     */
+    private static ArrayList<String> getCoordinates(CIF cif) {
+        Columns columns = cif.getAtomSite();
+        ArrayList<String> r = new ArrayList<>();
+        for (String name : new String[]{"Cartn_x", "Cartn_y", "Cartn_z"}) {
+            r.addAll(Arrays.asList(columns.getStrings(name)));
+        }
+        return r;
+    }
+
+    /**
+     * Test of centralise method, of class CIF.
+     */
+    @Test
+    public void testCentralise() throws Exception {
+        System.out.println("CIF centralise");
+        ArrayList<TreeSet<String>> typess = new ArrayList<>();
+        typess.add(null);
+        typess.add(new TreeSet<>(Set.of("P")));
+        for (TreeSet<String> types : typess) {
+            CIF expected = getCif();
+            centralise(expected, types);
+            // Summed from the values.
+            CIF cif = getCif();
+            cif.centralise(types);
+            assertEquals(getCoordinates(expected), getCoordinates(cif));
+            assertNull(cif.summary);
+            // From the summary as read.
+            cif = getCif();
+            assertNotNull(cif.summary);
+            cif.centralise(types, cif.summary);
+            assertEquals(getCoordinates(expected), getCoordinates(cif));
+            // After a change that leaves the summary as read stale.
+            expected = getCif();
+            cif = getCif();
+            cif.getSummary();
+            for (CIF c : new CIF[]{expected, cif}) {
+                Columns cs = c.getAtomSite();
+                cs.setValue(cs.data.firstKey(), cs.name2id.get("Cartn_x"),
+                        new Value("100.5"));
+            }
+            centralise(expected, types);
+            cif.centralise(types);
+            assertEquals(getCoordinates(expected), getCoordinates(cif));
+        }
+    }
+}
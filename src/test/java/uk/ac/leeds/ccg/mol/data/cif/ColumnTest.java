@@ -0,0 +1,52 @@
+/*
+ * Copyright 2025 University of Leeds.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.ac.leeds.ccg.mol.data.cif;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * ColumnTest.
+ *
+ * @author Andy Turner
+ */
+public class ColumnTest {
+
+    /**
+     * Test of setValue, removeValue and getValues methods, of class Column.
+     */
+    @Test
+    public void testValues() {
+        System.out.println("Column values");
+        Column c = new Column(null, "x");
+        Row_ID r0 = new Row_ID(0);
+        Row_ID r1 = new Row_ID(1);
+        c.setValue(r0, new Value("1.5"));
+        c.setValue(r1, new Value("'a longer value'"));
+        assertEquals(16, c.getWidth());
+        assertEquals("1.5", c.getValue(r0).v);
+        assertEquals(2, c.getValues().size());
+        assertThrows(UnsupportedOperationException.class,
+                () -> c.getValues().remove(r0));
+        assertEquals("'a longer value'", c.removeValue(r1).v);
+        assertEquals(3, c.getWidth());
+        assertNull(c.getValue(r1));
+        assertNull(c.removeValue(r1));
+        assertEquals(1, c.getValues().size());
+        c.setValue(r0, new Value("?"));
+        assertEquals(1, c.getWidth());
+    }
+}
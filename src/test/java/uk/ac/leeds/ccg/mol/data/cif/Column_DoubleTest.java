@@ -0,0 +1,104 @@
+/*
+ * Copyright 2025 University of Leeds.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.ac.leeds.ccg.mol.data.cif;
+
+import java.util.BitSet;
+import java.util.TreeMap;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Column_DoubleTest.
+ *
+ * @author Andy Turner
+ */
+public class Column_DoubleTest {
+
+    /**
+     * @param values The values as read.
+     * @return Columns with a column "x" of values.
+     */
+    private static Columns getColumns(String... values) {
+        Columns cs = new Columns("atom_site", new Columns_ID(0));
+        cs.addColumn(new Column(cs, "x"));
+        Column_ID cid = new Column_ID(0);
+        for (int i = 0; i < values.length; i++) {
+            Row_ID rid = new Row_ID(i);
+            cs.data.put(rid, new TreeMap<>());
+            cs.setValue(rid, cid, new Value(values[i]));
+        }
+        return cs;
+    }
+
+    /**
+     * Test of getValue method, of class Column_Double.
+     */
+    @Test
+    public void testGetValue() {
+        System.out.println("Column_Double getValue");
+        Column_Double c = new Column_Double("x", new double[]{1.0E-4, 1.5,
+            -2.0E7, Double.NaN}, new BitSet(), new BitSet());
+        c.valid.set(0, 3);
+        c.unknown.set(3);
+        assertEquals(-1, c.scale);
+        assertEquals("0.00010", c.getValue(0).v);
+        assertEquals("1.5", c.getValue(1).v);
+        assertEquals("-20000000", c.getValue(2).v);
+        assertEquals("?", c.getValue(3).v);
+        c.scale = 3;
+        assertEquals("0.000", c.getValue(0).v);
+        assertEquals("1.500", c.getValue(1).v);
+        c.setValue(0, 0.0005);
+        assertEquals("0.001", c.getValue(0).v);
+        assertEquals(Value.BARE, c.getValue(0).getKind());
+    }
+
+    /**
+     * Test of setValues method, of class Columns, with a Column_Double.
+     */
+    @Test
+    public void testSetValues() {
+        System.out.println("Columns setValues");
+        Columns cs = getColumns("1.500", "?", ".", "2.25", "10", "-0.125");
+        Column_Double c = cs.getColumnDouble("x");
+        assertEquals(3, c.scale);
+        assertEquals(3, c.getNValid() - 1);
+        assertEquals(Value.UNKNOWN, c.getKind(1));
+        assertEquals(Value.INAPPLICABLE, c.getKind(2));
+        // Unchanged values, including missing ones, keep their text.
+        cs.setValues(c);
+        assertArrayEquals(new String[]{"1.500", "?", ".", "2.25", "10",
+            "-0.125"}, cs.getStrings("x"));
+        c.setValue(0, 1.5);
+        c.setValue(3, 1.0E-4);
+        c.setValue(4, 12345678.9);
+        c.setMissing(1, Value.INAPPLICABLE);
+        c.setValue(2, 3);
+        c.setMissing(5, Value.UNKNOWN);
+        cs.setValues(c);
+        assertArrayEquals(new String[]{"1.500", ".", "3.000", "0.000",
+            "12345678.900", "?"}, cs.getStrings("x"));
+        assertEquals(12, cs.getColumn(new Column_ID(0)).getWidth());
+        // A column with an exponent is written as plainly as needed.
+        cs = getColumns("1.0E-4", "2");
+        c = cs.getColumnDouble("x");
+        assertEquals(-1, c.scale);
+        c.setValue(1, 2.5E-5);
+        cs.setValues(c);
+        assertArrayEquals(new String[]{"1.0E-4", "0.000025"},
+                cs.getStrings("x"));
+    }
+}
@@ -0,0 +1,92 @@
+/*
+ * Copyright 2025 University of Leeds.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.ac.leeds.ccg.mol.data.cif;
+
+import java.io.BufferedReader;
+import java.io.StringReader;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+import uk.ac.leeds.ccg.mol.core.Mol_Environment;
+import uk.ac.leeds.ccg.mol.io.Mol_TextCifReader;
+
+/**
+ * HierarchyTest.
+ *
+ * @author Andy Turner
+ */
+public class HierarchyTest {
+
+    /**
+     * Two models each of a polymer chain A of two residues and a chain B of
+     * two waters.
+     */
+    private static final String CIF_TEXT = """
+            data_T1
+            loop_
+            _atom_site.group_PDB
+            _atom_site.id
+            _atom_site.label_comp_id
+            _atom_site.label_asym_id
+            _atom_site.label_seq_id
+            _atom_site.pdbx_PDB_ins_code
+            _atom_site.Cartn_x
+            _atom_site.Cartn_y
+            _atom_site.Cartn_z
+            _atom_site.auth_seq_id
+            _atom_site.pdbx_PDB_model_num
+            ATOM 1 G A 1 ? 1.000 0.000 0.000 1 1
+            ATOM 2 G A 1 ? 2.000 0.000 0.000 1 1
+            ATOM 3 C A 2 ? 3.000 0.000 0.000 2 1
+            HETATM 4 HOH B . ? 4.000 0.000 0.000 101 1
+            HETATM 5 HOH B . ? 5.000 0.000 0.000 102 1
+            ATOM 6 G A 1 ? 1.500 0.000 0.000 1 2
+            ATOM 7 G A 1 ? 2.500 0.000 0.000 1 2
+            ATOM 8 C A 2 ? 3.500 0.000 0.000 2 2
+            HETATM 9 HOH B . ? 4.500 0.000 0.000 101 2
+            HETATM 10 HOH B . ? 5.500 0.000 0.000 102 2
+            """;
+
+    /**
+     * Test of Hierarchy.
+     */
+    @Test
+    public void testHierarchy() throws Exception {
+        System.out.println("Hierarchy");
+        CIF cif = new Mol_TextCifReader((Mol_Environment) null).getCif(
+                new BufferedReader(new StringReader(CIF_TEXT)));
+        Hierarchy h = new Hierarchy(cif);
+        assertEquals(2, h.getNModels());
+        assertEquals(4, h.getNChains());
+        assertEquals(8, h.getNResidues());
+        assertEquals(10, h.getNAtoms());
+        int a = h.getChain(1, "A");
+        assertEquals(2, a);
+        int r = h.getResidue(a, "1", "?");
+        assertEquals(2, h.getResidueSlice(r).size());
+        assertEquals(1.5d, h.getResidueSlice(r).x(0));
+        int b = h.getChain(0, "B");
+        assertEquals(1, b);
+        int w1 = h.getResidue(b, "101", "?");
+        int w2 = h.getResidue(b, "102", "?");
+        assertEquals(2, w1);
+        assertEquals(3, w2);
+        assertEquals("102", h.residueSeqIds[w2]);
+        assertEquals(5d, h.getResidueSlice(w2).x(0));
+        assertEquals(-1, h.getResidue(b, ".", "?"));
+        assertEquals(5, h.getModelAtomStart(1));
+        assertEquals(3, h.getChainSlice(h.getChain(1, "A")).size());
+    }
+}
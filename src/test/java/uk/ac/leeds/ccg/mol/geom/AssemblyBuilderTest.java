@@ -0,0 +1,158 @@
+/*
+ * Copyright 2025 University of Leeds.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.ac.leeds.ccg.mol.geom;
+
+import java.io.BufferedReader;
+import java.io.StringReader;
+import java.util.ArrayList;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+import uk.ac.leeds.ccg.mol.core.Mol_Environment;
+import uk.ac.leeds.ccg.mol.data.cif.CIF;
+import uk.ac.leeds.ccg.mol.data.cif.Columns;
+import uk.ac.leeds.ccg.mol.data.cif.DataBlock;
+import uk.ac.leeds.ccg.mol.data.cif.DataItem;
+import uk.ac.leeds.ccg.mol.data.cif.Value;
+import uk.ac.leeds.ccg.mol.io.Mol_TextCifReader;
+
+/**
+ * AssemblyBuilderTest.
+ *
+ * @author Andy Turner
+ */
+public class AssemblyBuilderTest {
+
+    /**
+     * An asymmetric unit of two chains with a 2 fold rotation about z and a
+     * translation.
+     */
+    private static final String CIF_TEXT = """
+            data_T1
+            _entry.id T1
+            #\s
+            loop_
+            _pdbx_struct_assembly_gen.assembly_id
+            _pdbx_struct_assembly_gen.oper_expression
+            _pdbx_struct_assembly_gen.asym_id_list
+            1 1 A,B
+            2 (1,2)(3) A
+            #\s
+            loop_
+            _pdbx_struct_oper_list.id
+            _pdbx_struct_oper_list.type
+            _pdbx_struct_oper_list.name
+            _pdbx_struct_oper_list.symmetry_operation
+            _pdbx_struct_oper_list.matrix[1][1]
+            _pdbx_struct_oper_list.matrix[1][2]
+            _pdbx_struct_oper_list.matrix[1][3]
+            _pdbx_struct_oper_list.vector[1]
+            _pdbx_struct_oper_list.matrix[2][1]
+            _pdbx_struct_oper_list.matrix[2][2]
+            _pdbx_struct_oper_list.matrix[2][3]
+            _pdbx_struct_oper_list.vector[2]
+            _pdbx_struct_oper_list.matrix[3][1]
+            _pdbx_struct_oper_list.matrix[3][2]
+            _pdbx_struct_oper_list.matrix[3][3]
+            _pdbx_struct_oper_list.vector[3]
+            1 'identity operation' 1_555 x,y,z 1 0 0 0 0 1 0 0 0 0 1 0
+            2 'point symmetry operation' ? ? -1 0 0 0 0 -1 0 0 0 0 1 0
+            3 'point symmetry operation' ? ? 1 0 0 0.0001 0 1 0 0 0 0 1 0
+            #\s
+            loop_
+            _atom_site.group_PDB
+            _atom_site.id
+            _atom_site.label_asym_id
+            _atom_site.label_seq_id
+            _atom_site.Cartn_x
+            _atom_site.Cartn_y
+            _atom_site.Cartn_z
+            ATOM 1 A 1 1.000 2.000 3.000
+            ATOM 2 A 2 -1.500 0.000 ?
+            ATOM 3 B 1 4.000 5.000 6.000
+            #\s
+            """;
+
+    /**
+     * Test of parseOperatorExpression method, of class AssemblyBuilder.
+     */
+    @Test
+    public void testParseOperatorExpression() {
+        System.out.println("AssemblyBuilder parseOperatorExpression");
+        ArrayList<String[]> r = AssemblyBuilder.parseOperatorExpression("1");
+        assertEquals(1, r.size());
+        assertArrayEquals(new String[]{"1"}, r.get(0));
+        r = AssemblyBuilder.parseOperatorExpression("(1-60)");
+        assertEquals(60, r.size());
+        assertArrayEquals(new String[]{"60"}, r.get(59));
+        r = AssemblyBuilder.parseOperatorExpression("1,2,5");
+        assertEquals(3, r.size());
+        assertArrayEquals(new String[]{"5"}, r.get(2));
+        r = AssemblyBuilder.parseOperatorExpression("(1,2)(3-5)");
+        assertEquals(6, r.size());
+        assertArrayEquals(new String[]{"1", "3"}, r.get(0));
+        assertArrayEquals(new String[]{"1", "5"}, r.get(2));
+        assertArrayEquals(new String[]{"2", "3"}, r.get(3));
+        r = AssemblyBuilder.parseOperatorExpression("(X0)(1-2)");
+        assertArrayEquals(new String[]{"X0", "2"}, r.get(1));
+        assertThrows(IllegalArgumentException.class,
+                () -> AssemblyBuilder.parseOperatorExpression("(X0-X5)"));
+        assertThrows(IllegalArgumentException.class,
+                () -> AssemblyBuilder.parseOperatorExpression("(1-3"));
+    }
+
+    /**
+     * Test of build method, of class AssemblyBuilder, and toCIF, of class
+     * Assembly.
+     */
+    @Test
+    public void testBuild() throws Exception {
+        System.out.println("AssemblyBuilder build");
+        CIF cif = new Mol_TextCifReader((Mol_Environment) null).getCif(
+                new BufferedReader(new StringReader(CIF_TEXT)));
+        AssemblyBuilder b = new AssemblyBuilder(cif);
+        assertEquals(2, b.getAssemblyIds().size());
+        Assembly a1 = b.build("1");
+        assertEquals(3L, a1.getNAtoms());
+        assertTrue(a1.instances.get(0).isIdentity());
+        Assembly a2 = b.build("2");
+        assertEquals(2, a2.instances.size());
+        assertEquals("2,3", a2.instances.get(1).operator);
+        assertEquals(-1.0001d, a2.instances.get(1).x(0), 1e-12);
+        CIF r = a2.toCIF(cif);
+        Columns as = r.getAtomSite();
+        assertEquals(4, as.getNRows());
+        // Rounded up (away from zero) as by CIF.rotate.
+        assertArrayEquals(new String[]{"1.001", "?", "-1.001", "?"},
+                as.getStrings("Cartn_x"));
+        assertArrayEquals(new String[]{"2.000", "?", "-2.000", "?"},
+                as.getStrings("Cartn_y"));
+        assertEquals("A-2,3", as.getStrings("label_asym_id")[2]);
+        // Changing the result does not change the source.
+        DataBlock db = r.dataBlocks.get(0);
+        Columns gen = db.getColumns("pdbx_struct_assembly_gen");
+        gen.setValue(gen.data.firstKey(), gen.name2id.get("oper_expression"),
+                new Value("2"));
+        DataItem entry = db.getDataItems("entry").dataItems.firstEntry()
+                .getValue();
+        entry.value = "T2";
+        DataBlock sdb = cif.dataBlocks.get(0);
+        assertEquals("1", sdb.getColumns("pdbx_struct_assembly_gen")
+                .getStrings("oper_expression")[0]);
+        assertEquals("T1", sdb.getDataItems("entry").dataItems.firstEntry()
+                .getValue().value);
+        assertEquals(3, cif.getAtomSite().getNRows());
+    }
+}
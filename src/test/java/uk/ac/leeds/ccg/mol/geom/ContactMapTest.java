@@ -0,0 +1,113 @@
+/*
+ * Copyright 2025 University of Leeds.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.ac.leeds.ccg.mol.geom;
+
+import java.io.BufferedReader;
+import java.io.StringReader;
+import java.util.Random;
+import java.util.TreeSet;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+import uk.ac.leeds.ccg.mol.core.Mol_Environment;
+import uk.ac.leeds.ccg.mol.data.cif.CIF;
+import uk.ac.leeds.ccg.mol.io.Mol_TextCifReader;
+
+/**
+ * ContactMapTest.
+ *
+ * @author Andy Turner
+ */
+public class ContactMapTest {
+
+    /**
+     * Test of compute method, of class ContactMap, against brute force.
+     */
+    @Test
+    public void testCompute() {
+        System.out.println("ContactMap compute");
+        int n = 3000;
+        Random r = new Random(1L);
+        String[] asym = new String[n];
+        String[] seq = new String[n];
+        double[][] coords = new double[3][n];
+        for (int i = 0; i < n; i++) {
+            asym[i] = String.valueOf((char) ('A' + i / 1000));
+            seq[i] = String.valueOf((i % 1000) / 5);
+            for (int d = 0; d < 3; d++) {
+                coords[d][i] = r.nextDouble() * 60d;
+            }
+        }
+        // Some atoms without coordinates.
+        for (int i = 0; i < n; i += 97) {
+            coords[i % 3][i] = Double.NaN;
+        }
+        double cutoff = 4d;
+        for (boolean inter : new boolean[]{false, true}) {
+            ContactMap cm = ContactMap.compute(asym, seq, coords, cutoff, inter);
+            TreeSet<Long> expected = new TreeSet<>();
+            for (int i = 0; i < n; i++) {
+                for (int j = i + 1; j < n; j++) {
+                    int ri = cm.indexOf(asym[i], seq[i]);
+                    int rj = cm.indexOf(asym[j], seq[j]);
+                    if (ri == rj || (inter && asym[i].equals(asym[j]))) {
+                        continue;
+                    }
+                    double dx = coords[0][i] - coords[0][j];
+                    double dy = coords[1][i] - coords[1][j];
+                    double dz = coords[2][i] - coords[2][j];
+                    if (dx * dx + dy * dy + dz * dz <= cutoff * cutoff) {
+                        expected.add(ri < rj ? ((long) ri << 32) | rj
+                                : ((long) rj << 32) | ri);
+                    }
+                }
+            }
+            assertEquals(600, cm.getNResidues());
+            assertArrayEquals(expected.stream().mapToLong(Long::longValue)
+                    .toArray(), cm.getPairs());
+        }
+    }
+
+    /**
+     * Test that only the first model is used, of class ContactMap.
+     */
+    @Test
+    public void testComputeModels() throws Exception {
+        System.out.println("ContactMap compute models");
+        String s = """
+                data_T1
+                loop_
+                _atom_site.group_PDB
+                _atom_site.id
+                _atom_site.label_asym_id
+                _atom_site.label_seq_id
+                _atom_site.Cartn_x
+                _atom_site.Cartn_y
+                _atom_site.Cartn_z
+                _atom_site.pdbx_PDB_model_num
+                ATOM 1 A 1 0.000 0.000 0.000 1
+                ATOM 2 A 2 10.000 0.000 0.000 1
+                ATOM 3 A 3 ? ? ? 1
+                ATOM 4 A 1 9.000 0.000 0.000 2
+                ATOM 5 A 2 20.000 0.000 0.000 2
+                ATOM 6 A 3 9.500 0.000 0.000 2
+                """;
+        CIF cif = new Mol_TextCifReader((Mol_Environment) null).getCif(
+                new BufferedReader(new StringReader(s)));
+        ContactMap cm = ContactMap.compute(cif, 4d, false);
+        assertEquals(3, cm.getNResidues());
+        assertEquals(0, cm.getNContacts());
+    }
+}
@@ -0,0 +1,126 @@
+/*
+ * Copyright 2025 University of Leeds.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.ac.leeds.ccg.mol.geom;
+
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+import uk.ac.leeds.ccg.math.arithmetic.Math_Double;
+
+/**
+ * ICPTest.
+ *
+ * @author Andy Turner
+ */
+public class ICPTest {
+
+    public ICPTest() {
+    }
+
+    /**
+     * @param n The number of points.
+     * @param seed The random seed.
+     * @return Random points in a 100 Angstrom cube centred on the origin.
+     */
+    private static double[][] getPoints(int n, long seed) {
+        Random r = new Random(seed);
+        double[][] coords = new double[3][n];
+        for (int d = 0; d < 3; d++) {
+            for (int i = 0; i < n; i++) {
+                coords[d][i] = r.nextDouble() * 100d - 50d;
+            }
+        }
+        return coords;
+    }
+
+    /**
+     * Test of nearest method, of class KDTree.
+     */
+    @Test
+    public void testKDTreeNearest() {
+        System.out.println("KDTree nearest");
+        double[][] coords = getPoints(2000, 1L);
+        double[][] query = getPoints(500, 2L);
+        KDTree tree = new KDTree(coords);
+        int[] nn = new int[500];
+        double[] d2 = new double[500];
+        tree.nearest(query, Double.POSITIVE_INFINITY, nn, d2);
+        for (int q = 0; q < 500; q++) {
+            int best = -1;
+            double bestD2 = Double.POSITIVE_INFINITY;
+            for (int i = 0; i < 2000; i++) {
+                double dx = coords[0][i] - query[0][q];
+                double dy = coords[1][i] - query[1][q];
+                double dz = coords[2][i] - query[2][q];
+                double dd = dx * dx + dy * dy + dz * dz;
+                if (dd < bestD2) {
+                    bestD2 = dd;
+                    best = i;
+                }
+            }
+            assertEquals(best, nn[q]);
+            assertEquals(best, tree.nearest(query[0][q], query[1][q], query[2][q]));
+        }
+    }
+
+    /**
+     * Test of ICP where the mobile points are a rotated, translated and
+     * reordered copy of the reference points.
+     */
+    @Test
+    public void testICP() {
+        System.out.println("ICP");
+        int n = 1000;
+        double[][] coords1 = getPoints(n, 3L);
+        // Rotate by 10 degrees about z, translate and reverse the order.
+        double a = Math.toRadians(10d);
+        double[] r = {Math.cos(a), -Math.sin(a), 0d,
+            Math.sin(a), Math.cos(a), 0d,
+            0d, 0d, 1d};
+        double[] t = {1d, -2d, 0.5d};
+        double[][] coords2 = new double[3][n];
+        for (int i = 0; i < n; i++) {
+            int j = n - 1 - i;
+            coords2[0][j] = r[0] * coords1[0][i] + r[1] * coords1[1][i] + r[2] * coords1[2][i] + t[0];
+            coords2[1][j] = r[3] * coords1[0][i] + r[4] * coords1[1][i] + r[5] * coords1[2][i] + t[1];
+            coords2[2][j] = r[6] * coords1[0][i] + r[7] * coords1[1][i] + r[8] * coords1[2][i] + t[2];
+        }
+        ICP icp = new ICP(coords1, coords2, 100, 1e-9, Double.POSITIVE_INFINITY);
+        System.out.println("iterations " + icp.iterations.size()
+                + ", rmsd " + icp.rmsd + ", converged " + icp.converged);
+        assertTrue(icp.converged);
+        // The characteristic polynomial RMSD is limited by cancellation.
+        assertTrue(Math_Double.equals(0d, icp.rmsd, 0.0001d));
+        double epsilon = 0.000001d;
+        double[][] c2t = icp.getTransformedCoordinates();
+        int[] pairs = icp.getPairs();
+        for (int j = 0; j < n; j++) {
+            assertEquals(n - 1 - j, pairs[j]);
+            for (int d = 0; d < 3; d++) {
+                assertTrue(Math_Double.equals(coords1[d][n - 1 - j], c2t[d][j], epsilon));
+            }
+        }
+        // The accumulated transformation should give the same result.
+        double[][] c2 = new double[][]{coords2[0].clone(), coords2[1].clone(),
+            coords2[2].clone()};
+        ICP.transform(c2, icp.rotmat, icp.translation);
+        for (int j = 0; j < n; j++) {
+            for (int d = 0; d < 3; d++) {
+                assertTrue(Math_Double.equals(c2t[d][j], c2[d][j], epsilon));
+            }
+        }
+    }
+}
@@ -0,0 +1,78 @@
+/*
+ * Copyright 2025 University of Leeds.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.ac.leeds.ccg.mol.io;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.stream.Stream;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+import uk.ac.leeds.ccg.mol.core.Mol_Environment;
+
+/**
+ * Mol_CatalogTest.
+ *
+ * @author Andy Turner
+ */
+public class Mol_CatalogTest {
+
+    /**
+     * Test of build method, of class Mol_Catalog, that files are scanned
+     * again if they changed or had an error.
+     */
+    @Test
+    public void testBuild() throws Exception {
+        System.out.println("Mol_Catalog build");
+        Path dir = Files.createTempDirectory("rc-mol-catalog-test");
+        Path mirror = Files.createDirectory(dir.resolve("mirror"));
+        Path file = dir.resolve("catalog.bin");
+        Mol_TextCifReader reader = new Mol_TextCifReader((Mol_Environment) null);
+        try {
+            Path good = mirror.resolve("1abc.cif");
+            Files.writeString(good, "data_1ABC\n_entry.id 1ABC\n# \n");
+            // A row of too many values.
+            Path bad = mirror.resolve("2abc.cif");
+            // The same size as bad.
+            String fixed = "data_2ABC\nloop_\n_entity.id\n_entity.pdbx_description\n"
+                    + "1 dx\n#\n";
+            Files.writeString(bad, "data_2ABC\nloop_\n_entity.id\n"
+                    + "_entity.pdbx_description\n1 d x\n#");
+            FileTime t = Files.getLastModifiedTime(bad);
+            assertEquals(2, Mol_Catalog.build(mirror, "*.cif", file, reader, 1));
+            Mol_Catalog c = Mol_Catalog.open(file);
+            assertEquals(2, c.n);
+            assertEquals("", c.getEntry(0).error);
+            assertFalse(c.getEntry(1).error.isEmpty());
+            // The file with the error is scanned again.
+            assertEquals(1, Mol_Catalog.build(mirror, "*.cif", file, reader, 1));
+            // Fixed without changing the size or modified time.
+            Files.writeString(bad, fixed);
+            Files.setLastModifiedTime(bad, t);
+            assertEquals(1, Mol_Catalog.build(mirror, "*.cif", file, reader, 1));
+            c = Mol_Catalog.open(file);
+            assertEquals("", c.getEntry(1).error);
+            assertEquals("dx", c.getEntry(1).entities);
+            assertEquals(0, Mol_Catalog.build(mirror, "*.cif", file, reader, 1));
+        } finally {
+            try (Stream<Path> s = Files.walk(dir)) {
+                for (Path p : s.sorted((a, b) -> b.compareTo(a)).toList()) {
+                    Files.delete(p);
+                }
+            }
+        }
+    }
+}
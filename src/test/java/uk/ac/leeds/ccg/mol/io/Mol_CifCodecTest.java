@@ -0,0 +1,166 @@
+/*
+ * Copyright 2025 University of Leeds.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.ac.leeds.ccg.mol.io;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.StringReader;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+import uk.ac.leeds.ccg.mol.core.Mol_Environment;
+import uk.ac.leeds.ccg.mol.data.cif.CIF;
+import uk.ac.leeds.ccg.mol.data.cif.Value;
+
+/**
+ * Mol_CifCodecTest.
+ *
+ * @author Andy Turner
+ */
+public class Mol_CifCodecTest {
+
+    /**
+     * A CIF with values of all kinds including numbers that cannot be
+     * written back from scaled integers (-0.000, 007, 1.).
+     */
+    private static final String CIF_TEXT = """
+            data_T1
+            # a comment
+            _entry.id T1
+            #\s
+            loop_
+            _entity_poly.entity_id
+            _entity_poly.type
+            1 polyribonucleotide
+            2 'polypeptide(L)'
+            #\s
+            loop_
+            _atom_site.group_PDB
+            _atom_site.id
+            _atom_site.type_symbol
+            _atom_site.label_atom_id
+            _atom_site.label_alt_id
+            _atom_site.label_seq_id
+            _atom_site.Cartn_x
+            _atom_site.Cartn_y
+            _atom_site.Cartn_z
+            _atom_site.occupancy
+            _atom_site.B_iso_or_equiv
+            ATOM 1 N N . 1 10.123 -0.000 5.5 1.00 007
+            ATOM 2 C CA . 1 -11.001 2.000 -5.25 1.00 12
+            HETATM 3 O "O5'" A ? 3.000 -2.500 1. 0.50 -3
+            ATOM 40 C 'C B' B 2 0.100 -12345.678 0 1.00 5
+            #\s
+            """;
+
+    /**
+     * @return The CIF read from {@link #CIF_TEXT}.
+     */
+    private static CIF getCif(Mol_TextCifReader reader) throws Exception {
+        return reader.getCif(new BufferedReader(new StringReader(CIF_TEXT)));
+    }
+
+    /**
+     * @param cif The CIF.
+     * @return The CIF written as text.
+     */
+    private static String toText(CIF cif) throws Exception {
+        Mol_TextCifOutput out = new Mol_TextCifOutput(1 << 12);
+        new Mol_TextCifWriter().write(cif, out);
+        ByteBuffer b = out.getBytes();
+        return new String(b.array(), b.position(), b.remaining(),
+                StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Test of encode and decode method, of class Mol_CifCodec.
+     */
+    @Test
+    public void testRoundTrip() throws Exception {
+        System.out.println("Mol_CifCodec round trip");
+        Mol_TextCifReader reader = new Mol_TextCifReader((Mol_Environment) null);
+        CIF cif = getCif(reader);
+        byte[] b = Mol_CifCodec.encode(cif);
+        CIF d = Mol_CifCodec.decode(ByteBuffer.wrap(b), reader);
+        assertEquals(toText(cif), toText(d));
+        assertEquals(cif.getAtomSite().getClass(), d.getAtomSite().getClass());
+        Value v = d.getAtomSite().data.firstEntry().getValue().get(
+                d.getAtomSite().name2id.get("label_alt_id"));
+        assertEquals(Value.INAPPLICABLE, v.getKind());
+        assertTrue(b.length < CIF_TEXT.length());
+    }
+
+    /**
+     * @param o The object to serialize.
+     * @return The serialized bytes.
+     */
+    private static byte[] serialize(Object o) throws Exception {
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        try (ObjectOutputStream oos = new ObjectOutputStream(baos)) {
+            oos.writeObject(o);
+        }
+        return baos.toByteArray();
+    }
+
+    /**
+     * Test of Java serialization of CIF which uses Mol_CifProxy. The
+     * serialized size of a synthetic CIF is compared with that of the text.
+     */
+    @Test
+    public void testSerialization() throws Exception {
+        System.out.println("CIF serialization");
+        Mol_TextCifReader reader = new Mol_TextCifReader((Mol_Environment) null);
+        CIF cif = getCif(reader);
+        CIF d;
+        try (ObjectInputStream ois = new ObjectInputStream(
+                new ByteArrayInputStream(serialize(cif)))) {
+            d = (CIF) ois.readObject();
+        }
+        assertEquals(toText(cif), toText(d));
+        ByteArrayOutputStream text = new ByteArrayOutputStream();
+        Mol_SyntheticCifGenerator.ofAtoms("T2", 2000, 2L).write(text);
+        cif = reader.getCif(new BufferedReader(new StringReader(
+                text.toString(StandardCharsets.US_ASCII))));
+        byte[] b = serialize(cif);
+        assertTrue(b.length * 2 < text.size(), b.length + " " + text.size());
+    }
+
+    /**
+     * Test of getScale and toString methods, of class Mol_CifCodec.
+     */
+    @Test
+    public void testScale() {
+        System.out.println("Mol_CifCodec scale");
+        long[] x = new long[3];
+        assertEquals(3, Mol_CifCodec.getScale(new Value[]{new Value("1.234"),
+            new Value("-0.001"), new Value("100.000")}, x));
+        assertArrayEquals(new long[]{1234L, -1L, 100000L}, x);
+        assertEquals("-0.001", Mol_CifCodec.toString(-1L, 3));
+        assertEquals("0.050", Mol_CifCodec.toString(50L, 3));
+        assertEquals("-12", Mol_CifCodec.toString(-12L, 0));
+        assertEquals(-1, Mol_CifCodec.getScale(new Value[]{new Value("1.2"),
+            new Value("1.23")}, x));
+        assertEquals(-1, Mol_CifCodec.getScale(new Value[]{new Value("-0")}, x));
+        assertEquals(-1, Mol_CifCodec.getScale(new Value[]{new Value("07")}, x));
+        assertEquals(-1, Mol_CifCodec.getScale(new Value[]{new Value(".5")}, x));
+        assertEquals(-1, Mol_CifCodec.getScale(new Value[]{new Value("?")}, x));
+        assertEquals(-1, Mol_CifCodec.getScale(new Value[]{new Value("1e5")}, x));
+    }
+}
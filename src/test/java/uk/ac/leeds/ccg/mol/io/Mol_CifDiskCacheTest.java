@@ -0,0 +1,194 @@
+/*
+ * Copyright 2025 University of Leeds.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.ac.leeds.ccg.mol.io;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+import uk.ac.leeds.ccg.mol.core.Mol_Environment;
+import uk.ac.leeds.ccg.mol.data.cif.CIF;
+
+/**
+ * Mol_CifDiskCacheTest.
+ *
+ * @author Andy Turner
+ */
+public class Mol_CifDiskCacheTest {
+
+    /**
+     * A small CIF.
+     */
+    private static final String CIF_TEXT = """
+            data_1ABC
+            _entry.id 1ABC
+            #\s
+            loop_
+            _atom_site.group_PDB
+            _atom_site.id
+            _atom_site.type_symbol
+            _atom_site.Cartn_x
+            _atom_site.Cartn_y
+            _atom_site.Cartn_z
+            ATOM 1 P 1.000 2.000 3.000
+            ATOM 2 C 4.000 5.000 6.000
+            #\s
+            """;
+
+    /**
+     * A reader that counts the files it parses.
+     */
+    private static class CountingReader extends Mol_TextCifReader {
+
+        final AtomicInteger parses = new AtomicInteger();
+
+        CountingReader() {
+            super((Mol_Environment) null);
+        }
+
+        @Override
+        public CIF getCif(Path p) throws Exception {
+            parses.incrementAndGet();
+            return super.getCif(p);
+        }
+    }
+
+    /**
+     * @param cif The CIF.
+     * @return The first x coordinate.
+     */
+    private static String getX(CIF cif) {
+        return cif.getAtomSite().getStrings("Cartn_x")[0];
+    }
+
+    /**
+     * Test of getCif and load methods, of class Mol_CifDiskCache.
+     */
+    @Test
+    public void testGetCif() throws Exception {
+        System.out.println("Mol_CifDiskCache getCif");
+        Path dir = Files.createTempDirectory("rc-mol-diskcache-test");
+        try {
+            Path f = dir.resolve("1abc.cif");
+            Files.writeString(f, CIF_TEXT);
+            CountingReader reader = new CountingReader();
+            Mol_CifDiskCache cache = new Mol_CifDiskCache(dir.resolve("cache"),
+                    1L << 20, reader);
+            assertEquals("1.000", getX(cache.getCif(f)));
+            assertEquals(1, reader.parses.get());
+            Path s = cache.dir.resolve(Mol_CifDiskCache.hash(f)
+                    + Mol_CifDiskCache.EXT);
+            assertTrue(Files.exists(s));
+            // The snapshot is loaded rather than the file parsed.
+            assertEquals("1.000", getX(cache.getCif(f)));
+            assertEquals(1, reader.parses.get());
+            assertNotNull(cache.load(s));
+            // A flipped payload byte.
+            byte[] b = Files.readAllBytes(s);
+            byte[] c = b.clone();
+            int i = Mol_CifDiskCache.HEADER_LENGTH
+                    + (b.length - Mol_CifDiskCache.HEADER_LENGTH) / 2;
+            c[i] ^= 1;
+            Files.write(s, c);
+            assertNull(cache.load(s));
+            assertEquals("1.000", getX(cache.getCif(f)));
+            assertEquals(2, reader.parses.get());
+            assertArrayEquals(b, Files.readAllBytes(s));
+            // A truncated snapshot.
+            Files.write(s, Arrays.copyOf(b, b.length - 5));
+            assertNull(cache.load(s));
+            Files.write(s, Arrays.copyOf(b, Mol_CifDiskCache.HEADER_LENGTH - 1));
+            assertNull(cache.load(s));
+            assertEquals("1.000", getX(cache.getCif(f)));
+            assertEquals(3, reader.parses.get());
+            assertArrayEquals(b, Files.readAllBytes(s));
+            // A changed file has a new key.
+            Files.writeString(f, CIF_TEXT.replace("1.000", "7.000"));
+            assertNotEquals(s.getFileName().toString(), Mol_CifDiskCache.hash(f)
+                    + Mol_CifDiskCache.EXT);
+            assertEquals("7.000", getX(cache.getCif(f)));
+            assertEquals(4, reader.parses.get());
+            assertEquals(2, cache.list().size());
+            cache.clear();
+            assertEquals(0L, cache.size());
+        } finally {
+            delete(dir);
+        }
+    }
+
+    /**
+     * Test of evict method, of class Mol_CifDiskCache.
+     */
+    @Test
+    public void testEvict() throws Exception {
+        System.out.println("Mol_CifDiskCache evict");
+        Path dir = Files.createTempDirectory("rc-mol-diskcache-test");
+        try {
+            Mol_TextCifReader reader = new Mol_TextCifReader(
+                    (Mol_Environment) null);
+            Mol_CifDiskCache cache = new Mol_CifDiskCache(dir.resolve("cache"),
+                    Long.MAX_VALUE, reader);
+            Path[] ss = new Path[4];
+            long[] sizes = new long[ss.length];
+            for (int i = 0; i < ss.length; i++) {
+                Path f = dir.resolve(i + ".cif");
+                Files.writeString(f, CIF_TEXT.replace("1.000", i + ".000"));
+                cache.getCif(f);
+                ss[i] = cache.dir.resolve(Mol_CifDiskCache.hash(f)
+                        + Mol_CifDiskCache.EXT);
+                sizes[i] = Files.size(ss[i]);
+            }
+            // Used in the order 2, 0, 3, 1.
+            int[] order = {2, 0, 3, 1};
+            for (int i = 0; i < order.length; i++) {
+                Files.setLastModifiedTime(ss[order[i]],
+                        FileTime.fromMillis(1000000L * (i + 1)));
+            }
+            // Room for the two most recently used.
+            Mol_CifDiskCache small = new Mol_CifDiskCache(cache.dir,
+                    sizes[3] + sizes[1], reader);
+            small.evict();
+            assertFalse(Files.exists(ss[2]));
+            assertFalse(Files.exists(ss[0]));
+            assertTrue(Files.exists(ss[3]));
+            assertTrue(Files.exists(ss[1]));
+            assertEquals(sizes[3] + sizes[1], small.size());
+            // Loading touches so 3 is then the least recently used.
+            Files.setLastModifiedTime(ss[3], FileTime.fromMillis(1000000L));
+            small.getCif(dir.resolve("1.cif"));
+            new Mol_CifDiskCache(cache.dir, sizes[1], reader).evict();
+            assertFalse(Files.exists(ss[3]));
+            assertTrue(Files.exists(ss[1]));
+        } finally {
+            delete(dir);
+        }
+    }
+
+    /**
+     * @param dir The directory to delete.
+     */
+    private static void delete(Path dir) throws Exception {
+        try (Stream<Path> s = Files.walk(dir)) {
+            for (Path p : s.sorted((a, b) -> b.compareTo(a)).toList()) {
+                Files.delete(p);
+            }
+        }
+    }
+}
@@ -0,0 +1,186 @@
+/*
+ * Copyright 2025 University of Leeds.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.ac.leeds.ccg.mol.io;
+
+import java.io.BufferedReader;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+import uk.ac.leeds.ccg.mol.core.Mol_Environment;
+import uk.ac.leeds.ccg.mol.data.cif.CIF;
+import uk.ac.leeds.ccg.mol.data.cif.Column_ID;
+import uk.ac.leeds.ccg.mol.data.cif.Columns;
+import uk.ac.leeds.ccg.mol.data.cif.Row_ID;
+import uk.ac.leeds.ccg.mol.data.cif.Value;
+
+/**
+ * Mol_CifMemoryCacheTest.
+ *
+ * @author Andy Turner
+ */
+public class Mol_CifMemoryCacheTest {
+
+    /**
+     * @param key The key.
+     * @return A small CIF with a data block named key.
+     */
+    static CIF getCif(String key) throws Exception {
+        return new Mol_TextCifReader((Mol_Environment) null).getCif(
+                new BufferedReader(new StringReader("data_" + key + """
+
+                        loop_
+                        _atom_type.symbol
+                        C
+                        N
+                        #\s
+                        """)));
+    }
+
+    /**
+     * @param cache The cache.
+     * @return The number of gets counted.
+     */
+    static long gets(Mol_CifMemoryCache cache) {
+        return cache.getHits() + cache.getSoftHits() + cache.getMisses();
+    }
+
+    /**
+     * Test of get method, of class Mol_CifMemoryCache, that concurrent gets
+     * load once and each get is counted once.
+     */
+    @Test
+    public void testGetSingleFlight() throws Exception {
+        System.out.println("Mol_CifMemoryCache get single flight");
+        AtomicInteger loads = new AtomicInteger();
+        CountDownLatch release = new CountDownLatch(1);
+        Mol_CifMemoryCache cache = new Mol_CifMemoryCache(1L << 20, false,
+                key -> {
+                    loads.incrementAndGet();
+                    release.await();
+                    return getCif(key);
+                });
+        int n = 8;
+        ExecutorService es = Executors.newFixedThreadPool(n);
+        try {
+            List<Future<CIF>> fs = new ArrayList<>();
+            for (int i = 0; i < n; i++) {
+                fs.add(es.submit(() -> cache.get("a")));
+            }
+            // Wait until all the gets are loading or waiting.
+            long t = System.nanoTime() + TimeUnit.SECONDS.toNanos(30);
+            while (cache.getMisses() < n && System.nanoTime() < t) {
+                Thread.sleep(1);
+            }
+            assertEquals(n, cache.getMisses());
+            release.countDown();
+            CIF cif = fs.get(0).get();
+            for (Future<CIF> f : fs) {
+                assertSame(cif, f.get());
+            }
+            assertEquals(1, loads.get());
+            assertEquals(0, cache.getHits());
+            assertSame(cif, cache.get("a"));
+            assertEquals(1, cache.getHits());
+            assertEquals(n + 1, gets(cache));
+        } finally {
+            es.shutdownNow();
+        }
+        // A failed load is not cached.
+        Mol_CifMemoryCache failing = new Mol_CifMemoryCache(1L << 20, false,
+                key -> {
+                    loads.incrementAndGet();
+                    throw new IllegalStateException(key);
+                });
+        loads.set(0);
+        assertThrows(IllegalStateException.class, () -> failing.get("b"));
+        assertThrows(IllegalStateException.class, () -> failing.get("b"));
+        assertEquals(2, loads.get());
+        assertEquals(0, failing.size());
+    }
+
+    /**
+     * Test of put and getIfPresent methods, of class Mol_CifMemoryCache,
+     * that the least recently used are evicted and kept softly if soft.
+     */
+    @Test
+    public void testEviction() throws Exception {
+        System.out.println("Mol_CifMemoryCache eviction");
+        long b = Mol_CifMemoryCache.estimateBytes(getCif("a"));
+        for (boolean soft : new boolean[]{false, true}) {
+            AtomicInteger loads = new AtomicInteger();
+            Mol_CifMemoryCache cache = new Mol_CifMemoryCache(2 * b, soft,
+                    key -> {
+                        loads.incrementAndGet();
+                        return getCif(key);
+                    });
+            CIF a = cache.get("a");
+            cache.get("b");
+            assertEquals(2, cache.size());
+            assertEquals(2 * b, cache.getBytes());
+            // Use a so that b is the least recently used.
+            assertSame(a, cache.get("a"));
+            cache.get("c");
+            assertEquals(2, cache.size());
+            assertEquals(1, cache.getEvictions());
+            assertSame(a, cache.getIfPresent("a"));
+            assertNotNull(cache.getIfPresent("c"));
+            if (soft) {
+                // Kept softly until the garbage collector needs the memory.
+                assertNotNull(cache.getIfPresent("b"));
+                assertEquals(1, cache.getSoftHits());
+            } else {
+                assertNull(cache.getIfPresent("b"));
+                cache.get("b");
+                assertEquals(4, loads.get());
+            }
+            assertEquals(2, cache.size());
+            // A CIF bigger than the cache is not kept strongly.
+            Mol_CifMemoryCache small = new Mol_CifMemoryCache(b - 1, soft,
+                    key -> getCif(key));
+            small.get("a");
+            assertEquals(0, small.size());
+            assertEquals(0, small.getBytes());
+            cache.invalidate("a");
+            assertNull(cache.getIfPresent("a"));
+        }
+    }
+
+    /**
+     * Test of getCopy method, of class Mol_CifMemoryCache.
+     */
+    @Test
+    public void testGetCopy() throws Exception {
+        System.out.println("Mol_CifMemoryCache getCopy");
+        Mol_CifMemoryCache cache = new Mol_CifMemoryCache(1L << 20, false,
+                key -> getCif(key));
+        CIF copy = cache.getCopy("a");
+        CIF cif = cache.get("a");
+        assertNotSame(cif, copy);
+        Columns cs = copy.dataBlocks.get(0).getColumns("atom_type");
+        cs.setValue(new Row_ID(0), new Column_ID(0), new Value("O"));
+        assertArrayEquals(new String[]{"O", "N"}, cs.getStrings("symbol"));
+        assertArrayEquals(new String[]{"C", "N"}, cif.dataBlocks.get(0)
+                .getColumns("atom_type").getStrings("symbol"));
+    }
+}
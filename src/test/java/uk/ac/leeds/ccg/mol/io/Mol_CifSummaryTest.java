@@ -0,0 +1,198 @@
+/*
+ * Copyright 2025 University of Leeds.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.ac.leeds.ccg.mol.io;
+
+import java.io.BufferedReader;
+import java.io.StringReader;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Stream;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+import uk.ac.leeds.ccg.mol.core.Mol_Environment;
+import uk.ac.leeds.ccg.mol.data.cif.CIF;
+
+/**
+ * Mol_CifSummaryTest.
+ *
+ * @author Andy Turner
+ */
+public class Mol_CifSummaryTest {
+
+    /**
+     * Two models, two chains and two elements with coordinates of different
+     * scales, a coordinate with too many digits for a long and a missing
+     * coordinate.
+     */
+    private static final String CIF_TEXT = """
+            data_T1
+            loop_
+            _entity.id
+            _entity.type
+            1 polymer
+            2 water
+            #\s
+            loop_
+            _atom_site.group_PDB
+            _atom_site.id
+            _atom_site.type_symbol
+            _atom_site.auth_asym_id
+            _atom_site.Cartn_x
+            _atom_site.Cartn_y
+            _atom_site.Cartn_z
+            _atom_site.pdbx_PDB_model_num
+            ATOM 1 P A 1.5 -2.000 0.125 1
+            ATOM 2 P A 2.25 1.000 -0.125 1
+            ATOM 3 C B 1234567890.1234567 0 3 1
+            ATOM 4 C B ? 0 3 1
+            ATOM 5 P A 3 4 5 2
+            #\s
+            """;
+
+    /**
+     * @return The summary of {@link #CIF_TEXT} as read.
+     */
+    private static Mol_CifSummary getSummary() throws Exception {
+        CIF cif = new Mol_TextCifReader((Mol_Environment) null).getCif(
+                new BufferedReader(new StringReader(CIF_TEXT)));
+        return cif.summary;
+    }
+
+    /**
+     * @param expected The expected summary.
+     * @param s The summary.
+     */
+    private static void assertSummaryEquals(Mol_CifSummary expected,
+            Mol_CifSummary s) {
+        assertEquals(expected.atoms, s.atoms);
+        assertEquals(expected.models, s.models);
+        assertEquals(expected.chains, s.chains);
+        assertArrayEquals(expected.min, s.min);
+        assertArrayEquals(expected.max, s.max);
+        assertEquals(expected.categories, s.categories);
+        assertEquals(expected.elements.keySet(), s.elements.keySet());
+        for (var e : expected.elements.entrySet()) {
+            Mol_CifSummary.Element se = s.elements.get(e.getKey());
+            assertEquals(e.getValue().count, se.count);
+            assertEquals(e.getValue().located, se.located);
+            for (int i = 0; i < 3; i++) {
+                assertEquals(e.getValue().getSum(i), se.getSum(i));
+            }
+        }
+    }
+
+    /**
+     * Test of of method, of class Mol_CifSummary.
+     */
+    @Test
+    public void testOf() throws Exception {
+        System.out.println("Mol_CifSummary of");
+        Mol_CifSummary s = getSummary();
+        assertEquals(5L, s.atoms);
+        assertEquals(Map.of("1", 4L, "2", 1L), s.models);
+        assertEquals(Map.of("A", 3L, "B", 2L), s.chains);
+        assertEquals(Map.of("entity", 2L, "atom_site", 5L), s.categories);
+        assertArrayEquals(new double[]{1.5d, -2d, -0.125d}, s.min);
+        assertArrayEquals(new double[]{1234567890.1234567d, 4d, 5d}, s.max);
+        Mol_CifSummary.Element p = s.elements.get("P");
+        assertEquals(3L, p.count);
+        assertEquals(3L, p.located);
+        assertEquals(new BigDecimal("6.75"), p.getSum(0));
+        assertEquals(new BigDecimal("3.000"), p.getSum(1));
+        assertEquals(new BigDecimal("5.000"), p.getSum(2));
+        Mol_CifSummary.Element c = s.elements.get("C");
+        assertEquals(2L, c.count);
+        assertEquals(1L, c.located);
+        assertEquals(new BigDecimal("1234567890.1234567"), c.getSum(0));
+        assertEquals(new BigDecimal("0"), c.getSum(1));
+        assertEquals(new BigDecimal("3"), c.getSum(2));
+        assertEquals(4L, s.getLocated(null));
+        assertEquals(new BigDecimal("1234567896.8734567"),
+                s.getSums(null)[0]);
+        assertArrayEquals(new double[]{2.25d, 1d, 5d / 3d},
+                s.getCentroid(Set.of("P")));
+        assertNull(s.getCentroid(Set.of("O")));
+    }
+
+    /**
+     * Test of write and read methods, of class Mol_CifSummary.
+     */
+    @Test
+    public void testWriteRead() throws Exception {
+        System.out.println("Mol_CifSummary write read");
+        Path dir = Files.createTempDirectory("rc-mol-summary-test");
+        try {
+            Mol_CifSummary s = getSummary();
+            Path p = Mol_CifSummary.getSidecar(dir.resolve("T1.cif"));
+            assertEquals("T1.cif" + Mol_CifSummary.EXT,
+                    p.getFileName().toString());
+            s.write(p);
+            assertSummaryEquals(s, Mol_CifSummary.read(p));
+            Files.writeString(p, "atoms x\n");
+            assertThrows(java.io.IOException.class,
+                    () -> Mol_CifSummary.read(p));
+        } finally {
+            delete(dir);
+        }
+    }
+
+    /**
+     * Test of get method, of class Mol_CifSummary.
+     */
+    @Test
+    public void testGet() throws Exception {
+        System.out.println("Mol_CifSummary get");
+        Path dir = Files.createTempDirectory("rc-mol-summary-test");
+        try {
+            Path cif = dir.resolve("T1.cif");
+            Files.writeString(cif, CIF_TEXT);
+            Files.setLastModifiedTime(cif, FileTime.fromMillis(1000000L));
+            Mol_TextCifReader reader = new Mol_TextCifReader(
+                    (Mol_Environment) null);
+            Path p = Mol_CifSummary.getSidecar(cif);
+            assertFalse(Files.exists(p));
+            Mol_CifSummary s = Mol_CifSummary.get(cif, reader);
+            assertTrue(Files.exists(p));
+            assertSummaryEquals(getSummary(), s);
+            // An up to date sidecar is read rather than the CIF.
+            Mol_CifSummary other = new Mol_CifSummary();
+            other.atoms = 7L;
+            other.write(p);
+            assertEquals(7L, Mol_CifSummary.get(cif, reader).atoms);
+            // A stale sidecar is rewritten.
+            Files.setLastModifiedTime(p, FileTime.fromMillis(1000L));
+            assertEquals(5L, Mol_CifSummary.get(cif, reader).atoms);
+            assertEquals(5L, Mol_CifSummary.read(p).atoms);
+        } finally {
+            delete(dir);
+        }
+    }
+
+    /**
+     * @param dir The directory to delete.
+     */
+    private static void delete(Path dir) throws Exception {
+        try (Stream<Path> s = Files.walk(dir)) {
+            for (Path p : s.sorted((a, b) -> b.compareTo(a)).toList()) {
+                Files.delete(p);
+            }
+        }
+    }
+}
@@ -0,0 +1,198 @@
+/*
+ * Copyright 2025 University of Leeds.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.ac.leeds.ccg.mol.io;
+
+import java.io.BufferedReader;
+import java.io.StringReader;
+import java.nio.ByteBuffer;
+import java.util.SplittableRandom;
+import java.util.stream.Collectors;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+import uk.ac.leeds.ccg.mol.core.Mol_Environment;
+import uk.ac.leeds.ccg.mol.data.cif.Column_ID;
+import uk.ac.leeds.ccg.mol.data.cif.Columns;
+import uk.ac.leeds.ccg.mol.data.cif.Row_ID;
+import uk.ac.leeds.ccg.mol.data.cif.Value;
+
+/**
+ * Mol_CoordCodecTest.
+ *
+ * @author Andy Turner
+ */
+public class Mol_CoordCodecTest {
+
+    /**
+     * The number of atoms: two full blocks and a part block.
+     */
+    private static final int N = 2 * Mol_CoordCodec.BLOCK + 100;
+
+    /**
+     * The encoded columns.
+     */
+    private static final String[] NAMES = {"Cartn_x", "Cartn_y", "Cartn_z",
+        "B_iso_or_equiv", "occupancy"};
+
+    /**
+     * @param text The CIF text.
+     * @return The atom_site.
+     */
+    private static Columns read(String text) throws Exception {
+        return new Mol_TextCifReader((Mol_Environment) null).getCif(
+                new BufferedReader(new StringReader(text))).getAtomSite();
+    }
+
+    /**
+     * @return An atom_site of {@link #N} atoms following a random walk with
+     * coordinates written to 3 decimal places and B factors and occupancies
+     * to 2, in runs and with '.' and '?' markers.
+     */
+    private static String getCifText() {
+        SplittableRandom r = new SplittableRandom(1L);
+        StringBuilder sb = new StringBuilder("data_T1\nloop_\n");
+        sb.append("_atom_site.id\n");
+        for (String name : NAMES) {
+            sb.append("_atom_site.").append(name).append('\n');
+        }
+        long[] p = {10000L, -5000L, 0L};
+        long b = 3000L;
+        for (int i = 0; i < N; i++) {
+            sb.append(i + 1);
+            for (int k = 0; k < 3; k++) {
+                p[k] += r.nextLong(-3500L, 3500L);
+                sb.append(' ').append(Mol_CifCodec.toString(p[k], 3));
+            }
+            if (i % 10 == 0) {
+                b = r.nextLong(1000L, 9000L);
+            }
+            sb.append(' ').append(i % 97 == 0 ? "?"
+                    : Mol_CifCodec.toString(b, 2));
+            sb.append(' ').append(i % 50 < 3 ? "." : i % 89 == 0 ? "?"
+                    : i % 200 < 20 ? "0.50" : "1.00");
+            sb.append('\n');
+        }
+        return sb.append("#\n").toString();
+    }
+
+    /**
+     * Test of encode, decode and the Decoder, of class Mol_CoordCodec.
+     */
+    @Test
+    public void testDecode() throws Exception {
+        System.out.println("Mol_CoordCodec decode");
+        String text = getCifText();
+        Columns cs = read(text);
+        assertEquals(N, cs.data.size());
+        byte[] e = Mol_CoordCodec.encode(cs);
+        Mol_CoordCodec.Coords c = Mol_CoordCodec.decode(ByteBuffer.wrap(e));
+        Mol_CoordCodec.Decoder d = new Mol_CoordCodec.Decoder(
+                ByteBuffer.wrap(e));
+        assertEquals(N, d.n);
+        assertEquals(Mol_CoordCodec.BLOCK, d.blockSize);
+        assertTrue(d.hasB);
+        assertTrue(d.hasOccupancy);
+        int start = 0;
+        int blocks = 0;
+        for (int m = d.next(); m > 0; m = d.next()) {
+            assertEquals(Math.min(Mol_CoordCodec.BLOCK, N - start), m);
+            for (int i = 0; i < m; i++) {
+                assertEquals(c.coords[0][start + i], d.x[i]);
+                assertEquals(c.coords[1][start + i], d.y[i]);
+                assertEquals(c.coords[2][start + i], d.z[i]);
+                assertEquals(c.b.getKind(start + i), d.bKinds[i]);
+                assertEquals(c.occupancy.getKind(start + i),
+                        d.occupancyKinds[i]);
+                if (d.bKinds[i] == Value.BARE) {
+                    assertEquals(c.b.values[start + i], d.b[i]);
+                }
+                if (d.occupancyKinds[i] == Value.BARE) {
+                    assertEquals(c.occupancy.values[start + i],
+                            d.occupancy[i]);
+                }
+            }
+            start += m;
+            blocks++;
+        }
+        assertEquals(3, blocks);
+        assertEquals(N, d.getDecoded());
+        assertEquals(0, d.next());
+        // The decoded values are those parsed from the text.
+        double[] x = cs.getColumnDouble("Cartn_x").values;
+        for (int i = 0; i < N; i++) {
+            assertEquals(x[i], c.coords[0][i]);
+        }
+        assertEquals(Value.UNKNOWN, c.b.getKind(0));
+        assertEquals(Value.INAPPLICABLE, c.occupancy.getKind(0));
+        assertEquals(Value.UNKNOWN, c.occupancy.getKind(89));
+        // Each block is decoded independently of the blocks before it, so a
+        // block encoded on its own is the same as in the whole encoding.
+        Columns part = read(text.lines().filter(l -> !l.matches("[0-9]+ .*")
+                || Integer.parseInt(l.substring(0, l.indexOf(' ')))
+                > 2 * Mol_CoordCodec.BLOCK).collect(Collectors.joining("\n",
+                "", "\n")));
+        assertEquals(100, part.data.size());
+        Mol_CoordCodec.Coords pc = Mol_CoordCodec.decode(ByteBuffer.wrap(
+                Mol_CoordCodec.encode(part)));
+        for (int k = 0; k < 3; k++) {
+            for (int i = 0; i < 100; i++) {
+                assertEquals(c.coords[k][2 * Mol_CoordCodec.BLOCK + i],
+                        pc.coords[k][i]);
+            }
+        }
+        // The size is a fraction of that of the text of the columns.
+        long size = 0L;
+        for (String name : NAMES) {
+            for (String v : cs.getStrings(name)) {
+                size += v.length() + 1;
+            }
+        }
+        assertTrue(e.length * 4L < size, e.length + " " + size);
+    }
+
+    /**
+     * Test of setValues method, of class Mol_CoordCodec.
+     */
+    @Test
+    public void testSetValues() throws Exception {
+        System.out.println("Mol_CoordCodec setValues");
+        String text = getCifText();
+        Columns cs = read(text);
+        Mol_CoordCodec.Coords c = Mol_CoordCodec.decode(ByteBuffer.wrap(
+                Mol_CoordCodec.encode(cs)));
+        // Overwrite every value and restore them from the decoded values.
+        Columns cs2 = read(text);
+        for (String name : NAMES) {
+            Column_ID cid = cs2.name2id.get(name);
+            for (Row_ID rid : cs2.data.keySet()) {
+                cs2.setValue(rid, cid, new Value("9999.999"));
+            }
+        }
+        Mol_CoordCodec.setValues(cs2, c);
+        for (String name : NAMES) {
+            assertArrayEquals(cs.getStrings(name), cs2.getStrings(name), name);
+        }
+        // Text that is not in the canonical form is kept if unchanged.
+        Columns cs3 = read(text.replaceFirst("\n1 [^ ]+ ", "\n1 10.5 "));
+        assertEquals("10.5", cs3.getStrings("Cartn_x")[0]);
+        Mol_CoordCodec.setValues(cs3, Mol_CoordCodec.decode(ByteBuffer.wrap(
+                Mol_CoordCodec.encode(cs3))));
+        assertEquals("10.5", cs3.getStrings("Cartn_x")[0]);
+        // Missing coordinates cannot be encoded.
+        Columns cs4 = read(text.replaceFirst("\n1 [^ ]+ ", "\n1 ? "));
+        assertThrows(IllegalArgumentException.class,
+                () -> Mol_CoordCodec.encode(cs4));
+    }
+}
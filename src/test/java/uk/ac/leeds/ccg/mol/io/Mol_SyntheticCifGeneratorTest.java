@@ -0,0 +1,115 @@
+/*
+ * Copyright 2025 University of Leeds.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.ac.leeds.ccg.mol.io;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.StringReader;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+import uk.ac.leeds.ccg.mol.core.Mol_Environment;
+import uk.ac.leeds.ccg.mol.data.cif.CIF;
+import uk.ac.leeds.ccg.mol.data.cif.Columns;
+
+/**
+ * Mol_SyntheticCifGeneratorTest.
+ *
+ * @author Andy Turner
+ */
+public class Mol_SyntheticCifGeneratorTest {
+
+    /**
+     * @param g The generator.
+     * @return What g writes.
+     */
+    private static String generate(Mol_SyntheticCifGenerator g)
+            throws Exception {
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        g.write(baos);
+        return baos.toString(StandardCharsets.US_ASCII);
+    }
+
+    /**
+     * @param s CIF text.
+     * @return The CIF.
+     */
+    private static CIF read(String s) throws Exception {
+        return new Mol_TextCifReader((Mol_Environment) null).getCif(
+                new BufferedReader(new StringReader(s)));
+    }
+
+    /**
+     * Test of write method, of class Mol_SyntheticCifGenerator.
+     */
+    @Test
+    public void testWrite() throws Exception {
+        System.out.println("Mol_SyntheticCifGenerator write");
+        String s = generate(Mol_SyntheticCifGenerator.ofAtoms("T1", 5000, 3L));
+        assertEquals(s, generate(Mol_SyntheticCifGenerator.ofAtoms("T1", 5000,
+                3L)));
+        assertNotEquals(s, generate(Mol_SyntheticCifGenerator.ofAtoms("T1",
+                5000, 4L)));
+        CIF cif = read(s);
+        assertEquals(5000L, cif.getSummary().atoms);
+        assertEquals(4, cif.getSummary().elements.size());
+        Columns ep = cif.dataBlocks.get(0).getColumns("entity_poly");
+        assertEquals("polyribonucleotide", ep.getStrings("type")[0]);
+        assertEquals("R1", ep.getStrings("pdbx_strand_id")[0]);
+        var categories = cif.getSummary().categories;
+        assertEquals(3L, categories.get("struct_ref"));
+        assertEquals(10L, categories.get("struct_conf"));
+        assertEquals(12L, categories.get("struct_conn"));
+        assertEquals(1L, categories.get("pdbx_struct_oper_list"));
+        // The text fields written back are followed by blank lines.
+        Mol_TextCifOutput out = new Mol_TextCifOutput(1 << 16);
+        new Mol_TextCifWriter().write(cif, out);
+        ByteBuffer b = out.getBytes();
+        CIF cif2 = read(new String(b.array(), b.position(), b.remaining(),
+                StandardCharsets.UTF_8));
+        assertEquals(cif.getSummary().atoms, cif2.getSummary().atoms);
+        assertArrayEquals(cif.getSummary().getSums(null),
+                cif2.getSummary().getSums(null));
+    }
+
+    /**
+     * Test of the constructor with numbers of chains and residues.
+     */
+    @Test
+    public void testChains() throws Exception {
+        System.out.println("Mol_SyntheticCifGenerator chains");
+        CIF cif = read(generate(new Mol_SyntheticCifGenerator("T2", 2, 10, 3, 5,
+                Long.MAX_VALUE, 1L)));
+        assertEquals(5, cif.getSummary().chains.size());
+        assertEquals(35L, cif.getSummary().categories.get(
+                "pdbx_poly_seq_scheme"));
+        // Protein chains too short for a helix and one pair per RNA chain.
+        assertNull(cif.getSummary().categories.get("struct_conf"));
+        assertEquals(2L, cif.getSummary().categories.get("struct_conn"));
+        assertArrayEquals(new String[]{"A,B,C,D,E"}, Mol_Catalog.getValues(
+                cif.dataBlocks.get(0), "pdbx_struct_assembly_gen",
+                "asym_id_list"));
+        // An asym_id_list too long for a line is a text field.
+        cif = read(generate(new Mol_SyntheticCifGenerator("T3", 1, 10, 40, 5,
+                Long.MAX_VALUE, 1L)));
+        String[] asyms = Mol_Catalog.getValues(cif.dataBlocks.get(0),
+                "pdbx_struct_assembly_gen", "asym_id_list");
+        assertEquals(1, asyms.length);
+        assertTrue(asyms[0].startsWith("A,B,C,"));
+        assertTrue(asyms[0].endsWith(",AN,AO"));
+    }
+}
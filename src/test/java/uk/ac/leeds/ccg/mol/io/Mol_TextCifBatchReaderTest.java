@@ -0,0 +1,161 @@
+/*
+ * Copyright 2025 University of Leeds.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.ac.leeds.ccg.mol.io;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+import java.util.zip.GZIPOutputStream;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+import uk.ac.leeds.ccg.mol.core.Mol_Environment;
+
+/**
+ * Mol_TextCifBatchReaderTest.
+ *
+ * @author Andy Turner
+ */
+public class Mol_TextCifBatchReaderTest {
+
+    /**
+     * A CIF.
+     */
+    static final String GOOD = """
+            data_T1
+            loop_
+            _atom_type.symbol
+            C
+            N
+            #\s
+            """;
+
+    /**
+     * A CIF with a row that has too many values.
+     */
+    static final String BAD = """
+            data_T2
+            loop_
+            _atom_type.symbol
+            C
+            N O
+            #\s
+            """;
+
+    /**
+     * Where the files are.
+     */
+    static Path dir;
+
+    /**
+     * The files: good, missing, bad, good gzipped.
+     */
+    static List<Path> paths;
+
+    @BeforeAll
+    public static void setUpClass() throws Exception {
+        dir = Files.createTempDirectory("rc-mol-batch-test");
+        Path good = dir.resolve("1good.cif");
+        Files.writeString(good, GOOD);
+        Path bad = dir.resolve("3bad.cif");
+        Files.writeString(bad, BAD);
+        Path gz = dir.resolve("4good.cif.gz");
+        try (OutputStream os = new GZIPOutputStream(Files.newOutputStream(gz))) {
+            os.write(GOOD.getBytes(StandardCharsets.US_ASCII));
+        }
+        paths = List.of(good, dir.resolve("2missing.cif"), bad, gz);
+    }
+
+    @AfterAll
+    public static void tearDownClass() throws Exception {
+        try (Stream<Path> s = Files.list(dir)) {
+            for (Path p : s.toList()) {
+                Files.delete(p);
+            }
+        }
+        Files.delete(dir);
+    }
+
+    /**
+     * @param nThreads The number of parsing threads.
+     * @return A new batch reader.
+     */
+    static Mol_TextCifBatchReader getBatchReader(int nThreads) {
+        return new Mol_TextCifBatchReader(new Mol_TextCifReader(
+                (Mol_Environment) null), nThreads, 1 << 20);
+    }
+
+    /**
+     * Test of read method, of class Mol_TextCifBatchReader, that failures are
+     * reported for each file and do not stop the batch.
+     */
+    @Test
+    public void testRead() throws Exception {
+        System.out.println("Mol_TextCifBatchReader read");
+        try (Mol_TextCifBatchReader br = getBatchReader(2)) {
+            for (boolean ordered : new boolean[]{true, false}) {
+                Mol_TextCifBatchReader.Result[] rs = new Mol_TextCifBatchReader.Result[4];
+                try (Stream<Mol_TextCifBatchReader.Result> s = br.read(paths,
+                        ordered)) {
+                    s.forEach(r -> rs[r.index] = r);
+                }
+                assertTrue(rs[0].isOK());
+                assertEquals(2, rs[0].cif.dataBlocks.get(0)
+                        .getColumns("atom_type").getNRows());
+                assertInstanceOf(NoSuchFileException.class, rs[1].error);
+                assertNull(rs[1].cif);
+                assertInstanceOf(IOException.class, rs[2].error);
+                assertTrue(rs[2].error.getMessage().contains("atom_type row 1"));
+                assertTrue(rs[3].isOK());
+                assertEquals("4good", rs[3].getName());
+            }
+            assertEquals(List.of(paths.get(0), paths.get(2), paths.get(3)),
+                    Mol_TextCifBatchReader.list(dir, Mol_TextCifBatchReader.GLOB));
+        }
+    }
+
+    /**
+     * Test of close method, of class Mol_TextCifBatchReader, that a batch
+     * being read when the reader is closed, or read after, does not block.
+     */
+    @Test
+    public void testClose() throws Exception {
+        System.out.println("Mol_TextCifBatchReader close");
+        List<Path> many = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            many.add(paths.get(i % 4));
+        }
+        for (boolean ordered : new boolean[]{true, false}) {
+            Mol_TextCifBatchReader br = getBatchReader(1);
+            Stream<Mol_TextCifBatchReader.Result> s = br.read(many, ordered);
+            br.close();
+            assertTimeoutPreemptively(Duration.ofSeconds(30), () -> {
+                assertEquals(many.size(), s.count());
+            });
+            assertTimeoutPreemptively(Duration.ofSeconds(30), () -> {
+                assertTrue(br.read(many, ordered).noneMatch(r -> r.isOK()));
+            });
+        }
+    }
+}
@@ -0,0 +1,174 @@
+/*
+ * Copyright 2025 University of Leeds.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.ac.leeds.ccg.mol.io;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+import uk.ac.leeds.ccg.mol.core.Mol_Environment;
+import uk.ac.leeds.ccg.mol.data.cif.CIF;
+import uk.ac.leeds.ccg.mol.data.cif.DataBlock;
+
+/**
+ * Mol_TextCifReaderTest.
+ *
+ * @author Andy Turner
+ */
+public class Mol_TextCifReaderTest {
+
+    /**
+     * @param s The text.
+     * @return The CIF read from s.
+     */
+    static CIF read(String s) throws Exception {
+        return new Mol_TextCifReader((Mol_Environment) null).getCif(
+                new BufferedReader(new StringReader(s)));
+    }
+
+    /**
+     * Test of parseLoop method, of class Mol_TextCifReader.
+     */
+    @Test
+    public void testParseLoop() throws Exception {
+        System.out.println("Mol_TextCifReader parseLoop");
+        CIF cif = read("""
+                data_T1
+                loop_
+                _not_a_category.id
+                _not_a_category.name
+                1 x
+                #\s
+                loop_
+                _atom_type.symbol
+                C
+                N
+                """);
+        DataBlock db = cif.dataBlocks.get(0);
+        assertNull(db.getColumns("not_a_category"));
+        assertArrayEquals(new String[]{"C", "N"},
+                db.getColumns("atom_type").getStrings("symbol"));
+        IOException e = assertThrows(IOException.class, () -> read("""
+                data_T1
+                loop_
+                _atom_type.symbol
+                _atom_type.scat_length_neutron
+                C 6.646
+                N 9.36 extra
+                #\s
+                """));
+        assertTrue(e.getMessage().contains("atom_type row 1"), e.getMessage());
+        e = assertThrows(IOException.class, () -> read("""
+                data_T1
+                loop_
+                _atom_type.symbol
+                _atom_type.scat_length_neutron
+                C 6.646
+                N
+                """));
+        assertTrue(e.getMessage().contains("atom_type row 1"), e.getMessage());
+    }
+
+    /**
+     * A CIF with a skipped loop that has text fields, a large loop and
+     * data items after it.
+     */
+    static final String NAMES_TEXT = """
+            data_T1
+            #\s
+            _entry.id T1
+            #\s
+            loop_
+            _struct_conn.id
+            _struct_conn.details
+            c1
+            ;A text field with a line of just a hash
+            #
+            ;
+            c2 'x'
+            c3
+            ;
+            loop_
+            ;
+            #\s
+            _struct.title 'A title'
+            #\s
+            loop_
+            _atom_type.symbol
+            C
+            N
+            #\s
+            loop_
+            _atom_site.id
+            _atom_site.type_symbol
+            1 C
+            2 N
+            3 N
+            #\s
+            _atom_sites.entry_id T1
+            #\s
+            """;
+
+    /**
+     * @param names The names of the categories to read.
+     * @param counts For the rows of skipped loops or null to stop early.
+     * @return The CIF.
+     */
+    static CIF read(Set<String> names, Map<String, Long> counts)
+            throws Exception {
+        return new Mol_TextCifReader((Mol_Environment) null).getCif(
+                new BufferedReader(new StringReader(NAMES_TEXT)), names, counts);
+    }
+
+    /**
+     * Test of getCif method, of class Mol_TextCifReader, reading only the
+     * categories named.
+     */
+    @Test
+    public void testGetCifNames() throws Exception {
+        System.out.println("Mol_TextCifReader getCif names");
+        // Stops once all are read, after skipping a loop with text fields.
+        DataBlock db = read(Set.of("entry", "struct"), null).dataBlocks.get(0);
+        assertEquals("T1", db.getDataItems("entry").dataItems.values()
+                .iterator().next().value);
+        assertEquals("'A title'", db.getDataItems("struct").dataItems.values()
+                .iterator().next().value);
+        assertNull(db.getColumns("struct_conn"));
+        assertNull(db.getColumns("atom_type"));
+        // Stops at a large loop that is not named.
+        db = read(Set.of("entry", "atom_type", "atom_sites"), null)
+                .dataBlocks.get(0);
+        assertEquals(2, db.getColumns("atom_type").getNRows());
+        assertNull(db.getColumns("atom_site"));
+        assertNull(db.getDataItems("atom_sites"));
+        // Does not stop at a large loop that is named.
+        db = read(Set.of("atom_site", "atom_sites"), null).dataBlocks.get(0);
+        assertArrayEquals(new String[]{"C", "N", "N"},
+                db.getColumns("atom_site").getStrings("type_symbol"));
+        assertNotNull(db.getDataItems("atom_sites"));
+        assertNull(db.getDataItems("entry"));
+        // Reads to the end counting the rows of skipped loops.
+        Map<String, Long> counts = new HashMap<>();
+        db = read(Set.of("entry", "atom_sites"), counts).dataBlocks.get(0);
+        assertNotNull(db.getDataItems("atom_sites"));
+        assertEquals(Map.of("struct_conn", 3L, "atom_type", 2L, "atom_site",
+                3L), counts);
+    }
+}
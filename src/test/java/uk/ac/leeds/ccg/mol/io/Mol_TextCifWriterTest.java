@@ -0,0 +1,707 @@
+/*
+ * Copyright 2025 University of Leeds.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.ac.leeds.ccg.mol.io;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.StringReader;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.Locale;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.Inflater;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+import uk.ac.leeds.ccg.mol.core.Mol_Environment;
+import uk.ac.leeds.ccg.mol.data.cif.CIF;
+import uk.ac.leeds.ccg.mol.data.cif.Column;
+import uk.ac.leeds.ccg.mol.data.cif.Column_ID;
+import uk.ac.leeds.ccg.mol.data.cif.Columns;
+import uk.ac.leeds.ccg.mol.data.cif.DataBlock;
+import uk.ac.leeds.ccg.mol.data.cif.DataBlockHeading;
+import uk.ac.leeds.ccg.mol.data.cif.DataItem;
+import uk.ac.leeds.ccg.mol.data.cif.DataItems;
+import uk.ac.leeds.ccg.mol.data.cif.Row_ID;
+import uk.ac.leeds.ccg.mol.data.cif.Value;
+
+/**
+ * Mol_TextCifWriterTest. The output of {@link Mol_TextCifWriter} is compared
+ * with that of {@link Mol_TextCifWriterBaseline}.
+ *
+ * @author Andy Turner
+ */
+public class Mol_TextCifWriterTest {
+
+    /**
+     * Categories with special layout rules and one without.
+     */
+    static final String[] CATEGORIES = {"entity_name_com",
+        "em_entity_assembly", "database_PDB_caveat", "entity",
+        "pdbx_entity_nonpoly", "pdbx_struct_assembly_gen",
+        "pdbx_struct_conn_angle", "atom_site", "ndb_struct_na_base_pair_step",
+        "struct_conn", "struct_ref", "entity_poly", "entity_src_gen",
+        "citation_author", "other_cat"};
+
+    /**
+     * Column names including those with their own rules.
+     */
+    static final String[] NAMES = {"id", "details", "pdbx_dist_value", "name",
+        "type", "x", "value_long_name", "a"};
+
+    /**
+     * Hand written loops of categories with special layout rules.
+     */
+    static final String CIF_TEXT = """
+            data_T1
+            #\s
+            loop_
+            _entity_poly.entity_id
+            _entity_poly.type
+            _entity_poly.nstd_linkage
+            _entity_poly.nstd_monomer
+            _entity_poly.pdbx_seq_one_letter_code
+            _entity_poly.pdbx_seq_one_letter_code_can
+            _entity_poly.pdbx_strand_id
+            _entity_poly.pdbx_target_identifier
+            1 polyribonucleotide no no
+            ;GCUCUAGCGCAUCGCAUGCGAUCGACGAUGCAGCGGCAUCGCAUCGACGAUCGAUCGACUAGCUACGACUAGCGCGAUCGCAUGAUCGACUAGCGCGAUGCUAGCUCGAUCG
+            ;
+            ;GCUCUAGCGCAUCGCAUGCGAUCGACGAUGCAGCGGCAUCGCAUCGACGAUCGAUCGACUAGCUACGACUAGCGCGAUCGCAUGAUCGACUAGCGCGAUGCUAGCUCGAUCG
+            ;
+            A5 ?
+            2 'polypeptide(L)' no no MKVLAAGIV MKVLAAGIV L2 ?
+            #\s
+            loop_
+            _entity_name_com.entity_id
+            _entity_name_com.name
+            2 '60S ribosomal protein L8, 60S ribosomal protein L2, large ribosomal subunit protein uL2, NEDD1-associated protein'
+            3 'Ribosomal protein L3'
+            #\s
+            loop_
+            _struct_conn.id
+            _struct_conn.conn_type_id
+            _struct_conn.pdbx_leaving_atom_flag
+            _struct_conn.pdbx_PDB_id
+            _struct_conn.ptnr1_label_asym_id
+            _struct_conn.ptnr1_label_comp_id
+            _struct_conn.ptnr1_label_seq_id
+            _struct_conn.ptnr1_label_atom_id
+            _struct_conn.pdbx_ptnr1_label_alt_id
+            _struct_conn.ptnr2_label_asym_id
+            _struct_conn.ptnr2_label_comp_id
+            _struct_conn.ptnr2_label_seq_id
+            _struct_conn.ptnr2_label_atom_id
+            _struct_conn.details
+            _struct_conn.pdbx_dist_value
+            metalc1 metalc ? ? A5 A 1234 OP2 ? FA MG . MG ? 2.107
+            metalc2 metalc ? ? A5 G 1235 "O6" ? FA MG . MG 'metal coordination' 2.245
+            hydrog1 hydrog ? ? A5 C 10 N3 ? A5 G 120 N1 WATSON-CRICK ?
+            #\s
+            loop_
+            _citation_author.citation_id
+            _citation_author.name
+            _citation_author.ordinal
+            _citation_author.identifier_ORCID
+            primary 'Anger, A.M.' 1 ?
+            primary "O'Neill, A." 2 ?
+            primary 'Armache, J.P.' 3 0000-0002-1234-5678
+            #\s
+            """;
+
+    /**
+     * For the parallel writer.
+     */
+    static ExecutorService executor;
+
+    /**
+     * Where to write.
+     */
+    static Path dir;
+
+    @BeforeAll
+    public static void setUpClass() throws Exception {
+        executor = Executors.newFixedThreadPool(4);
+        dir = Files.createTempDirectory("rc-mol-writer-test");
+    }
+
+    @AfterAll
+    public static void tearDownClass() throws Exception {
+        executor.shutdown();
+        try (var s = Files.list(dir)) {
+            for (Path p : s.toList()) {
+                Files.delete(p);
+            }
+        }
+        Files.delete(dir);
+    }
+
+    /**
+     * @param cif The CIF.
+     * @return What Mol_TextCifWriterBaseline writes or null if it fails.
+     */
+    static byte[] writeBaseline(CIF cif) throws Exception {
+        try {
+            new Mol_TextCifWriterBaseline().write(cif, dir, "baseline", "");
+        } catch (RuntimeException e) {
+            // The baseline writer fails on some values.
+            return null;
+        }
+        return Files.readAllBytes(dir.resolve("baseline.cif"));
+    }
+
+    /**
+     * @param cif The CIF.
+     * @param w The writer.
+     * @return What w writes.
+     */
+    static byte[] write(CIF cif, Mol_TextCifWriter w) throws Exception {
+        Mol_TextCifOutput out = new Mol_TextCifOutput(1 << 16);
+        w.write(cif, out);
+        ByteBuffer b = out.getBytes();
+        return Arrays.copyOfRange(b.array(), b.position(), b.limit());
+    }
+
+    /**
+     * Asserts that the output of Mol_TextCifWriter, to a file, to memory and
+     * with rows formatted in parallel, is the same as that of
+     * Mol_TextCifWriterBaseline.
+     *
+     * @param cif The CIF.
+     * @param name For messages.
+     * @return false if the baseline writer failed.
+     */
+    static boolean assertSame(CIF cif, String name) throws Exception {
+        byte[] expected = writeBaseline(cif);
+        if (expected == null) {
+            return false;
+        }
+        new Mol_TextCifWriter().write(cif, dir, "new", "");
+        assertArrayEquals(expected, Files.readAllBytes(dir.resolve("new.cif")),
+                name);
+        assertArrayEquals(expected, write(cif, new Mol_TextCifWriter()), name);
+        int min = Mol_TextCifWriter.PARALLEL_ROWS_MIN;
+        int block = Mol_TextCifWriter.BLOCK_ROWS;
+        try {
+            Mol_TextCifWriter.PARALLEL_ROWS_MIN = 2;
+            Mol_TextCifWriter.BLOCK_ROWS = 3;
+            assertArrayEquals(expected, write(cif,
+                    new Mol_TextCifWriter(executor)), name + " parallel");
+        } finally {
+            Mol_TextCifWriter.PARALLEL_ROWS_MIN = min;
+            Mol_TextCifWriter.BLOCK_ROWS = block;
+        }
+        return true;
+    }
+
+    /**
+     * @param r The random.
+     * @param n The length.
+     * @return n random lower case letters.
+     */
+    static String word(Random r, int n) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < n; i++) {
+            sb.append((char) ('a' + r.nextInt(26)));
+        }
+        return sb.toString();
+    }
+
+    /**
+     * @param r The random.
+     * @param n The length.
+     * @param paren Whether to include words in parentheses.
+     * @return Random words of length n.
+     */
+    static String text(Random r, int n, boolean paren) {
+        StringBuilder sb = new StringBuilder();
+        while (sb.length() < n) {
+            if (!sb.isEmpty()) {
+                sb.append(' ');
+            }
+            if (paren && r.nextInt(4) == 0) {
+                sb.append("(").append(word(r, 1 + r.nextInt(8))).append(")");
+            } else {
+                sb.append(word(r, 1 + r.nextInt(9)));
+            }
+        }
+        String s = sb.substring(0, n);
+        return s.isBlank() ? "x" : s.strip();
+    }
+
+    /**
+     * @param r The random.
+     * @return A random value as it would be read, with quotes. Lengths are
+     * around the limits of the layout rules.
+     */
+    static String value(Random r) {
+        return switch (r.nextInt(12)) {
+            case 0 ->
+                ".";
+            case 1 ->
+                "?";
+            case 2 ->
+                word(r, 1 + r.nextInt(10));
+            case 3 ->
+                "'" + text(r, 1 + r.nextInt(60), false) + "'";
+            case 4 ->
+                text(r, 3 + r.nextInt(70), false);
+            case 5 ->
+                text(r, 70 + r.nextInt(150), false);
+            case 6 ->
+                word(r, 70 + r.nextInt(150));
+            case 7 ->
+                text(r, 70 + r.nextInt(150), true);
+            case 8 ->
+                Double.toString(r.nextInt(100000) / 1000.0);
+            case 9 ->
+                "\"" + text(r, 1 + r.nextInt(40), false) + "\"";
+            case 10 ->
+                "'" + text(r, 125 + r.nextInt(16), false) + "'";
+            default ->
+                "'" + text(r, 75 + r.nextInt(80), false) + "'";
+        };
+    }
+
+    /**
+     * @param seed The seed.
+     * @return A CIF of random categories, columns and values.
+     */
+    static CIF getRandomCif(long seed) {
+        Random r = new Random(seed);
+        CIF cif = new CIF(null);
+        DataBlock db = new DataBlock(null, new DataBlockHeading(null, "T"
+                + seed));
+        cif.dataBlocks.add(db);
+        int nc = 3 + r.nextInt(8);
+        for (int c = 0; c < nc; c++) {
+            String cat = CATEGORIES[r.nextInt(CATEGORIES.length)];
+            if (r.nextInt(3) == 0 && db.getDataItems(cat) == null) {
+                DataItems ds = new DataItems(cat, db.getNextDataItems_ID());
+                int k = 1 + r.nextInt(6);
+                for (int i = 0; i < k; i++) {
+                    ds.add(new DataItem(ds, NAMES[r.nextInt(NAMES.length)] + i,
+                            value(r)));
+                }
+                db.addDataItems(ds);
+            } else if (db.getColumns(cat) == null) {
+                Columns cs = new Columns(cat, db.getNextColumns_ID());
+                int k = 1 + r.nextInt(7);
+                for (int i = 0; i < k; i++) {
+                    cs.addColumn(new Column(cs, NAMES[r.nextInt(NAMES.length)]
+                            + (i % 3 == 0 ? "" : i)));
+                }
+                int rows = 1 + r.nextInt(40);
+                for (int row = 0; row < rows; row++) {
+                    Row_ID rid = new Row_ID(row);
+                    cs.data.put(rid, new TreeMap<>());
+                    for (Column_ID cid : cs.columns.keySet()) {
+                        cs.setValue(rid, cid, new Value(value(r)));
+                    }
+                }
+                db.addColumns(cs);
+            }
+        }
+        return cif;
+    }
+
+    /**
+     * Value lengths at and around the limits of the layout rules.
+     */
+    static final int[] LENGTHS = {1, 12, 40, 70, 75, 78, 79, 80, 81, 82, 85,
+        120, 125, 128, 129, 130, 131, 132, 133, 135, 139, 140, 141, 150, 200};
+
+    /**
+     * @param kind 0 for a word, 1 for single quoted text, 2 for double quoted
+     * text and 3 for unquoted text.
+     * @param n The length without quotes.
+     * @param r The random.
+     * @return A value as it would be read, with quotes.
+     */
+    static String value(int kind, int n, Random r) {
+        return switch (kind) {
+            case 0 ->
+                word(r, n);
+            case 1 ->
+                "'" + text(r, n, false) + "'";
+            case 2 ->
+                "\"" + text(r, n, false) + "\"";
+            default ->
+                text(r, n, true);
+        };
+    }
+
+    /**
+     * @param cat The category name.
+     * @param name The column name with the rule.
+     * @param kind For {@link #value(int, int, Random)}.
+     * @param last Whether the column is the last.
+     * @param n The length of the values of the column.
+     * @param seed The seed.
+     * @return A CIF of a loop of cat with rows of different lengths before
+     * the column and a row with a short value.
+     */
+    static CIF getRuleCif(String cat, String name, int kind, boolean last,
+            int n, long seed) {
+        Random r = new Random(seed);
+        CIF cif = new CIF(null);
+        DataBlock db = new DataBlock(null, new DataBlockHeading(null, "R"));
+        cif.dataBlocks.add(db);
+        Columns cs = new Columns(cat, db.getNextColumns_ID());
+        cs.addColumn(new Column(cs, "id"));
+        cs.addColumn(new Column(cs, "pre"));
+        cs.addColumn(new Column(cs, name));
+        if (!last) {
+            cs.addColumn(new Column(cs, "post"));
+        }
+        int[] pns = {1, 30, 60, 1};
+        for (int row = 0; row < pns.length; row++) {
+            Row_ID rid = new Row_ID(row);
+            cs.data.put(rid, new TreeMap<>());
+            cs.setValue(rid, new Column_ID(0), new Value(Integer.toString(row)));
+            cs.setValue(rid, new Column_ID(1), new Value(word(r, pns[row])));
+            cs.setValue(rid, new Column_ID(2), new Value(value(kind,
+                    row < 3 ? n : 1, r)));
+            if (!last) {
+                cs.setValue(rid, new Column_ID(3), new Value(word(r, 3)));
+            }
+        }
+        db.addColumns(cs);
+        return cif;
+    }
+
+    /**
+     * @param cat The category name.
+     * @param kind For {@link #value(int, int, Random)}.
+     * @param n The length of the values.
+     * @param seed The seed.
+     * @return A CIF of DataItems of cat with names of different lengths.
+     */
+    static CIF getRuleCif(String cat, int kind, int n, long seed) {
+        Random r = new Random(seed);
+        CIF cif = new CIF(null);
+        DataBlock db = new DataBlock(null, new DataBlockHeading(null, "R"));
+        cif.dataBlocks.add(db);
+        DataItems ds = new DataItems(cat, db.getNextDataItems_ID());
+        for (String name : new String[]{"id", "details", "a_long_name"}) {
+            ds.add(new DataItem(ds, name, value(kind, n, r)));
+        }
+        db.addDataItems(ds);
+        return cif;
+    }
+
+    /**
+     * Test of write method, of class Mol_TextCifWriter, for each entry of the
+     * layout table of Mol_TextCifFormat. Values of each kind and of lengths
+     * around the limits are written in a middle and in the last column.
+     */
+    @Test
+    public void testWriteRules() throws Exception {
+        System.out.println("Mol_TextCifWriter write rules");
+        EnumSet<Mol_TextCifFormat.Rule> rules = EnumSet.noneOf(
+                Mol_TextCifFormat.Rule.class);
+        for (var e : Mol_TextCifFormat.COLUMNS.entrySet()) {
+            rules.add(e.getValue().longRule);
+            rules.add(e.getValue().shortRule);
+            String key = e.getKey();
+            int dot = key.indexOf('.');
+            String cat = dot < 0 ? key : key.substring(0, dot);
+            String name = dot < 0 ? "name" : key.substring(dot + 1);
+            int compared = 0;
+            for (int kind = 0; kind < 4; kind++) {
+                for (boolean last : new boolean[]{false, true}) {
+                    for (int n : LENGTHS) {
+                        if (assertSame(getRuleCif(cat, name, kind, last, n, n),
+                                key + " " + kind + " " + last + " " + n)) {
+                            compared++;
+                        }
+                    }
+                }
+            }
+            assertTrue(compared > LENGTHS.length, key);
+        }
+        for (var e : Mol_TextCifFormat.DATA_ITEMS.entrySet()) {
+            rules.add(e.getValue().longRule);
+            String key = e.getKey();
+            int compared = 0;
+            for (int kind = 0; kind < 4; kind++) {
+                for (int n : LENGTHS) {
+                    if (assertSame(getRuleCif(key, kind, n, n),
+                            key + " " + kind + " " + n)) {
+                        compared++;
+                    }
+                }
+            }
+            assertTrue(compared > LENGTHS.length, key);
+        }
+        // The defaults for categories without an entry.
+        for (int kind = 0; kind < 4; kind++) {
+            for (int n : LENGTHS) {
+                assertSame(getRuleCif("other_cat", "name", kind, false, n, n),
+                        "other_cat " + kind + " " + n);
+                assertSame(getRuleCif("other_cat", kind, n, n),
+                        "other_cat " + kind + " " + n);
+            }
+        }
+        rules.add(Mol_TextCifFormat.Rule.SHORT_DEFAULT);
+        rules.add(Mol_TextCifFormat.Rule.ITEM_DEFAULT);
+        assertEquals(EnumSet.allOf(Mol_TextCifFormat.Rule.class), rules);
+    }
+
+    /**
+     * Values of every kind in DataItems, in a loop with the default layout
+     * and in a loop where unquoted values are written as text fields.
+     */
+    static final String KINDS_TEXT = """
+            data_K
+            #\s
+            _struct.entry_id        K
+            _struct.title           'A single quoted title'
+            _struct.pdbx_descriptor "O'Neill's double quoted descriptor"
+            _struct.pdbx_model_details
+            ;A text field with spaces
+            ;
+            _struct.pdbx_CASP_flag
+            ;'quoted
+            ;
+            _struct.pdbx_descriptor_text
+            ;ACGU
+            ;
+            _struct.pdbx_details    .
+            _struct.pdbx_title_text ?
+            #\s
+            loop_
+            _audit_author.name
+            _audit_author.pdbx_ordinal
+            Smith 1
+            'Smith, J.' 2
+            "O'Neill, A." 3
+            ;Text, A.
+            ;
+            4
+            . 5
+            ? 6
+            #\s
+            loop_
+            _citation_author.citation_id
+            _citation_author.name
+            _citation_author.ordinal
+            primary Smith 1
+            primary 'Smith, J.' 2
+            primary "O'Neill, A." 3
+            primary
+            ;Text, A.
+            ;
+            4
+            primary . 5
+            primary ? 6
+            #\s
+            """;
+
+    /**
+     * @param v The value.
+     * @return The text of v without quotes.
+     */
+    static String content(Value v) {
+        return v.isTextField() ? v.v : Value.unquote(v.v);
+    }
+
+    /**
+     * Test of write method, of class Mol_TextCifWriter, that values of every
+     * kind are read back as they were. Quoted values keep their quotes and
+     * text fields and missing values keep their text.
+     */
+    @Test
+    public void testWriteKinds() throws Exception {
+        System.out.println("Mol_TextCifWriter write kinds");
+        Mol_TextCifReader reader = new Mol_TextCifReader((Mol_Environment) null);
+        CIF cif = reader.getCif(new BufferedReader(new StringReader(
+                KINDS_TEXT)));
+        String text = new String(write(cif, new Mol_TextCifWriter()),
+                StandardCharsets.US_ASCII);
+        assertTrue(text.contains("primary \"O'Neill, A.\" 3"), text);
+        assertTrue(text.contains("_struct.pdbx_descriptor_text"
+                + Mol_Environment.EOL + ";ACGU" + Mol_Environment.EOL), text);
+        CIF cif2 = reader.getCif(new BufferedReader(new StringReader(text)));
+        DataBlock db = cif.dataBlocks.get(0);
+        DataBlock db2 = cif2.dataBlocks.get(0);
+        DataItem[] ds = db.getDataItems("struct").dataItems.values()
+                .toArray(DataItem[]::new);
+        DataItem[] ds2 = db2.getDataItems("struct").dataItems.values()
+                .toArray(DataItem[]::new);
+        assertEquals(ds.length, ds2.length);
+        byte[] kinds = {Value.BARE, Value.SINGLE_QUOTED, Value.DOUBLE_QUOTED,
+            Value.TEXT_FIELD, Value.TEXT_FIELD, Value.TEXT_FIELD,
+            Value.INAPPLICABLE,
+            Value.UNKNOWN};
+        for (int i = 0; i < ds.length; i++) {
+            assertEquals(kinds[i], ds[i].kind, ds[i].name);
+            assertEquals(ds[i].name, ds2[i].name);
+            assertEquals(ds[i].kind, ds2[i].kind, ds[i].name);
+            assertEquals(ds[i].value, ds2[i].value, ds[i].name);
+        }
+        for (String cat : new String[]{"audit_author", "citation_author"}) {
+            Columns cs = db.getColumns(cat);
+            Columns cs2 = db2.getColumns(cat);
+            assertEquals(6, cs.getNRows(), cat);
+            assertEquals(cs.getNRows(), cs2.getNRows(), cat);
+            for (var e : cs.data.entrySet()) {
+                for (var c : e.getValue().entrySet()) {
+                    Value v = c.getValue();
+                    Value v2 = cs2.getValue(e.getKey(), c.getKey());
+                    String m = cat + " " + v.v;
+                    assertEquals(content(v), content(v2), m);
+                    if (v.getKind() != Value.BARE
+                            && v.getKind() != Value.TEXT_FIELD) {
+                        assertEquals(v.getKind(), v2.getKind(), m);
+                        assertEquals(v.v, v2.v, m);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Test of write method, of class Mol_TextCifWriter, with random CIFs and
+     * both line separators.
+     */
+    @Test
+    public void testWriteRandom() throws Exception {
+        System.out.println("Mol_TextCifWriter write random");
+        String eol = Mol_Environment.EOL;
+        try {
+            for (String e : new String[]{"\n", "\r\n"}) {
+                Mol_Environment.EOL = e;
+                int compared = 0;
+                for (long seed = 0; seed < 300; seed++) {
+                    if (assertSame(getRandomCif(seed), "seed " + seed)) {
+                        compared++;
+                    }
+                }
+                assertTrue(compared > 200);
+            }
+        } finally {
+            Mol_Environment.EOL = eol;
+        }
+    }
+
+    /**
+     * Test of write method, of class Mol_TextCifWriter, with a synthetic CIF
+     * and hand written loops.
+     */
+    @Test
+    public void testWriteFixtures() throws Exception {
+        System.out.println("Mol_TextCifWriter write fixtures");
+        Mol_TextCifReader reader = new Mol_TextCifReader((Mol_Environment) null);
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        Mol_SyntheticCifGenerator.ofAtoms("T2", 3000, 2L).write(baos);
+        CIF cif = reader.getCif(new BufferedReader(new StringReader(
+                baos.toString(StandardCharsets.US_ASCII))));
+        assertTrue(assertSame(cif, "synthetic"));
+        cif = reader.getCif(new BufferedReader(new StringReader(CIF_TEXT)));
+        assertEquals(4, cif.dataBlocks.get(0).columnsAndDataItems.size());
+        assertTrue(assertSame(cif, "fixture"));
+    }
+
+    /**
+     * @param b Concatenated gzip members as written by Mol_GzipChannel.
+     * @return The number of members.
+     */
+    static int countMembers(byte[] b) throws Exception {
+        int n = 0;
+        int i = 0;
+        byte[] buf = new byte[4096];
+        while (i < b.length) {
+            assertEquals((byte) 0x1f, b[i]);
+            assertEquals((byte) 0x8b, b[i + 1]);
+            Inflater inf = new Inflater(true);
+            try {
+                inf.setInput(b, i + 10, b.length - i - 10);
+                while (!inf.finished()) {
+                    assertFalse(inf.needsInput());
+                    inf.inflate(buf);
+                }
+                i = b.length - inf.getRemaining() + 8;
+            } finally {
+                inf.end();
+            }
+            n++;
+        }
+        assertEquals(b.length, i);
+        return n;
+    }
+
+    /**
+     * @param b Gzip compressed bytes.
+     * @return The decompressed bytes.
+     */
+    static byte[] gunzip(byte[] b) throws Exception {
+        try (GZIPInputStream in = new GZIPInputStream(
+                new ByteArrayInputStream(b))) {
+            return in.readAllBytes();
+        }
+    }
+
+    /**
+     * Test of writeGzip method, of class Mol_TextCifWriter, with a small
+     * block size so that there are several members, with and without an
+     * executor, and of Mol_GzipChannel with no input.
+     */
+    @Test
+    public void testWriteGzip() throws Exception {
+        System.out.println("Mol_TextCifWriter writeGzip");
+        Mol_TextCifReader reader = new Mol_TextCifReader((Mol_Environment) null);
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        Mol_SyntheticCifGenerator.ofAtoms("T3", 500, 3L).write(baos);
+        CIF cif = reader.getCif(new BufferedReader(new StringReader(
+                baos.toString(StandardCharsets.US_ASCII))));
+        byte[] expected = write(cif, new Mol_TextCifWriter());
+        int blockSize = Mol_GzipChannel.BLOCK_SIZE;
+        try {
+            Mol_GzipChannel.BLOCK_SIZE = 1000;
+            for (ExecutorService e : new ExecutorService[]{null, executor}) {
+                String name = e == null ? "serial" : "parallel";
+                new Mol_TextCifWriter(e).writeGzip(cif, dir, "gzip", "");
+                Path p = dir.resolve("gzip.cif.gz");
+                byte[] b = Files.readAllBytes(p);
+                assertEquals((expected.length + 999) / 1000, countMembers(b),
+                        name);
+                assertArrayEquals(expected, gunzip(b), name);
+                assertArrayEquals(expected, write(reader.getCif(p),
+                        new Mol_TextCifWriter()), name);
+            }
+        } finally {
+            Mol_GzipChannel.BLOCK_SIZE = blockSize;
+        }
+        for (ExecutorService e : new ExecutorService[]{null, executor}) {
+            ByteArrayOutputStream b = new ByteArrayOutputStream();
+            new Mol_GzipChannel(Channels.newChannel(b), e).close();
+            assertEquals(1, countMembers(b.toByteArray()));
+            assertEquals(0, gunzip(b.toByteArray()).length);
+        }
+    }
+}
@@ -0,0 +1,157 @@
+/*
+ * Copyright 2025 University of Leeds.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.ac.leeds.ccg.mol.pipeline;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.stream.IntStream;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * PipelineTest.
+ *
+ * @author Andy Turner
+ */
+public class PipelineTest {
+
+    /**
+     * The number of items put in.
+     */
+    private static final int N = 1000;
+
+    /**
+     * @return The items 0 to N - 1.
+     */
+    private static List<Integer> items() {
+        return IntStream.range(0, N).boxed().toList();
+    }
+
+    /**
+     * Test of run method, of class Pipeline, that all items reach the sink
+     * through several stages each with more than one worker, that tasks
+     * returning null drop items and that the counters add up.
+     */
+    @Test
+    public void testRun() throws Exception {
+        System.out.println("Pipeline run");
+        Pipeline<Integer, Integer> p = Pipeline.<Integer>of(2)
+                .then("double", 3, x -> x * 2)
+                .then("drop", 2, x -> x % 3 == 0 ? null : x)
+                .then("add", 4, x -> x + 1);
+        List<Integer> r = new ArrayList<>();
+        assertTimeoutPreemptively(Duration.ofSeconds(30),
+                () -> p.run(items().iterator(), r::add));
+        List<Integer> expected = new ArrayList<>();
+        for (int x = 0; x < N; x++) {
+            if (x % 3 != 0) {
+                expected.add(x * 2 + 1);
+            }
+        }
+        Collections.sort(r);
+        assertEquals(expected, r);
+        List<Stage<Object, Object>> stages = p.getStages();
+        assertEquals(N, stages.get(0).getIn());
+        assertEquals(N, stages.get(0).getOut());
+        assertEquals(N, stages.get(1).getIn());
+        assertEquals(expected.size(), stages.get(1).getOut());
+        assertEquals(expected.size(), stages.get(2).getIn());
+        assertEquals(expected.size(), stages.get(2).getOut());
+        for (Stage<Object, Object> s : stages) {
+            assertEquals(0, s.getQueueDepth());
+        }
+        assertTrue(p.getElapsedNanos() > 0L);
+        assertEquals(3, p.getStats().lines().count());
+        // A stage that drops everything.
+        List<Integer> none = new ArrayList<>();
+        Pipeline.<Integer>of(2).<Integer>then("none", 3, x -> null)
+                .then("never", 2, x -> x).run(items().iterator(), none::add);
+        assertTrue(none.isEmpty());
+        assertThrows(IllegalStateException.class, () -> Pipeline
+                .<Integer>of(2).run(items().iterator(), x -> {}));
+    }
+
+    /**
+     * Test of run method, of class Pipeline, that an exception thrown by a
+     * task stops the pipeline and is thrown.
+     */
+    @Test
+    public void testRunTaskException() {
+        System.out.println("Pipeline run task exception");
+        Pipeline<Integer, Integer> p = Pipeline.<Integer>of(2)
+                .then("first", 2, x -> x)
+                .then("fail", 3, x -> {
+                    if (x == 50) {
+                        throw new IllegalStateException("fail " + x);
+                    }
+                    return x;
+                })
+                .then("last", 2, x -> x);
+        Exception e = assertTimeoutPreemptively(Duration.ofSeconds(30),
+                () -> assertThrows(IllegalStateException.class,
+                        () -> p.run(items().iterator(), x -> {})));
+        assertEquals("fail 50", e.getMessage());
+        // No more items are put in once a task has failed.
+        assertTrue(p.getStages().get(0).getIn() < N);
+    }
+
+    /**
+     * Test of run method, of class Pipeline, that an Error thrown by a task
+     * is not lost.
+     */
+    @Test
+    public void testRunTaskError() {
+        System.out.println("Pipeline run task error");
+        Pipeline<Integer, Integer> p = Pipeline.<Integer>of(2)
+                .then("fail", 2, x -> {
+                    if (x == 10) {
+                        throw new AssertionError("error " + x);
+                    }
+                    return x;
+                });
+        ExecutionException e = assertTimeoutPreemptively(Duration.ofSeconds(30),
+                () -> assertThrows(ExecutionException.class,
+                        () -> p.run(items().iterator(), x -> {})));
+        assertInstanceOf(AssertionError.class, e.getCause());
+        assertEquals("error 10", e.getCause().getMessage());
+    }
+
+    /**
+     * Test of run method, of class Pipeline, that an exception thrown by the
+     * sink stops the pipeline and is thrown.
+     */
+    @Test
+    public void testRunSinkException() {
+        System.out.println("Pipeline run sink exception");
+        Pipeline<Integer, Integer> p = Pipeline.<Integer>of(2)
+                .then("first", 3, x -> x)
+                .then("second", 2, x -> x);
+        List<Integer> r = new ArrayList<>();
+        Exception e = assertTimeoutPreemptively(Duration.ofSeconds(30),
+                () -> assertThrows(IllegalArgumentException.class,
+                        () -> p.run(items().iterator(), x -> {
+                            if (r.size() == 5) {
+                                throw new IllegalArgumentException("sink");
+                            }
+                            r.add(x);
+                        })));
+        assertEquals("sink", e.getMessage());
+        assertEquals(5, r.size());
+    }
+}
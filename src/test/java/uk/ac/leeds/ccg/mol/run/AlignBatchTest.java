@@ -0,0 +1,208 @@
+/*
+ * Copyright 2025 University of Leeds.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.ac.leeds.ccg.mol.run;
+
+import java.io.BufferedReader;
+import java.io.StringReader;
+import java.util.Locale;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+import uk.ac.leeds.ccg.mol.core.Mol_Environment;
+import uk.ac.leeds.ccg.mol.data.cif.CIF;
+import uk.ac.leeds.ccg.mol.geom.QCProt;
+import uk.ac.leeds.ccg.mol.io.Mol_TextCifReader;
+
+/**
+ * AlignBatchTest.
+ *
+ * @author Andy Turner
+ */
+public class AlignBatchTest {
+
+    /**
+     * The entity and entity_poly categories and the atom_site header.
+     */
+    private static final String HEAD = """
+            data_T1
+            loop_
+            _entity.id
+            _entity.type
+            _entity.pdbx_description
+            1 polymer 'P-site tRNA'
+            2 water water
+            #\s
+            loop_
+            _entity_poly.entity_id
+            _entity_poly.type
+            1 polyribonucleotide
+            #\s
+            loop_
+            _atom_site.group_PDB
+            _atom_site.id
+            _atom_site.type_symbol
+            _atom_site.label_atom_id
+            _atom_site.label_comp_id
+            _atom_site.label_asym_id
+            _atom_site.label_entity_id
+            _atom_site.label_seq_id
+            _atom_site.pdbx_PDB_ins_code
+            _atom_site.Cartn_x
+            _atom_site.Cartn_y
+            _atom_site.Cartn_z
+            _atom_site.auth_seq_id
+            _atom_site.pdbx_PDB_model_num
+            """;
+
+    /**
+     * The atoms: group_PDB, label_atom_id, label_comp_id, label_asym_id,
+     * label_entity_id, label_seq_id and auth_seq_id. The waters all have
+     * label_seq_id "." and label_atom_id O.
+     */
+    private static final String[][] ATOMS = {
+        {"ATOM", "P", "G", "A", "1", "1", "1"},
+        {"ATOM", "\"C1'\"", "G", "A", "1", "1", "1"},
+        {"ATOM", "N9", "G", "A", "1", "1", "1"},
+        {"ATOM", "P", "C", "A", "1", "2", "2"},
+        {"ATOM", "\"C1'\"", "C", "A", "1", "2", "2"},
+        {"ATOM", "N1", "C", "A", "1", "2", "2"},
+        {"ATOM", "P", "U", "A", "1", "3", "3"},
+        {"ATOM", "\"C1'\"", "U", "A", "1", "3", "3"},
+        {"ATOM", "N1", "U", "A", "1", "3", "3"},
+        {"HETATM", "O", "HOH", "B", "2", ".", "101"},
+        {"HETATM", "O", "HOH", "B", "2", ".", "102"},
+        {"HETATM", "O", "HOH", "B", "2", ".", "103"},
+        {"HETATM", "O", "HOH", "B", "2", ".", "104"}};
+
+    /**
+     * The coordinates of {@link #ATOMS}.
+     */
+    private static final double[][] COORDS = {
+        {0.0, 0.0, 0.0}, {1.5, 0.5, -0.3}, {2.4, 1.8, 0.2},
+        {4.1, -1.2, 1.0}, {5.3, 0.1, 1.9}, {6.0, 1.5, 1.1},
+        {7.7, -2.4, 3.2}, {8.2, -0.9, 4.4}, {9.6, 0.3, 3.8},
+        {-3.0, 4.0, 2.0}, {1.0, 6.5, -4.0}, {10.0, 7.0, 8.0},
+        {-6.0, -5.0, 9.0}};
+
+    /**
+     * The rotation angle in radians.
+     */
+    private static final double ANGLE = Math.toRadians(40);
+
+    /**
+     * The unit rotation axis.
+     */
+    private static final double[] AXIS = {1d / 3d, 2d / 3d, 2d / 3d};
+
+    /**
+     * The translation.
+     */
+    private static final double[] T = {12.5, -7.25, 3.0};
+
+    /**
+     * @param reverseWaters If true the waters are written in reverse order.
+     * @param r The rotation matrix or null.
+     * @return A new CIF of {@link #ATOMS} rotated by r and translated by
+     * {@link #T} if r is not null.
+     */
+    private static CIF getCif(boolean reverseWaters, double[][] r)
+            throws Exception {
+        StringBuilder sb = new StringBuilder(HEAD);
+        for (int k = 0; k < ATOMS.length; k++) {
+            int i = k;
+            if (reverseWaters && k >= 9) {
+                i = ATOMS.length - 1 - (k - 9);
+            }
+            String[] a = ATOMS[i];
+            double[] c = COORDS[i];
+            if (r != null) {
+                double[] m = new double[3];
+                for (int d = 0; d < 3; d++) {
+                    m[d] = r[d][0] * c[0] + r[d][1] * c[1] + r[d][2] * c[2]
+                            + T[d];
+                }
+                c = m;
+            }
+            sb.append(String.format(Locale.ROOT,
+                    "%s %d %s %s %s %s %s %s ? %.3f %.3f %.3f %s 1%n",
+                    a[0], k + 1, a[1].replace("\"", "").substring(0, 1),
+                    a[1], a[2], a[3], a[4], a[5], c[0], c[1], c[2], a[6]));
+        }
+        sb.append("#\s\n");
+        return new Mol_TextCifReader((Mol_Environment) null).getCif(
+                new BufferedReader(new StringReader(sb.toString())));
+    }
+
+    /**
+     * @return The rotation quaternion for {@link #ANGLE} about {@link #AXIS}
+     * with the scalar part first.
+     */
+    private static double[] getQuaternion() {
+        double s = Math.sin(ANGLE / 2d);
+        return new double[]{Math.cos(ANGLE / 2d), s * AXIS[0], s * AXIS[1],
+            s * AXIS[2]};
+    }
+
+    /**
+     * @param q A unit quaternion with the scalar part first.
+     * @return The rotation matrix of q.
+     */
+    private static double[][] getRotation(double[] q) {
+        double a = q[0], x = q[1], y = q[2], z = q[3];
+        return new double[][]{
+            {a * a + x * x - y * y - z * z, 2 * (x * y - a * z),
+                2 * (x * z + a * y)},
+            {2 * (x * y + a * z), a * a - x * x + y * y - z * z,
+                2 * (y * z - a * x)},
+            {2 * (x * z - a * y), 2 * (y * z + a * x),
+                a * a - x * x - y * y + z * z}};
+    }
+
+    /**
+     * Test of select, centralise and align methods, of class AlignBatch.
+     */
+    @Test
+    public void testAlign() throws Exception {
+        System.out.println("AlignBatch align");
+        double[] qr = getQuaternion();
+        AlignBatch ab = new AlignBatch(getCif(false, null), "all", "none",
+                null);
+        assertEquals(ATOMS.length, ab.ref.index.size());
+        AlignBatch.Atoms mob = ab.select(getCif(true, getRotation(qr)));
+        assertEquals(ATOMS.length, mob.index.size());
+        AlignBatch.Pair p = ab.centralise(mob);
+        assertEquals(ATOMS.length, p.n);
+        QCProt q = ab.align(p);
+        assertTrue(q.rmsd < 0.01, "rmsd " + q.rmsd);
+        double s = Math.signum(q.q1);
+        assertEquals(qr[0], s * q.q1, 1e-3);
+        assertEquals(qr[1], s * q.q2, 1e-3);
+        assertEquals(qr[2], s * q.q3, 1e-3);
+        assertEquals(qr[3], s * q.q4, 1e-3);
+        for (int d = 0; d < 3; d++) {
+            assertEquals(T[d], p.mobCentroid[d] - dot(getRotation(qr)[d],
+                    p.refCentroid), 1e-3);
+        }
+    }
+
+    /**
+     * @param a A vector.
+     * @param b Another vector.
+     * @return The dot product of a and b.
+     */
+    private static double dot(double[] a, double[] b) {
+        return a[0] * b[0] + a[1] * b[1] + a[2] * b[2];
+    }
+}
@@ -0,0 +1,222 @@
+/*
+ * Copyright 2025 University of Leeds.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.ac.leeds.ccg.mol.select;
+
+import java.io.BufferedReader;
+import java.io.StringReader;
+import java.util.BitSet;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+import uk.ac.leeds.ccg.mol.core.Mol_Environment;
+import uk.ac.leeds.ccg.mol.data.cif.CIF;
+import uk.ac.leeds.ccg.mol.io.Mol_TextCifReader;
+
+/**
+ * SelectorTest.
+ *
+ * @author Andy Turner
+ */
+public class SelectorTest {
+
+    /**
+     * Two rRNA chains, a tRNA chain, a protein chain, a chain with a space in
+     * its label_asym_id and a water.
+     */
+    private static final String CIF_TEXT = """
+            data_T1
+            loop_
+            _entity.id
+            _entity.type
+            _entity.pdbx_description
+            1 polymer '28S ribosomal RNA'
+            2 polymer 'P-site tRNA'
+            3 polymer 'uL2 ribosomal protein'
+            4 water water
+            #\s
+            loop_
+            _entity_poly.entity_id
+            _entity_poly.type
+            1 polyribonucleotide
+            2 polyribonucleotide
+            3 'polypeptide(L)'
+            #\s
+            loop_
+            _atom_site.group_PDB
+            _atom_site.id
+            _atom_site.type_symbol
+            _atom_site.label_atom_id
+            _atom_site.label_comp_id
+            _atom_site.label_asym_id
+            _atom_site.label_entity_id
+            _atom_site.label_seq_id
+            _atom_site.Cartn_x
+            _atom_site.Cartn_y
+            _atom_site.Cartn_z
+            _atom_site.pdbx_PDB_model_num
+            ATOM 1 P P G A 1 1 0.000 0.000 0.000 1
+            ATOM 2 C "C1'" G A 1 1 1.000 0.000 0.000 1
+            ATOM 3 P P U B 1 1 5.000 0.000 0.000 1
+            ATOM 4 P P A C 2 1 10.000 0.000 0.000 1
+            ATOM 5 N N ALA D 3 5 20.000 0.000 0.000 1
+            ATOM 6 C CB ALA D 3 5 21.000 0.000 0.000 1
+            ATOM 7 P P C 'A B' 1 2 30.000 0.000 0.000 1
+            HETATM 8 O O HOH E 4 . 11.000 0.000 0.000 1
+            #\s
+            """;
+
+    /**
+     * @return A new Selector for {@link #CIF_TEXT}.
+     */
+    private static Selector getSelector() throws Exception {
+        CIF cif = new Mol_TextCifReader((Mol_Environment) null).getCif(
+                new BufferedReader(new StringReader(CIF_TEXT)));
+        return new Selector(cif);
+    }
+
+    /**
+     * @param rows The rows.
+     * @return A BitSet of rows.
+     */
+    private static BitSet rows(int... rows) {
+        BitSet r = new BitSet();
+        for (int i : rows) {
+            r.set(i);
+        }
+        return r;
+    }
+
+    /**
+     * Test of parse method, of class Selection.
+     */
+    @Test
+    public void testParse() throws Exception {
+        System.out.println("Selection parse");
+        assertEquals("(chain A) and (name P)",
+                Selection.parse("chain A and name P").toString());
+        assertEquals("(backbone) and (rna)",
+                Selection.parse("backbone of rna").toString());
+        assertEquals("((chain A) and (not (name P))) or (resid 1-3 5)",
+                Selection.parse("chain A and not name P or resid 1-3 5")
+                        .toString());
+        assertEquals("within 4.0 of ((chain A) or (chain B))",
+                Selection.parse("within 4 of (chain A or chain B)").toString());
+        assertEquals("chain A B", Selection.parse("chain A B").toString());
+        assertEquals("chain \"A B\"",
+                Selection.parse("chain \"A B\"").toString());
+        assertEquals("description \"ribosomal RNA\" 28S", Selection.parse(
+                "description \"ribosomal RNA\" 28S").toString());
+        assertThrows(Exception.class, () -> Selection.parse("chain"));
+        assertThrows(Exception.class, () -> Selection.parse("(chain A"));
+        assertThrows(Exception.class, () -> Selection.parse("chain A)"));
+        assertThrows(Exception.class, () -> Selection.parse("resid x"));
+        assertThrows(Exception.class, () -> Selection.parse("within x of all"));
+        assertThrows(Exception.class, () -> Selection.parse("colour red"));
+    }
+
+    /**
+     * Test of select method, of class Selector.
+     */
+    @Test
+    public void testSelect() throws Exception {
+        System.out.println("Selector select");
+        Selector s = getSelector();
+        assertEquals(rows(0, 1, 2, 3, 6), s.select("rna"));
+        assertEquals(rows(4, 5), s.select("protein"));
+        assertEquals(rows(7), s.select("water"));
+        assertEquals(rows(7), s.select("hetero"));
+        assertEquals(rows(0, 2, 3, 4, 6), s.select("backbone"));
+        assertEquals(rows(0, 2, 6), s.select("backbone of description 28S"));
+        assertEquals(rows(0, 1, 2, 6), s.select("description \"28s ribosomal\""));
+        assertEquals(rows(0, 1, 2, 4, 5, 6),
+                s.select("description \"ribosomal RNA\" \"ribosomal protein\""));
+        assertEquals(rows(3), s.select("rna and not description 28S"));
+        assertEquals(rows(1), s.select("name \"C1'\""));
+        assertEquals(rows(1, 5), s.select("element c"));
+        assertEquals(rows(6), s.select("resid 2-4"));
+        assertEquals(rows(0, 1, 3, 7), s.select("within 1.5 of resname A G"));
+        assertEquals(rows(2, 4, 5, 6, 7), s.select("not (chain A or chain C)"));
+        assertEquals(rows(0, 1, 2, 3, 4, 5, 6, 7), s.select("model 1"));
+    }
+
+    /**
+     * Test of the cache, of class Selector.
+     */
+    @Test
+    public void testCache() throws Exception {
+        System.out.println("Selector cache");
+        Selector s = getSelector();
+        BitSet ab = s.select("chain A B");
+        assertEquals(rows(0, 1, 2), ab);
+        assertEquals(rows(6), s.select("chain \"A B\""));
+        assertEquals(rows(0, 1, 2), s.select("chain A B"));
+        // Results are copies so changing them does not change the cache.
+        ab.clear();
+        assertEquals(rows(0, 1, 2), s.select("chain A B"));
+        assertEquals(rows(0, 1), s.select("chain A and chain A B"));
+        s.clearCache();
+        assertEquals(rows(6), s.select("chain 'A B'"));
+    }
+
+    /**
+     * Test of within method, of class Selector, with an atom that has
+     * unknown coordinates.
+     */
+    @Test
+    public void testWithin() throws Exception {
+        System.out.println("Selector within");
+        String text = CIF_TEXT.replace("G A 1 1 1.000 0.000 0.000",
+                "G A 1 1 ? ? ?");
+        Selector s = new Selector(new Mol_TextCifReader((Mol_Environment) null)
+                .getCif(new BufferedReader(new StringReader(text))));
+        assertEquals(rows(0, 1, 3, 7), s.select("within 1.5 of resname A G"));
+        assertEquals(rows(1), s.select("within 100 of name \"C1'\""));
+        assertEquals(rows(0, 2, 3, 4, 5, 6, 7),
+                s.select("within 100 of chain C"));
+        // Enough atoms for the k-d tree to split with the unknown one in the
+        // middle of chain A. Each chain B atom is near the chain A atom with
+        // the same index.
+        StringBuilder sb = new StringBuilder("""
+                data_T2
+                loop_
+                _atom_site.group_PDB
+                _atom_site.id
+                _atom_site.type_symbol
+                _atom_site.label_atom_id
+                _atom_site.label_asym_id
+                _atom_site.Cartn_x
+                _atom_site.Cartn_y
+                _atom_site.Cartn_z
+                """);
+        int m = 17;
+        for (int i = 0; i < 2 * m; i++) {
+            String chain = i < m ? "A" : "B";
+            double x = i < m ? i : i - m + 0.3;
+            String c = i == m / 2 ? "? ? ?" : x + " 0.0 0.0";
+            sb.append("ATOM ").append(i + 1).append(" C C ").append(chain)
+                    .append(" ").append(c).append("\n");
+        }
+        sb.append("#\s\n");
+        s = new Selector(new Mol_TextCifReader((Mol_Environment) null)
+                .getCif(new BufferedReader(new StringReader(sb.toString()))));
+        BitSet expected = new BitSet();
+        expected.set(0, 2 * m);
+        expected.clear(m + m / 2);
+        assertEquals(expected, s.select("within 0.5 of chain A"));
+        expected.set(m + m / 2);
+        expected.clear(m / 2);
+        assertEquals(expected, s.select("within 0.5 of chain B"));
+    }
+}